@@ -0,0 +1,102 @@
+package com.aliyun.datahub.benchmark;
+
+import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldType;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.transport.DefaultResponse;
+import com.aliyun.datahub.common.util.JacksonParser;
+import com.aliyun.datahub.model.RecordEntry;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic schemas, records and response bodies shared by benchmarks.
+ */
+final class BenchmarkData {
+    private static final FieldType[] TYPES = {
+            FieldType.BIGINT, FieldType.STRING, FieldType.DOUBLE, FieldType.BOOLEAN, FieldType.TIMESTAMP
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Schema of <code>width</code> fields cycling through bigint, string, double, boolean and timestamp.
+     */
+    static RecordSchema newSchema(int width) {
+        RecordSchema schema = new RecordSchema();
+        for (int i = 0; i < width; ++i) {
+            schema.addField(new Field("f" + i, TYPES[i % TYPES.length]));
+        }
+        return schema;
+    }
+
+    static List<RecordEntry> newRecords(RecordSchema schema, int count) {
+        Random random = new Random(count);
+        List<Field> fields = schema.getFields();
+        List<RecordEntry> records = new ArrayList<RecordEntry>(count);
+        for (int i = 0; i < count; ++i) {
+            RecordEntry entry = new RecordEntry(schema);
+            for (int j = 0; j < fields.size(); ++j) {
+                FieldType type = fields.get(j).getType();
+                if (type == FieldType.BIGINT) {
+                    entry.setBigint(j, random.nextInt(1000000));
+                } else if (type == FieldType.STRING) {
+                    entry.setString(j, "value-" + random.nextInt(100000));
+                } else if (type == FieldType.DOUBLE) {
+                    entry.setDouble(j, random.nextDouble() * 1000);
+                } else if (type == FieldType.BOOLEAN) {
+                    entry.setBoolean(j, random.nextBoolean());
+                } else {
+                    entry.setTimeStamp(j, 1455869335000000L + i);
+                }
+            }
+            entry.setShardId("0");
+            entry.putAttribute("source", "benchmark");
+            records.add(entry);
+        }
+        return records;
+    }
+
+    /**
+     * Bytes of <code>size</code> with some repetition, compressible like text payloads.
+     */
+    static byte[] newPayload(int size) {
+        Random random = new Random(size);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            data[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return data;
+    }
+
+    /**
+     * GetRecords response body holding the records.
+     */
+    static byte[] getRecordsBody(List<RecordEntry> records) throws IOException {
+        ObjectNode body = JacksonParser.getObjectMapper().createObjectNode();
+        body.put("NextCursor", "30005af19b3800000000000000000000");
+        body.put("RecordCount", records.size());
+        body.put("StartSeq", 0);
+        ArrayNode array = body.putArray("Records");
+        for (int i = 0; i < records.size(); ++i) {
+            ObjectNode record = (ObjectNode) records.get(i).toJsonNode();
+            record.put("SystemTime", 1455869335000L + i);
+            array.add(record);
+        }
+        return JacksonParser.getObjectMapper().writeValueAsBytes(body);
+    }
+
+    static DefaultResponse jsonResponse(byte[] body) {
+        DefaultResponse response = new DefaultResponse();
+        response.setStatus(200);
+        response.setHeader("Content-Type", "application/json");
+        response.setBody(body);
+        return response;
+    }
+}
@@ -0,0 +1,55 @@
+package com.aliyun.datahub.benchmark;
+
+import com.aliyun.datahub.common.util.JacksonParser;
+import com.aliyun.datahub.model.BlobRecordEntry;
+import org.codehaus.jackson.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Json encoding of blob records. The node built by toJsonNode holds the raw
+ * payload, it is base64 encoded when the node is written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlobRecordBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    public int blobSize;
+
+    private BlobRecordEntry record;
+
+    @Setup
+    public void setUp() {
+        record = new BlobRecordEntry();
+        record.setData(BenchmarkData.newPayload(blobSize));
+        record.setShardId("0");
+        record.putAttribute("source", "benchmark");
+    }
+
+    @Benchmark
+    public JsonNode toJsonNode() {
+        return record.toJsonNode();
+    }
+
+    @Benchmark
+    public byte[] toJsonNodeBytes() throws IOException {
+        return JacksonParser.getObjectMapper().writeValueAsBytes(record.toJsonNode());
+    }
+}
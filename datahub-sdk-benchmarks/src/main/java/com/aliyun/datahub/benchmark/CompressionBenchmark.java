@@ -0,0 +1,48 @@
+package com.aliyun.datahub.benchmark;
+
+import com.aliyun.datahub.model.compress.Compression;
+import com.aliyun.datahub.model.compress.CompressionFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compress and decompress round trip of request and response bodies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"LZ4", "ZLIB", "ZSTD", "SNAPPY"})
+    public CompressionFormat format;
+
+    @Param({"4096", "65536", "1048576"})
+    public int blobSize;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = BenchmarkData.newPayload(blobSize);
+    }
+
+    @Benchmark
+    public byte[] roundTrip() {
+        byte[] compressed = Compression.compress(data, format);
+        return Compression.decompress(compressed, format, data.length);
+    }
+}
@@ -0,0 +1,109 @@
+package com.aliyun.datahub.benchmark;
+
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.transport.DefaultResponse;
+import com.aliyun.datahub.model.GetRecordsRequest;
+import com.aliyun.datahub.model.GetRecordsResult;
+import com.aliyun.datahub.model.PutRecordsRequest;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.model.RecordPool;
+import com.aliyun.datahub.model.serialize.GetRecordsResultJsonDeser;
+import com.aliyun.datahub.model.serialize.GetRecordsResultJsonStreamDeser;
+import com.aliyun.datahub.model.serialize.PutRecordsRequestJsonSer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PutRecords request serialization and GetRecords response deserialization of
+ * tuple records.
+ *
+ * Run with <code>-prof gc</code> to compare the allocation rate of the pooled
+ * and unpooled deserialization, and of the buffered and streamed request body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordSerializationBenchmark {
+
+    @Param({"5", "50"})
+    public int schemaWidth;
+
+    @Param({"100", "1000"})
+    public int recordCount;
+
+    private PutRecordsRequest putRequest;
+    private GetRecordsRequest getRequest;
+    private GetRecordsRequest pooledGetRequest;
+    private RecordPool pool;
+    private DefaultResponse getResponse;
+
+    /** socket stand-in, the streamed body is not kept */
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws Exception {
+        RecordSchema schema = BenchmarkData.newSchema(schemaWidth);
+        List<RecordEntry> records = BenchmarkData.newRecords(schema, recordCount);
+        putRequest = new PutRecordsRequest("project", "topic", records);
+
+        getRequest = new GetRecordsRequest("project", "topic", "0", "cursor", recordCount);
+        getRequest.setSchema(schema);
+        pool = new RecordPool(recordCount);
+        pooledGetRequest = new GetRecordsRequest("project", "topic", "0", "cursor", recordCount);
+        pooledGetRequest.setSchema(schema);
+        pooledGetRequest.setRecordPool(pool);
+        getResponse = BenchmarkData.jsonResponse(BenchmarkData.getRecordsBody(records));
+    }
+
+    @Benchmark
+    public byte[] putRecordsJsonSer() {
+        return PutRecordsRequestJsonSer.getInstance().serialize(putRequest).getBody();
+    }
+
+    @Benchmark
+    public void putRecordsJsonStream() throws IOException {
+        PutRecordsRequestJsonSer.getInstance().serialize(putRequest).getBodyWriter().writeTo(DISCARD);
+    }
+
+    @Benchmark
+    public GetRecordsResult getRecordsJsonDeser() {
+        return GetRecordsResultJsonDeser.getInstance().deserialize(getRequest, getResponse);
+    }
+
+    @Benchmark
+    public GetRecordsResult getRecordsJsonStreamDeser() {
+        return GetRecordsResultJsonStreamDeser.getInstance().deserialize(getRequest, getResponse);
+    }
+
+    @Benchmark
+    public GetRecordsResult getRecordsJsonStreamDeserPooled() {
+        GetRecordsResult result = GetRecordsResultJsonStreamDeser.getInstance().deserialize(pooledGetRequest, getResponse);
+        pool.release(result.getRecords());
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package com.aliyun.datahub.benchmark;
+
+import com.aliyun.datahub.auth.AliyunRequestSigner;
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.transport.HttpMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing of a PutRecords request, done once per request sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignerBenchmark {
+    private static final String RESOURCE = "/projects/project/topics/topic/shards";
+
+    private AliyunRequestSigner signer;
+    private DefaultRequest request;
+
+    @Setup
+    public void setUp() {
+        signer = new AliyunRequestSigner("benchmarkAccessId", "benchmarkAccessKey");
+        request = new DefaultRequest();
+        request.setHttpMethod(HttpMethod.POST);
+        request.setResource(RESOURCE);
+        request.addHeader("Content-Type", "application/json");
+        request.addHeader("x-datahub-client-version", "1.1");
+        request.addHeader("x-datahub-request-action", "pub");
+        request.setBody(BenchmarkData.newPayload(1024));
+    }
+
+    @Benchmark
+    public DefaultRequest sign() {
+        signer.sign(RESOURCE, request);
+        return request;
+    }
+}
@@ -0,0 +1,56 @@
+package com.aliyun.datahub.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process http server answering every request with the same json body,
+ * request bodies are read and dropped.
+ */
+class StubServer {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    StubServer(final byte[] responseBody) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    InputStream in = exchange.getRequestBody();
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) >= 0) {
+                        // drain
+                    }
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.getResponseHeaders().set("x-datahub-request-id", "benchmark");
+                    exchange.sendResponseHeaders(200, responseBody.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(responseBody);
+                    out.flush();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
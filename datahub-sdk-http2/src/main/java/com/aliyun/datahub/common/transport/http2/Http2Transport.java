@@ -0,0 +1,232 @@
+package com.aliyun.datahub.common.transport.http2;
+
+import com.aliyun.datahub.AsyncCallback;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.DatahubFuture;
+import com.aliyun.datahub.common.transport.AsyncTransport;
+import com.aliyun.datahub.common.transport.Connection;
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.transport.DefaultResponse;
+import com.aliyun.datahub.common.transport.Headers;
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.common.util.NamedThreadFactory;
+import com.aliyun.datahub.exception.DatahubClientException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link AsyncTransport} multiplexing requests as HTTP/2 streams over one
+ * connection per endpoint, so shards in flight do not need a connection each.
+ *
+ * At most <code>maxConcurrentStreams</code> requests are in flight, others wait
+ * in order. Endpoints over http use HTTP/2 without TLS (prior knowledge),
+ * https needs ALPN support of the JVM (8u252 or later).
+ */
+public class Http2Transport implements AsyncTransport {
+    public static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+    private static final String[] CONNECTION_HEADERS = {
+            Headers.CONTENT_LENGTH, Headers.CONTENT_TYPE, "Host", "Connection", "Keep-Alive",
+            "Transfer-Encoding", "Upgrade"
+    };
+
+    private final DatahubConfiguration conf;
+    private final CloseableHttpAsyncClient client;
+    private final Semaphore streams;
+    private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+    // drain calls not served yet, only the caller raising it from 0 runs the loop
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    public Http2Transport(DatahubConfiguration conf) {
+        this(conf, DEFAULT_MAX_CONCURRENT_STREAMS);
+    }
+
+    /**
+     * @param conf                 The client configuration, io threads and timeouts are used.
+     * @param maxConcurrentStreams The max count of requests in flight.
+     */
+    public Http2Transport(DatahubConfiguration conf, int maxConcurrentStreams) {
+        if (maxConcurrentStreams <= 0) {
+            throw new IllegalArgumentException("invalid max concurrent streams: " + maxConcurrentStreams);
+        }
+        this.conf = conf;
+        this.streams = new Semaphore(maxConcurrentStreams);
+        IOReactorConfig ioConfig = IOReactorConfig.custom()
+                .setIoThreadCount(conf.getIoThreadCount())
+                .setSoTimeout(Timeout.ofSeconds(conf.getSocketTimeout()))
+                .build();
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofSeconds(conf.getSocketConnectTimeout()))
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofSeconds(conf.getSocketTimeout()))
+                .build();
+        client = H2AsyncClientBuilder.create()
+                .setIOReactorConfig(ioConfig)
+                .setH2Config(H2Config.custom().setPushEnabled(false).setMaxConcurrentStreams(maxConcurrentStreams).build())
+                .setDefaultConnectionConfig(connectionConfig)
+                .setDefaultRequestConfig(requestConfig)
+                .setThreadFactory(new NamedThreadFactory("datahub-h2"))
+                .disableAutomaticRetries()
+                .build();
+        client.start();
+    }
+
+    @Override
+    public void request(DefaultRequest req, String endpoint, final AsyncCallback<Response> callback) {
+        String dhEndpoint = conf.getEndpoint();
+        if (endpoint != null && !endpoint.isEmpty()) {
+            dhEndpoint = endpoint;
+        }
+        final SimpleHttpRequest httpRequest;
+        try {
+            httpRequest = newHttpRequest(req, URI.create(dhEndpoint + req.getResource()));
+        } catch (IllegalArgumentException e) {
+            callback.onFailure(new IOException("invalid url: " + e.getMessage(), e));
+            return;
+        }
+        pending.add(new Runnable() {
+            @Override
+            public void run() {
+                send(httpRequest, callback);
+            }
+        });
+        drain();
+    }
+
+    /**
+     * Send queued requests while streams are free. A request failing within
+     * send, e.g. after close, releases its stream and calls drain again; the
+     * nested call only asks the running loop for another pass, so a long queue
+     * does not recurse.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int requests = 1;
+        do {
+            while (!pending.isEmpty() && streams.tryAcquire()) {
+                Runnable next = pending.poll();
+                if (next == null) {
+                    streams.release();
+                    break;
+                }
+                next.run();
+            }
+            requests = drainRequests.addAndGet(-requests);
+        } while (requests != 0);
+    }
+
+    private void send(SimpleHttpRequest httpRequest, final AsyncCallback<Response> callback) {
+        try {
+            client.execute(httpRequest, new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse result) {
+                    release();
+                    DefaultResponse response = new DefaultResponse();
+                    response.setStatus(result.getCode());
+                    for (Header header : result.getHeaders()) {
+                        response.setHeader(header.getName(), header.getValue());
+                    }
+                    response.setBody(result.getBodyBytes());
+                    callback.onSuccess(response);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    release();
+                    callback.onFailure(e instanceof IOException ? e : new IOException(e.getMessage(), e));
+                }
+
+                @Override
+                public void cancelled() {
+                    release();
+                    callback.onFailure(new IOException("request cancelled"));
+                }
+            });
+        } catch (RuntimeException e) {
+            // the client is closed
+            release();
+            callback.onFailure(new IOException(e.getMessage(), e));
+        }
+    }
+
+    private void release() {
+        streams.release();
+        drain();
+    }
+
+    private static SimpleHttpRequest newHttpRequest(DefaultRequest req, URI uri) {
+        SimpleHttpRequest httpRequest = SimpleHttpRequest.create(req.getHttpMethod().name(), uri);
+        for (Map.Entry<String, String> entry : req.getHeaders().entrySet()) {
+            if (!isConnectionHeader(entry.getKey())) {
+                httpRequest.addHeader(entry.getKey(), entry.getValue());
+            }
+        }
+        if (req.getBody() != null) {
+            String contentType = req.getHeaders().get(Headers.CONTENT_TYPE);
+            httpRequest.setBody(req.getBody(), contentType != null ? ContentType.parse(contentType) : ContentType.APPLICATION_JSON);
+        }
+        return httpRequest;
+    }
+
+    private static boolean isConnectionHeader(String name) {
+        for (String header : CONNECTION_HEADERS) {
+            if (header.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Response request(DefaultRequest req, String endpoint) throws IOException {
+        DatahubFuture<Response> future = new DatahubFuture<Response>();
+        request(req, endpoint, future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("request interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public Response request(DefaultRequest req) throws IOException {
+        return request(req, null);
+    }
+
+    @Override
+    public Connection connect(DefaultRequest req) throws IOException {
+        throw new DatahubClientException("not implemented");
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+    }
+}
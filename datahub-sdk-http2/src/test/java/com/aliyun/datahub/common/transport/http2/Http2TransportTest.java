@@ -0,0 +1,217 @@
+package com.aliyun.datahub.common.transport.http2;
+
+import com.aliyun.datahub.AsyncDatahubClient;
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.DatahubFuture;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.exception.InvalidParameterException;
+import com.aliyun.datahub.model.GetCursorRequest;
+import com.aliyun.datahub.model.GetCursorResult;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class Http2TransportTest {
+    private static final int MAX_STREAMS = 10;
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private HttpAsyncServer server;
+    private DatahubConfiguration conf;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        server = H2ServerBootstrap.bootstrap()
+                .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                .setIOSessionListener(new ConnectionCounter())
+                .register("*", new AsyncServerRequestHandler<Message<HttpRequest, byte[]>>() {
+                    @Override
+                    public AsyncRequestConsumer<Message<HttpRequest, byte[]>> prepare(
+                            HttpRequest request, EntityDetails entityDetails, HttpContext context) {
+                        return new BasicRequestConsumer<byte[]>(entityDetails != null
+                                ? new BasicAsyncEntityConsumer() : new DiscardingEntityConsumer<byte[]>());
+                    }
+
+                    @Override
+                    public void handle(final Message<HttpRequest, byte[]> message, final ResponseTrigger trigger,
+                                       final HttpContext context) {
+                        int current = inFlight.incrementAndGet();
+                        while (current > maxInFlight.get()) {
+                            maxInFlight.compareAndSet(maxInFlight.get(), current);
+                        }
+                        final String path = message.getHead().getPath();
+                        scheduler.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                inFlight.decrementAndGet();
+                                try {
+                                    if (path.contains("/topics/invalid/")) {
+                                        trigger.submitResponse(AsyncResponseBuilder.create(400).setEntity(
+                                                "{\"ErrorCode\":\"InvalidParameter\",\"ErrorMessage\":\"invalid\"}",
+                                                ContentType.APPLICATION_JSON).build(), context);
+                                    } else {
+                                        trigger.submitResponse(AsyncResponseBuilder.create(200).setEntity(
+                                                "{\"Cursor\":\"cursor\",\"RecordTime\":0,\"Sequence\":0}",
+                                                ContentType.APPLICATION_JSON).build(), context);
+                                    }
+                                } catch (Exception e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        }, 100, TimeUnit.MILLISECONDS);
+                    }
+                })
+                .create();
+        server.start();
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress("127.0.0.1", 0), URIScheme.HTTP).get();
+        int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+        conf = new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:" + port);
+        conf.setIoThreadCount(1);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        server.close(CloseMode.IMMEDIATE);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testMultiplexStreams() throws Exception {
+        connections.set(0);
+        maxInFlight.set(0);
+        AsyncDatahubClient client = new AsyncDatahubClient(conf, new Http2Transport(conf, MAX_STREAMS));
+        try {
+            // open the connection first, requests racing its setup may open another one
+            client.getCursor("project", "topic", "0", GetCursorRequest.CursorType.OLDEST).get(10, TimeUnit.SECONDS);
+            List<DatahubFuture<GetCursorResult>> futures = new ArrayList<DatahubFuture<GetCursorResult>>();
+            for (int i = 0; i < 50; ++i) {
+                futures.add(client.getCursor("project", "topic", String.valueOf(i), GetCursorRequest.CursorType.OLDEST));
+            }
+            for (DatahubFuture<GetCursorResult> future : futures) {
+                Assert.assertEquals(future.get(10, TimeUnit.SECONDS).getCursor(), "cursor");
+            }
+        } finally {
+            client.close();
+        }
+        Assert.assertEquals(connections.get(), 1);
+        Assert.assertTrue(maxInFlight.get() > 1, "streams are not multiplexed");
+        Assert.assertTrue(maxInFlight.get() <= MAX_STREAMS, "too many streams: " + maxInFlight.get());
+    }
+
+    @Test
+    public void testBlockingClient() {
+        Http2Transport transport = new Http2Transport(conf);
+        DatahubClient client = new DatahubClient(conf, transport);
+        try {
+            GetCursorResult result = client.getCursor("project", "topic", "0", GetCursorRequest.CursorType.OLDEST);
+            Assert.assertEquals(result.getCursor(), "cursor");
+            try {
+                client.getCursor("project", "invalid", "0", GetCursorRequest.CursorType.OLDEST);
+                Assert.fail("should throw");
+            } catch (InvalidParameterException e) {
+                // expected
+            }
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testFailQueuedRequestsOnClose() throws Exception {
+        // server never answering, the first request holds the only stream until close
+        ServerSocket silent = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        DatahubConfiguration silentConf = new DatahubConfiguration(new AliyunAccount("id", "key"),
+                "http://127.0.0.1:" + silent.getLocalPort());
+        silentConf.setIoThreadCount(1);
+        AsyncDatahubClient client = new AsyncDatahubClient(silentConf, new Http2Transport(silentConf, 1));
+        List<DatahubFuture<GetCursorResult>> futures = new ArrayList<DatahubFuture<GetCursorResult>>();
+        try {
+            for (int i = 0; i < 20000; ++i) {
+                futures.add(client.getCursor("project", "topic", "0", GetCursorRequest.CursorType.OLDEST));
+            }
+            // queued requests fail one after another within the send of the one before
+            client.close();
+            for (DatahubFuture<GetCursorResult> future : futures) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                    Assert.fail("request should fail");
+                } catch (ExecutionException e) {
+                    // expected
+                }
+            }
+        } finally {
+            silent.close();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxStreams() {
+        new Http2Transport(conf, 0);
+    }
+
+    private class ConnectionCounter implements IOSessionListener {
+        @Override
+        public void connected(IOSession session) {
+            connections.incrementAndGet();
+        }
+
+        @Override
+        public void startTls(IOSession session) {
+        }
+
+        @Override
+        public void inputReady(IOSession session) {
+        }
+
+        @Override
+        public void outputReady(IOSession session) {
+        }
+
+        @Override
+        public void timeout(IOSession session) {
+        }
+
+        @Override
+        public void exception(IOSession session, Exception ex) {
+        }
+
+        @Override
+        public void disconnected(IOSession session) {
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.aliyun.datahub;
+
+/**
+ * Callback of an asynchronous call, see {@link AsyncDatahubClient}.
+ *
+ * Callbacks run on the IO threads of the client and must not block.
+ */
+public interface AsyncCallback<T> {
+    void onSuccess(T result);
+
+    void onFailure(Throwable e);
+}
@@ -0,0 +1,176 @@
+package com.aliyun.datahub;
+
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.transport.AsyncTransport;
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.model.*;
+import com.aliyun.datahub.model.serialize.Deserializer;
+import com.aliyun.datahub.model.serialize.JsonSerializerFactory;
+import com.aliyun.datahub.model.serialize.Serializer;
+import com.aliyun.datahub.model.serialize.SerializerFactory;
+import com.aliyun.datahub.rest.RestClient;
+
+import java.util.List;
+
+/**
+ * Client reading and writing records on DataHub without blocking.
+ *
+ * Calls return a {@link DatahubFuture} at once, requests are sent by a few IO
+ * threads of a {@link com.aliyun.datahub.common.transport.NioTransport}, so
+ * many shards can be polled concurrently without a thread per request.
+ * Responses are deserialized on the IO threads, callbacks added to the futures
+ * must not block. Errors are those thrown by {@link DatahubClient}, wrapped
+ * by {@link java.util.concurrent.ExecutionException} or passed to
+ * {@link AsyncCallback#onFailure(Throwable)}.
+ */
+public class AsyncDatahubClient {
+    /**
+     * Method requests/results serializer factory
+     */
+    protected SerializerFactory factory;
+    /**
+     * Http client
+     */
+    protected RestClient restClient;
+
+    /**
+     * @param conf The client configuration options.
+     */
+    public AsyncDatahubClient(DatahubConfiguration conf) {
+        this(conf, JsonSerializerFactory.getInstance());
+    }
+
+    /**
+     * @param conf    The client configuration options.
+     * @param factory The method request/result serializer factory.
+     */
+    public AsyncDatahubClient(DatahubConfiguration conf, SerializerFactory factory) {
+        this.factory = factory;
+        this.restClient = conf.newAsyncRestClient();
+    }
+
+    /**
+     * @param conf      The client configuration options.
+     * @param transport The transport sending requests, closed by {@link #close()}.
+     */
+    public AsyncDatahubClient(DatahubConfiguration conf, AsyncTransport transport) {
+        this.factory = JsonSerializerFactory.getInstance();
+        this.restClient = conf.newRestClient(transport);
+    }
+
+    /**
+     * Get a shard cursor, see {@link DatahubClient#getCursor(GetCursorRequest)}.
+     */
+    public DatahubFuture<GetCursorResult> getCursor(GetCursorRequest request) {
+        return call(request, factory.getGetCursorRequestSer(), factory.getGetCursorResultDeser());
+    }
+
+    public DatahubFuture<GetCursorResult> getCursor(String projectName, String topicName, String shardId, GetCursorRequest.CursorType type) {
+        return getCursor(new GetCursorRequest(projectName, topicName, shardId, type));
+    }
+
+    /**
+     * Get data records from a shard, see {@link DatahubClient#getRecords(GetRecordsRequest)}.
+     */
+    public DatahubFuture<GetRecordsResult> getRecords(GetRecordsRequest request) {
+        return call(request, factory.getGetRecordsRequestSer(), factory.getGetRecordsResultDeser());
+    }
+
+    public DatahubFuture<GetRecordsResult> getRecords(String projectName, String topicName, String shardId, String cursor, int limit, RecordSchema schema) {
+        GetRecordsRequest request = new GetRecordsRequest(projectName, topicName, shardId, cursor, limit);
+        request.setSchema(schema);
+        return getRecords(request);
+    }
+
+    /**
+     * Get blob data records from a shard, see {@link DatahubClient#getBlobRecords(GetBlobRecordsRequest)}.
+     */
+    public DatahubFuture<GetBlobRecordsResult> getBlobRecords(GetBlobRecordsRequest request) {
+        return call(request, factory.getGetBlobRecordsRequestSer(), factory.getGetBlobRecordsResultDeser());
+    }
+
+    public DatahubFuture<GetBlobRecordsResult> getBlobRecords(String projectName, String topicName, String shardId, String cursor, int limit) {
+        return getBlobRecords(new GetBlobRecordsRequest(projectName, topicName, shardId, cursor, limit));
+    }
+
+    /**
+     * Write data records into a topic, see {@link DatahubClient#putRecords(PutRecordsRequest)}.
+     */
+    public DatahubFuture<PutRecordsResult> putRecords(PutRecordsRequest request) {
+        final Deserializer<PutRecordsResult, PutRecordsRequest, Response> deser = factory.getPutRecordsResultDeser();
+        return call(request, factory.getPutRecordsRequestSer(), new Deserializer<PutRecordsResult, PutRecordsRequest, Response>() {
+            @Override
+            public PutRecordsResult deserialize(PutRecordsRequest request, Response response) {
+                PutRecordsResult rs = deser.deserialize(request, response);
+                List<RecordEntry> records = request.getRecords();
+                for (int i : rs.getFailedRecordIndex()) {
+                    rs.addFailedRecord(records.get(i));
+                }
+                return rs;
+            }
+        });
+    }
+
+    public DatahubFuture<PutRecordsResult> putRecords(String projectName, String topicName, List<RecordEntry> entries) {
+        return putRecords(new PutRecordsRequest(projectName, topicName, entries));
+    }
+
+    /**
+     * Write blob data records into a topic, see {@link DatahubClient#putBlobRecords(PutBlobRecordsRequest)}.
+     */
+    public DatahubFuture<PutBlobRecordsResult> putBlobRecords(PutBlobRecordsRequest request) {
+        final Deserializer<PutBlobRecordsResult, PutBlobRecordsRequest, Response> deser = factory.getPutBlobRecordsResultDeser();
+        return call(request, factory.getPutBlobRecordsRequestSer(), new Deserializer<PutBlobRecordsResult, PutBlobRecordsRequest, Response>() {
+            @Override
+            public PutBlobRecordsResult deserialize(PutBlobRecordsRequest request, Response response) {
+                PutBlobRecordsResult rs = deser.deserialize(request, response);
+                List<BlobRecordEntry> records = request.getRecords();
+                for (int i : rs.getFailedRecordIndex()) {
+                    rs.addFailedRecord(records.get(i));
+                }
+                return rs;
+            }
+        });
+    }
+
+    public DatahubFuture<PutBlobRecordsResult> putBlobRecords(String projectName, String topicName, List<BlobRecordEntry> entries) {
+        return putBlobRecords(new PutBlobRecordsRequest(projectName, topicName, entries));
+    }
+
+    /**
+     * Close the transport and the P2P endpoint discovery, calls in flight are failed.
+     */
+    public void close() {
+        restClient.close();
+    }
+
+    private <T, R> DatahubFuture<T> call(final R request, Serializer<DefaultRequest, R> ser,
+                                         final Deserializer<T, R, Response> deser) {
+        final DatahubFuture<T> future = new DatahubFuture<T>();
+        try {
+            DefaultRequest req = ser.serialize(request);
+            restClient.requestAsync(req, new AsyncCallback<Response>() {
+                @Override
+                public void onSuccess(Response response) {
+                    T result;
+                    try {
+                        result = deser.deserialize(request, response);
+                    } catch (RuntimeException e) {
+                        future.onFailure(e);
+                        return;
+                    }
+                    future.onSuccess(result);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    future.onFailure(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.onFailure(e);
+        }
+        return future;
+    }
+}
@@ -1,13 +1,19 @@
 package com.aliyun.datahub;
 
 import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.cache.MetadataCache;
 import com.aliyun.datahub.common.data.RecordType;
 import com.aliyun.datahub.common.transport.DefaultRequest;
 import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.common.transport.Transport;
 import com.aliyun.datahub.common.data.RecordSchema;
 import com.aliyun.datahub.exception.*;
+import com.aliyun.datahub.metrics.MetricsListener;
 import com.aliyun.datahub.model.*;
 import com.aliyun.datahub.model.serialize.*;
+import com.aliyun.datahub.ratelimit.ShardRateLimiter;
+import com.aliyun.datahub.retry.RecordRetryQueue;
+import com.aliyun.datahub.retry.RetryPolicy;
 import com.aliyun.datahub.rest.RestClient;
 import com.aliyun.datahub.common.util.KeyRangeUtils;
 
@@ -31,7 +37,16 @@ public class DatahubClient {
      * Http client
      */
     protected RestClient restClient;
+    /**
+     * Topics, shard lists and projects shared by callers
+     */
+    private final MetadataCache metadataCache;
+    /**
+     * Shards of records re-sent by partition key or hash key, created at first use
+     */
+    private ShardRouter shardRouter;
     final private Long MAX_WAITING_MILLISECOND = 120000L;
+    private static final String LIMIT_EXCEEDED = "LimitExceeded";
 
     /**
      * Construct a new client to invoke service methods on DataHub.
@@ -45,6 +60,7 @@ public class DatahubClient {
         this.conf = conf;
         this.factory = JsonSerializerFactory.getInstance();
         this.restClient = conf.newRestClient();
+        this.metadataCache = new MetadataCache(conf.getMetadataCacheTtlMs());
     }
 
     /**
@@ -62,6 +78,22 @@ public class DatahubClient {
         this.conf = conf;
         this.factory = factory;
         this.restClient = conf.newRestClient();
+        this.metadataCache = new MetadataCache(conf.getMetadataCacheTtlMs());
+    }
+
+    /**
+     * Construct a new client sending requests by a custom transport.
+     *
+     * @param conf
+     *          The client configuration options.
+     * @param transport
+     *          The transport sending requests, e.g. an HTTP/2 transport.
+     */
+    public DatahubClient(DatahubConfiguration conf, Transport transport) {
+        this.conf = conf;
+        this.factory = JsonSerializerFactory.getInstance();
+        this.restClient = conf.newRestClient(transport);
+        this.metadataCache = new MetadataCache(conf.getMetadataCacheTtlMs());
     }
 
 
@@ -115,12 +147,17 @@ public class DatahubClient {
      *         The requested resource could not be found. The stream might not
      *         be specified correctly.
      */
-    public GetProjectResult getProject(GetProjectRequest request) {
-        DefaultRequest req = factory.getGetProjectRequestSer().serialize(request);
+    public GetProjectResult getProject(final GetProjectRequest request) {
+        return metadataCache.get("GetProject", request.getProjectName(), null, new MetadataCache.Loader<GetProjectResult>() {
+            @Override
+            public GetProjectResult load() {
+                DefaultRequest req = factory.getGetProjectRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+                Response response = restClient.request(req);
 
-        return factory.getGetProjectResultDeser().deserialize(request, response);
+                return factory.getGetProjectResultDeser().deserialize(request, response);
+            }
+        });
     }
 
     /**
@@ -142,7 +179,7 @@ public class DatahubClient {
     public ListProjectResult listProject(ListProjectRequest request) {
         DefaultRequest req = factory.getListProjectRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getListProjectResultDeser().deserialize(request, response);
     }
@@ -292,9 +329,13 @@ public class DatahubClient {
     public void createTopic(CreateTopicRequest request) {
         DefaultRequest req = factory.getCreateTopicRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        try {
+            Response response = this.restClient.request(req);
 
-        factory.getCreateTopicResultDeser().deserialize(request, response);
+            factory.getCreateTopicResultDeser().deserialize(request, response);
+        } finally {
+            invalidateMetadata(request.getProjectName(), request.getTopicName());
+        }
     }
 
     /**
@@ -324,9 +365,13 @@ public class DatahubClient {
     public void deleteTopic(DeleteTopicRequest request) {
         DefaultRequest req = factory.getDeleteTopicRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        try {
+            Response response = this.restClient.request(req);
 
-        factory.getDeleteTopicResultDeser().deserialize(request, response);
+            factory.getDeleteTopicResultDeser().deserialize(request, response);
+        } finally {
+            invalidateMetadata(request.getProjectName(), request.getTopicName());
+        }
     }
 
     /**
@@ -365,9 +410,13 @@ public class DatahubClient {
     public UpdateTopicResult updateTopic(UpdateTopicRequest request) {
         DefaultRequest req = factory.getUpdateTopicRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        try {
+            Response response = this.restClient.request(req);
 
-        return factory.getUpdateTopicResultDeser().deserialize(request, response);
+            return factory.getUpdateTopicResultDeser().deserialize(request, response);
+        } finally {
+            invalidateMetadata(request.getProjectName(), request.getTopicName());
+        }
     }
 
     /**
@@ -400,18 +449,55 @@ public class DatahubClient {
      * its record type, its record schema, its created time, its last modified
      * time and its description.
      * 
+     * Concurrent requests for the same topic share one request, results are
+     * cached for {@link DatahubConfiguration#getMetadataCacheTtlMs()} and must
+     * not be modified.
+     * 
      * @param request
      *        Represents the input for <code>GetTopic</code>.
      * @return Result of the GetTopic operation returned by the service.
      * @throws ResourceNotFoundException
      *         The requested resource could not be found.
      */
-    public GetTopicResult getTopic(GetTopicRequest request) {
-        DefaultRequest req = factory.getGetTopicRequestSer().serialize(request);
+    public GetTopicResult getTopic(final GetTopicRequest request) {
+        return metadataCache.get("GetTopic", request.getProjectName(), request.getTopicName(), new MetadataCache.Loader<GetTopicResult>() {
+            @Override
+            public GetTopicResult load() {
+                DefaultRequest req = factory.getGetTopicRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+                Response response = restClient.request(req);
 
-        return factory.getGetTopicResultDeser().deserialize(request, response);
+                return factory.getGetTopicResultDeser().deserialize(request, response);
+            }
+        });
+    }
+
+    /**
+     * Get the record schema of the specified topic, from the cached topic.
+     *
+     * @param projectName
+     *        The name of project.
+     * @param topicName
+     *        The name of topic.
+     * @return The record schema, null for blob topics.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public RecordSchema getRecordSchema(String projectName, String topicName) {
+        return getTopic(projectName, topicName).getRecordSchema();
+    }
+
+    /**
+     * Drop the cached topic and shard list of a topic, e.g. when writes fail
+     * after it was changed by another client.
+     *
+     * @param projectName
+     *        The name of project.
+     * @param topicName
+     *        The name of topic.
+     */
+    public void invalidateMetadata(String projectName, String topicName) {
+        metadataCache.invalidate(projectName, topicName);
     }
 
     /**
@@ -439,7 +525,7 @@ public class DatahubClient {
     public ListTopicResult listTopic(ListTopicRequest request) {
         DefaultRequest req = factory.getListTopicRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getListTopicResultDeser().deserialize(request, response);
     }
@@ -462,16 +548,29 @@ public class DatahubClient {
     /**
      * List shards.
      *
+     * Concurrent requests for the same topic share one request, results are
+     * cached for {@link DatahubConfiguration#getMetadataCacheTtlMs()} and must
+     * not be modified.
+     *
      * @param request
      *        Represents the input for <code>ListShard</code>.
      * @return Result of the ListShard operation returned by the service.
      * @throws ResourceNotFoundException
      *         The requested resource could not be found.
      */
-    public ListShardResult listShard(ListShardRequest request) {
+    public ListShardResult listShard(final ListShardRequest request) {
+        return metadataCache.get("ListShard", request.getProjectName(), request.getTopicName(), new MetadataCache.Loader<ListShardResult>() {
+            @Override
+            public ListShardResult load() {
+                return doListShard(request);
+            }
+        });
+    }
+
+    private ListShardResult doListShard(ListShardRequest request) {
         DefaultRequest req = factory.getListShardRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getListShardResultDeser().deserialize(request, response);
     }
@@ -493,7 +592,7 @@ public class DatahubClient {
      */
     public SplitShardResult splitShard(String projectName, String topicName, String shardId) {
         String splitKey = null;
-        ListShardResult resp = listShard(projectName, topicName);
+        ListShardResult resp = doListShard(new ListShardRequest(projectName, topicName));
         for (ShardEntry entry : resp.getShards()) {
             if (shardId.equals(entry.getShardId())) {
                 splitKey = KeyRangeUtils.trivialSplit(entry.getBeginHashKey(), entry.getEndHashKey());
@@ -545,9 +644,13 @@ public class DatahubClient {
     public SplitShardResult splitShard(SplitShardRequest request) {
         DefaultRequest req = factory.getSplitShardRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        try {
+            Response response = this.restClient.request(req);
 
-        return factory.getSplitShardResultDeser().deserialize(request, response);
+            return factory.getSplitShardResultDeser().deserialize(request, response);
+        } finally {
+            invalidateMetadata(request.getProjectName(), request.getTopicName());
+        }
     }
 
     /**
@@ -589,9 +692,13 @@ public class DatahubClient {
     public MergeShardResult mergeShard(MergeShardRequest request) {
         DefaultRequest req = factory.getMergeShardRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        try {
+            Response response = this.restClient.request(req);
 
-        return factory.getMergeShardResultDeser().deserialize(request, response);
+            return factory.getMergeShardResultDeser().deserialize(request, response);
+        } finally {
+            invalidateMetadata(request.getProjectName(), request.getTopicName());
+        }
     }
 
     /**
@@ -622,7 +729,7 @@ public class DatahubClient {
     public GetCursorResult getCursor(GetCursorRequest request) {
         DefaultRequest req = factory.getGetCursorRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getGetCursorResultDeser().deserialize(request, response);
     }
@@ -723,11 +830,32 @@ public class DatahubClient {
      *         The data records received is malformed, or conflicts with the specified schema.
      */
     public GetRecordsResult getRecords(GetRecordsRequest request) {
-        DefaultRequest req = factory.getGetRecordsRequestSer().serialize(request);
+        MetricsListener listener = restClient.getMetricsListener();
+        if (listener == null) {
+            return doGetRecords(request);
+        }
+        long start = System.nanoTime();
+        try {
+            GetRecordsResult rs = doGetRecords(request);
+            listener.onOperation(MetricsListener.GET_RECORDS, request.getProjectName(), request.getTopicName(),
+                    request.getShardId(), System.nanoTime() - start, rs.getRecordCount(), 0, null);
+            return rs;
+        } catch (RuntimeException e) {
+            listener.onOperation(MetricsListener.GET_RECORDS, request.getProjectName(), request.getTopicName(),
+                    request.getShardId(), System.nanoTime() - start, 0, 0, errorCodeOf(e));
+            throw e;
+        }
+    }
 
-        Response response = this.restClient.requestWithNoRetry(req);
+    private GetRecordsResult doGetRecords(GetRecordsRequest request) {
+        DefaultRequest req = factory.getGetRecordsRequestSer().serialize(request);
 
-        return factory.getGetRecordsResultDeser().deserialize(request, response);
+        List<String> shards = shardsOf(request.getShardId());
+        Response response = this.restClient.request(req, limitAttempts(MetricsListener.GET_RECORDS,
+                request.getProjectName(), request.getTopicName(), shards));
+        GetRecordsResult rs = factory.getGetRecordsResultDeser().deserialize(request, response);
+        updateRates(MetricsListener.GET_RECORDS, request.getProjectName(), request.getTopicName(), shards, false);
+        return rs;
     }
 
     /**
@@ -808,23 +936,86 @@ public class DatahubClient {
      *         The data records received is malformed, or conflicts with the specified schema.
      */
     public GetBlobRecordsResult getBlobRecords(GetBlobRecordsRequest request) {
-        DefaultRequest req = factory.getGetBlobRecordsRequestSer().serialize(request);
+        MetricsListener listener = restClient.getMetricsListener();
+        if (listener == null) {
+            return doGetBlobRecords(request);
+        }
+        long start = System.nanoTime();
+        try {
+            GetBlobRecordsResult rs = doGetBlobRecords(request);
+            listener.onOperation(MetricsListener.GET_BLOB_RECORDS, request.getProjectName(), request.getTopicName(),
+                    request.getShardId(), System.nanoTime() - start, rs.getRecordCount(), 0, null);
+            return rs;
+        } catch (RuntimeException e) {
+            listener.onOperation(MetricsListener.GET_BLOB_RECORDS, request.getProjectName(), request.getTopicName(),
+                    request.getShardId(), System.nanoTime() - start, 0, 0, errorCodeOf(e));
+            throw e;
+        }
+    }
 
-        Response response = this.restClient.requestWithNoRetry(req);
+    private GetBlobRecordsResult doGetBlobRecords(GetBlobRecordsRequest request) {
+        DefaultRequest req = factory.getGetBlobRecordsRequestSer().serialize(request);
 
-        return factory.getGetBlobRecordsResultDeser().deserialize(request, response);
+        List<String> shards = shardsOf(request.getShardId());
+        Response response = this.restClient.request(req, limitAttempts(MetricsListener.GET_BLOB_RECORDS,
+                request.getProjectName(), request.getTopicName(), shards));
+        GetBlobRecordsResult rs = factory.getGetBlobRecordsResultDeser().deserialize(request, response);
+        updateRates(MetricsListener.GET_BLOB_RECORDS, request.getProjectName(), request.getTopicName(), shards, false);
+        return rs;
     }
 
+    /**
+     * Write data records into a DataHub topic, and re-send records failed with a
+     * retryable error, e.g. LimitExceeded, at most <code>retries</code> times each.
+     * Every shard backs off on its own, see {@link DatahubConfiguration#setRecordRetryPolicy}.
+     * Only the first request is retried by the request retry policy, re-sends
+     * throttled as a whole count as a failure of their records instead.
+     *
+     * @return result with the records failed in the end, indexed in entries
+     */
     public PutRecordsResult putRecords(String projectName, String topicName, List<RecordEntry> entries, int retries) {
         PutRecordsResult result = putRecords(projectName, topicName, entries);
-        for (int i = 0; i < retries; ++i) {
-            if (result.getFailedRecordCount() == 0) {
-                return result;
-            } else {
-                result = putRecords(projectName, topicName, result.getFailedRecords());
+        if (retries <= 0 || result.getFailedRecordCount() == 0) {
+            return result;
+        }
+        RecordRetryQueue<RecordEntry> queue = new RecordRetryQueue<RecordEntry>(conf.getRecordRetryPolicy(), retries, entries,
+                shardResolver(projectName, topicName));
+        queue.onResult(entries, result.getFailedRecordIndex(), result.getFailedRecordError(), System.currentTimeMillis());
+        int attempt = 0;
+        while (!queue.isEmpty() && awaitRetry(queue)) {
+            List<RecordEntry> records = queue.poll(System.currentTimeMillis());
+            if (records.isEmpty()) {
+                continue;
+            }
+            MetricsListener listener = restClient.getMetricsListener();
+            if (listener != null) {
+                listener.onRetry(MetricsListener.PUT_RECORDS, projectName, topicName, ++attempt);
             }
+            // re-sends are retried by the queue only, retries of both would multiply
+            try {
+                result = putRecords(new PutRecordsRequest(projectName, topicName, records), RetryPolicy.NO_RETRY);
+            } catch (DatahubServiceException e) {
+                ErrorEntry error = new ErrorEntry(e.getErrorCode(), e.getMessage());
+                if (!conf.getRecordRetryPolicy().isRetryable(error)) {
+                    throw e;
+                }
+                queue.onRequestFailed(records, error, System.currentTimeMillis());
+                continue;
+            }
+            queue.onResult(records, result.getFailedRecordIndex(), result.getFailedRecordError(), System.currentTimeMillis());
         }
-        return result;
+        queue.giveUp();
+
+        PutRecordsResult merged = new PutRecordsResult();
+        merged.setRequestId(result.getRequestId());
+        merged.setFailedRecordCount(queue.getFailedRecords().size());
+        List<Integer> failedIndex = queue.getFailedIndex();
+        for (int i = 0; i < failedIndex.size(); ++i) {
+            merged.addFailedIndex(failedIndex.get(i));
+            merged.addFailedError(queue.getFailedErrors().get(i));
+            merged.addFailedRecord(queue.getFailedRecords().get(i));
+        }
+        return merged;
     }
 
     /**
@@ -882,28 +1073,139 @@ public class DatahubClient {
      *         or can't be used. For more information, see the returned message.
      */
     public PutRecordsResult putRecords(PutRecordsRequest request) {
-        DefaultRequest req = factory.getPutRecordsRequestSer().serialize(request);
+        return putRecords(request, restClient.getRetryPolicy());
+    }
 
-        Response response = this.restClient.requestWithNoRetry(req);
+    private PutRecordsResult putRecords(PutRecordsRequest request, RetryPolicy retryPolicy) {
+        MetricsListener listener = restClient.getMetricsListener();
+        if (listener == null) {
+            return doPutRecords(request, retryPolicy);
+        }
+        long start = System.nanoTime();
+        int count = request.getRecords() == null ? 0 : request.getRecords().size();
+        try {
+            PutRecordsResult rs = doPutRecords(request, retryPolicy);
+            listener.onOperation(MetricsListener.PUT_RECORDS, request.getProjectName(), request.getTopicName(),
+                    null, System.nanoTime() - start, count, rs.getFailedRecordCount(), null);
+            return rs;
+        } catch (RuntimeException e) {
+            listener.onOperation(MetricsListener.PUT_RECORDS, request.getProjectName(), request.getTopicName(),
+                    null, System.nanoTime() - start, count, count, errorCodeOf(e));
+            throw e;
+        }
+    }
+
+    private PutRecordsResult doPutRecords(PutRecordsRequest request, RetryPolicy retryPolicy) {
+        DefaultRequest req = factory.getPutRecordsRequestSer().serialize(request);
 
+        List<String> shards = shardsOf(request.getRecords());
+        Response response = this.restClient.request(req, retryPolicy, limitAttempts(MetricsListener.PUT_RECORDS,
+                request.getProjectName(), request.getTopicName(), shards));
         PutRecordsResult rs = factory.getPutRecordsResultDeser().deserialize(request, response);
         List<RecordEntry> records = request.getRecords();
         for (int i : rs.getFailedRecordIndex()) {
             rs.addFailedRecord(records.get(i));
         }
+        updateRates(MetricsListener.PUT_RECORDS, request.getProjectName(), request.getTopicName(), shards,
+                records, rs.getFailedRecordIndex(), rs.getFailedRecordError());
         return rs;
     }
 
+    /**
+     * Write blob data records into a DataHub topic, and re-send records failed with
+     * a retryable error, e.g. LimitExceeded, at most <code>retries</code> times each.
+     * Every shard backs off on its own, see {@link DatahubConfiguration#setRecordRetryPolicy}.
+     * Only the first request is retried by the request retry policy, re-sends
+     * throttled as a whole count as a failure of their records instead.
+     *
+     * @return result with the records failed in the end, indexed in entries
+     */
     public PutBlobRecordsResult putBlobRecords(String projectName, String topicName, List<BlobRecordEntry> entries, int retries) {
         PutBlobRecordsResult result = putBlobRecords(projectName, topicName, entries);
-        for (int i = 0; i < retries; ++i) {
-            if (result.getFailedRecordCount() == 0) {
-                return result;
-            } else {
-                result = putBlobRecords(projectName, topicName, result.getFailedRecords());
+        if (retries <= 0 || result.getFailedRecordCount() == 0) {
+            return result;
+        }
+        RecordRetryQueue<BlobRecordEntry> queue = new RecordRetryQueue<BlobRecordEntry>(conf.getRecordRetryPolicy(), retries, entries,
+                shardResolver(projectName, topicName));
+        queue.onResult(entries, result.getFailedRecordIndex(), result.getFailedRecordError(), System.currentTimeMillis());
+        int attempt = 0;
+        while (!queue.isEmpty() && awaitRetry(queue)) {
+            List<BlobRecordEntry> records = queue.poll(System.currentTimeMillis());
+            if (records.isEmpty()) {
+                continue;
+            }
+            MetricsListener listener = restClient.getMetricsListener();
+            if (listener != null) {
+                listener.onRetry(MetricsListener.PUT_BLOB_RECORDS, projectName, topicName, ++attempt);
+            }
+            // re-sends are retried by the queue only, retries of both would multiply
+            try {
+                result = putBlobRecords(new PutBlobRecordsRequest(projectName, topicName, records), RetryPolicy.NO_RETRY);
+            } catch (DatahubServiceException e) {
+                ErrorEntry error = new ErrorEntry(e.getErrorCode(), e.getMessage());
+                if (!conf.getRecordRetryPolicy().isRetryable(error)) {
+                    throw e;
+                }
+                queue.onRequestFailed(records, error, System.currentTimeMillis());
+                continue;
             }
+            queue.onResult(records, result.getFailedRecordIndex(), result.getFailedRecordError(), System.currentTimeMillis());
+        }
+        queue.giveUp();
+
+        PutBlobRecordsResult merged = new PutBlobRecordsResult();
+        merged.setRequestId(result.getRequestId());
+        merged.setFailedRecordCount(queue.getFailedRecords().size());
+        List<Integer> failedIndex = queue.getFailedIndex();
+        for (int i = 0; i < failedIndex.size(); ++i) {
+            merged.addFailedIndex(failedIndex.get(i));
+            merged.addFailedError(queue.getFailedErrors().get(i));
+            merged.addFailedRecord(queue.getFailedRecords().get(i));
         }
-        return result;
+        return merged;
+    }
+
+    /**
+     * Resolve shards of records re-sent by partition key or hash key, so they
+     * back off per shard like records written to a shard.
+     */
+    private RecordRetryQueue.ShardResolver shardResolver(final String projectName, final String topicName) {
+        return new RecordRetryQueue.ShardResolver() {
+            @Override
+            public String resolve(Record record) {
+                try {
+                    return getShardRouter().route(projectName, topicName, record);
+                } catch (DatahubClientException e) {
+                    // invalid hash key, rejected by service
+                    return null;
+                }
+            }
+        };
+    }
+
+    private synchronized ShardRouter getShardRouter() {
+        if (shardRouter == null) {
+            shardRouter = new ShardRouter(this, ShardRouter.DEFAULT_REFRESH_INTERVAL_MS);
+        }
+        return shardRouter;
+    }
+
+    /**
+     * Sleep until records of some shard are due.
+     *
+     * @return false if interrupted
+     */
+    private static boolean awaitRetry(RecordRetryQueue<?> queue) {
+        long delay = queue.getDelay(System.currentTimeMillis());
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -961,16 +1263,154 @@ public class DatahubClient {
      *         or can't be used. For more information, see the returned message.
      */
     public PutBlobRecordsResult putBlobRecords(PutBlobRecordsRequest request) {
+        return putBlobRecords(request, restClient.getRetryPolicy());
+    }
+
+    private PutBlobRecordsResult putBlobRecords(PutBlobRecordsRequest request, RetryPolicy retryPolicy) {
+        MetricsListener listener = restClient.getMetricsListener();
+        if (listener == null) {
+            return doPutBlobRecords(request, retryPolicy);
+        }
+        long start = System.nanoTime();
+        int count = request.getRecords() == null ? 0 : request.getRecords().size();
+        try {
+            PutBlobRecordsResult rs = doPutBlobRecords(request, retryPolicy);
+            listener.onOperation(MetricsListener.PUT_BLOB_RECORDS, request.getProjectName(), request.getTopicName(),
+                    null, System.nanoTime() - start, count, rs.getFailedRecordCount(), null);
+            return rs;
+        } catch (RuntimeException e) {
+            listener.onOperation(MetricsListener.PUT_BLOB_RECORDS, request.getProjectName(), request.getTopicName(),
+                    null, System.nanoTime() - start, count, count, errorCodeOf(e));
+            throw e;
+        }
+    }
+
+    private PutBlobRecordsResult doPutBlobRecords(PutBlobRecordsRequest request, RetryPolicy retryPolicy) {
         DefaultRequest req = factory.getPutBlobRecordsRequestSer().serialize(request);
-        Response response = this.restClient.requestWithNoRetry(req);
+        List<String> shards = shardsOf(request.getRecords());
+        Response response = this.restClient.request(req, retryPolicy, limitAttempts(MetricsListener.PUT_BLOB_RECORDS,
+                request.getProjectName(), request.getTopicName(), shards));
         PutBlobRecordsResult rs = factory.getPutBlobRecordsResultDeser().deserialize(request, response);
         List<BlobRecordEntry> records = request.getRecords();
         for (int i : rs.getFailedRecordIndex()) {
             rs.addFailedRecord(records.get(i));
         }
+        updateRates(MetricsListener.PUT_BLOB_RECORDS, request.getProjectName(), request.getTopicName(), shards,
+                records, rs.getFailedRecordIndex(), rs.getFailedRecordError());
         return rs;
     }
 
+    /**
+     * @return the shard, null if not limited
+     */
+    private List<String> shardsOf(String shardId) {
+        if (conf.getRateLimiter() == null) {
+            return null;
+        }
+        return Collections.singletonList(shardId);
+    }
+
+    /**
+     * Shards the records go to, records without shard id take a permit of the topic.
+     *
+     * @return the distinct shards, null if not limited
+     */
+    private List<String> shardsOf(List<? extends Record> records) {
+        if (conf.getRateLimiter() == null) {
+            return null;
+        }
+        Set<String> shards = new LinkedHashSet<String>();
+        if (records != null) {
+            for (Record record : records) {
+                shards.add(record.getShardId());
+            }
+        }
+        return new ArrayList<String>(shards);
+    }
+
+    /**
+     * Wait for a permit of every shard before each attempt of a request, and
+     * cut the rates of the shards whenever an attempt is throttled, also if
+     * the retry succeeds.
+     *
+     * @return the listener, null if not limited
+     */
+    private RestClient.AttemptListener limitAttempts(final String operation, final String projectName,
+                                                     final String topicName, final List<String> shards) {
+        final ShardRateLimiter limiter = conf.getRateLimiter();
+        if (limiter == null || shards == null) {
+            return null;
+        }
+        return new RestClient.AttemptListener() {
+            @Override
+            public void beforeAttempt() {
+                for (String shard : shards) {
+                    limiter.acquire(operation, projectName, topicName, shard);
+                }
+            }
+
+            @Override
+            public void onAttemptFailed(DatahubServiceException e) {
+                if (LIMIT_EXCEEDED.equals(e.getErrorCode())) {
+                    updateRates(operation, projectName, topicName, shards, true);
+                }
+            }
+        };
+    }
+
+    private void updateRates(String operation, String projectName, String topicName, List<String> shards,
+                             boolean throttled) {
+        if (shards == null) {
+            return;
+        }
+        updateRates(operation, projectName, topicName, shards,
+                throttled ? new HashSet<String>(shards) : Collections.<String>emptySet());
+    }
+
+    /**
+     * Shards of records failed with LimitExceeded are throttled, others succeeded.
+     */
+    private void updateRates(String operation, String projectName, String topicName, List<String> shards,
+                             List<? extends Record> records, List<Integer> failedIndex, List<ErrorEntry> failedError) {
+        if (shards == null) {
+            return;
+        }
+        Set<String> throttled = new HashSet<String>();
+        for (int i = 0; i < failedIndex.size() && i < failedError.size(); ++i) {
+            if (LIMIT_EXCEEDED.equals(failedError.get(i).getErrorcode())) {
+                throttled.add(records.get(failedIndex.get(i)).getShardId());
+            }
+        }
+        updateRates(operation, projectName, topicName, shards, throttled);
+    }
+
+    private void updateRates(String operation, String projectName, String topicName, List<String> shards,
+                             Set<String> throttled) {
+        ShardRateLimiter limiter = conf.getRateLimiter();
+        if (limiter == null) {
+            return;
+        }
+        MetricsListener listener = restClient.getMetricsListener();
+        for (String shard : shards) {
+            if (throttled.contains(shard)) {
+                limiter.onThrottle(operation, projectName, topicName, shard);
+            } else {
+                limiter.onSuccess(operation, projectName, topicName, shard);
+            }
+            if (listener != null) {
+                listener.onRateLimit(operation, projectName, topicName, shard,
+                        limiter.getRate(operation, projectName, topicName, shard));
+            }
+        }
+    }
+
+    private static String errorCodeOf(RuntimeException e) {
+        if (e instanceof DatahubServiceException && ((DatahubServiceException) e).getErrorCode() != null) {
+            return ((DatahubServiceException) e).getErrorCode();
+        }
+        return e.getClass().getSimpleName();
+    }
+
     /**
      * Create a Datahub project.
      * The concept of project is used to serve multiple tenants.
@@ -1003,7 +1443,7 @@ public class DatahubClient {
     public void createProject(CreateProjectRequest request) {
         DefaultRequest req = factory.getCreateProjectRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         factory.getCreateProjectResultDeser().deserialize(request, response);
     }
@@ -1033,9 +1473,13 @@ public class DatahubClient {
     public void deleteProject(DeleteProjectRequest request) {
         DefaultRequest req = factory.getDeleteProjectRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        try {
+            Response response = this.restClient.request(req);
 
-        factory.getDeleteProjectResultDeser().deserialize(request, response);
+            factory.getDeleteProjectResultDeser().deserialize(request, response);
+        } finally {
+            metadataCache.invalidateProject(request.getProjectName());
+        }
     }
 
     /**
@@ -1052,9 +1496,13 @@ public class DatahubClient {
     public AppendFieldResult appendField(AppendFieldRequest request) {
         DefaultRequest req = factory.getAppendFieldRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        try {
+            Response response = this.restClient.request(req);
 
-        return factory.getAppendFieldResultDeser().deserialize(request, response);
+            return factory.getAppendFieldResultDeser().deserialize(request, response);
+        } finally {
+            invalidateMetadata(request.getProjectName(), request.getTopicName());
+        }
     }
 
     /**
@@ -1071,7 +1519,7 @@ public class DatahubClient {
     public GetMeteringInfoResult getMeteringInfo(GetMeteringInfoRequest request) {
         DefaultRequest req = factory.getGetMeteringInfoRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getGetMeteringInfoResultDeser().deserialize(request, response);
     }
@@ -1103,7 +1551,7 @@ public class DatahubClient {
     public ListDataConnectorResult listDataConnector(ListDataConnectorRequest request) {
         DefaultRequest req = factory.getListDataConnectorRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getListDataConnectorResultDeser().deserialize(request, response);
     }
@@ -1151,7 +1599,7 @@ public class DatahubClient {
     public CreateDataConnectorResult createDataConnector(CreateDataConnectorRequest request) {
         DefaultRequest req = factory.getCreateDataConnectorRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getCreateDataConnectorResultDeser().deserialize(request, response);
     }
@@ -1185,7 +1633,7 @@ public class DatahubClient {
     public GetDataConnectorResult getDataConnector(GetDataConnectorRequest request) {
         DefaultRequest req = factory.getGetDataConnectorRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getGetDataConnectorResultDeser().deserialize(request, response);
     }
@@ -1219,7 +1667,7 @@ public class DatahubClient {
     public DeleteDataConnectorResult deleteDataConnector(DeleteDataConnectorRequest request) {
         DefaultRequest req = factory.getDeleteDataConnectorRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getDeleteDataConnectorResultDeser().deserialize(request, response);
     }
@@ -1236,7 +1684,7 @@ public class DatahubClient {
     public ReloadDataConnectorResult reloadDataConnector(ReloadDataConnectorRequest request) {
         DefaultRequest req = factory.getReloadDataConnectorRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getReloadDataConnectorResultDeser().deserialize(request, response);
     }
@@ -1308,7 +1756,7 @@ public class DatahubClient {
     public GetDataConnectorShardStatusResult getDataConnectorShardStatus(GetDataConnectorShardStatusRequest request) {
         DefaultRequest req = factory.getGetDataConnectorShardStatusRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getGetDataConnectorShardStatusResultDeser().deserialize(request, response);
     }
@@ -1327,11 +1775,259 @@ public class DatahubClient {
     public AppendDataConnectorFieldResult appendDataConnectorField(AppendDataConnectorFieldRequest request) {
         DefaultRequest req = factory.getAppendDataConnectorFieldRequestSer().serialize(request);
 
-        Response response = this.restClient.requestWithNoRetry(req);
+        Response response = this.restClient.request(req);
 
         return factory.getAppendDataConnectorFieldResultDeser().deserialize(request, response);
     }
 
+    /**
+     * Create a subscription of a topic, offsets of the subscription are kept by service.
+     *
+     * @param projectName
+     *        The name of the project.
+     * @param topicName
+     *        The name of the topic.
+     * @param comment
+     *        The comment of the subscription.
+     * @return Result of the CreateSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     * @throws InvalidParameterException
+     *         A specified parameter exceeds its restrictions, is not supported,
+     *         or can't be used. For more information, see the returned message.
+     */
+    public CreateSubscriptionResult createSubscription(String projectName, String topicName, String comment) {
+        return createSubscription(new CreateSubscriptionRequest(projectName, topicName, comment));
+    }
+
+    /**
+     * Create a subscription of a topic, offsets of the subscription are kept by service.
+     *
+     * @param request
+     *        Represents the input for <code>CreateSubscription</code>.
+     * @return Result of the CreateSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     * @throws InvalidParameterException
+     *         A specified parameter exceeds its restrictions, is not supported,
+     *         or can't be used. For more information, see the returned message.
+     */
+    public CreateSubscriptionResult createSubscription(CreateSubscriptionRequest request) {
+        DefaultRequest req = factory.getCreateSubscriptionRequestSer().serialize(request);
+
+        Response response = this.restClient.request(req);
+
+        return factory.getCreateSubscriptionResultDeser().deserialize(request, response);
+    }
+
+    /**
+     * Delete a subscription.
+     *
+     * @param projectName
+     *        The name of the project.
+     * @param subId
+     *        The id of the subscription.
+     * @return Result of the DeleteSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public DeleteSubscriptionResult deleteSubscription(String projectName, String subId) {
+        return deleteSubscription(new DeleteSubscriptionRequest(projectName, subId));
+    }
+
+    /**
+     * Delete a subscription.
+     *
+     * @param request
+     *        Represents the input for <code>DeleteSubscription</code>.
+     * @return Result of the DeleteSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public DeleteSubscriptionResult deleteSubscription(DeleteSubscriptionRequest request) {
+        DefaultRequest req = factory.getDeleteSubscriptionRequestSer().serialize(request);
+
+        Response response = this.restClient.request(req);
+
+        return factory.getDeleteSubscriptionResultDeser().deserialize(request, response);
+    }
+
+    /**
+     * Get the information of a subscription.
+     *
+     * @param projectName
+     *        The name of the project.
+     * @param subId
+     *        The id of the subscription.
+     * @return Result of the GetSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public GetSubscriptionResult getSubscription(String projectName, String subId) {
+        return getSubscription(new GetSubscriptionRequest(projectName, subId));
+    }
+
+    /**
+     * Get the information of a subscription.
+     *
+     * @param request
+     *        Represents the input for <code>GetSubscription</code>.
+     * @return Result of the GetSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public GetSubscriptionResult getSubscription(GetSubscriptionRequest request) {
+        DefaultRequest req = factory.getGetSubscriptionRequestSer().serialize(request);
+
+        Response response = this.restClient.request(req);
+
+        return factory.getGetSubscriptionResultDeser().deserialize(request, response);
+    }
+
+    /**
+     * Query subscriptions of a topic by page.
+     *
+     * @param projectName
+     *        The name of the project.
+     * @param topicName
+     *        The name of the topic.
+     * @param queryKey
+     *        The key to match subscriptions, null for all.
+     * @param pageIndex
+     *        The index of the page, starting from 1.
+     * @param pageSize
+     *        The count of subscriptions in a page.
+     * @return Result of the QuerySubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public QuerySubscriptionResult querySubscription(String projectName, String topicName, String queryKey, long pageIndex, long pageSize) {
+        return querySubscription(new QuerySubscriptionRequest(projectName, topicName, queryKey, pageIndex, pageSize));
+    }
+
+    /**
+     * Query subscriptions of a topic by page.
+     *
+     * @param request
+     *        Represents the input for <code>QuerySubscription</code>.
+     * @return Result of the QuerySubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public QuerySubscriptionResult querySubscription(QuerySubscriptionRequest request) {
+        DefaultRequest req = factory.getQuerySubscriptionRequestSer().serialize(request);
+
+        Response response = this.restClient.request(req);
+
+        return factory.getQuerySubscriptionResultDeser().deserialize(request, response);
+    }
+
+    /**
+     * Update the comment of a subscription.
+     *
+     * @param projectName
+     *        The name of the project.
+     * @param subId
+     *        The id of the subscription.
+     * @param comment
+     *        The new comment of the subscription.
+     * @return Result of the UpdateSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public UpdateSubscriptionResult updateSubscription(String projectName, String subId, String comment) {
+        return updateSubscription(new UpdateSubscriptionRequest(projectName, subId, comment));
+    }
+
+    /**
+     * Update the comment of a subscription.
+     *
+     * @param request
+     *        Represents the input for <code>UpdateSubscription</code>.
+     * @return Result of the UpdateSubscription operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public UpdateSubscriptionResult updateSubscription(UpdateSubscriptionRequest request) {
+        DefaultRequest req = factory.getUpdateSubscriptionRequestSer().serialize(request);
+
+        Response response = this.restClient.request(req);
+
+        return factory.getUpdateSubscriptionResultDerser().deserialize(request, response);
+    }
+
+    /**
+     * Get the committed offsets of a subscription.
+     *
+     * @param projectName
+     *        The name of the project.
+     * @param subId
+     *        The id of the subscription.
+     * @return Result of the GetSubscriptionOffset operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public GetSubscriptionOffsetResult getSubscriptionOffset(String projectName, String subId) {
+        return getSubscriptionOffset(new GetSubscriptionOffsetRequest(projectName, subId));
+    }
+
+    /**
+     * Get the committed offsets of a subscription.
+     *
+     * @param request
+     *        Represents the input for <code>GetSubscriptionOffset</code>.
+     * @return Result of the GetSubscriptionOffset operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     */
+    public GetSubscriptionOffsetResult getSubscriptionOffset(GetSubscriptionOffsetRequest request) {
+        DefaultRequest req = factory.getGetSubscriptionOffsetsRequestSer().serialize(request);
+
+        Response response = this.restClient.request(req);
+
+        return factory.getGetSubscriptionOffsetResultDeser().deserialize(request, response);
+    }
+
+    /**
+     * Commit offsets of a subscription, the offset of a shard is the position to start next read.
+     *
+     * @param projectName
+     *        The name of the project.
+     * @param subId
+     *        The id of the subscription.
+     * @param offsets
+     *        The offsets keyed by shard id.
+     * @return Result of the CommitSubscriptionOffset operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     * @throws InvalidParameterException
+     *         A specified parameter exceeds its restrictions, is not supported,
+     *         or can't be used. For more information, see the returned message.
+     */
+    public UpdateSubscriptionOffsetResult commitSubscriptionOffset(String projectName, String subId, Map<String, Offset> offsets) {
+        return commitSubscriptionOffset(new CommitSubscriptionOffsetRequest(projectName, subId, offsets));
+    }
+
+    /**
+     * Commit offsets of a subscription, the offset of a shard is the position to start next read.
+     *
+     * @param request
+     *        Represents the input for <code>CommitSubscriptionOffset</code>.
+     * @return Result of the CommitSubscriptionOffset operation returned by the service.
+     * @throws ResourceNotFoundException
+     *         The requested resource could not be found.
+     * @throws InvalidParameterException
+     *         A specified parameter exceeds its restrictions, is not supported,
+     *         or can't be used. For more information, see the returned message.
+     */
+    public UpdateSubscriptionOffsetResult commitSubscriptionOffset(CommitSubscriptionOffsetRequest request) {
+        DefaultRequest req = factory.getUpdateSubscriptionOffsetRequestSer().serialize(request);
+
+        Response response = this.restClient.request(req);
+
+        return factory.getUpdateSubscriptionOffsetResultDeser().deserialize(request, response);
+    }
+
     /**
      * clear resources (connection pool)
      */
@@ -1341,7 +2037,8 @@ public class DatahubClient {
 
     private boolean isShardLoadCompleted(String projectName, String topicName) {
         try {
-            ListShardResult result = listShard(projectName, topicName);
+            // shard states are polled, not cached
+            ListShardResult result = doListShard(new ListShardRequest(projectName, topicName));
             List<ShardEntry> shards = result.getShards();
             for (ShardEntry shard : shards) {
                 if (shard.getState() != ShardState.ACTIVE && shard.getState() != ShardState.CLOSED) {
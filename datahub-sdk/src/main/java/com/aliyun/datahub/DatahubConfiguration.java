@@ -22,8 +22,16 @@ package com.aliyun.datahub;
 import com.aliyun.datahub.auth.Account;
 import com.aliyun.datahub.common.transport.DefaultTransport;
 import com.aliyun.datahub.common.transport.JerseyTransport;
+import com.aliyun.datahub.common.transport.NioTransport;
+import com.aliyun.datahub.common.transport.Transport;
+import com.aliyun.datahub.metrics.MetricsListener;
 import com.aliyun.datahub.model.compress.CompressionFormat;
+import com.aliyun.datahub.model.compress.CompressionOptions;
+import com.aliyun.datahub.ratelimit.ShardRateLimiter;
 import com.aliyun.datahub.rest.RestClient;
+import com.aliyun.datahub.retry.DefaultRetryPolicy;
+import com.aliyun.datahub.retry.RecordRetryPolicy;
+import com.aliyun.datahub.retry.RetryPolicy;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -40,6 +48,12 @@ public class DatahubConfiguration {
 
     public static int DEFAULT_CONNECTION_COUNT_PER_ENDPOINT = 5;
 
+    /** default count of IO threads of async client */
+    public static int DEFAULT_IO_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /** default time topics and shard lists are cached by DatahubClient, in milliseconds */
+    public static long DEFAULT_METADATA_CACHE_TTL = 0;
+
     private Account account;
     private String endpoint;
     private String userAgent = "DATAHUB-SDK-JAVA";
@@ -48,8 +62,16 @@ public class DatahubConfiguration {
     private int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
     private int totalConnections = DEFAULT_TOTAL_CONNECTION_COUNT;
     private int connectionsPerEndpoint = DEFAULT_CONNECTION_COUNT_PER_ENDPOINT;
+    private int ioThreadCount = DEFAULT_IO_THREAD_COUNT;
     private boolean ignoreCerts = true;
     private CompressionFormat compressionFormat = null;
+    private CompressionOptions compressionOptions = new CompressionOptions();
+    private MetricsListener metricsListener = null;
+    private boolean streamingRequestBody = false;
+    private RetryPolicy retryPolicy = new DefaultRetryPolicy();
+    private ShardRateLimiter rateLimiter = null;
+    private RecordRetryPolicy recordRetryPolicy = new RecordRetryPolicy();
+    private long metadataCacheTtlMs = DEFAULT_METADATA_CACHE_TTL;
 
     public DatahubConfiguration(Account account, String endpoint) {
         this.account = account;
@@ -134,17 +156,145 @@ public class DatahubConfiguration {
         this.connectionsPerEndpoint = connectionsPerEndpoint;
     }
 
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    /**
+     * Count of IO threads of {@link AsyncDatahubClient}.
+     */
+    public void setIoThreadCount(int ioThreadCount) {
+        if (ioThreadCount <= 0) {
+            throw new IllegalArgumentException("invalid io thread count: " + ioThreadCount);
+        }
+        this.ioThreadCount = ioThreadCount;
+    }
+
     public CompressionFormat getCompressionFormat() {
         return compressionFormat;
     }
 
+    public CompressionOptions getCompressionOptions() {
+        return compressionOptions;
+    }
+
+    public void setCompressionOptions(CompressionOptions compressionOptions) {
+        if (compressionOptions == null) {
+            throw new IllegalArgumentException("compression options must not be null");
+        }
+        this.compressionOptions = compressionOptions;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Listen on metrics of requests and record operations, e.g. a
+     * {@link com.aliyun.datahub.metrics.DatahubMetrics}. Nothing is measured if null.
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public boolean isStreamingRequestBody() {
+        return streamingRequestBody;
+    }
+
+    /**
+     * Stream PutRecords bodies to the connection while they are serialized,
+     * instead of sending them buffered with Content-Length. Bodies are chunked
+     * and compressed only if the compression format is zlib.
+     */
+    public void setStreamingRequestBody(boolean streamingRequestBody) {
+        this.streamingRequestBody = streamingRequestBody;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Policy retrying failed requests of DatahubClient, a
+     * {@link DefaultRetryPolicy} by default. The policy and its retry budget
+     * are shared by all clients created from this configuration.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retry policy must not be null");
+        }
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RecordRetryPolicy getRecordRetryPolicy() {
+        return recordRetryPolicy;
+    }
+
+    /**
+     * Policy re-sending records failed in PutRecords results by
+     * DatahubClient.putRecords with retries, per shard.
+     */
+    public void setRecordRetryPolicy(RecordRetryPolicy recordRetryPolicy) {
+        if (recordRetryPolicy == null) {
+            throw new IllegalArgumentException("record retry policy must not be null");
+        }
+        this.recordRetryPolicy = recordRetryPolicy;
+    }
+
+    public ShardRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Limit the rate of put and get of records per shard by DatahubClient,
+     * adapting to LimitExceeded errors. Not limited if null. The limiter is
+     * shared by all clients created from this configuration.
+     */
+    public void setRateLimiter(ShardRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public long getMetadataCacheTtlMs() {
+        return metadataCacheTtlMs;
+    }
+
+    /**
+     * Time results of getProject, getTopic and listShard are cached by a
+     * DatahubClient created afterwards, in milliseconds. Concurrent requests
+     * for the same resource share one request even if 0.
+     */
+    public void setMetadataCacheTtlMs(long metadataCacheTtlMs) {
+        if (metadataCacheTtlMs < 0) {
+            throw new IllegalArgumentException("invalid metadata cache ttl: " + metadataCacheTtlMs);
+        }
+        this.metadataCacheTtlMs = metadataCacheTtlMs;
+    }
+
     public RestClient newRestClient() {
-        RestClient client = new RestClient(new JerseyTransport(this), compressionFormat);
+        return newRestClient(new JerseyTransport(this));
+    }
+
+    /**
+     * @return rest client on a non-blocking {@link NioTransport}
+     */
+    public RestClient newAsyncRestClient() {
+        return newRestClient(new NioTransport(this));
+    }
+
+    /**
+     * @return rest client on transport, e.g. an HTTP/2 transport
+     */
+    public RestClient newRestClient(Transport transport) {
+        RestClient client = new RestClient(transport, compressionFormat);
+        client.setCompressionOptions(compressionOptions);
         client.setAccount(account);
         client.setEndpoint(endpoint);
         client.setUserAgent(userAgent);
         client.setReadTimeout(getSocketTimeout());
         client.setConnectTimeout(getSocketConnectTimeout());
+        client.setMetricsListener(metricsListener);
+        client.setStreamingRequestBody(streamingRequestBody);
+        client.setRetryPolicy(retryPolicy);
         return client;
     }
 }
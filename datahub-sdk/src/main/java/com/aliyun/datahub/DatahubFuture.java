@@ -0,0 +1,107 @@
+package com.aliyun.datahub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of a call of {@link AsyncDatahubClient}. Wait with {@link #get()} or
+ * be notified with {@link #addCallback(AsyncCallback)}.
+ */
+public class DatahubFuture<T> implements Future<T>, AsyncCallback<T> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private List<AsyncCallback<T>> callbacks = new ArrayList<AsyncCallback<T>>(1);
+    private volatile T result;
+    private volatile Throwable error;
+
+    /**
+     * Run callback once the call completes, at once if it is already completed.
+     */
+    public void addCallback(AsyncCallback<T> callback) {
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notify(callback);
+    }
+
+    @Override
+    public void onSuccess(T result) {
+        finish(result, null);
+    }
+
+    @Override
+    public void onFailure(Throwable e) {
+        finish(null, e);
+    }
+
+    /**
+     * Complete the call once, later results or errors are ignored.
+     */
+    private void finish(T result, Throwable error) {
+        List<AsyncCallback<T>> list;
+        synchronized (this) {
+            if (callbacks == null) {
+                return;
+            }
+            this.result = result;
+            this.error = error;
+            list = callbacks;
+            callbacks = null;
+        }
+        done.countDown();
+        for (AsyncCallback<T> callback : list) {
+            notify(callback);
+        }
+    }
+
+    private void notify(AsyncCallback<T> callback) {
+        if (error != null) {
+            callback.onFailure(error);
+        } else {
+            callback.onSuccess(result);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("call is not completed in " + unit.toMillis(timeout) + " ms");
+        }
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return result;
+    }
+}
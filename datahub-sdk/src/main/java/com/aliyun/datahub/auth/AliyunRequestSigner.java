@@ -21,9 +21,12 @@ package com.aliyun.datahub.auth;
 
 import com.aliyun.datahub.common.transport.Headers;
 import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.util.IdleEvictingMap;
 import com.aliyun.datahub.rest.DatahubHttpHeaders;
 import org.apache.commons.codec.binary.Base64;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.logging.Level;
@@ -37,9 +40,29 @@ public class AliyunRequestSigner implements RequestSigner {
     private static final Logger log = Logger.getLogger(AliyunRequestSigner.class
             .getName());
 
+    private static final int MAX_CACHED_RESOURCES = 4096;
+
     private String accessId;
     private String accessKey;
     private String securityToken;
+    private String authorizationPrefix;
+
+    /**
+     * Signing key computed once, each thread reuses a Mac initialized with it
+     */
+    private SecretKeySpec signingKey;
+    private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            return SecurityUtils.newHmacSha1(signingKey);
+        }
+    };
+
+    /**
+     * Decoded resources keyed by encoded one, only escaped resources are kept
+     */
+    private final IdleEvictingMap<String, String> decodedResources =
+            new IdleEvictingMap<String, String>(MAX_CACHED_RESOURCES);
 
     public AliyunRequestSigner(String accessId, String accessKey) {
         if (accessId == null || accessId.length() == 0) {
@@ -53,6 +76,8 @@ public class AliyunRequestSigner implements RequestSigner {
 
         this.accessId = accessId;
         this.accessKey = accessKey;
+        this.authorizationPrefix = "DATAHUB " + accessId + ":";
+        this.signingKey = new SecretKeySpec(accessKey.getBytes(), "HmacSHA1");
     }
 
     public AliyunRequestSigner(String accessId, String accessKey, String securityToken) {
@@ -67,6 +92,8 @@ public class AliyunRequestSigner implements RequestSigner {
 
         this.accessId = accessId;
         this.accessKey = accessKey;
+        this.authorizationPrefix = "DATAHUB " + accessId + ":";
+        this.signingKey = new SecretKeySpec(accessKey.getBytes(), "HmacSHA1");
     }
 
     @Override
@@ -78,22 +105,34 @@ public class AliyunRequestSigner implements RequestSigner {
     }
 
     public String getSignature(String resource, DefaultRequest req) {
-        try {
-            resource = URLDecoder.decode(resource, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
+        resource = decodeResource(resource);
         String strToSign = SecurityUtils.buildCanonicalString(resource, req, "x-datahub-");
 
         if (log.isLoggable(Level.FINE)) {
             log.fine("String to sign: " + strToSign);
         }
 
-        byte[] crypto = SecurityUtils.hmacsha1Signature(strToSign.getBytes(),
-                accessKey.getBytes());
+        byte[] crypto = macs.get().doFinal(strToSign.getBytes());
 
         String signature = Base64.encodeBase64String(crypto).trim();
 
-        return "DATAHUB " + accessId + ":" + signature;
+        return authorizationPrefix + signature;
+    }
+
+    private String decodeResource(String resource) {
+        // URLDecoder only changes '%' escapes and '+', plain paths are used as is
+        if (resource.indexOf('%') < 0 && resource.indexOf('+') < 0) {
+            return resource;
+        }
+        String decoded = decodedResources.get(resource);
+        if (decoded == null) {
+            try {
+                decoded = URLDecoder.decode(resource, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            decodedResources.put(resource, decoded);
+        }
+        return decoded;
     }
 }
@@ -28,43 +28,61 @@ import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+/**
+ * The trusting socket factory is created once and shared, connections using
+ * the same factory can be kept alive and reused by HttpURLConnection.
+ */
 public class AuthorizationUtil {
 
-    public static void ignoreHttpsCerts(HttpURLConnection conn) throws IOException {
+    private static final HostnameVerifier TRUST_ALL_HOSTS = new HostnameVerifier() {
+        public boolean verify(String urlHostName, SSLSession session) {
+            return true;
+        }
+    };
 
-        try {
-            SSLContext ctx = SSLContext.getInstance("TLS");
-            X509TrustManager tm = new X509TrustManager() {
-                public X509Certificate[] getAcceptedIssuers() {
-                    return null;
-                }
+    private static volatile SSLSocketFactory trustAllSocketFactory = null;
 
-                public void checkClientTrusted(X509Certificate[] arg0, String arg1)
-                        throws CertificateException {
-                }
+    private static SSLSocketFactory getTrustAllSocketFactory() throws IOException {
+        SSLSocketFactory factory = trustAllSocketFactory;
+        if (factory == null) {
+            synchronized (AuthorizationUtil.class) {
+                factory = trustAllSocketFactory;
+                if (factory == null) {
+                    try {
+                        SSLContext ctx = SSLContext.getInstance("TLS");
+                        X509TrustManager tm = new X509TrustManager() {
+                            public X509Certificate[] getAcceptedIssuers() {
+                                return null;
+                            }
 
-                public void checkServerTrusted(X509Certificate[] arg0, String arg1)
-                        throws CertificateException {
-                }
-            };
+                            public void checkClientTrusted(X509Certificate[] arg0, String arg1)
+                                    throws CertificateException {
+                            }
 
-            HostnameVerifier hv = new HostnameVerifier() {
-                public boolean verify(String urlHostName, SSLSession session) {
-                    return true;
+                            public void checkServerTrusted(X509Certificate[] arg0, String arg1)
+                                    throws CertificateException {
+                            }
+                        };
+                        ctx.init(null, new TrustManager[]{tm}, null);
+                        factory = ctx.getSocketFactory();
+                    } catch (Exception e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                    trustAllSocketFactory = factory;
                 }
-            };
-
-            ctx.init(null, new TrustManager[]{tm}, null);
-            if (conn instanceof HttpsURLConnection) {
-                ((HttpsURLConnection) conn).setSSLSocketFactory(ctx.getSocketFactory());
-                ((HttpsURLConnection) conn).setHostnameVerifier(hv);
             }
-        } catch (Exception e) {
-            throw new IOException(e.getMessage(), e);
         }
+        return factory;
+    }
 
+    public static void ignoreHttpsCerts(HttpURLConnection conn) throws IOException {
+        if (conn instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) conn).setSSLSocketFactory(getTrustAllSocketFactory());
+            ((HttpsURLConnection) conn).setHostnameVerifier(TRUST_ALL_HOSTS);
+        }
     }
 }
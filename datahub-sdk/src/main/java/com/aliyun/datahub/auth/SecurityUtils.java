@@ -30,18 +30,27 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SecurityUtils {
 
     private static final String NEW_LINE = "\n";
+    private static final String CONTENT_TYPE_KEY = Headers.CONTENT_TYPE.toLowerCase();
+    private static final String DATE_KEY = Headers.DATE.toLowerCase();
+    private static final int MAX_CACHED_HEADER_NAMES = 256;
+
+    /**
+     * Lower case header names, the set of names sent by client is small
+     */
+    private static final ConcurrentHashMap<String, String> LOWER_HEADER_NAMES = new ConcurrentHashMap<String, String>();
 
     protected static void init() {
         //解决多线程并发问题
     }
 
     protected static String buildCanonicalString(String resource, DefaultRequest request, String prefix) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(request.getHttpMethod() + NEW_LINE);
+        StringBuilder builder = new StringBuilder(256);
+        builder.append(request.getHttpMethod()).append(NEW_LINE);
 
         Map<String, String> headers = request.getHeaders();
         TreeMap<String, String> headersToSign = new TreeMap<String, String>();
@@ -52,17 +61,17 @@ public class SecurityUtils {
                     continue;
                 }
 
-                String lowerKey = header.getKey().toLowerCase();
+                String lowerKey = toLowerHeaderName(header.getKey());
 
-                if (lowerKey.equals(Headers.CONTENT_TYPE.toLowerCase())
-                        || lowerKey.equals(Headers.DATE.toLowerCase()) || lowerKey.startsWith(prefix)) {
+                if (lowerKey.equals(CONTENT_TYPE_KEY)
+                        || lowerKey.equals(DATE_KEY) || lowerKey.startsWith(prefix)) {
                     headersToSign.put(lowerKey, header.getValue());
                 }
             }
         }
 
-        if (!headersToSign.containsKey(Headers.CONTENT_TYPE.toLowerCase())) {
-            headersToSign.put(Headers.CONTENT_TYPE.toLowerCase(), "");
+        if (!headersToSign.containsKey(CONTENT_TYPE_KEY)) {
+            headersToSign.put(CONTENT_TYPE_KEY, "");
         }
 
         // Add params that have the prefix "x-oss-"
@@ -105,6 +114,17 @@ public class SecurityUtils {
         return builder.toString();
     }
 
+    private static String toLowerHeaderName(String name) {
+        String lower = LOWER_HEADER_NAMES.get(name);
+        if (lower == null) {
+            lower = name.toLowerCase();
+            if (LOWER_HEADER_NAMES.size() < MAX_CACHED_HEADER_NAMES) {
+                LOWER_HEADER_NAMES.put(name, lower);
+            }
+        }
+        return lower;
+    }
+
     protected static String buildCanonicalizedResource(String resource, Map<String, String> params) {
         StringBuilder builder = new StringBuilder();
         builder.append(resource);
@@ -129,6 +149,16 @@ public class SecurityUtils {
         return str;
     }
 
+    protected static Mac newHmacSha1(SecretKeySpec signingKey) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(signingKey);
+            return mac;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
     protected static byte[] hmacsha1Signature(byte[] data, byte[] key) {
         try {
             SecretKeySpec signingKey = new SecretKeySpec(key, "HmacSHA1");
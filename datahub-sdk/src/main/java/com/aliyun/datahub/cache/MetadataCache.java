@@ -0,0 +1,152 @@
+package com.aliyun.datahub.cache;
+
+import com.aliyun.datahub.common.util.IdleEvictingMap;
+import com.aliyun.datahub.common.util.ResourceKey;
+import com.aliyun.datahub.exception.DatahubClientException;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Metadata results of DatahubClient, e.g. topics and shard lists, by
+ * operation, project and topic.
+ *
+ * Callers asking for the same entry while it is loaded wait for the one
+ * request in flight and share its result. Loaded results are kept for
+ * <code>ttlMs</code>, or until invalidated, and are not kept at all if the
+ * ttl is 0. Failed loads are not kept.
+ *
+ * Thread safe. Results are shared by callers and must not be modified.
+ */
+public class MetadataCache {
+    static final int MAX_KEYS = 4096;
+
+    /**
+     * Request loading an entry, run by one of the callers asking for it.
+     */
+    public interface Loader<V> {
+        V load();
+    }
+
+    private static class Entry {
+        private final FutureTask<Object> task;
+        private volatile long expireAt = Long.MAX_VALUE;
+
+        Entry(FutureTask<Object> task) {
+            this.task = task;
+        }
+    }
+
+    private final long ttlMs;
+    // topics used least recently are evicted when full
+    private final IdleEvictingMap<ResourceKey, Entry> entries = new IdleEvictingMap<ResourceKey, Entry>(MAX_KEYS);
+
+    /**
+     * @param ttlMs The time loaded results are kept, in milliseconds.
+     */
+    public MetadataCache(long ttlMs) {
+        if (ttlMs < 0) {
+            throw new IllegalArgumentException("invalid metadata cache ttl: " + ttlMs);
+        }
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Get an entry, loading it if absent or expired.
+     *
+     * @param operation   The operation loading the entry, e.g. GetTopic.
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic, null for project entries.
+     * @param loader      The request loading the entry.
+     * @return the result shared with other callers
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String operation, String projectName, String topicName, final Loader<V> loader) {
+        ResourceKey key = new ResourceKey(operation, projectName, topicName, null);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expireAt <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            Entry created = new Entry(new FutureTask<Object>(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return loader.load();
+                }
+            }));
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+                load(key, entry);
+            }
+        }
+        try {
+            return (V) entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatahubClientException("interrupted while loading " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DatahubClientException(String.valueOf(cause), cause);
+        }
+    }
+
+    /**
+     * Drop all entries of a topic, they are loaded again at next get. Requests
+     * in flight are still shared by their callers but not kept.
+     */
+    public void invalidate(String projectName, String topicName) {
+        Iterator<ResourceKey> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            ResourceKey key = it.next();
+            if (equals(projectName, key.getProjectName()) && equals(topicName, key.getTopicName())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop all entries of a project and its topics.
+     */
+    public void invalidateProject(String projectName) {
+        Iterator<ResourceKey> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (equals(projectName, it.next().getProjectName())) {
+                it.remove();
+            }
+        }
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+
+    private void load(ResourceKey key, Entry entry) {
+        entry.task.run();
+        boolean failed;
+        try {
+            entry.task.get();
+            failed = false;
+        } catch (Exception e) {
+            failed = true;
+        }
+        if (failed || ttlMs == 0) {
+            entries.remove(key, entry);
+        } else {
+            entry.expireAt = System.currentTimeMillis() + ttlMs;
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
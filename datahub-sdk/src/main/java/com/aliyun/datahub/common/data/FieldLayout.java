@@ -0,0 +1,68 @@
+package com.aliyun.datahub.common.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable fields and name index shared by all records of one schema.
+ */
+public final class FieldLayout {
+    private final Field[] fields;
+    private final Map<String, Integer> nameMap;
+    private final boolean hasObjectFields;
+
+    public FieldLayout(Field[] fields) {
+        if (fields == null) {
+            throw new IllegalArgumentException("fields list must not be null");
+        }
+        this.fields = fields;
+        HashMap<String, Integer> names = new HashMap<String, Integer>(fields.length * 2);
+        boolean objects = false;
+        for (int i = 0; i < fields.length; i++) {
+            names.put(fields[i].getName(), i);
+            objects |= !isPrimitive(fields[i].getType());
+        }
+        this.nameMap = Collections.unmodifiableMap(names);
+        this.hasObjectFields = objects;
+    }
+
+    public FieldLayout(List<Field> fields) {
+        this(fields.toArray(new Field[fields.size()]));
+    }
+
+    public Field[] getFields() {
+        return fields;
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    public FieldType getType(int idx) {
+        return fields[idx].getType();
+    }
+
+    /**
+     * @return true if some field holds an object value, e.g. STRING or DECIMAL
+     */
+    public boolean hasObjectFields() {
+        return hasObjectFields;
+    }
+
+    /**
+     * @return index of the field, null if no such field
+     */
+    public Integer indexOf(String name) {
+        return nameMap.get(name);
+    }
+
+    /**
+     * @return true if values of type are stored as primitive
+     */
+    public static boolean isPrimitive(FieldType type) {
+        return type == FieldType.BIGINT || type == FieldType.TIMESTAMP
+                || type == FieldType.DOUBLE || type == FieldType.BOOLEAN;
+    }
+}
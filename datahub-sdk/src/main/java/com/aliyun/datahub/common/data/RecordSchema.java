@@ -33,6 +33,7 @@ public class RecordSchema {
 
     private ArrayList<Field> fields = new ArrayList<Field>();
     private HashMap<String, Integer> nameMap = new HashMap<String, Integer>();
+    private volatile FieldLayout layout;
 
     /**
      * 创建TopicSchema对象
@@ -61,6 +62,7 @@ public class RecordSchema {
         nameMap.put(c.getName(), fields.size());
 
         fields.add(c);
+        layout = null;
     }
 
     /**
@@ -117,6 +119,7 @@ public class RecordSchema {
         }
         this.nameMap.clear();
         this.fields.clear();
+        this.layout = null;
         for (Field field : fields) {
             addField(field);
         }
@@ -137,6 +140,20 @@ public class RecordSchema {
         return (List<Field>) fields.clone();
     }
 
+    /**
+     * 获得共享的列布局, 同一schema的记录共用一份
+     *
+     * @return 当前列定义的 {@link FieldLayout}对象, 列变更后重新生成
+     */
+    public FieldLayout getLayout() {
+        FieldLayout current = layout;
+        if (current == null) {
+            current = new FieldLayout(fields.toArray(new Field[fields.size()]));
+            layout = current;
+        }
+        return current;
+    }
+
     /**
      * 判断是否包含对应列
      *
@@ -0,0 +1,17 @@
+package com.aliyun.datahub.common.transport;
+
+import com.aliyun.datahub.AsyncCallback;
+
+/**
+ * Transport sending requests without blocking the caller.
+ */
+public interface AsyncTransport extends Transport {
+    /**
+     * Send a request, callback is called on an IO thread of the transport.
+     *
+     * @param req      The request.
+     * @param endpoint The endpoint, null for the configured one.
+     * @param callback The callback of response, failed with IOException if the request is not sent.
+     */
+    void request(DefaultRequest req, String endpoint, AsyncCallback<Response> callback);
+}
@@ -0,0 +1,32 @@
+package com.aliyun.datahub.common.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request body produced while it is sent, so a large body never has to be held
+ * in memory as a whole. A body may be written more than once, e.g. on retry.
+ */
+public abstract class BodyWriter {
+
+    /**
+     * Write the whole body, the stream must be left open.
+     *
+     * @param out stream of the request entity
+     * @throws IOException if writing fails
+     */
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Body as one array, for transports which need its length up front.
+     *
+     * @return body
+     * @throws IOException if writing fails
+     */
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return out.toByteArray();
+    }
+}
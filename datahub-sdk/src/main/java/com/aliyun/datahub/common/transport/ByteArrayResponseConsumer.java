@@ -0,0 +1,75 @@
+package com.aliyun.datahub.common.transport;
+
+import com.aliyun.datahub.common.util.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Response consumer of {@link NioTransport} decoding the body straight into
+ * one array sized by Content-Length, instead of a growing buffer copied out
+ * by the entity. Bodies longer than {@link IOUtils#MAX_INITIAL_BUFFER_SIZE}
+ * grow the array as they arrive.
+ */
+class ByteArrayResponseConsumer extends AbstractAsyncResponseConsumer<Response> {
+    private DefaultResponse response;
+    private byte[] body;
+    private int size;
+    private long expectedLength;
+
+    @Override
+    protected void onResponseReceived(HttpResponse httpResponse) {
+        response = new DefaultResponse();
+        response.setStatus(httpResponse.getStatusLine().getStatusCode());
+        for (Header header : httpResponse.getAllHeaders()) {
+            response.setHeader(header.getName(), header.getValue());
+        }
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+        long length = entity.getContentLength();
+        expectedLength = length;
+        body = new byte[IOUtils.initialBufferSize(length)];
+        size = 0;
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+        while (true) {
+            if (size == body.length) {
+                if (decoder.isCompleted()) {
+                    return;
+                }
+                body = Arrays.copyOf(body, IOUtils.nextBufferSize(body.length, expectedLength));
+            }
+            int read = decoder.read(ByteBuffer.wrap(body, size, body.length - size));
+            if (read <= 0) {
+                return;
+            }
+            size += read;
+        }
+    }
+
+    @Override
+    protected Response buildResult(HttpContext context) {
+        if (body != null) {
+            response.setBody(size == body.length ? body : Arrays.copyOf(body, size));
+        }
+        return response;
+    }
+
+    @Override
+    protected void releaseResources() {
+        body = null;
+    }
+}
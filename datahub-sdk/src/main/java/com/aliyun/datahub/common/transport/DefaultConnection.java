@@ -43,6 +43,8 @@ public class DefaultConnection implements Connection {
 
     private static final Logger log = Logger.getLogger(DefaultConnection.class.getName());
 
+    private static final int CHUNK_SIZE = 8 * 1024;
+
     private HttpURLConnection conn;
     private DatahubConfiguration conf;
 
@@ -52,9 +54,21 @@ public class DefaultConnection implements Connection {
 
     @Override
     public void connect(DefaultRequest req) throws IOException {
+        connect(req, null);
+    }
+
+    /**
+     * @param req      request
+     * @param endpoint endpoint to connect to, the configured endpoint if null
+     * @throws IOException if the connection can not be opened
+     */
+    public void connect(DefaultRequest req, String endpoint) throws IOException {
 
         URI u;
-        u = URI.create(this.conf.getEndpoint() + req.getResource());
+        if (endpoint == null || endpoint.isEmpty()) {
+            endpoint = this.conf.getEndpoint();
+        }
+        u = URI.create(endpoint + req.getResource());
         if (log.isLoggable(Level.FINE)) {
             log.fine("Connecting to " + u.toString());
         }
@@ -72,9 +86,9 @@ public class DefaultConnection implements Connection {
                 throw new IOException("Protocol not supported: " + u.getScheme());
             }
 
-            // set input/output flags
+            // set input/output flags, output only if there is a body to send
             conn.setDoInput(true);
-            conn.setDoOutput(true);
+            conn.setDoOutput(req.isStreaming() || (req.getBody() != null && req.getBody().length != 0));
 
             // setTimeout
             conn.setReadTimeout(this.conf.getSocketTimeout() * 1000);
@@ -84,10 +98,14 @@ public class DefaultConnection implements Connection {
             conn.setRequestMethod(req.getHttpMethod().toString());
 
             // set HTTPS ignored certs
-            AuthorizationUtil.ignoreHttpsCerts(conn);
+            if (this.conf.isIgnoreCerts()) {
+                AuthorizationUtil.ignoreHttpsCerts(conn);
+            }
 
-            // set content-length
-            if (req.getBody() != null) {
+            // set content-length, streamed body is chunked
+            if (req.isStreaming()) {
+                conn.setChunkedStreamingMode(CHUNK_SIZE);
+            } else if (req.getBody() != null) {
                 long bodyLength = req.getBody().length;
                 conn.setRequestProperty("Content-Length", String.valueOf(bodyLength));
                 // XXX Max file 2G, bodyLength loss precision
@@ -5,13 +5,14 @@ import com.aliyun.datahub.common.transport.Headers;
 import com.aliyun.datahub.common.transport.HttpMethod;
 import com.aliyun.datahub.common.util.DateUtils;
 import com.aliyun.datahub.common.util.RevisionUtils;
+import com.aliyun.datahub.exception.DatahubClientException;
 import com.aliyun.datahub.exception.InvalidParameterException;
 import com.aliyun.datahub.rest.DatahubHttpHeaders;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,10 +33,14 @@ public class DefaultRequest {
 
     protected byte[] body = null;
 
+    protected BodyWriter bodyWriter = null;
+
+    protected Boolean idempotent = null;
+
     {
         this.headers.put(Headers.CONTENT_TYPE, "application/json");
         this.headers.put(Headers.CONTENT_LENGTH, "0");
-        this.headers.put(Headers.DATE, DateUtils.formatRfc822Date(new Date()));
+        this.headers.put(Headers.DATE, DateUtils.formatCurrentRfc822Date());
         this.headers.put(Headers.USER_AGENT, USER_AGENT);
 
         this.headers.put(DatahubHttpHeaders.HEADER_DATAHUB_CLIENT_VERSION, DatahubConstants.VERSION);
@@ -79,9 +84,53 @@ public class DefaultRequest {
             this.body = body;
             //this.headers.put(Headers.CONTENT_MD5, CommonUtils.generatorMD5(this.body));
             this.headers.put(Headers.CONTENT_LENGTH, String.valueOf(this.body.length));
+            this.bodyWriter = null;
         }
     }
 
+    /**
+     * Set a body written while the request is sent, its length is unknown
+     * until then. {@link #getBody()} still returns the whole body for
+     * transports which can not stream it.
+     *
+     * @param bodyWriter writer of the body
+     */
+    public void setBodyWriter(BodyWriter bodyWriter) {
+        if (bodyWriter != null) {
+            this.bodyWriter = bodyWriter;
+            this.body = null;
+            this.headers.remove(Headers.CONTENT_LENGTH);
+        }
+    }
+
+    /**
+     * @return writer of the body, null if the body is set as an array
+     */
+    public BodyWriter getBodyWriter() {
+        return bodyWriter;
+    }
+
+    /**
+     * @return true if the body is streamed by {@link #getBodyWriter()}
+     */
+    public boolean isStreaming() {
+        return bodyWriter != null;
+    }
+
+    /**
+     * Mark if sending the request twice has the same effect as once, e.g. a
+     * read sent by POST. Requests not marked are idempotent unless sent by POST.
+     *
+     * @param idempotent true if the request may be retried after an unknown outcome
+     */
+    public void setIdempotent(boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent != null ? idempotent : httpMethod != HttpMethod.POST;
+    }
+
     public HttpMethod getHttpMethod() {
         return httpMethod;
     }
@@ -99,6 +148,13 @@ public class DefaultRequest {
     }
 
     public byte[] getBody() {
+        if (bodyWriter != null) {
+            try {
+                setBody(bodyWriter.toByteArray());
+            } catch (IOException e) {
+                throw new DatahubClientException("serialize error", e);
+            }
+        }
         return body;
     }
 
@@ -22,13 +22,15 @@ package com.aliyun.datahub.common.transport;
 import com.aliyun.datahub.DatahubConfiguration;
 import com.aliyun.datahub.common.util.IOUtils;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
  * DefaultTransport基于JDK的 HttpURLConnection}提供HTTP请求功能
+ *
+ * 响应读完后连接由 HttpURLConnection 保持并复用, 每个地址保持的连接数
+ * 由系统属性 http.maxConnections 设置, 出错的连接会被关闭
  */
 public class DefaultTransport implements Transport {
 
@@ -52,32 +54,41 @@ public class DefaultTransport implements Transport {
 
     @Override
     public Response request(DefaultRequest req) throws IOException {
-        Connection conn = connect(req);
+        return request(req, null);
+    }
+
+    @Override
+    public Response request(DefaultRequest req, String endpoint) throws IOException {
+        DefaultConnection conn = new DefaultConnection(this.config);
+        conn.connect(req, endpoint);
         DefaultResponse resp = null;
+        boolean reusable = false;
         try {
             // send request body
-            if (req.getBody() != null && req.getBody().length != 0) {
+            if (req.isStreaming()) {
+                OutputStream out = conn.getOutputStream();
+                req.getBodyWriter().writeTo(out);
+                out.close();
+            } else if (req.getBody() != null && req.getBody().length != 0) {
                 OutputStream out = conn.getOutputStream();
-                IOUtils.copyLarge(new ByteArrayInputStream(req.getBody()), out);
+                out.write(req.getBody());
                 out.close();
             }
 
             resp = (DefaultResponse) conn.getResponse();
 
+            // the connection is kept alive once the response is read and closed
             if (HttpMethod.HEAD != req.getHttpMethod()) {
                 InputStream in = conn.getInputStream();
-                resp.setBody(IOUtils.readFully(in));
+                resp.setBody(IOUtils.readFully(in, resp.getContentLength()));
             }
-
+            reusable = true;
         } finally {
-            conn.disconnect();
+            if (!reusable) {
+                conn.disconnect();
+            }
         }
         return resp;
     }
 
-    @Override
-    public Response request(DefaultRequest req, String endpoint) throws IOException {
-        return request(req);
-    }
-
 }
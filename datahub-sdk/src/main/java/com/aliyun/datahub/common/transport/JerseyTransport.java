@@ -1,6 +1,7 @@
 package com.aliyun.datahub.common.transport;
 
 import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.common.util.IOUtils;
 import com.aliyun.datahub.exception.DatahubClientException;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.glassfish.jersey.apache.connector.ApacheClientProperties;
@@ -13,13 +14,17 @@ import org.glassfish.jersey.client.JerseyClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.Variant;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static org.glassfish.jersey.client.RequestEntityProcessing.BUFFERED;
+import static org.glassfish.jersey.client.RequestEntityProcessing.CHUNKED;
 
 /**
  * Author:  jingshan.mjs@alibaba-inc.com
@@ -70,12 +75,15 @@ public class JerseyTransport implements Transport {
 
         javax.ws.rs.core.Response resp = null;
 
+        String contentType = req.getHeaders().get(Headers.CONTENT_TYPE);
+        MediaType mediaType = contentType != null ? MediaType.valueOf(contentType) : MediaType.APPLICATION_JSON_TYPE;
+
         switch (req.getHttpMethod()) {
             case POST:
-                resp = builder.post(Entity.entity(req.getBody(), new Variant(MediaType.APPLICATION_JSON_TYPE, (String) null, req.getHeaders().get(Headers.CONTENT_ENCODING))));
+                resp = builder.post(entity(req, builder, mediaType));
                 break;
             case PUT:
-                resp = builder.put(Entity.entity(req.getBody(), new Variant(MediaType.APPLICATION_JSON_TYPE, (String) null, req.getHeaders().get(Headers.CONTENT_ENCODING))));
+                resp = builder.put(entity(req, builder, mediaType));
                 break;
             case GET:
                 resp = builder.get();
@@ -96,13 +104,34 @@ public class JerseyTransport implements Transport {
         for (String key : resp.getHeaders().keySet()) {
             response.setHeader(key, resp.getHeaderString(key));
         }
-        response.setBody(resp.readEntity(byte[].class));
+        // read into one array sized by Content-Length, not buffered and copied by the entity reader
+        InputStream in = resp.readEntity(InputStream.class);
+        response.setBody(in == null ? new byte[0] : IOUtils.readFully(in, resp.getLength()));
 
         resp.close();
 
         return response;
     }
 
+    /**
+     * Array bodies are sent with Content-Length, streamed bodies are chunked
+     * and written straight to the connection.
+     */
+    private static Entity<?> entity(DefaultRequest req, Invocation.Builder builder, MediaType mediaType) {
+        Variant variant = new Variant(mediaType, (String) null, req.getHeaders().get(Headers.CONTENT_ENCODING));
+        if (!req.isStreaming()) {
+            return Entity.entity(req.getBody(), variant);
+        }
+        final BodyWriter writer = req.getBodyWriter();
+        builder.property(ClientProperties.REQUEST_ENTITY_PROCESSING, CHUNKED);
+        return Entity.entity(new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                writer.writeTo(output);
+            }
+        }, variant);
+    }
+
     @Override
     public Response request(DefaultRequest req) throws IOException {
         return request(req, null);
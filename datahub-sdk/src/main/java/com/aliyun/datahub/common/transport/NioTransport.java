@@ -0,0 +1,169 @@
+package com.aliyun.datahub.common.transport;
+
+import com.aliyun.datahub.AsyncCallback;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.DatahubFuture;
+import com.aliyun.datahub.common.util.NamedThreadFactory;
+import com.aliyun.datahub.exception.DatahubClientException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link AsyncTransport} on the non-blocking Apache http async client.
+ *
+ * Requests are multiplexed on {@link DatahubConfiguration#getIoThreadCount()}
+ * IO threads, each request in flight still holds one pooled connection, see
+ * {@link DatahubConfiguration#setConnectionsPerEndpoint(int)}.
+ */
+public class NioTransport implements AsyncTransport {
+    private static final Logger LOG = LoggerFactory.getLogger(NioTransport.class);
+
+    private final DatahubConfiguration conf;
+    private final CloseableHttpAsyncClient client;
+
+    public NioTransport(DatahubConfiguration conf) {
+        this.conf = conf;
+        IOReactorConfig ioConfig = IOReactorConfig.custom()
+                .setIoThreadCount(conf.getIoThreadCount())
+                .setConnectTimeout(conf.getSocketConnectTimeout() * 1000)
+                .setSoTimeout(conf.getSocketTimeout() * 1000)
+                .build();
+        PoolingNHttpClientConnectionManager connectionManager;
+        try {
+            connectionManager = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(ioConfig, new NamedThreadFactory("datahub-nio")));
+        } catch (IOReactorException e) {
+            throw new DatahubClientException("create io reactor failed", e);
+        }
+        connectionManager.setMaxTotal(conf.getTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(conf.getConnectionsPerEndpoint());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(conf.getSocketConnectTimeout() * 1000)
+                .setSocketTimeout(conf.getSocketTimeout() * 1000)
+                .build();
+        client = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setThreadFactory(new NamedThreadFactory("datahub-nio-dispatcher"))
+                .build();
+        client.start();
+    }
+
+    @Override
+    public void request(DefaultRequest req, String endpoint, final AsyncCallback<Response> callback) {
+        String dhEndpoint = conf.getEndpoint();
+        if (endpoint != null && !endpoint.isEmpty()) {
+            dhEndpoint = endpoint;
+        }
+        HttpRequestBase httpRequest;
+        try {
+            httpRequest = newHttpRequest(req, dhEndpoint + req.getResource());
+        } catch (IllegalArgumentException e) {
+            callback.onFailure(new IOException("invalid url: " + e.getMessage(), e));
+            return;
+        }
+
+        client.execute(HttpAsyncMethods.create(httpRequest), new ByteArrayResponseConsumer(), new FutureCallback<Response>() {
+            @Override
+            public void completed(Response result) {
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                callback.onFailure(e instanceof IOException ? e : new IOException(e.getMessage(), e));
+            }
+
+            @Override
+            public void cancelled() {
+                callback.onFailure(new IOException("request cancelled"));
+            }
+        });
+    }
+
+    private static HttpRequestBase newHttpRequest(DefaultRequest req, String url) {
+        HttpRequestBase httpRequest;
+        switch (req.getHttpMethod()) {
+            case POST:
+                httpRequest = new HttpPost(url);
+                break;
+            case PUT:
+                httpRequest = new HttpPut(url);
+                break;
+            case DELETE:
+                httpRequest = new HttpDelete(url);
+                break;
+            case HEAD:
+                httpRequest = new HttpHead(url);
+                break;
+            default:
+                httpRequest = new HttpGet(url);
+                break;
+        }
+        for (Map.Entry<String, String> entry : req.getHeaders().entrySet()) {
+            if (!entry.getKey().equalsIgnoreCase(Headers.CONTENT_LENGTH)) {
+                httpRequest.addHeader(entry.getKey(), entry.getValue());
+            }
+        }
+        if (httpRequest instanceof HttpEntityEnclosingRequestBase && req.getBody() != null) {
+            ((HttpEntityEnclosingRequestBase) httpRequest).setEntity(new ByteArrayEntity(req.getBody()));
+        }
+        return httpRequest;
+    }
+
+    @Override
+    public Response request(DefaultRequest req, String endpoint) throws IOException {
+        DatahubFuture<Response> future = new DatahubFuture<Response>();
+        request(req, endpoint, future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("request interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public Response request(DefaultRequest req) throws IOException {
+        return request(req, null);
+    }
+
+    @Override
+    public Connection connect(DefaultRequest req) throws IOException {
+        throw new DatahubClientException("not implemented");
+    }
+
+    @Override
+    public void close() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            LOG.warn("close http async client failed", e);
+        }
+    }
+}
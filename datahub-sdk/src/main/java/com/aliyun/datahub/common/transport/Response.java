@@ -75,6 +75,23 @@ public abstract class Response {
         return headers.get(name);
     }
 
+    /**
+     * 获得响应的Content-Length
+     *
+     * @return body的字节数, 未知时返回-1
+     */
+    public int getContentLength() {
+        String value = headers.get(Headers.CONTENT_LENGTH);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     public void setHeader(String key, String value) {
         headers.put(key, value);
     }
@@ -281,6 +281,48 @@ public class DateUtils {
     // RFC 822 Date Format
     private static final String RFC822_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss z";
 
+    /**
+     * SimpleDateFormat is not thread safe, every thread keeps its own ones.
+     * Parsing a zone name may change the time zone of format, so parse and
+     * format never share an instance.
+     */
+    private static final ThreadLocal<DateFormat> RFC822_DATE_FORMATS = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return newRfc822DateFormat();
+        }
+    };
+    private static final ThreadLocal<DateFormat> RFC822_DATE_PARSERS = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return newRfc822DateFormat();
+        }
+    };
+
+    /**
+     * The last formatted second, replaced as a whole so readers need no lock
+     */
+    private static volatile CachedDate cachedRfc822Date = new CachedDate(Long.MIN_VALUE, null);
+
+    private static final class CachedDate {
+        private final long second;
+        private final String text;
+
+        CachedDate(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Formats current time to GMT string, the result is computed once per second.
+     *
+     * @return
+     */
+    public static String formatCurrentRfc822Date() {
+        return formatRfc822Date(System.currentTimeMillis());
+    }
+
     /**
      * Formats Date to GMT string.
      *
@@ -288,7 +330,18 @@ public class DateUtils {
      * @return
      */
     public static String formatRfc822Date(Date date) {
-        return getRfc822DateFormat().format(date);
+        return formatRfc822Date(date.getTime());
+    }
+
+    private static String formatRfc822Date(long millis) {
+        long second = millis >= 0 ? millis / 1000 : (millis - 999) / 1000;
+        CachedDate cached = cachedRfc822Date;
+        if (cached.second == second) {
+            return cached.text;
+        }
+        String text = RFC822_DATE_FORMATS.get().format(new Date(millis));
+        cachedRfc822Date = new CachedDate(second, text);
+        return text;
     }
 
     /**
@@ -299,10 +352,10 @@ public class DateUtils {
      * @throws ParseException
      */
     public static Date parseRfc822Date(String dateString) throws ParseException {
-        return getRfc822DateFormat().parse(dateString);
+        return RFC822_DATE_PARSERS.get().parse(dateString);
     }
 
-    private static DateFormat getRfc822DateFormat() {
+    private static DateFormat newRfc822DateFormat() {
         SimpleDateFormat rfc822DateFormat = new SimpleDateFormat(
                 RFC822_DATE_FORMAT, Locale.US);
         rfc822DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
@@ -19,11 +19,11 @@
 
 package com.aliyun.datahub.common.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 /**
  * IO Utils
@@ -32,8 +32,23 @@ public class IOUtils {
 
     public static final int READ_BUFFER_SIZE = 4096;
 
+    /**
+     * Max size of a buffer allocated up front for an expected length, larger
+     * buffers grow as bytes arrive, so a bogus length can not exhaust memory.
+     */
+    public static final int MAX_INITIAL_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     private static final int EOF = -1;
 
+    private static final ThreadLocal<byte[]> COPY_BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[READ_BUFFER_SIZE];
+        }
+    };
+
     /**
      * Read fully from the InputStream
      *
@@ -42,15 +57,39 @@ public class IOUtils {
      * @throws IOException
      */
     public static byte[] readFully(InputStream in) throws IOException {
+        return readFully(in, -1);
+    }
+
+    /**
+     * Read fully from the InputStream into one array sized by the expected
+     * length, e.g. the Content-Length of a response, so bytes are not copied
+     * again. The array grows if the stream is longer and is trimmed if shorter,
+     * it starts from {@link #MAX_INITIAL_BUFFER_SIZE} at most.
+     *
+     * @param in
+     * @param expectedLength The expected count of bytes, -1 if unknown.
+     * @return
+     * @throws IOException
+     */
+    public static byte[] readFully(InputStream in, int expectedLength) throws IOException {
         try {
-            byte[] buf = new byte[READ_BUFFER_SIZE];
-            int read = -1;
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            while ((read = in.read(buf)) != -1) {
-                os.write(buf, 0, read);
+            byte[] buf = new byte[initialBufferSize(expectedLength)];
+            int size = 0;
+            while (true) {
+                if (size == buf.length) {
+                    int next = in.read();
+                    if (next == EOF) {
+                        return buf;
+                    }
+                    buf = Arrays.copyOf(buf, nextBufferSize(buf.length, expectedLength));
+                    buf[size++] = (byte) next;
+                }
+                int read = in.read(buf, size, buf.length - size);
+                if (read == EOF) {
+                    return size == buf.length ? buf : Arrays.copyOf(buf, size);
+                }
+                size += read;
             }
-            os.close();
-            return os.toByteArray();
         } finally {
             if (in != null) {
                 in.close();
@@ -58,6 +97,36 @@ public class IOUtils {
         }
     }
 
+    /**
+     * @param expectedLength The expected count of bytes, negative if unknown.
+     * @return size of the buffer to allocate before any byte arrived
+     */
+    public static int initialBufferSize(long expectedLength) {
+        if (expectedLength < 0) {
+            return READ_BUFFER_SIZE;
+        }
+        return (int) Math.min(expectedLength, MAX_INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * @param size           The size of the full buffer.
+     * @param expectedLength The expected count of bytes, negative if unknown.
+     * @return size of the buffer to grow to, doubled but not past the expected length if it is not reached yet
+     */
+    public static int nextBufferSize(int size, long expectedLength) {
+        long next = Math.max(READ_BUFFER_SIZE, size * 2L);
+        if (expectedLength > size && expectedLength < next) {
+            next = expectedLength;
+        }
+        if (next > MAX_ARRAY_SIZE) {
+            if (size >= MAX_ARRAY_SIZE) {
+                throw new OutOfMemoryError("required array size too large");
+            }
+            next = MAX_ARRAY_SIZE;
+        }
+        return (int) next;
+    }
+
     /**
      * Get InputStream bytes count without reading
      *
@@ -94,7 +163,7 @@ public class IOUtils {
      * This method buffers the input internally, so there is no need to use a
      * <code>BufferedInputStream</code>.
      * 
-     * The buffer size is given by  #DEFAULT_BUFFER_SIZE}.
+     * The buffer of {@link #READ_BUFFER_SIZE} is kept per thread and reused.
      *
      * @param input  the <code>InputStream</code> to read from
      * @param output the <code>OutputStream</code> to write to
@@ -104,7 +173,7 @@ public class IOUtils {
      * @since Shamelessly cloned from Apache Commons IO 1.3 IOUtils
      */
     public static long copyLarge(InputStream input, OutputStream output) throws IOException {
-        return copyLarge(input, output, new byte[READ_BUFFER_SIZE]);
+        return copyLarge(input, output, COPY_BUFFERS.get());
     }
 
     /**
@@ -0,0 +1,120 @@
+package com.aliyun.datahub.common.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent map of bounded size. When full, the quarter of entries used
+ * least recently is evicted, so entries in use survive a burst of new keys.
+ *
+ * Reads and writes do not lock, eviction is done by one thread at a time.
+ */
+public class IdleEvictingMap<K, V> {
+
+    private static class Entry<V> {
+        private final V value;
+        private volatile long lastUsed;
+
+        Entry(V value, long lastUsed) {
+            this.value = value;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final int maxSize;
+    private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<K, Entry<V>>();
+    // logical clock ordering uses, cheaper than reading time
+    private final AtomicLong clock = new AtomicLong();
+    private final Object evictLock = new Object();
+
+    public IdleEvictingMap(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("invalid max size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = clock.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * @return the value already mapped, null if value was put
+     */
+    public V putIfAbsent(K key, V value) {
+        if (map.size() >= maxSize) {
+            evict();
+        }
+        Entry<V> old = map.putIfAbsent(key, new Entry<V>(value, clock.incrementAndGet()));
+        return old == null ? null : old.value;
+    }
+
+    public void put(K key, V value) {
+        if (map.size() >= maxSize) {
+            evict();
+        }
+        map.put(key, new Entry<V>(value, clock.incrementAndGet()));
+    }
+
+    public V remove(K key) {
+        Entry<V> old = map.remove(key);
+        return old == null ? null : old.value;
+    }
+
+    /**
+     * Remove the key only if mapped to value, compared by identity.
+     */
+    public boolean remove(K key, V value) {
+        Entry<V> entry = map.get(key);
+        return entry != null && entry.value == value && map.remove(key, entry);
+    }
+
+    /**
+     * @return live view of keys, removal through it removes the entries
+     */
+    public Set<K> keySet() {
+        return map.keySet();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    private void evict() {
+        synchronized (evictLock) {
+            if (map.size() < maxSize) {
+                return;
+            }
+            List<Map.Entry<K, Entry<V>>> entries = new ArrayList<Map.Entry<K, Entry<V>>>(map.entrySet());
+            final long[] lastUsed = new long[entries.size()];
+            List<Integer> order = new ArrayList<Integer>(entries.size());
+            for (int i = 0; i < entries.size(); ++i) {
+                // read once, entries are used while sorted
+                lastUsed[i] = entries.get(i).getValue().lastUsed;
+                order.add(i);
+            }
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return lastUsed[a] < lastUsed[b] ? -1 : (lastUsed[a] == lastUsed[b] ? 0 : 1);
+                }
+            });
+            int count = Math.max(1, entries.size() / 4);
+            for (int i = 0; i < count; ++i) {
+                Map.Entry<K, Entry<V>> entry = entries.get(order.get(i));
+                map.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
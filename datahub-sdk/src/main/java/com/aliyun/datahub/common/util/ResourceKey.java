@@ -0,0 +1,84 @@
+package com.aliyun.datahub.common.util;
+
+/**
+ * Key of an operation on a project, topic or shard, used to aggregate metrics
+ * and to keep per resource state such as rate limits and cached metadata.
+ * Parts not known are null, e.g. the shard of a PutRecords to several shards.
+ */
+public final class ResourceKey {
+    private final String operation;
+    private final String projectName;
+    private final String topicName;
+    private final String shardId;
+    private final int hash;
+
+    public ResourceKey(String operation, String projectName, String topicName, String shardId) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation must not be null");
+        }
+        this.operation = operation;
+        this.projectName = projectName;
+        this.topicName = topicName;
+        this.shardId = shardId;
+        int h = operation.hashCode();
+        h = 31 * h + (projectName == null ? 0 : projectName.hashCode());
+        h = 31 * h + (topicName == null ? 0 : topicName.hashCode());
+        h = 31 * h + (shardId == null ? 0 : shardId.hashCode());
+        this.hash = h;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    public String getShardId() {
+        return shardId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResourceKey)) {
+            return false;
+        }
+        ResourceKey other = (ResourceKey) o;
+        return hash == other.hash && operation.equals(other.operation)
+                && equal(projectName, other.projectName)
+                && equal(topicName, other.topicName)
+                && equal(shardId, other.shardId);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(operation);
+        if (projectName != null) {
+            sb.append(" project=").append(projectName);
+        }
+        if (topicName != null) {
+            sb.append(" topic=").append(topicName);
+        }
+        if (shardId != null) {
+            sb.append(" shard=").append(shardId);
+        }
+        return sb.toString();
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
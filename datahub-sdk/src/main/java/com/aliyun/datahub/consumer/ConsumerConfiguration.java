@@ -0,0 +1,135 @@
+package com.aliyun.datahub.consumer;
+
+/**
+ * Options of {@link DatahubConsumer}.
+ */
+public class ConsumerConfiguration {
+
+    /** default record count of one GetRecords request */
+    public static final int DEFAULT_FETCH_LIMIT = 1000;
+
+    /** default count of batches fetched ahead of processing, per shard */
+    public static final int DEFAULT_PREFETCH_BATCHES = 2;
+
+    /** default count of threads sending GetRecords requests, shared by all shards */
+    public static final int DEFAULT_FETCH_THREADS = 8;
+
+    /** default count of threads calling the record handler, shared by all shards */
+    public static final int DEFAULT_PROCESS_THREADS = 8;
+
+    /** default interval of committing offsets, in milliseconds */
+    public static final long DEFAULT_COMMIT_INTERVAL_MS = 5000;
+
+    /** default time to wait before fetching again after an empty batch or an error, in milliseconds */
+    public static final long DEFAULT_IDLE_INTERVAL_MS = 1000;
+
+    /** default interval of listing shards to follow splits and merges, in milliseconds */
+    public static final long DEFAULT_SHARD_REFRESH_INTERVAL_MS = 30000;
+
+    /** default count of free records pooled per schema, 0 to disable pooling */
+    public static final int DEFAULT_RECORD_POOL_SIZE = 0;
+
+    private int fetchLimit = DEFAULT_FETCH_LIMIT;
+    private int prefetchBatches = DEFAULT_PREFETCH_BATCHES;
+    private int fetchThreads = DEFAULT_FETCH_THREADS;
+    private int processThreads = DEFAULT_PROCESS_THREADS;
+    private long commitIntervalMs = DEFAULT_COMMIT_INTERVAL_MS;
+    private long idleIntervalMs = DEFAULT_IDLE_INTERVAL_MS;
+    private long shardRefreshIntervalMs = DEFAULT_SHARD_REFRESH_INTERVAL_MS;
+    private int recordPoolSize = DEFAULT_RECORD_POOL_SIZE;
+
+    public int getFetchLimit() {
+        return fetchLimit;
+    }
+
+    public void setFetchLimit(int fetchLimit) {
+        if (fetchLimit <= 0) {
+            throw new IllegalArgumentException("invalid fetch limit: " + fetchLimit);
+        }
+        this.fetchLimit = fetchLimit;
+    }
+
+    public int getPrefetchBatches() {
+        return prefetchBatches;
+    }
+
+    public void setPrefetchBatches(int prefetchBatches) {
+        if (prefetchBatches <= 0) {
+            throw new IllegalArgumentException("invalid prefetch batches: " + prefetchBatches);
+        }
+        this.prefetchBatches = prefetchBatches;
+    }
+
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    public void setFetchThreads(int fetchThreads) {
+        if (fetchThreads <= 0) {
+            throw new IllegalArgumentException("invalid fetch threads: " + fetchThreads);
+        }
+        this.fetchThreads = fetchThreads;
+    }
+
+    public int getProcessThreads() {
+        return processThreads;
+    }
+
+    public void setProcessThreads(int processThreads) {
+        if (processThreads <= 0) {
+            throw new IllegalArgumentException("invalid process threads: " + processThreads);
+        }
+        this.processThreads = processThreads;
+    }
+
+    public long getCommitIntervalMs() {
+        return commitIntervalMs;
+    }
+
+    public void setCommitIntervalMs(long commitIntervalMs) {
+        if (commitIntervalMs <= 0) {
+            throw new IllegalArgumentException("invalid commit interval: " + commitIntervalMs);
+        }
+        this.commitIntervalMs = commitIntervalMs;
+    }
+
+    public long getIdleIntervalMs() {
+        return idleIntervalMs;
+    }
+
+    public void setIdleIntervalMs(long idleIntervalMs) {
+        if (idleIntervalMs <= 0) {
+            throw new IllegalArgumentException("invalid idle interval: " + idleIntervalMs);
+        }
+        this.idleIntervalMs = idleIntervalMs;
+    }
+
+    public long getShardRefreshIntervalMs() {
+        return shardRefreshIntervalMs;
+    }
+
+    public void setShardRefreshIntervalMs(long shardRefreshIntervalMs) {
+        if (shardRefreshIntervalMs <= 0) {
+            throw new IllegalArgumentException("invalid shard refresh interval: " + shardRefreshIntervalMs);
+        }
+        this.shardRefreshIntervalMs = shardRefreshIntervalMs;
+    }
+
+    public int getRecordPoolSize() {
+        return recordPoolSize;
+    }
+
+    /**
+     * Reuse tuple records of handled batches for later GetRecords responses.
+     * Handlers must not keep records after {@link RecordHandler#onRecords} returns
+     * if enabled.
+     *
+     * @param recordPoolSize The count of free records pooled, 0 to disable.
+     */
+    public void setRecordPoolSize(int recordPoolSize) {
+        if (recordPoolSize < 0) {
+            throw new IllegalArgumentException("invalid record pool size: " + recordPoolSize);
+        }
+        this.recordPoolSize = recordPoolSize;
+    }
+}
@@ -0,0 +1,471 @@
+package com.aliyun.datahub.consumer;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.data.RecordType;
+import com.aliyun.datahub.common.util.NamedThreadFactory;
+import com.aliyun.datahub.exception.DatahubClientException;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.exception.InvalidCursorException;
+import com.aliyun.datahub.model.GetBlobRecordsResult;
+import com.aliyun.datahub.model.GetCursorRequest;
+import com.aliyun.datahub.model.GetRecordsRequest;
+import com.aliyun.datahub.model.GetRecordsResult;
+import com.aliyun.datahub.model.GetTopicResult;
+import com.aliyun.datahub.model.Offset;
+import com.aliyun.datahub.model.Record;
+import com.aliyun.datahub.model.RecordPool;
+import com.aliyun.datahub.model.ShardEntry;
+import com.aliyun.datahub.model.ShardState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer reading all shards of a topic for a subscription.
+ *
+ * Every readable shard has its own fetch pipeline: GetRecords requests are
+ * sent by a shared bounded fetch pool and up to <code>prefetchBatches</code>
+ * batches are read ahead while the handler processes the previous ones on a
+ * shared process pool. The offset after each handled batch is merged by an
+ * {@link OffsetCommitter} and committed in background.
+ *
+ * Shards created by split or merge are read once all their parent shards are
+ * read to the end, so records of one hash key are handled in order.
+ */
+public class DatahubConsumer {
+    private static final Logger LOG = LoggerFactory.getLogger(DatahubConsumer.class);
+
+    private final DatahubClient client;
+    private final ConsumerConfiguration conf;
+    private final String projectName;
+    private final String topicName;
+    private final String subId;
+    private final RecordHandler handler;
+
+    private final ExecutorService fetchPool;
+    private final ExecutorService processPool;
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentHashMap<String, ShardReader> readers = new ConcurrentHashMap<String, ShardReader>();
+    private final Set<String> finishedShards = Collections.synchronizedSet(new HashSet<String>());
+    private final OffsetCommitter committer;
+    private final boolean ownCommitter;
+    private final RecordPool recordPool;
+    private Map<String, Offset> committedOffsets = new HashMap<String, Offset>();
+
+    private RecordType recordType;
+    private RecordSchema schema;
+    private boolean started = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Construct a consumer, call {@link #start()} to begin reading.
+     *
+     * @param client      The client to send requests, not closed with consumer.
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic.
+     * @param subId       The id of the subscription holding offsets.
+     * @param handler     The callback of records.
+     * @param conf        The consumer options.
+     */
+    public DatahubConsumer(DatahubClient client, String projectName, String topicName, String subId,
+                           RecordHandler handler, ConsumerConfiguration conf) {
+        this(client, projectName, topicName, subId, handler, conf, null);
+    }
+
+    /**
+     * Construct a consumer sharing an offset committer with other consumers,
+     * call {@link #start()} to begin reading.
+     *
+     * @param client      The client to send requests, not closed with consumer.
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic.
+     * @param subId       The id of the subscription holding offsets.
+     * @param handler     The callback of records.
+     * @param conf        The consumer options.
+     * @param committer   The committer of handled offsets, flushed but not closed with consumer,
+     *                    null to commit every <code>commitIntervalMs</code> by the consumer itself.
+     */
+    public DatahubConsumer(DatahubClient client, String projectName, String topicName, String subId,
+                           RecordHandler handler, ConsumerConfiguration conf, OffsetCommitter committer) {
+        if (client == null || projectName == null || topicName == null || subId == null
+                || handler == null || conf == null) {
+            throw new IllegalArgumentException("consumer parameters must not be null");
+        }
+        this.client = client;
+        this.projectName = projectName;
+        this.topicName = topicName;
+        this.subId = subId;
+        this.handler = handler;
+        this.conf = conf;
+        this.ownCommitter = committer == null;
+        this.committer = committer != null ? committer : new OffsetCommitter(client, conf.getCommitIntervalMs());
+        this.recordPool = conf.getRecordPoolSize() > 0 ? new RecordPool(conf.getRecordPoolSize()) : null;
+        this.fetchPool = Executors.newFixedThreadPool(conf.getFetchThreads(), new NamedThreadFactory("datahub-consumer-fetch"));
+        this.processPool = Executors.newFixedThreadPool(conf.getProcessThreads(), new NamedThreadFactory("datahub-consumer-process"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("datahub-consumer-scheduler"));
+    }
+
+    /**
+     * Load topic and committed offsets, then start reading shards.
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new DatahubClientException("consumer is closed");
+        }
+        if (started) {
+            return;
+        }
+        GetTopicResult topic = client.getTopic(projectName, topicName);
+        recordType = topic.getRecordType();
+        schema = topic.getRecordSchema();
+        Map<String, Offset> offsets = client.getSubscriptionOffset(projectName, subId).getOffsets();
+        if (offsets != null) {
+            committedOffsets = offsets;
+        }
+        started = true;
+
+        refreshShards();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshShards();
+            }
+        }, conf.getShardRefreshIntervalMs(), conf.getShardRefreshIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop reading, wait for running handlers and commit the offsets of handled records.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        scheduler.shutdownNow();
+        fetchPool.shutdownNow();
+        processPool.shutdown();
+        try {
+            processPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownCommitter) {
+            committer.close();
+        } else {
+            committer.flush();
+        }
+    }
+
+    /**
+     * @return ids of shards being read now
+     */
+    public Set<String> getReadingShards() {
+        return new HashSet<String>(readers.keySet());
+    }
+
+    private synchronized void refreshShards() {
+        if (closed) {
+            return;
+        }
+        List<ShardEntry> shards;
+        try {
+            shards = client.listShard(projectName, topicName).getShards();
+        } catch (Exception e) {
+            LOG.warn("list shard of " + projectName + "/" + topicName + " failed", e);
+            return;
+        }
+
+        Map<String, ShardEntry> shardMap = new HashMap<String, ShardEntry>();
+        for (ShardEntry shard : shards) {
+            shardMap.put(shard.getShardId(), shard);
+        }
+        for (ShardEntry shard : shards) {
+            ShardReader reader = readers.get(shard.getShardId());
+            if (reader != null) {
+                reader.shardClosed = shard.getState() == ShardState.CLOSED;
+            } else if (!finishedShards.contains(shard.getShardId()) && isReadable(shard, shardMap)) {
+                reader = new ShardReader(shard.getShardId(), committedOffsets.get(shard.getShardId()));
+                reader.shardClosed = shard.getState() == ShardState.CLOSED;
+                readers.put(shard.getShardId(), reader);
+                reader.scheduleFetch();
+            }
+        }
+    }
+
+    /**
+     * A shard is readable once all its parents still alive are read to the end,
+     * or when it has been read before.
+     */
+    private boolean isReadable(ShardEntry shard, Map<String, ShardEntry> shardMap) {
+        if (shard.getState() != ShardState.ACTIVE && shard.getState() != ShardState.CLOSED) {
+            return false;
+        }
+        if (committedOffsets.containsKey(shard.getShardId())) {
+            return true;
+        }
+        if (shard.getParentShardIds() != null) {
+            for (String parent : shard.getParentShardIds()) {
+                if (shardMap.containsKey(parent) && !finishedShards.contains(parent)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void onShardFinished(String shardId) {
+        LOG.info("shard " + shardId + " of " + projectName + "/" + topicName + " is read to the end");
+        finishedShards.add(shardId);
+        readers.remove(shardId);
+        // the shard was closed by a split or merge, its children are not in a cached shard list
+        client.invalidateMetadata(projectName, topicName);
+        execute(scheduler, new Runnable() {
+            @Override
+            public void run() {
+                refreshShards();
+            }
+        });
+    }
+
+    private void execute(Executor executor, Runnable task) {
+        if (closed) {
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (!closed) {
+                throw e;
+            }
+        }
+    }
+
+    private void schedule(Runnable task, long delayMs) {
+        if (closed) {
+            return;
+        }
+        try {
+            scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (!closed) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Fetch pipeline of one shard, fields are guarded by the reader itself.
+     */
+    private class ShardReader {
+        private final String shardId;
+        // offset of the next record to read, moved on as batches are queued
+        private Offset startOffset;
+        private final LinkedList<List<Record>> batches = new LinkedList<List<Record>>();
+        private volatile boolean shardClosed = false;
+        private String cursor;
+        private boolean fetching = false;
+        private boolean processing = false;
+        private boolean endOfShard = false;
+        private boolean finished = false;
+
+        private final Runnable fetchTask = new Runnable() {
+            @Override
+            public void run() {
+                fetch();
+            }
+        };
+
+        private final Runnable processTask = new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        };
+
+        private final Runnable scheduleFetchTask = new Runnable() {
+            @Override
+            public void run() {
+                scheduleFetch();
+            }
+        };
+
+        private final Runnable scheduleProcessTask = new Runnable() {
+            @Override
+            public void run() {
+                scheduleProcess();
+            }
+        };
+
+        ShardReader(String shardId, Offset startOffset) {
+            this.shardId = shardId;
+            this.startOffset = startOffset != null && startOffset.getSequence() >= 0 ? startOffset : null;
+        }
+
+        synchronized void scheduleFetch() {
+            if (closed || fetching || endOfShard || batches.size() >= conf.getPrefetchBatches()) {
+                return;
+            }
+            fetching = true;
+            execute(fetchPool, fetchTask);
+        }
+
+        synchronized void scheduleProcess() {
+            if (closed || processing || batches.isEmpty()) {
+                return;
+            }
+            processing = true;
+            execute(processPool, processTask);
+        }
+
+        private void fetch() {
+            List<Record> records = null;
+            boolean ok = false;
+            try {
+                if (cursor == null) {
+                    cursor = initCursor();
+                }
+                records = read();
+                ok = true;
+            } catch (InvalidCursorException e) {
+                // e.g. expired while idle, read again from the record after the last one queued
+                LOG.warn("cursor of shard " + shardId + " of " + projectName + "/" + topicName + " is invalid", e);
+                cursor = null;
+            } catch (Exception e) {
+                LOG.warn("read shard " + shardId + " of " + projectName + "/" + topicName + " failed", e);
+            }
+
+            boolean idle;
+            synchronized (this) {
+                fetching = false;
+                if (ok && !records.isEmpty()) {
+                    batches.add(records);
+                    startOffset = records.get(records.size() - 1).getOffset();
+                    idle = false;
+                } else if (ok && shardClosed) {
+                    endOfShard = true;
+                    idle = false;
+                } else {
+                    idle = true;
+                }
+            }
+            if (idle) {
+                schedule(scheduleFetchTask, conf.getIdleIntervalMs());
+            } else {
+                scheduleFetch();
+            }
+            scheduleProcess();
+            checkFinished();
+        }
+
+        private String initCursor() {
+            if (startOffset == null) {
+                return client.getCursor(projectName, topicName, shardId, GetCursorRequest.CursorType.OLDEST).getCursor();
+            }
+            try {
+                return client.getCursor(projectName, topicName, shardId,
+                        GetCursorRequest.CursorType.SEQUENCE, startOffset.getSequence()).getCursor();
+            } catch (DatahubServiceException e) {
+                // sequence may be out of range after the last record, records before it are skipped in read()
+                return client.getCursor(projectName, topicName, shardId,
+                        GetCursorRequest.CursorType.SYSTEM_TIME, startOffset.getTimestamp()).getCursor();
+            }
+        }
+
+        private List<Record> read() {
+            List<Record> records = new ArrayList<Record>();
+            if (recordType == RecordType.BLOB) {
+                GetBlobRecordsResult result = client.getBlobRecords(projectName, topicName, shardId, cursor, conf.getFetchLimit());
+                cursor = result.getNextCursor();
+                records.addAll(result.getRecords());
+            } else {
+                GetRecordsRequest request = new GetRecordsRequest(projectName, topicName, shardId, cursor, conf.getFetchLimit());
+                request.setSchema(schema);
+                request.setRecordPool(recordPool);
+                GetRecordsResult result = client.getRecords(request);
+                cursor = result.getNextCursor();
+                records.addAll(result.getRecords());
+            }
+            if (startOffset != null) {
+                int skip = 0;
+                while (skip < records.size() && records.get(skip).getSequence() < startOffset.getSequence()) {
+                    ++skip;
+                }
+                if (skip > 0) {
+                    List<Record> skipped = records.subList(0, skip);
+                    if (recordPool != null) {
+                        recordPool.release(skipped);
+                    }
+                    skipped.clear();
+                }
+            }
+            return records;
+        }
+
+        private void process() {
+            List<Record> batch;
+            synchronized (this) {
+                batch = batches.peek();
+            }
+            boolean ok = false;
+            try {
+                handler.onRecords(shardId, batch);
+                ok = true;
+            } catch (Throwable e) {
+                LOG.error("handle records of shard " + shardId + " failed, retry later", e);
+            }
+            if (ok) {
+                try {
+                    committer.commit(projectName, subId, shardId, batch.get(batch.size() - 1).getOffset());
+                } catch (RuntimeException e) {
+                    // e.g. a shared committer closed, the batch is handled and not retried
+                    LOG.error("commit offset of shard " + shardId + " failed", e);
+                }
+                if (recordPool != null) {
+                    recordPool.release(batch);
+                }
+            }
+            synchronized (this) {
+                if (ok) {
+                    batches.poll();
+                }
+                processing = false;
+            }
+            if (ok) {
+                scheduleProcess();
+                scheduleFetch();
+                checkFinished();
+            } else {
+                schedule(scheduleProcessTask, conf.getIdleIntervalMs());
+            }
+        }
+
+        private void checkFinished() {
+            synchronized (this) {
+                if (finished || !endOfShard || processing || !batches.isEmpty()) {
+                    return;
+                }
+                finished = true;
+            }
+            onShardFinished(shardId);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.aliyun.datahub.consumer;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.common.util.NamedThreadFactory;
+import com.aliyun.datahub.model.Offset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Committer merging offsets of shards into one CommitSubscriptionOffset request
+ * per subscription, pending offsets are committed every <code>intervalMs</code>.
+ *
+ * A later offset of a shard replaces the pending one, failed offsets are kept
+ * and committed again with the next flush unless replaced in the meantime.
+ */
+public class OffsetCommitter {
+    private static final Logger LOG = LoggerFactory.getLogger(OffsetCommitter.class);
+
+    private final DatahubClient client;
+    private final ConcurrentHashMap<SubscriptionKey, ConcurrentHashMap<String, Offset>> pending =
+            new ConcurrentHashMap<SubscriptionKey, ConcurrentHashMap<String, Offset>>();
+    private final ScheduledExecutorService scheduler;
+    private final Object flushLock = new Object();
+    private volatile boolean closed = false;
+
+    /**
+     * @param client     The client to send requests, not closed with committer.
+     * @param intervalMs The interval of background flush in milliseconds.
+     */
+    public OffsetCommitter(DatahubClient client, long intervalMs) {
+        if (client == null) {
+            throw new IllegalArgumentException("client must not be null");
+        }
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("invalid commit interval: " + intervalMs);
+        }
+        this.client = client;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("datahub-offset-committer"));
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add offset of a shard to be committed with the next flush.
+     *
+     * @param projectName The name of the project.
+     * @param subId       The id of the subscription.
+     * @param shardId     The id of the shard.
+     * @param offset      The position to start next read.
+     */
+    public void commit(String projectName, String subId, String shardId, Offset offset) {
+        if (closed) {
+            throw new IllegalStateException("offset committer is closed");
+        }
+        getPending(new SubscriptionKey(projectName, subId)).put(shardId, offset);
+    }
+
+    /**
+     * Add offsets of shards to be committed with the next flush.
+     *
+     * @param projectName The name of the project.
+     * @param subId       The id of the subscription.
+     * @param offsets     The offsets keyed by shard id.
+     */
+    public void commit(String projectName, String subId, Map<String, Offset> offsets) {
+        if (closed) {
+            throw new IllegalStateException("offset committer is closed");
+        }
+        getPending(new SubscriptionKey(projectName, subId)).putAll(offsets);
+    }
+
+    /**
+     * Commit all pending offsets now, one request per subscription.
+     *
+     * @return true if all pending offsets are committed
+     */
+    public boolean flush() {
+        boolean success = true;
+        synchronized (flushLock) {
+            for (Map.Entry<SubscriptionKey, ConcurrentHashMap<String, Offset>> entry : pending.entrySet()) {
+                ConcurrentHashMap<String, Offset> shardOffsets = entry.getValue();
+                if (shardOffsets.isEmpty()) {
+                    continue;
+                }
+                Map<String, Offset> offsets = new HashMap<String, Offset>(shardOffsets);
+                SubscriptionKey key = entry.getKey();
+                try {
+                    client.commitSubscriptionOffset(key.projectName, key.subId, offsets);
+                } catch (Exception e) {
+                    LOG.warn("commit offsets of " + key.projectName + "/" + key.subId + " failed", e);
+                    success = false;
+                    continue;
+                }
+                for (Map.Entry<String, Offset> offset : offsets.entrySet()) {
+                    // keep offsets replaced during the request
+                    shardOffsets.remove(offset.getKey(), offset.getValue());
+                }
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Stop background flush and commit pending offsets.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private ConcurrentHashMap<String, Offset> getPending(SubscriptionKey key) {
+        ConcurrentHashMap<String, Offset> offsets = pending.get(key);
+        if (offsets == null) {
+            offsets = new ConcurrentHashMap<String, Offset>();
+            ConcurrentHashMap<String, Offset> old = pending.putIfAbsent(key, offsets);
+            if (old != null) {
+                offsets = old;
+            }
+        }
+        return offsets;
+    }
+
+    private static final class SubscriptionKey {
+        private final String projectName;
+        private final String subId;
+
+        SubscriptionKey(String projectName, String subId) {
+            if (projectName == null || subId == null) {
+                throw new IllegalArgumentException("project name and subscription id must not be null");
+            }
+            this.projectName = projectName;
+            this.subId = subId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SubscriptionKey)) {
+                return false;
+            }
+            SubscriptionKey that = (SubscriptionKey) o;
+            return projectName.equals(that.projectName) && subId.equals(that.subId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * projectName.hashCode() + subId.hashCode();
+        }
+    }
+}
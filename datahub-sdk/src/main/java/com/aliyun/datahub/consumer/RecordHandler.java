@@ -0,0 +1,30 @@
+package com.aliyun.datahub.consumer;
+
+import com.aliyun.datahub.model.Record;
+
+import java.util.List;
+
+/**
+ * Callback of {@link DatahubConsumer}.
+ *
+ * Batches of one shard are handled one after another in sequence order,
+ * batches of different shards may be handled concurrently.
+ */
+public interface RecordHandler {
+
+    /**
+     * Handle one batch of records, records are {@link com.aliyun.datahub.model.RecordEntry}
+     * for tuple topic and {@link com.aliyun.datahub.model.BlobRecordEntry} for blob topic.
+     *
+     * The offset after the batch is committed once the call returns. If the call
+     * throws, the same batch is handled again later.
+     *
+     * If {@link ConsumerConfiguration#setRecordPoolSize(int)} is set, records are
+     * reused after the call returns, copy values to keep them.
+     *
+     * @param shardId The shard the records are read from.
+     * @param records The records, never empty.
+     * @throws Exception if the batch should be retried
+     */
+    void onRecords(String shardId, List<Record> records) throws Exception;
+}
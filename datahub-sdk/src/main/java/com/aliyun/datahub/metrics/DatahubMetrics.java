@@ -0,0 +1,151 @@
+package com.aliyun.datahub.metrics;
+
+import com.aliyun.datahub.common.transport.HttpMethod;
+import com.aliyun.datahub.common.util.IdleEvictingMap;
+import com.aliyun.datahub.common.util.ResourceKey;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link MetricsListener} aggregating latencies, sizes and errors in memory.
+ *
+ * Http requests are tagged by method and resource pattern, e.g.
+ * <code>POST /projects/&#42;/topics/&#42;/shards</code>, put and get of records by
+ * the operation name, both with project, topic and shard when known. Use
+ * {@link #getMetrics()} or a {@link MetricsReporter} to read them.
+ */
+public class DatahubMetrics implements MetricsListener {
+    static final int MAX_KEYS = 4096;
+    static final String CONNECTION_ERROR = "ConnectionError";
+
+    private final ConcurrentHashMap<ResourceKey, OperationMetrics> metrics = new ConcurrentHashMap<ResourceKey, OperationMetrics>();
+    private final IdleEvictingMap<String, ResourceKey>[] resourceKeys;
+
+    @SuppressWarnings("unchecked")
+    public DatahubMetrics() {
+        resourceKeys = new IdleEvictingMap[HttpMethod.values().length];
+        for (int i = 0; i < resourceKeys.length; ++i) {
+            resourceKeys[i] = new IdleEvictingMap<String, ResourceKey>(MAX_KEYS);
+        }
+    }
+
+    @Override
+    public void onRequest(HttpMethod method, String resource, int status, long latencyNanos,
+                          int rawBytesSent, int bytesSent, int bytesReceived, int rawBytesReceived) {
+        OperationMetrics m = getOrCreate(resourceKey(method, resource));
+        m.recordLatency(latencyNanos);
+        m.recordBytes(rawBytesSent, bytesSent, bytesReceived, rawBytesReceived);
+        if (status == 0) {
+            m.recordError(CONNECTION_ERROR);
+        } else if (status / 100 != 2) {
+            m.recordError(String.valueOf(status));
+        }
+    }
+
+    @Override
+    public void onOperation(String operation, String projectName, String topicName, String shardId, long latencyNanos,
+                            int recordCount, int failedRecordCount, String errorCode) {
+        OperationMetrics m = getOrCreate(new ResourceKey(operation, projectName, topicName, shardId));
+        m.recordLatency(latencyNanos);
+        m.recordRecords(recordCount, failedRecordCount);
+        if (errorCode != null) {
+            m.recordError(errorCode);
+        }
+    }
+
+    @Override
+    public void onRetry(String operation, String projectName, String topicName, int attempt) {
+        getOrCreate(new ResourceKey(operation, projectName, topicName, null)).recordRetry();
+    }
+
+    @Override
+    public void onRateLimit(String operation, String projectName, String topicName, String shardId, double permitsPerSecond) {
+        getOrCreate(new ResourceKey(operation, projectName, topicName, shardId)).recordRateLimit(permitsPerSecond);
+    }
+
+    /**
+     * @return metrics by key, updated as requests go on
+     */
+    public Map<ResourceKey, OperationMetrics> getMetrics() {
+        return new HashMap<ResourceKey, OperationMetrics>(metrics);
+    }
+
+    /**
+     * @return metrics of key, null if nothing recorded
+     */
+    public OperationMetrics getMetrics(ResourceKey key) {
+        return metrics.get(key);
+    }
+
+    private OperationMetrics getOrCreate(ResourceKey key) {
+        OperationMetrics m = metrics.get(key);
+        if (m == null) {
+            if (metrics.size() >= MAX_KEYS) {
+                // too many tags, count on the operation only
+                key = new ResourceKey(key.getOperation(), null, null, null);
+                m = metrics.get(key);
+                if (m != null) {
+                    return m;
+                }
+            }
+            m = new OperationMetrics();
+            OperationMetrics old = metrics.putIfAbsent(key, m);
+            if (old != null) {
+                m = old;
+            }
+        }
+        return m;
+    }
+
+    private ResourceKey resourceKey(HttpMethod method, String resource) {
+        IdleEvictingMap<String, ResourceKey> keys = resourceKeys[method.ordinal()];
+        ResourceKey key = keys.get(resource);
+        if (key == null) {
+            key = parseResource(method, resource);
+            keys.put(resource, key);
+        }
+        return key;
+    }
+
+    /**
+     * Resources are collection and id pairs, ids are replaced by * in the operation.
+     */
+    static ResourceKey parseResource(HttpMethod method, String resource) {
+        int query = resource.indexOf('?');
+        String path = query < 0 ? resource : resource.substring(0, query);
+        String[] segments = path.split("/");
+        StringBuilder operation = new StringBuilder(method.name()).append(' ');
+        String project = null;
+        String topic = null;
+        String shard = null;
+        String collection = null;
+        boolean empty = true;
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            operation.append('/');
+            empty = false;
+            if (collection == null) {
+                collection = segment;
+                operation.append(segment);
+            } else {
+                if ("projects".equals(collection)) {
+                    project = segment;
+                } else if ("topics".equals(collection)) {
+                    topic = segment;
+                } else if ("shards".equals(collection)) {
+                    shard = segment;
+                }
+                collection = null;
+                operation.append('*');
+            }
+        }
+        if (empty) {
+            operation.append('/');
+        }
+        return new ResourceKey(operation.toString(), project, topic, shard);
+    }
+}
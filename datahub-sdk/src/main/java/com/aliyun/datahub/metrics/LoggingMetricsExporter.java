@@ -0,0 +1,28 @@
+package com.aliyun.datahub.metrics;
+
+import com.aliyun.datahub.common.util.ResourceKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * {@link MetricsExporter} writing one info log per key.
+ */
+public class LoggingMetricsExporter implements MetricsExporter {
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingMetricsExporter.class);
+
+    @Override
+    public void export(Map<ResourceKey, OperationMetrics> metrics) {
+        for (Map.Entry<ResourceKey, OperationMetrics> entry : metrics.entrySet()) {
+            OperationMetrics m = entry.getValue();
+            Histogram latency = m.getLatency();
+            LOG.info("{} count={} errors={} records={} failedRecords={} retries={} bytesSent={} bytesReceived={} "
+                            + "rateLimit={} latencyUs[mean={}, p50={}, p99={}, max={}] errorCodes={}",
+                    new Object[]{entry.getKey(), m.getCount(), m.getErrorCount(), m.getRecordCount(),
+                            m.getFailedRecordCount(), m.getRetryCount(), m.getBytesSent(), m.getBytesReceived(),
+                            m.getRateLimit(), (long) latency.getMean() / 1000, latency.getValueAtPercentile(50) / 1000,
+                            latency.getValueAtPercentile(99) / 1000, latency.getMax() / 1000, m.getErrorCodes()});
+        }
+    }
+}
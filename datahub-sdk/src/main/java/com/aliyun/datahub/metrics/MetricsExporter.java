@@ -0,0 +1,15 @@
+package com.aliyun.datahub.metrics;
+
+import com.aliyun.datahub.common.util.ResourceKey;
+
+import java.util.Map;
+
+/**
+ * Adapter publishing metrics to a monitoring system, called by {@link MetricsReporter}.
+ */
+public interface MetricsExporter {
+    /**
+     * @param metrics The metrics aggregated since the client started.
+     */
+    void export(Map<ResourceKey, OperationMetrics> metrics);
+}
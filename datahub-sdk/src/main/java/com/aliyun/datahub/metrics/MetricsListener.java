@@ -0,0 +1,69 @@
+package com.aliyun.datahub.metrics;
+
+import com.aliyun.datahub.common.transport.HttpMethod;
+
+/**
+ * Callback of client metrics, set by
+ * {@link com.aliyun.datahub.DatahubConfiguration#setMetricsListener(MetricsListener)}.
+ *
+ * Methods are called on the thread sending the request and must not block.
+ * Without a listener nothing is measured.
+ */
+public interface MetricsListener {
+    String PUT_RECORDS = "PutRecords";
+    String GET_RECORDS = "GetRecords";
+    String PUT_BLOB_RECORDS = "PutBlobRecords";
+    String GET_BLOB_RECORDS = "GetBlobRecords";
+
+    /**
+     * Called after every http request sent by RestClient.
+     *
+     * @param method           The http method.
+     * @param resource         The resource of request, e.g. /projects/p/topics/t/shards/0.
+     * @param status           The http status, 0 if no response was received.
+     * @param latencyNanos     The time from sending request to receiving response.
+     * @param rawBytesSent     The size of request body before compression.
+     * @param bytesSent        The size of request body sent.
+     * @param bytesReceived    The size of response body received.
+     * @param rawBytesReceived The size of response body after decompression.
+     */
+    void onRequest(HttpMethod method, String resource, int status, long latencyNanos,
+                   int rawBytesSent, int bytesSent, int bytesReceived, int rawBytesReceived);
+
+    /**
+     * Called after every put or get of records by DatahubClient.
+     *
+     * @param operation         The operation, e.g. {@link #PUT_RECORDS}.
+     * @param projectName       The name of the project.
+     * @param topicName         The name of the topic.
+     * @param shardId           The id of the shard, null if records go to several shards.
+     * @param latencyNanos      The time of the call, including serialization.
+     * @param recordCount       The count of records sent or received.
+     * @param failedRecordCount The count of records failed to put.
+     * @param errorCode         The error code if the call failed, null otherwise.
+     */
+    void onOperation(String operation, String projectName, String topicName, String shardId, long latencyNanos,
+                     int recordCount, int failedRecordCount, String errorCode);
+
+    /**
+     * Called before failed records are put again.
+     *
+     * @param operation   The operation retried.
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic.
+     * @param attempt     The count of retries so far, from 1.
+     */
+    void onRetry(String operation, String projectName, String topicName, int attempt);
+
+    /**
+     * Called after every put or get of records limited by a
+     * {@link com.aliyun.datahub.ratelimit.ShardRateLimiter}.
+     *
+     * @param operation        The operation limited.
+     * @param projectName      The name of the project.
+     * @param topicName        The name of the topic.
+     * @param shardId          The id of the shard, null for records without shard id.
+     * @param permitsPerSecond The requests per second now allowed to the shard.
+     */
+    void onRateLimit(String operation, String projectName, String topicName, String shardId, double permitsPerSecond);
+}
@@ -0,0 +1,62 @@
+package com.aliyun.datahub.metrics;
+
+import com.aliyun.datahub.common.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export the metrics of a {@link DatahubMetrics} periodically on a daemon thread.
+ */
+public class MetricsReporter {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsReporter.class);
+
+    private final DatahubMetrics metrics;
+    private final MetricsExporter exporter;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param metrics    The metrics to export.
+     * @param exporter   The exporter.
+     * @param intervalMs The interval between exports in milliseconds.
+     */
+    public MetricsReporter(DatahubMetrics metrics, MetricsExporter exporter, long intervalMs) {
+        if (metrics == null || exporter == null) {
+            throw new IllegalArgumentException("metrics and exporter must not be null");
+        }
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("invalid report interval: " + intervalMs);
+        }
+        this.metrics = metrics;
+        this.exporter = exporter;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("datahub-metrics"));
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Export now.
+     */
+    public void report() {
+        try {
+            exporter.export(metrics.getMetrics());
+        } catch (RuntimeException e) {
+            LOG.warn("export metrics failed", e);
+        }
+    }
+
+    /**
+     * Stop exporting, metrics are exported a last time.
+     */
+    public void close() {
+        executor.shutdown();
+        report();
+    }
+}
@@ -0,0 +1,137 @@
+package com.aliyun.datahub.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histogram of one {@link com.aliyun.datahub.common.util.ResourceKey}, updated lock free.
+ */
+public class OperationMetrics {
+    private final Histogram latency = new Histogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong rawBytesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong rawBytesReceived = new AtomicLong();
+    private volatile double rateLimit = 0;
+    private final ConcurrentHashMap<String, AtomicLong> errorCodes = new ConcurrentHashMap<String, AtomicLong>();
+
+    void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    void recordRecords(int count, int failed) {
+        if (count != 0) {
+            records.addAndGet(count);
+        }
+        if (failed != 0) {
+            failedRecords.addAndGet(failed);
+        }
+    }
+
+    void recordBytes(int rawSent, int sent, int received, int rawReceived) {
+        rawBytesSent.addAndGet(rawSent);
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+        rawBytesReceived.addAndGet(rawReceived);
+    }
+
+    void recordError(String errorCode) {
+        errors.incrementAndGet();
+        AtomicLong counter = errorCodes.get(errorCode);
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong old = errorCodes.putIfAbsent(errorCode, counter);
+            if (old != null) {
+                counter = old;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    void recordRateLimit(double permitsPerSecond) {
+        rateLimit = permitsPerSecond;
+    }
+
+    /**
+     * @return histogram of latencies in nanoseconds
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    public long getRecordCount() {
+        return records.get();
+    }
+
+    public long getFailedRecordCount() {
+        return failedRecords.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getRawBytesSent() {
+        return rawBytesSent.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getRawBytesReceived() {
+        return rawBytesReceived.get();
+    }
+
+    /**
+     * @return requests per second last allowed by the rate limiter, 0 if not limited
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @return ratio of bytes sent to raw bytes, 1 if nothing sent
+     */
+    public double getCompressionRatio() {
+        long raw = rawBytesSent.get();
+        return raw == 0 ? 1 : (double) bytesSent.get() / raw;
+    }
+
+    /**
+     * @return count of failures by error code
+     */
+    public Map<String, Long> getErrorCodes() {
+        if (errorCodes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : errorCodes.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+}
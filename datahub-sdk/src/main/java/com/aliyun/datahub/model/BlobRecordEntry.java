@@ -2,9 +2,12 @@ package com.aliyun.datahub.model;
 
 import com.aliyun.datahub.exception.DatahubClientException;
 import org.apache.commons.codec.binary.Base64;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.node.ObjectNode;
 
+import java.io.IOException;
+
 public class BlobRecordEntry extends Record {
     private byte[] data;
 
@@ -44,4 +47,17 @@ public class BlobRecordEntry extends Record {
         node.put("Data", data);
         return node;
     }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+
+        if (data == null) {
+            throw new DatahubClientException("record data is null");
+        }
+
+        generator.writeStartObject();
+        super.writeJsonFields(generator);
+        generator.writeBinaryField("Data", data);
+        generator.writeEndObject();
+    }
 }
@@ -26,6 +26,7 @@ public class GetRecordsRequest {
      */
     private int limit;
     private RecordSchema schema;
+    private RecordPool recordPool;
     /**
      * 
      * constructor
@@ -72,4 +73,18 @@ public class GetRecordsRequest {
     public RecordSchema getSchema() {
         return schema;
     }
+
+    /**
+     * Set the pool to take result records from, records should be released to
+     * it once handled.
+     *
+     * @param recordPool The pool, null to create new records.
+     */
+    public void setRecordPool(RecordPool recordPool) {
+        this.recordPool = recordPool;
+    }
+
+    public RecordPool getRecordPool() {
+        return recordPool;
+    }
 }
@@ -3,10 +3,12 @@ package com.aliyun.datahub.model;
 import com.aliyun.datahub.DatahubConstants;
 import com.aliyun.datahub.common.util.JacksonParser;
 import com.aliyun.datahub.exception.DatahubClientException;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ObjectNode;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,6 +28,32 @@ public abstract class Record {
 
     abstract public void clear();
 
+    /**
+     * Clear values, keys, attributes and position of the record so it can be reused.
+     */
+    public void reset() {
+        clear();
+        partitionKey = null;
+        hashKey = null;
+        shardId = null;
+        attributes.clear();
+        systemTime = 0;
+        sequence = 0;
+    }
+
+    /**
+     * Write the record as json object, the output is the same as {@link #toJsonNode()}.
+     *
+     * Subclasses should override it to stream the fields without building a tree.
+     *
+     * @param generator
+     *     the generator to write to
+     * @throws IOException
+     *     if failed to write the record
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeTree(toJsonNode());
+    }
 
     public long getSystemTime() {
         return systemTime;
@@ -96,4 +124,20 @@ public abstract class Record {
         }
         return node;
     }
+
+    protected void writeJsonFields(JsonGenerator generator) throws IOException {
+        if (shardId != null && !shardId.isEmpty()) {
+            generator.writeStringField(DatahubConstants.ShardId, shardId);
+        } else if (partitionKey != null && !partitionKey.isEmpty()) {
+            generator.writeStringField(DatahubConstants.PartitionKey, partitionKey);
+        } else if (hashKey != null && !hashKey.isEmpty()) {
+            generator.writeStringField(DatahubConstants.HashKey, hashKey);
+        }
+
+        generator.writeObjectFieldStart("Attributes");
+        for (String key : attributes.keySet()) {
+            generator.writeStringField(key, attributes.get(key));
+        }
+        generator.writeEndObject();
+    }
 }
@@ -1,27 +1,47 @@
 package com.aliyun.datahub.model;
 
 import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldLayout;
 import com.aliyun.datahub.common.data.FieldType;
 import com.aliyun.datahub.common.data.RecordSchema;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.ObjectNode;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.util.HashMap;
 
+/**
+ * Record of tuple topic.
+ *
+ * BIGINT, TIMESTAMP, DOUBLE and BOOLEAN values are kept in a primitive slot per
+ * field, double as raw long bits and boolean as 0/1, with a bitmap of fields
+ * set. STRING and DECIMAL values are kept as objects. Fields and name index
+ * are shared by records of one schema, see {@link FieldLayout}.
+ *
+ * The boxed accessors such as {@link #getBigint(int)} return null for unset
+ * fields. The primitive accessors such as {@link #getBigintValue(int)} do not
+ * box and throw NullPointerException for unset fields, check
+ * {@link #isNull(int)} first if null is possible.
+ *
+ * A value set with a setter of another type than the field, e.g. setString on
+ * a BIGINT field, is kept as object and serialized with String.valueOf as in
+ * earlier versions, it can only be read back with a getter of its own type.
+ */
 public class RecordEntry extends Record {
-    private Field[] fields;
-    private Object[] values;
-    private HashMap<String, Integer> nameMap = new HashMap<String, Integer>();
+    private FieldLayout layout;
+    private long[] slots;
+    private Object[] objects;
+    private long[] setBits;
+    private long[] foreignBits;
 
     public RecordEntry(RecordSchema schema) {
         super();
         if (schema == null) {
             throw new IllegalArgumentException("schema must not be null");
         }
-        init(schema.getFields().toArray(new Field[0]));
+        init(schema.getLayout());
     }
 
     public RecordEntry(Field[] fields) {
@@ -29,24 +49,43 @@ public class RecordEntry extends Record {
         if (fields == null) {
             throw new IllegalArgumentException("fields list must not be null");
         }
-        init(fields);
+        init(new FieldLayout(fields));
     }
 
-    private void init(Field [] fields) {
-        this.fields = fields;
-
-        values = new Object[fields.length];
+    /**
+     * Create record sharing layout with other records, e.g. all records of a response.
+     *
+     * @param layout The fields of record.
+     */
+    public RecordEntry(FieldLayout layout) {
+        super();
+        if (layout == null) {
+            throw new IllegalArgumentException("layout must not be null");
+        }
+        init(layout);
+    }
 
-        for (int i = 0; i < fields.length; i++) {
-            nameMap.put(fields[i].getName(), i);
+    private void init(FieldLayout layout) {
+        this.layout = layout;
+        int count = layout.getFieldCount();
+        slots = new long[count];
+        if (layout.hasObjectFields()) {
+            objects = new Object[count];
         }
+        setBits = new long[(count + 63) >>> 6];
+        foreignBits = new long[setBits.length];
     }
 
     @Override
     public long getRecordSize() {
         long len = 0;
-        for (int i = 0; i < values.length; ++i) {
-            if (values[i] == null) {
+        Field[] fields = layout.getFields();
+        for (int i = 0; i < fields.length; ++i) {
+            if (isNull(i)) {
+                continue;
+            }
+            if (isForeign(i)) {
+                len += valueString(i).length();
                 continue;
             }
             Field field = fields[i];
@@ -59,9 +98,9 @@ public class RecordEntry extends Record {
             } else if (field.getType() == FieldType.TIMESTAMP) {
                 len += 8;
             } else if (field.getType() == FieldType.STRING) {
-                len += ((String) values[i]).length();
+                len += ((String) objects[i]).length();
             } else if (field.getType() == FieldType.DECIMAL) {
-                len += ((BigDecimal) values[i]).toPlainString().length();
+                len += ((BigDecimal) objects[i]).toPlainString().length();
             } else {
                 throw new IllegalArgumentException("unknown record type :" + field.getType().name());
             }
@@ -70,30 +109,150 @@ public class RecordEntry extends Record {
     }
 
     public int getFieldCount() {
-        return values.length;
+        return slots.length;
     }
 
     public Field[] getFields() {
-        return fields;
+        return layout.getFields();
+    }
+
+    public FieldLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return true if the field is not set or set to null
+     */
+    public boolean isNull(int idx) {
+        if (idx < 0 || idx >= slots.length) {
+            throw new ArrayIndexOutOfBoundsException(idx);
+        }
+        return (setBits[idx >>> 6] & (1L << idx)) == 0;
     }
 
-    private Object get(int idx) {
-        return values[idx];
+    public boolean isNull(String fieldName) {
+        return isNull(getFieldIndex(fieldName));
     }
 
-    private Object get(String fieldName) {
-        return values[getFieldIndex(fieldName)];
+    private boolean isForeign(int idx) {
+        return (foreignBits[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    private void setSlot(int idx, long value, FieldType type) {
+        if (!accepts(idx, type)) {
+            setForeign(idx, boxSlot(value, type));
+            return;
+        }
+        if (isForeign(idx)) {
+            setNull(idx);
+        }
+        slots[idx] = value;
+        setBits[idx >>> 6] |= 1L << idx;
+    }
+
+    private static Object boxSlot(long value, FieldType type) {
+        if (type == FieldType.DOUBLE) {
+            return Double.valueOf(Double.longBitsToDouble(value));
+        } else if (type == FieldType.BOOLEAN) {
+            return Boolean.valueOf(value != 0);
+        }
+        return Long.valueOf(value);
+    }
+
+    private void setObject(int idx, Object value, FieldType type) {
+        if (value == null) {
+            setNull(idx);
+            return;
+        }
+        if (!accepts(idx, type)) {
+            setForeign(idx, value);
+            return;
+        }
+        if (isForeign(idx)) {
+            setNull(idx);
+        }
+        if (objects == null) {
+            objects = new Object[slots.length];
+        }
+        objects[idx] = value;
+        setBits[idx >>> 6] |= 1L << idx;
+    }
+
+    private void setForeign(int idx, Object value) {
+        if (objects == null) {
+            objects = new Object[slots.length];
+        }
+        objects[idx] = value;
+        setBits[idx >>> 6] |= 1L << idx;
+        foreignBits[idx >>> 6] |= 1L << idx;
+    }
+
+    private void setNull(int idx) {
+        if (objects != null) {
+            objects[idx] = null;
+        }
+        setBits[idx >>> 6] &= ~(1L << idx);
+        foreignBits[idx >>> 6] &= ~(1L << idx);
+    }
+
+    private boolean accepts(int idx, FieldType type) {
+        FieldType fieldType = layout.getType(idx);
+        if (fieldType == type) {
+            return true;
+        }
+        // bigint and timestamp values share the long representation
+        return (fieldType == FieldType.BIGINT || fieldType == FieldType.TIMESTAMP)
+                && (type == FieldType.BIGINT || type == FieldType.TIMESTAMP);
+    }
+
+    private void checkType(int idx, FieldType type) {
+        if (!accepts(idx, type)) {
+            throw new ClassCastException("Field " + layout.getFields()[idx].getName()
+                    + " is " + layout.getType(idx).name() + ", not " + type.name());
+        }
+    }
+
+    private void checkRead(int idx, FieldType type) {
+        checkType(idx, type);
+        if (isNull(idx)) {
+            throw new NullPointerException("Field " + layout.getFields()[idx].getName() + " is null");
+        }
     }
 
     public void setBigint(int idx, Long value) {
-        if (value != null && (value > Long.MAX_VALUE || value <= Long.MIN_VALUE)) {
+        if (value == null) {
+            setNull(idx);
+            return;
+        }
+        setBigint(idx, value.longValue());
+    }
+
+    public void setBigint(int idx, long value) {
+        if (value == Long.MIN_VALUE) {
             throw new IllegalArgumentException("InvalidData: Bigint out of range.");
         }
-        values[idx] = value;
+        setSlot(idx, value, FieldType.BIGINT);
     }
 
     public Long getBigint(int idx) {
-        return (Long) get(idx);
+        if (isForeign(idx)) {
+            return (Long) objects[idx];
+        }
+        checkType(idx, FieldType.BIGINT);
+        return isNull(idx) ? null : Long.valueOf(slots[idx]);
+    }
+
+    /**
+     * Get bigint value without boxing.
+     *
+     * @throws NullPointerException if the field is null
+     */
+    public long getBigintValue(int idx) {
+        if (isForeign(idx)) {
+            return (Long) objects[idx];
+        }
+        checkRead(idx, FieldType.BIGINT);
+        return slots[idx];
     }
 
 
@@ -101,19 +260,52 @@ public class RecordEntry extends Record {
         setBigint(getFieldIndex(fieldName), value);
     }
 
+    public void setBigint(String fieldName, long value) {
+        setBigint(getFieldIndex(fieldName), value);
+    }
+
 
     public Long getBigint(String fieldName) {
-        return (Long) get(fieldName);
+        return getBigint(getFieldIndex(fieldName));
+    }
+
+    public long getBigintValue(String fieldName) {
+        return getBigintValue(getFieldIndex(fieldName));
     }
 
 
     public void setDouble(int idx, Double value) {
-        values[idx] = value;
+        if (value == null) {
+            setNull(idx);
+            return;
+        }
+        setDouble(idx, value.doubleValue());
+    }
+
+    public void setDouble(int idx, double value) {
+        setSlot(idx, Double.doubleToRawLongBits(value), FieldType.DOUBLE);
     }
 
 
     public Double getDouble(int idx) {
-        return (Double) get(idx);
+        if (isForeign(idx)) {
+            return (Double) objects[idx];
+        }
+        checkType(idx, FieldType.DOUBLE);
+        return isNull(idx) ? null : Double.valueOf(Double.longBitsToDouble(slots[idx]));
+    }
+
+    /**
+     * Get double value without boxing.
+     *
+     * @throws NullPointerException if the field is null
+     */
+    public double getDoubleValue(int idx) {
+        if (isForeign(idx)) {
+            return (Double) objects[idx];
+        }
+        checkRead(idx, FieldType.DOUBLE);
+        return Double.longBitsToDouble(slots[idx]);
     }
 
 
@@ -121,17 +313,50 @@ public class RecordEntry extends Record {
         setDouble(getFieldIndex(fieldName), value);
     }
 
+    public void setDouble(String fieldName, double value) {
+        setDouble(getFieldIndex(fieldName), value);
+    }
+
     public Double getDouble(String fieldName) {
-        return (Double) get(fieldName);
+        return getDouble(getFieldIndex(fieldName));
+    }
+
+    public double getDoubleValue(String fieldName) {
+        return getDoubleValue(getFieldIndex(fieldName));
     }
 
     public void setBoolean(int idx, Boolean value) {
-        values[idx] = value;
+        if (value == null) {
+            setNull(idx);
+            return;
+        }
+        setBoolean(idx, value.booleanValue());
+    }
+
+    public void setBoolean(int idx, boolean value) {
+        setSlot(idx, value ? 1 : 0, FieldType.BOOLEAN);
     }
 
 
     public Boolean getBoolean(int idx) {
-        return (Boolean) get(idx);
+        if (isForeign(idx)) {
+            return (Boolean) objects[idx];
+        }
+        checkType(idx, FieldType.BOOLEAN);
+        return isNull(idx) ? null : Boolean.valueOf(slots[idx] != 0);
+    }
+
+    /**
+     * Get boolean value without boxing.
+     *
+     * @throws NullPointerException if the field is null
+     */
+    public boolean getBooleanValue(int idx) {
+        if (isForeign(idx)) {
+            return (Boolean) objects[idx];
+        }
+        checkRead(idx, FieldType.BOOLEAN);
+        return slots[idx] != 0;
     }
 
 
@@ -139,8 +364,16 @@ public class RecordEntry extends Record {
         setBoolean(getFieldIndex(fieldName), value);
     }
 
+    public void setBoolean(String fieldName, boolean value) {
+        setBoolean(getFieldIndex(fieldName), value);
+    }
+
     public Boolean getBoolean(String fieldName) {
-        return (Boolean) get(fieldName);
+        return getBoolean(getFieldIndex(fieldName));
+    }
+
+    public boolean getBooleanValue(String fieldName) {
+        return getBooleanValue(getFieldIndex(fieldName));
     }
 
     /**
@@ -151,14 +384,39 @@ public class RecordEntry extends Record {
      *     the value of the field is microseconds
      */
     public void setTimeStamp(int idx, Long microseconds) {
-        if (microseconds != null && (microseconds > Long.MAX_VALUE || microseconds <= Long.MIN_VALUE)) {
+        if (microseconds == null) {
+            setNull(idx);
+            return;
+        }
+        setTimeStamp(idx, microseconds.longValue());
+    }
+
+    public void setTimeStamp(int idx, long microseconds) {
+        if (microseconds == Long.MIN_VALUE) {
             throw new IllegalArgumentException("InvalidData: timestamp out of range.");
         }
-        values[idx] = microseconds;
+        setSlot(idx, microseconds, FieldType.TIMESTAMP);
     }
 
     public Long getTimeStamp(int idx) {
-        return (Long) get(idx);
+        if (isForeign(idx)) {
+            return (Long) objects[idx];
+        }
+        checkType(idx, FieldType.TIMESTAMP);
+        return isNull(idx) ? null : Long.valueOf(slots[idx]);
+    }
+
+    /**
+     * Get timestamp value in microseconds without boxing.
+     *
+     * @throws NullPointerException if the field is null
+     */
+    public long getTimeStampValue(int idx) {
+        if (isForeign(idx)) {
+            return (Long) objects[idx];
+        }
+        checkRead(idx, FieldType.TIMESTAMP);
+        return slots[idx];
     }
 
 
@@ -173,21 +431,32 @@ public class RecordEntry extends Record {
         setTimeStamp(getFieldIndex(fieldName), microseconds);
     }
 
+    public void setTimeStamp(String fieldName, long microseconds) {
+        setTimeStamp(getFieldIndex(fieldName), microseconds);
+    }
+
     public Long getTimeStamp(String fieldName) {
-        return (Long) get(fieldName);
+        return getTimeStamp(getFieldIndex(fieldName));
+    }
+
+    public long getTimeStampValue(String fieldName) {
+        return getTimeStampValue(getFieldIndex(fieldName));
     }
 
     public void setString(int idx, String value) {
-        values[idx] = value;
+        setObject(idx, value, FieldType.STRING);
     }
 
 
     public String getString(int idx) {
-        Object o = get(idx);
-        if (o == null) {
+        if (isForeign(idx)) {
+            return (String) objects[idx];
+        }
+        checkType(idx, FieldType.STRING);
+        if (isNull(idx)) {
             return null;
         }
-        return (String) o;
+        return (String) objects[idx];
     }
 
     public void setString(String fieldName, String value) {
@@ -199,16 +468,19 @@ public class RecordEntry extends Record {
     }
 
     public void setDecimal(int idx, BigDecimal value) {
-        values[idx] = value;
+        setObject(idx, value, FieldType.DECIMAL);
     }
 
 
     public BigDecimal getDecimal(int idx) {
-        Object o = get(idx);
-        if (o == null) {
+        if (isForeign(idx)) {
+            return (BigDecimal) objects[idx];
+        }
+        checkType(idx, FieldType.DECIMAL);
+        if (isNull(idx)) {
             return null;
         }
-        return (BigDecimal) o;
+        return (BigDecimal) objects[idx];
     }
 
     public void setDecimal(String fieldName, BigDecimal value) {
@@ -223,7 +495,7 @@ public class RecordEntry extends Record {
         if (name == null) {
             throw new IllegalArgumentException("Field name is null");
         }
-        Integer idx = nameMap.get(name.toLowerCase());
+        Integer idx = layout.indexOf(name.toLowerCase());
         if (idx == null) {
             throw new IllegalArgumentException("No such column:" + name.toLowerCase());
         }
@@ -231,9 +503,33 @@ public class RecordEntry extends Record {
     }
 
     public void clear() {
-        for (int i = 0; i < values.length; i++) {
-            values[i] = null;
+        for (int i = 0; i < setBits.length; i++) {
+            setBits[i] = 0;
+            foreignBits[i] = 0;
+        }
+        if (objects != null) {
+            for (int i = 0; i < objects.length; i++) {
+                objects[i] = null;
+            }
+        }
+    }
+
+    private String valueString(int idx) {
+        if (isForeign(idx)) {
+            Object value = objects[idx];
+            return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : String.valueOf(value);
         }
+        FieldType type = layout.getType(idx);
+        if (type == FieldType.BIGINT || type == FieldType.TIMESTAMP) {
+            return Long.toString(slots[idx]);
+        } else if (type == FieldType.DOUBLE) {
+            return Double.toString(Double.longBitsToDouble(slots[idx]));
+        } else if (type == FieldType.BOOLEAN) {
+            return slots[idx] != 0 ? "true" : "false";
+        } else if (type == FieldType.DECIMAL) {
+            return ((BigDecimal) objects[idx]).toPlainString();
+        }
+        return String.valueOf(objects[idx]);
     }
 
     @Override
@@ -241,16 +537,28 @@ public class RecordEntry extends Record {
         ObjectNode node = super.toObjectNode();
         ArrayNode record = node.putArray("Data");
         for (int i = 0; i < this.getFieldCount(); i++) {
-            if (this.get(i) != null) {
-                if (fields[i].getType() == FieldType.DECIMAL) {
-                    record.add(((BigDecimal)this.get(i)).toPlainString());
-                } else {
-                    record.add(String.valueOf(this.get(i)));
-                }
+            if (!isNull(i)) {
+                record.add(valueString(i));
             } else {
                 record.add((JsonNode)null);
             }
         }
         return node;
     }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        super.writeJsonFields(generator);
+        generator.writeArrayFieldStart("Data");
+        for (int i = 0; i < slots.length; i++) {
+            if (isNull(i)) {
+                generator.writeNull();
+            } else {
+                generator.writeString(valueString(i));
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
 }
@@ -0,0 +1,107 @@
+package com.aliyun.datahub.model;
+
+import com.aliyun.datahub.common.data.FieldLayout;
+import com.aliyun.datahub.common.util.IdleEvictingMap;
+
+import java.util.Collection;
+
+/**
+ * Pool of tuple records reused by GetRecords deserializers, see
+ * {@link GetRecordsRequest#setRecordPool(RecordPool)}.
+ *
+ * Records are kept per {@link FieldLayout}, up to <code>capacity</code> for
+ * each. Layouts not used for long are dropped once many layouts are pooled,
+ * e.g. those replaced by schema changes. A released record is reset and must not be used by the caller any
+ * more. Blob records are not pooled.
+ */
+public class RecordPool {
+    static final int MAX_LAYOUTS = 256;
+
+    private final int capacity;
+    private final IdleEvictingMap<FieldLayout, Stack> stacks = new IdleEvictingMap<FieldLayout, Stack>(MAX_LAYOUTS);
+
+    /**
+     * @param capacity The max count of free records kept per layout.
+     */
+    public RecordPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid pool capacity: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return a free record of layout, or a new one if none
+     */
+    public RecordEntry acquire(FieldLayout layout) {
+        Stack stack = stacks.get(layout);
+        RecordEntry entry = stack == null ? null : stack.pop();
+        return entry != null ? entry : new RecordEntry(layout);
+    }
+
+    /**
+     * Reset a record and keep it for reuse, dropped if the pool is full.
+     */
+    public void release(Record record) {
+        if (!(record instanceof RecordEntry)) {
+            return;
+        }
+        RecordEntry entry = (RecordEntry) record;
+        entry.reset();
+        getStack(entry.getLayout()).push(entry);
+    }
+
+    public void release(Collection<? extends Record> records) {
+        for (Record record : records) {
+            release(record);
+        }
+    }
+
+    /**
+     * @return count of free records of layout
+     */
+    public int size(FieldLayout layout) {
+        Stack stack = stacks.get(layout);
+        return stack == null ? 0 : stack.size();
+    }
+
+    private Stack getStack(FieldLayout layout) {
+        Stack stack = stacks.get(layout);
+        if (stack == null) {
+            stack = new Stack(capacity);
+            Stack old = stacks.putIfAbsent(layout, stack);
+            if (old != null) {
+                stack = old;
+            }
+        }
+        return stack;
+    }
+
+    private static class Stack {
+        private final RecordEntry[] items;
+        private int count = 0;
+
+        Stack(int capacity) {
+            items = new RecordEntry[capacity];
+        }
+
+        synchronized RecordEntry pop() {
+            if (count == 0) {
+                return null;
+            }
+            RecordEntry entry = items[--count];
+            items[count] = null;
+            return entry;
+        }
+
+        synchronized void push(RecordEntry entry) {
+            if (count < items.length) {
+                items[count++] = entry;
+            }
+        }
+
+        synchronized int size() {
+            return count;
+        }
+    }
+}
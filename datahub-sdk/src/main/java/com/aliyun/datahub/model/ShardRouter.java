@@ -0,0 +1,264 @@
+package com.aliyun.datahub.model;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.exception.DatahubClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client side router finding the shard of records written by partition key or
+ * hash key, the same way as service does.
+ *
+ * Active shards of every topic are cached as a range index sorted by begin
+ * hash key, keys of the 128-bit space are compared as two unsigned longs. The
+ * index is reloaded every <code>refreshIntervalMs</code>, or at next use after
+ * {@link #invalidate(String, String)}, e.g. when a write fails with
+ * InvalidShardOperation after a split or merge. Topics are loaded under their
+ * own lock; a failed load keeps the last index and is not tried again for
+ * {@link #FAILED_LOAD_BACKOFF_MS} at most.
+ */
+public class ShardRouter {
+    private static final Logger LOG = LoggerFactory.getLogger(ShardRouter.class);
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new DatahubClientException(e.getMessage(), e);
+            }
+        }
+    };
+
+    /** default interval to reload shards of a topic, in milliseconds */
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 60000;
+
+    /** time a topic whose shards failed to load is routed by its last index, in milliseconds */
+    public static final long FAILED_LOAD_BACKOFF_MS = 1000;
+
+    /**
+     * Shards of a topic, also the lock loading them.
+     */
+    private static class TopicShards {
+        private volatile ShardIndex index = null;
+        private volatile long nextLoadTime = 0;
+    }
+
+    private final DatahubClient client;
+    private final long refreshIntervalMs;
+    private final ConcurrentHashMap<String, TopicShards> topics = new ConcurrentHashMap<String, TopicShards>();
+
+    /**
+     * @param client            The client to list shards.
+     * @param refreshIntervalMs The interval to reload shards of a topic.
+     */
+    public ShardRouter(DatahubClient client, long refreshIntervalMs) {
+        if (client == null) {
+            throw new IllegalArgumentException("client must not be null");
+        }
+        if (refreshIntervalMs <= 0) {
+            throw new IllegalArgumentException("invalid refresh interval: " + refreshIntervalMs);
+        }
+        this.client = client;
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    /**
+     * Find the shard of a record.
+     *
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic.
+     * @param record      The record to route.
+     * @return the shard id set on record or matching its key, null if the
+     * record has no key or shards are unknown
+     */
+    public String route(String projectName, String topicName, Record record) {
+        if (record.getShardId() != null && !record.getShardId().isEmpty()) {
+            return record.getShardId();
+        }
+        long[] key;
+        if (record.getPartitionKey() != null && !record.getPartitionKey().isEmpty()) {
+            key = hashPartitionKey(record.getPartitionKey());
+        } else if (record.getHashKey() != null && !record.getHashKey().isEmpty()) {
+            key = parseHashKey(record.getHashKey());
+        } else {
+            return null;
+        }
+        ShardIndex index = getIndex(projectName, topicName);
+        return index == null ? null : index.find(key[0], key[1]);
+    }
+
+    /**
+     * Drop cached shards of a topic, also the shard list cached by the
+     * client, they are reloaded at next route.
+     *
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic.
+     */
+    public void invalidate(String projectName, String topicName) {
+        topics.remove(projectName + "/" + topicName);
+        client.invalidateMetadata(projectName, topicName);
+    }
+
+    private ShardIndex getIndex(String projectName, String topicName) {
+        String key = projectName + "/" + topicName;
+        TopicShards topic = topics.get(key);
+        if (topic == null) {
+            TopicShards created = new TopicShards();
+            topic = topics.putIfAbsent(key, created);
+            if (topic == null) {
+                topic = created;
+            }
+        }
+        if (System.currentTimeMillis() < topic.nextLoadTime) {
+            return topic.index;
+        }
+        synchronized (topic) {
+            long now = System.currentTimeMillis();
+            if (now < topic.nextLoadTime) {
+                return topic.index;
+            }
+            try {
+                topic.index = new ShardIndex(client.listShard(projectName, topicName).getShards());
+                topic.nextLoadTime = now + refreshIntervalMs;
+            } catch (Exception e) {
+                LOG.warn("list shard of " + key + " failed, records are routed by "
+                        + (topic.index == null ? "service" : "last shards"), e);
+                topic.nextLoadTime = now + Math.min(refreshIntervalMs, FAILED_LOAD_BACKOFF_MS);
+            }
+            return topic.index;
+        }
+    }
+
+    /**
+     * Parse a hash key of 32 hex digits to high and low 64 bits.
+     */
+    static long[] parseHashKey(String hashKey) {
+        if (hashKey.length() != 32) {
+            throw new DatahubClientException("Invalid Hash Key Range.");
+        }
+        return new long[]{parseHex(hashKey, 0), parseHex(hashKey, 16)};
+    }
+
+    private static long parseHex(String hashKey, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 16; ++i) {
+            int digit = Character.digit(hashKey.charAt(i), 16);
+            if (digit < 0) {
+                throw new DatahubClientException("Invalid Hash Key Range.");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Hash a partition key to high and low 64 bits of its md5 digest.
+     */
+    static long[] hashPartitionKey(String partitionKey) {
+        byte[] digest;
+        try {
+            digest = MD5.get().digest(partitionKey.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new DatahubClientException(e.getMessage(), e);
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; ++i) {
+            high = (high << 8) | (digest[i] & 0xFF);
+            low = (low << 8) | (digest[i + 8] & 0xFF);
+        }
+        return new long[]{high, low};
+    }
+
+    static int compare(long high1, long low1, long high2, long low2) {
+        if (high1 != high2) {
+            return (high1 + Long.MIN_VALUE) < (high2 + Long.MIN_VALUE) ? -1 : 1;
+        }
+        if (low1 != low2) {
+            return (low1 + Long.MIN_VALUE) < (low2 + Long.MIN_VALUE) ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Immutable index of active shards sorted by begin key.
+     */
+    private static class ShardIndex {
+        private final String[] shardIds;
+        private final long[] beginHigh;
+        private final long[] beginLow;
+        private final long[] endHigh;
+        private final long[] endLow;
+
+        ShardIndex(List<ShardEntry> shards) {
+            List<ShardEntry> active = new ArrayList<ShardEntry>();
+            for (ShardEntry shard : shards) {
+                if (shard.getState() == ShardState.ACTIVE && shard.getBeginHashKey() != null && shard.getEndHashKey() != null) {
+                    active.add(shard);
+                }
+            }
+            Collections.sort(active, new Comparator<ShardEntry>() {
+                @Override
+                public int compare(ShardEntry o1, ShardEntry o2) {
+                    long[] k1 = parseHashKey(o1.getBeginHashKey());
+                    long[] k2 = parseHashKey(o2.getBeginHashKey());
+                    return ShardRouter.compare(k1[0], k1[1], k2[0], k2[1]);
+                }
+            });
+            int size = active.size();
+            shardIds = new String[size];
+            beginHigh = new long[size];
+            beginLow = new long[size];
+            endHigh = new long[size];
+            endLow = new long[size];
+            for (int i = 0; i < size; ++i) {
+                ShardEntry shard = active.get(i);
+                long[] begin = parseHashKey(shard.getBeginHashKey());
+                long[] end = parseHashKey(shard.getEndHashKey());
+                shardIds[i] = shard.getShardId();
+                beginHigh[i] = begin[0];
+                beginLow[i] = begin[1];
+                endHigh[i] = end[0];
+                endLow[i] = end[1];
+            }
+        }
+
+        /**
+         * @return the shard whose range [begin, end) holds the key, null if none
+         */
+        String find(long high, long low) {
+            int lo = 0;
+            int hi = shardIds.length - 1;
+            int found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(beginHigh[mid], beginLow[mid], high, low) <= 0) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            if (found < 0) {
+                return null;
+            }
+            int toEnd = compare(high, low, endHigh[found], endLow[found]);
+            // the end of the last range is the max key, which belongs to it
+            if (toEnd > 0 || (toEnd == 0 && (endHigh[found] != -1L || endLow[found] != -1L))) {
+                return null;
+            }
+            return shardIds[found];
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.aliyun.datahub.model.compress;
+
+import com.aliyun.datahub.common.util.IdleEvictingMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects the codec of request bodies per topic.
+ *
+ * The ratio and time of every compressed body is kept as a moving average per
+ * codec. A body costs its compressed size plus the bytes the network could send
+ * during its compression, and the codec with the lowest cost per raw byte is
+ * used, or none if no codec beats sending the body as is. Every
+ * <code>sampleInterval</code> requests another codec is tried so the averages
+ * follow changes of data.
+ */
+public class AdaptiveCompressor {
+    private static final double WEIGHT = 0.2;
+    private static final int MIN_SAMPLES = 3;
+    private static final int MAX_KEYS = 4096;
+    private static final String TOPICS_SEGMENT = "/topics/";
+
+    private final CompressionOptions options;
+    private final List<CompressionFormat> formats;
+    private final double nanosPerByte;
+    private final IdleEvictingMap<String, TopicStats> stats = new IdleEvictingMap<String, TopicStats>(MAX_KEYS);
+
+    public AdaptiveCompressor(CompressionOptions options) {
+        this.options = options;
+        this.formats = availableFormats(options.getAdaptiveFormats());
+        this.nanosPerByte = 1e9 / options.getBandwidth();
+    }
+
+    private static List<CompressionFormat> availableFormats(List<CompressionFormat> formats) {
+        List<CompressionFormat> available = new ArrayList<CompressionFormat>();
+        for (CompressionFormat format : formats) {
+            if (Compression.isAvailable(format)) {
+                available.add(format);
+            }
+        }
+        if (available.isEmpty()) {
+            available.add(CompressionFormat.LZ4);
+        }
+        return available;
+    }
+
+    /**
+     * Select the codec of a body.
+     *
+     * @param resource The resource of request, bodies of one topic share statistics.
+     * @param size     The size of raw body.
+     * @return the codec, null to send the body as is
+     */
+    public CompressionFormat select(String resource, int size) {
+        if (size < options.getMinCompressSize()) {
+            return null;
+        }
+        return getStats(resource).select();
+    }
+
+    /**
+     * Record the result of a compressed body.
+     *
+     * @param resource       The resource of request.
+     * @param format         The codec used.
+     * @param rawSize        The size of raw body.
+     * @param compressedSize The size of compressed body.
+     * @param nanos          The time of compression in nanoseconds.
+     */
+    public void record(String resource, CompressionFormat format, int rawSize, int compressedSize, long nanos) {
+        if (rawSize <= 0) {
+            return;
+        }
+        getStats(resource).record(format, (double) compressedSize / rawSize, (double) nanos / rawSize);
+    }
+
+    /**
+     * @return the codec selected for resource without sampling, null if none
+     */
+    public CompressionFormat getSelected(String resource) {
+        return getStats(resource).best();
+    }
+
+    static String keyOf(String resource) {
+        if (resource == null) {
+            return "";
+        }
+        int topic = resource.indexOf(TOPICS_SEGMENT);
+        if (topic < 0) {
+            return "";
+        }
+        int end = resource.indexOf('/', topic + TOPICS_SEGMENT.length());
+        return end < 0 ? resource : resource.substring(0, end);
+    }
+
+    private TopicStats getStats(String resource) {
+        String key = keyOf(resource);
+        TopicStats topicStats = stats.get(key);
+        if (topicStats == null) {
+            topicStats = new TopicStats();
+            TopicStats old = stats.putIfAbsent(key, topicStats);
+            if (old != null) {
+                topicStats = old;
+            }
+        }
+        return topicStats;
+    }
+
+    private class TopicStats {
+        private final double[] costs = new double[formats.size()];
+        private final int[] samples = new int[formats.size()];
+        private long requests = 0;
+        private int nextSample = 0;
+
+        synchronized CompressionFormat select() {
+            ++requests;
+            for (int i = 0; i < formats.size(); ++i) {
+                if (samples[i] < MIN_SAMPLES) {
+                    return formats.get(i);
+                }
+            }
+            if (requests % options.getSampleInterval() == 0) {
+                nextSample = (nextSample + 1) % formats.size();
+                return formats.get(nextSample);
+            }
+            return best();
+        }
+
+        synchronized CompressionFormat best() {
+            int best = -1;
+            double bestCost = 1.0;
+            for (int i = 0; i < formats.size(); ++i) {
+                if (samples[i] > 0 && costs[i] < bestCost) {
+                    best = i;
+                    bestCost = costs[i];
+                }
+            }
+            return best < 0 ? null : formats.get(best);
+        }
+
+        synchronized void record(CompressionFormat format, double ratio, double nanosPerRawByte) {
+            int i = formats.indexOf(format);
+            if (i < 0) {
+                return;
+            }
+            // cost in bytes per raw byte, time is converted with the bandwidth
+            double cost = ratio + nanosPerRawByte / nanosPerByte;
+            if (samples[i] == 0) {
+                costs[i] = cost;
+            } else {
+                costs[i] += WEIGHT * (cost - costs[i]);
+            }
+            ++samples[i];
+        }
+    }
+}
@@ -1,96 +1,289 @@
 package com.aliyun.datahub.model.compress;
 
-import com.aliyun.datahub.common.transport.Headers;
-import com.aliyun.datahub.common.transport.Response;
 import com.aliyun.datahub.exception.DatahubClientException;
 import net.jpountz.lz4.*;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.zip.*;
 
+/**
+ * Codecs of request and response bodies.
+ *
+ * LZ4 compressor and decompressor are thread safe and shared, every thread
+ * keeps its own Deflater and Inflater which are reset between calls instead of
+ * being left to finalization. Zstd and snappy calls are stateless.
+ *
+ * Zstd and snappy need the optional dependencies zstd-jni and snappy-java,
+ * which run on Java 8 or later. See {@link #isAvailable(CompressionFormat)}.
+ */
 public class Compression {
+    private static final int MIN_BUFFER_SIZE = 512;
+
+    private static final LZ4Compressor LZ4_COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4SafeDecompressor LZ4_DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    private static final CompressionOptions DEFAULT_OPTIONS = new CompressionOptions();
+
     public static byte[] compress(byte[] data, CompressionFormat compressionFormat) {
-        if (compressionFormat.equals(CompressionFormat.LZ4)) {
-            return lz4Compress(data);
-        } else if (compressionFormat.equals(CompressionFormat.ZLIB)) {
-            try {
+        return compress(data, compressionFormat, DEFAULT_OPTIONS);
+    }
+
+    public static byte[] compress(byte[] data, CompressionFormat compressionFormat, CompressionOptions options) {
+        try {
+            if (compressionFormat.equals(CompressionFormat.LZ4)) {
+                return lz4Compress(data);
+            } else if (compressionFormat.equals(CompressionFormat.ZLIB)) {
                 return zlibCompress(data);
-            } catch (IOException e) {
-                throw new DatahubClientException(e.getMessage());
+            } else if (compressionFormat.equals(CompressionFormat.ZSTD)) {
+                try {
+                    return ZstdCodec.compress(data, options.getZstdLevel(), options.getZstdDictionary());
+                } catch (LinkageError e) {
+                    throw missingCodec(CompressionFormat.ZSTD, e);
+                }
+            } else if (compressionFormat.equals(CompressionFormat.SNAPPY)) {
+                return snappyCompress(data);
+            } else {
+                throw new DatahubClientException("Unsupported compression format.");
             }
-        } else {
-            throw new DatahubClientException("Unsupported compression format.");
+        } catch (IOException e) {
+            throw new DatahubClientException(e.getMessage());
         }
     }
 
     public static byte[] decompress(byte[] compressed, CompressionFormat compressionFormat) {
         if (compressionFormat.equals(CompressionFormat.LZ4)) {
             throw new DatahubClientException("raw size hint is missing.");
-        } else if (compressionFormat.equals(CompressionFormat.ZLIB)) {
-            try {
-                return zlibDecompress(compressed);
-            } catch (IOException e) {
-                throw new DatahubClientException(e.getMessage());
-            }
-        } else {
-            throw new DatahubClientException("Unsupported compression format.");
         }
+        return decompress(compressed, compressionFormat, 0, DEFAULT_OPTIONS);
     }
 
     public static byte[] decompress(byte[] compressed, CompressionFormat compressionFormat, int rawSizeHint) {
-        if (compressionFormat.equals(CompressionFormat.LZ4)) {
-            if (rawSizeHint <= 0 ) {
-                throw new DatahubClientException("Raw size is invalied:" + rawSizeHint);
-            }
-            return lz4Decompress(compressed, Integer.valueOf(rawSizeHint));
-        } else if (compressionFormat.equals(CompressionFormat.ZLIB)) {
-            try {
-                return zlibDecompress(compressed);
-            } catch (IOException e) {
-                throw new DatahubClientException(e.getMessage());
+        if (compressionFormat.equals(CompressionFormat.LZ4) && rawSizeHint <= 0) {
+            throw new DatahubClientException("Raw size is invalied:" + rawSizeHint);
+        }
+        return decompress(compressed, compressionFormat, rawSizeHint, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Decompress a body.
+     *
+     * @param compressed        The compressed data.
+     * @param compressionFormat The format of compressed data.
+     * @param rawSizeHint       The size of restored data, 0 if unknown, required by lz4.
+     * @param options           The options holding zstd dictionary.
+     * @return restored data
+     */
+    public static byte[] decompress(byte[] compressed, CompressionFormat compressionFormat, int rawSizeHint,
+                                    CompressionOptions options) {
+        try {
+            if (compressionFormat.equals(CompressionFormat.LZ4)) {
+                if (rawSizeHint <= 0) {
+                    throw new DatahubClientException("Raw size is invalied:" + rawSizeHint);
+                }
+                return lz4Decompress(compressed, rawSizeHint);
+            } else if (compressionFormat.equals(CompressionFormat.ZLIB)) {
+                return zlibDecompress(compressed, rawSizeHint);
+            } else if (compressionFormat.equals(CompressionFormat.ZSTD)) {
+                return zstdDecompress(compressed, rawSizeHint, options.getZstdDictionary());
+            } else if (compressionFormat.equals(CompressionFormat.SNAPPY)) {
+                return snappyDecompress(compressed);
+            } else {
+                throw new DatahubClientException("Unsupported compression format.");
             }
-        } else {
-            throw new DatahubClientException("Unsupported compression format.");
+        } catch (IOException e) {
+            throw new DatahubClientException(e.getMessage());
         }
     }
 
     public static byte[] lz4Compress(byte[] dataToCompress) {
-        LZ4Factory factory = LZ4Factory.fastestInstance();
-        LZ4Compressor compressor = factory.fastCompressor();
-        byte[] compressed = compressor.compress(dataToCompress);
-        return compressed;
+        return LZ4_COMPRESSOR.compress(dataToCompress);
     }
 
     public static byte[] lz4Decompress(byte[] compressed, int len) {
-        LZ4Factory factory = LZ4Factory.fastestInstance();
-        LZ4SafeDecompressor decompressor = factory.safeDecompressor();
         byte[] restored = new byte[len];
-        int size = decompressor.decompress(compressed, restored);
-        restored = Arrays.copyOf(restored, size);
-        return restored;
+        int size = lz4Decompress(compressed, restored, 0, len);
+        return size == len ? restored : Arrays.copyOf(restored, size);
+    }
+
+    /**
+     * Decompress lz4 data into a buffer supplied by caller.
+     *
+     * @param compressed The compressed data.
+     * @param dest       The buffer to write restored data.
+     * @param destOffset The offset of buffer to start writing.
+     * @param maxLen     The max length of restored data, usually the raw size.
+     * @return length of restored data
+     */
+    public static int lz4Decompress(byte[] compressed, byte[] dest, int destOffset, int maxLen) {
+        return LZ4_DECOMPRESSOR.decompress(compressed, 0, compressed.length, dest, destOffset, maxLen);
     }
 
     public static byte[] zlibCompress(byte[] dataToCompress) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
-        DeflaterOutputStream zlibStream = new DeflaterOutputStream(byteStream, deflater);
-        zlibStream.write(dataToCompress);
-        zlibStream.close();
-        byteStream.close();
-        byte[] compressedData = byteStream.toByteArray();
-        return compressedData;
+        Deflater deflater = DEFLATERS.get();
+        try {
+            deflater.setInput(dataToCompress);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(MIN_BUFFER_SIZE, dataToCompress.length / 2)];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                size += deflater.deflate(buffer, size, buffer.length - size);
+            }
+            deflater.reset();
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        } catch (RuntimeException e) {
+            discard(DEFLATERS, deflater);
+            throw e;
+        }
     }
 
     public static byte[] zlibDecompress(byte[] compressed) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        InflaterOutputStream zlibStream = new InflaterOutputStream(byteStream);
-        zlibStream.write(compressed);
-        zlibStream.close();
-        byteStream.close();
-        byte[] restored = byteStream.toByteArray();
-        return restored;
+        return zlibDecompress(compressed, 0);
+    }
+
+    /**
+     * Decompress zlib data, the output is allocated with the raw size if known.
+     *
+     * @param compressed  The compressed data.
+     * @param rawSizeHint The size of restored data, 0 if unknown.
+     * @return restored data
+     * @throws IOException if the data is corrupted
+     */
+    public static byte[] zlibDecompress(byte[] compressed, int rawSizeHint) throws IOException {
+        Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(compressed);
+            byte[] buffer = new byte[rawSizeHint > 0 ? rawSizeHint : Math.max(MIN_BUFFER_SIZE, compressed.length * 4)];
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int n = inflater.inflate(buffer, size, buffer.length - size);
+                if (n == 0 && inflater.needsDictionary()) {
+                    throw new ZipException("ZLIB dictionary missing");
+                }
+                if (n == 0 && inflater.needsInput()) {
+                    // truncated input, same as InflaterOutputStream which keeps what is restored
+                    break;
+                }
+                size += n;
+            }
+            inflater.reset();
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        } catch (DataFormatException e) {
+            discard(INFLATERS, inflater);
+            throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid ZLIB data format");
+        } catch (IOException e) {
+            discard(INFLATERS, inflater);
+            throw e;
+        } catch (RuntimeException e) {
+            discard(INFLATERS, inflater);
+            throw e;
+        }
+    }
+
+    /**
+     * Free native memory of a codec in unknown state, the thread gets a new one next time.
+     */
+    private static <T> void discard(ThreadLocal<T> codecs, T codec) {
+        codecs.remove();
+        if (codec instanceof Deflater) {
+            ((Deflater) codec).end();
+        } else if (codec instanceof Inflater) {
+            ((Inflater) codec).end();
+        }
+    }
+
+    /**
+     * @return true if the optional library of the format is on the class path
+     * and runs on this JVM, always true for lz4 and zlib
+     */
+    public static boolean isAvailable(CompressionFormat format) {
+        String className;
+        if (format.equals(CompressionFormat.ZSTD)) {
+            className = ZstdCodec.CLASS_NAME;
+        } else if (format.equals(CompressionFormat.SNAPPY)) {
+            className = SnappyCodec.CLASS_NAME;
+        } else {
+            return true;
+        }
+        try {
+            Class.forName(className, false, Compression.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            // e.g. UnsupportedClassVersionError before java 8
+            return false;
+        }
+    }
+
+    static DatahubClientException missingCodec(CompressionFormat format, LinkageError e) {
+        String artifact = format.equals(CompressionFormat.ZSTD) ? "com.github.luben:zstd-jni" : "org.xerial.snappy:snappy-java";
+        return new DatahubClientException(format + " compression needs the optional dependency " + artifact
+                + " and java 8 or later: " + e, e);
+    }
+
+    public static byte[] zstdCompress(byte[] dataToCompress, int level) {
+        try {
+            return ZstdCodec.compress(dataToCompress, level, null);
+        } catch (LinkageError e) {
+            throw missingCodec(CompressionFormat.ZSTD, e);
+        }
+    }
+
+    public static byte[] zstdDecompress(byte[] compressed, int rawSizeHint) throws IOException {
+        return zstdDecompress(compressed, rawSizeHint, null);
+    }
+
+    /**
+     * Decompress zstd data, the output size comes from hint or frame header.
+     *
+     * @param compressed  The compressed data.
+     * @param rawSizeHint The size of restored data, 0 if unknown.
+     * @param dictionary  The dictionary used by compression, null if none.
+     * @return restored data
+     * @throws IOException if the data is corrupted
+     */
+    public static byte[] zstdDecompress(byte[] compressed, int rawSizeHint, byte[] dictionary) throws IOException {
+        try {
+            return ZstdCodec.decompress(compressed, rawSizeHint, dictionary);
+        } catch (LinkageError e) {
+            throw missingCodec(CompressionFormat.ZSTD, e);
+        }
+    }
+
+    public static byte[] snappyCompress(byte[] dataToCompress) throws IOException {
+        try {
+            return SnappyCodec.compress(dataToCompress);
+        } catch (LinkageError e) {
+            throw missingCodec(CompressionFormat.SNAPPY, e);
+        }
+    }
+
+    public static byte[] snappyDecompress(byte[] compressed) throws IOException {
+        try {
+            return SnappyCodec.decompress(compressed);
+        } catch (LinkageError e) {
+            throw missingCodec(CompressionFormat.SNAPPY, e);
+        }
     }
 }
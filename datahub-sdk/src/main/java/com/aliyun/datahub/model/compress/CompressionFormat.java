@@ -2,7 +2,9 @@ package com.aliyun.datahub.model.compress;
 
 public enum CompressionFormat {
     ZLIB("deflate"),
-    LZ4("lz4");
+    LZ4("lz4"),
+    ZSTD("zstd"),
+    SNAPPY("snappy");
 
     private String value;
 
@@ -21,6 +23,10 @@ public enum CompressionFormat {
             return ZLIB;
         } else if (value.equals("lz4")) {
             return LZ4;
+        } else if (value.equals("zstd")) {
+            return ZSTD;
+        } else if (value.equals("snappy")) {
+            return SNAPPY;
         } else {
             throw new IllegalArgumentException("Unsupported compression format" + value);
         }
@@ -0,0 +1,118 @@
+package com.aliyun.datahub.model.compress;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options of body compression besides the format.
+ */
+public class CompressionOptions {
+    /** default zstd level, fast levels suit the small bodies of most requests */
+    public static final int DEFAULT_ZSTD_LEVEL = 1;
+
+    /** default size in bytes under which bodies are sent as is */
+    public static final int DEFAULT_MIN_COMPRESS_SIZE = 512;
+
+    /** default network bandwidth in bytes per second, used to weigh size against time */
+    public static final long DEFAULT_BANDWIDTH = 100L * 1024 * 1024;
+
+    /** default requests between two samples of a codec other than the selected one */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    /** default codecs tried by adaptive selection, those without their optional library are skipped */
+    public static final List<CompressionFormat> DEFAULT_ADAPTIVE_FORMATS = Collections.unmodifiableList(
+            Arrays.asList(CompressionFormat.LZ4, CompressionFormat.ZSTD, CompressionFormat.SNAPPY));
+
+    private int zstdLevel = DEFAULT_ZSTD_LEVEL;
+    private byte[] zstdDictionary = null;
+    private int minCompressSize = DEFAULT_MIN_COMPRESS_SIZE;
+    private boolean adaptive = false;
+    private List<CompressionFormat> adaptiveFormats = DEFAULT_ADAPTIVE_FORMATS;
+    private long bandwidth = DEFAULT_BANDWIDTH;
+    private int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    public void setZstdLevel(int zstdLevel) {
+        if (zstdLevel < -7 || zstdLevel > 22) {
+            throw new IllegalArgumentException("invalid zstd level: " + zstdLevel);
+        }
+        this.zstdLevel = zstdLevel;
+    }
+
+    public byte[] getZstdDictionary() {
+        return zstdDictionary;
+    }
+
+    /**
+     * Set the dictionary trained from typical bodies, the service must know it to decompress.
+     *
+     * The array is copied, later changes of it are not seen.
+     *
+     * @param zstdDictionary The dictionary, null to compress without dictionary.
+     */
+    public void setZstdDictionary(byte[] zstdDictionary) {
+        this.zstdDictionary = zstdDictionary == null ? null : zstdDictionary.clone();
+    }
+
+    public int getMinCompressSize() {
+        return minCompressSize;
+    }
+
+    public void setMinCompressSize(int minCompressSize) {
+        if (minCompressSize < 0) {
+            throw new IllegalArgumentException("invalid min compress size: " + minCompressSize);
+        }
+        this.minCompressSize = minCompressSize;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Select the codec per topic from sampled ratio and time of recent bodies,
+     * or skip compression when it does not pay off.
+     *
+     * @param adaptive true to enable adaptive selection.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public List<CompressionFormat> getAdaptiveFormats() {
+        return adaptiveFormats;
+    }
+
+    public void setAdaptiveFormats(List<CompressionFormat> adaptiveFormats) {
+        if (adaptiveFormats == null || adaptiveFormats.isEmpty()) {
+            throw new IllegalArgumentException("adaptive formats must not be empty");
+        }
+        this.adaptiveFormats = Collections.unmodifiableList(adaptiveFormats);
+    }
+
+    public long getBandwidth() {
+        return bandwidth;
+    }
+
+    public void setBandwidth(long bandwidth) {
+        if (bandwidth <= 0) {
+            throw new IllegalArgumentException("invalid bandwidth: " + bandwidth);
+        }
+        this.bandwidth = bandwidth;
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    public void setSampleInterval(int sampleInterval) {
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("invalid sample interval: " + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+    }
+}
@@ -0,0 +1,20 @@
+package com.aliyun.datahub.model.compress;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+
+/**
+ * Calls of the optional snappy-java library, only loaded when snappy is used.
+ */
+class SnappyCodec {
+    static final String CLASS_NAME = "org.xerial.snappy.Snappy";
+
+    static byte[] compress(byte[] data) throws IOException {
+        return Snappy.compress(data);
+    }
+
+    static byte[] decompress(byte[] compressed) throws IOException {
+        return Snappy.uncompress(compressed);
+    }
+}
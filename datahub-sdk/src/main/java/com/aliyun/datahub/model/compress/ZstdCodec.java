@@ -0,0 +1,81 @@
+package com.aliyun.datahub.model.compress;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+
+import java.io.IOException;
+import java.util.zip.ZipException;
+
+/**
+ * Calls of the optional zstd-jni library, only loaded when zstd is used.
+ *
+ * The digested dictionaries are kept for the last dictionary used, compared
+ * by identity, as options hold one dictionary array until it is replaced.
+ */
+class ZstdCodec {
+    static final String CLASS_NAME = "com.github.luben.zstd.Zstd";
+
+    private static class DictCompress {
+        private final byte[] dictionary;
+        private final int level;
+        private final ZstdDictCompress dict;
+
+        DictCompress(byte[] dictionary, int level) {
+            this.dictionary = dictionary;
+            this.level = level;
+            this.dict = new ZstdDictCompress(dictionary, level);
+        }
+    }
+
+    private static class DictDecompress {
+        private final byte[] dictionary;
+        private final ZstdDictDecompress dict;
+
+        DictDecompress(byte[] dictionary) {
+            this.dictionary = dictionary;
+            this.dict = new ZstdDictDecompress(dictionary);
+        }
+    }
+
+    private static volatile DictCompress lastCompress;
+    private static volatile DictDecompress lastDecompress;
+
+    static byte[] compress(byte[] data, int level, byte[] dictionary) {
+        if (dictionary == null) {
+            return Zstd.compress(data, level);
+        }
+        DictCompress cached = lastCompress;
+        if (cached == null || cached.dictionary != dictionary || cached.level != level) {
+            cached = new DictCompress(dictionary, level);
+            lastCompress = cached;
+        }
+        return Zstd.compress(data, cached.dict);
+    }
+
+    static byte[] decompress(byte[] compressed, int rawSizeHint, byte[] dictionary) throws IOException {
+        ZstdDictDecompress dict = null;
+        if (dictionary != null) {
+            DictDecompress cached = lastDecompress;
+            if (cached == null || cached.dictionary != dictionary) {
+                cached = new DictDecompress(dictionary);
+                lastDecompress = cached;
+            }
+            dict = cached.dict;
+        }
+        int size = rawSizeHint;
+        if (size <= 0) {
+            long frameSize = Zstd.getFrameContentSize(compressed);
+            if (frameSize < 0 || frameSize > Integer.MAX_VALUE) {
+                throw new ZipException("zstd content size is unknown");
+            }
+            size = (int) frameSize;
+        }
+        try {
+            return dict != null ? Zstd.decompress(compressed, dict, size) : Zstd.decompress(compressed, size);
+        } catch (ZstdException e) {
+            throw new ZipException(e.getMessage());
+        }
+    }
+}
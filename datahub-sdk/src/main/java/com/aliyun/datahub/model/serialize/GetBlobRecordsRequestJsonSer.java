@@ -20,6 +20,7 @@ public class GetBlobRecordsRequestJsonSer implements Serializer<DefaultRequest,
                 + request.getTopicName() + "/shards/" + request.getShardId());
 
         req.setHttpMethod(HttpMethod.POST);
+        req.setIdempotent(true);
 
         ObjectMapper mapper = new ObjectMapper();
         ObjectNode body = mapper.createObjectNode();
@@ -0,0 +1,54 @@
+package com.aliyun.datahub.model.serialize;
+
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.exception.DatahubClientException;
+import com.aliyun.datahub.model.BlobRecordEntry;
+import com.aliyun.datahub.model.GetBlobRecordsRequest;
+import com.aliyun.datahub.model.GetBlobRecordsResult;
+import org.codehaus.jackson.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Streaming version of {@link GetBlobRecordsResultJsonDeser}, record data is
+ * decoded from base64 straight out of the parser.
+ */
+public class GetBlobRecordsResultJsonStreamDeser implements Deserializer<GetBlobRecordsResult, GetBlobRecordsRequest, Response> {
+    @Override
+    public GetBlobRecordsResult deserialize(GetBlobRecordsRequest request, Response response) throws DatahubClientException {
+        if (!response.isOK()) {
+            throw JsonErrorParser.getInstance().parse(response);
+        }
+
+        RecordsJsonReader<BlobRecordEntry> reader = new RecordsJsonReader<BlobRecordEntry>() {
+            @Override
+            BlobRecordEntry newRecord() {
+                return new BlobRecordEntry();
+            }
+
+            @Override
+            void readData(JsonParser parser, BlobRecordEntry entry, Response response) throws IOException {
+                entry.setData(parser.getBinaryValue());
+            }
+        };
+        reader.read(response, request.getShardId());
+
+        GetBlobRecordsResult rs = new GetBlobRecordsResult();
+        rs.setNextCursor(reader.getNextCursor());
+        rs.setStartSeq(reader.getStartSeq());
+        rs.setRecords(reader.getRecords());
+        return rs;
+    }
+
+    private GetBlobRecordsResultJsonStreamDeser() {
+
+    }
+
+    private static GetBlobRecordsResultJsonStreamDeser instance;
+
+    public static GetBlobRecordsResultJsonStreamDeser getInstance() {
+        if (instance == null)
+            instance = new GetBlobRecordsResultJsonStreamDeser();
+        return instance;
+    }
+}
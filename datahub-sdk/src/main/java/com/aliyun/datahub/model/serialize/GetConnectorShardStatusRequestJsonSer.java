@@ -20,6 +20,7 @@ public class GetConnectorShardStatusRequestJsonSer implements Serializer<Default
                 + "/connectors/" + request.getConnectorType().toString().toLowerCase()
         );
         req.setHttpMethod(HttpMethod.POST);
+        req.setIdempotent(true);
 
         ObjectMapper mapper = JacksonParser.getObjectMapper();
         ObjectNode node = mapper.createObjectNode();
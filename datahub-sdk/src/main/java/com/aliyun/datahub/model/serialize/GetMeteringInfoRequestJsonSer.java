@@ -12,6 +12,7 @@ public class GetMeteringInfoRequestJsonSer implements Serializer<DefaultRequest,
         DefaultRequest req = new DefaultRequest();
 
         req.setHttpMethod(HttpMethod.POST);
+        req.setIdempotent(true);
         req.setResource("/projects/" + request.getProjectName() + "/topics/"
                 + request.getTopicName() + "/shards/" + request.getShardId());
 
@@ -19,6 +19,7 @@ public class GetRecordsRequestJsonSer implements Serializer<DefaultRequest, GetR
                 + request.getTopicName() + "/shards/" + request.getShardId());
 
         req.setHttpMethod(HttpMethod.POST);
+        req.setIdempotent(true);
 
         ObjectMapper mapper = new ObjectMapper();
         ObjectNode body = mapper.createObjectNode();
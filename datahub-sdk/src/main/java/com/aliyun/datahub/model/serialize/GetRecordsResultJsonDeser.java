@@ -11,6 +11,7 @@ import com.aliyun.datahub.exception.MalformedRecordException;
 import com.aliyun.datahub.model.GetRecordsRequest;
 import com.aliyun.datahub.model.GetRecordsResult;
 import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.model.RecordPool;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 
@@ -43,9 +44,11 @@ public class GetRecordsResultJsonDeser implements Deserializer<GetRecordsResult,
         JsonNode recordsNode = tree.get("Records");
 
         List<RecordEntry> records = new ArrayList<RecordEntry>();
+        RecordPool pool = request.getRecordPool();
         Iterator<JsonNode> itRecord = recordsNode.getElements();
         while (itRecord.hasNext()) {
-            RecordEntry entry = new RecordEntry(request.getSchema());
+            RecordEntry entry = pool != null ? pool.acquire(request.getSchema().getLayout())
+                    : new RecordEntry(request.getSchema());
             JsonNode record = itRecord.next();
             JsonNode time = record.get("SystemTime");
             JsonNode data = record.get("Data");
@@ -0,0 +1,109 @@
+package com.aliyun.datahub.model.serialize;
+
+import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldLayout;
+import com.aliyun.datahub.common.data.FieldType;
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.exception.DatahubClientException;
+import com.aliyun.datahub.exception.MalformedRecordException;
+import com.aliyun.datahub.model.GetRecordsRequest;
+import com.aliyun.datahub.model.GetRecordsResult;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.model.RecordPool;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Streaming version of {@link GetRecordsResultJsonDeser}, decodes field values
+ * straight from the parser against the schema resolved once per response.
+ */
+public class GetRecordsResultJsonStreamDeser implements Deserializer<GetRecordsResult, GetRecordsRequest, Response> {
+    @Override
+    public GetRecordsResult deserialize(GetRecordsRequest request, Response response) throws DatahubClientException {
+        if (!response.isOK()) {
+            throw JsonErrorParser.getInstance().parse(response);
+        }
+
+        final FieldLayout layout = request.getSchema().getLayout();
+        final Field[] fields = layout.getFields();
+        final RecordPool pool = request.getRecordPool();
+        RecordsJsonReader<RecordEntry> reader = new RecordsJsonReader<RecordEntry>() {
+            @Override
+            RecordEntry newRecord() {
+                return pool != null ? pool.acquire(layout) : new RecordEntry(layout);
+            }
+
+            @Override
+            void readData(JsonParser parser, RecordEntry entry, Response response) throws IOException {
+                if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    return;
+                }
+                int i = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    // fields more than schema are ignored, less than schema are null (maybe old data after append field)
+                    if (i < fields.length && parser.getCurrentToken() != JsonToken.VALUE_NULL) {
+                        readField(parser, entry, i, fields[i].getType(), response);
+                    }
+                    parser.skipChildren();
+                    ++i;
+                }
+            }
+        };
+        reader.read(response, request.getShardId());
+
+        GetRecordsResult rs = new GetRecordsResult();
+        rs.setNextCursor(reader.getNextCursor());
+        rs.setStartSeq(reader.getStartSeq());
+        rs.setRecords(reader.getRecords());
+        return rs;
+    }
+
+    private static void readField(JsonParser parser, RecordEntry entry, int i, FieldType type, Response response)
+            throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        try {
+            if (type == FieldType.BIGINT) {
+                entry.setBigint(i, token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue()
+                        : RecordsJsonReader.parseLong(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+            } else if (type == FieldType.TIMESTAMP) {
+                entry.setTimeStamp(i, token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue()
+                        : RecordsJsonReader.parseLong(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+            } else if (type == FieldType.DOUBLE) {
+                entry.setDouble(i, token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT
+                        ? parser.getDoubleValue() : Double.parseDouble(parser.getText()));
+            } else if (type == FieldType.DECIMAL) {
+                entry.setDecimal(i, new BigDecimal(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+            } else if (type == FieldType.STRING) {
+                entry.setString(i, parser.getText());
+            } else if (type == FieldType.BOOLEAN) {
+                String v = parser.getText();
+                if (v.equalsIgnoreCase("true") || v.equalsIgnoreCase("false")) {
+                    entry.setBoolean(i, Boolean.parseBoolean(v));
+                } else {
+                    throw new MalformedRecordException("invalid boolean value: " + v, response);
+                }
+            } else {
+                throw new MalformedRecordException("unsupported data type:" + type.name(), response);
+            }
+        } catch (NumberFormatException e) {
+            throw new MalformedRecordException(
+                    "invalid type cast:" + type.name() + "(" + parser.getText() + ")", response);
+        }
+    }
+
+    private GetRecordsResultJsonStreamDeser() {
+
+    }
+
+    private static GetRecordsResultJsonStreamDeser instance;
+
+    public static GetRecordsResultJsonStreamDeser getInstance() {
+        if (instance == null)
+            instance = new GetRecordsResultJsonStreamDeser();
+        return instance;
+    }
+}
@@ -444,7 +444,7 @@ public class JsonSerializerFactory implements SerializerFactory {
         return UpdateSubscriptionResultJsonDeser.getInstance();
     }
 
-    private JsonSerializerFactory() {
+    protected JsonSerializerFactory() {
     }
 
     private static JsonSerializerFactory instance;
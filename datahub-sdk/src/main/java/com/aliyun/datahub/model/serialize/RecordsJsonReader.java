@@ -0,0 +1,156 @@
+package com.aliyun.datahub.model.serialize;
+
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.common.util.JacksonParser;
+import com.aliyun.datahub.exception.DatahubClientException;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.model.Record;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read GetRecords response body token by token, without building a json tree.
+ *
+ * Subclasses create the record object and decode its "Data" value.
+ */
+abstract class RecordsJsonReader<T extends Record> {
+    private String nextCursor;
+    private long startSeq;
+    private final List<T> records = new ArrayList<T>();
+
+    abstract T newRecord();
+
+    /**
+     * Decode the "Data" value of one record, the parser is positioned at the first token of the value.
+     */
+    abstract void readData(JsonParser parser, T record, Response response) throws IOException;
+
+    String getNextCursor() {
+        return nextCursor;
+    }
+
+    long getStartSeq() {
+        return startSeq;
+    }
+
+    List<T> getRecords() {
+        return records;
+    }
+
+    void read(Response response, String shardId) throws DatahubClientException {
+        try {
+            JsonParser parser = JacksonParser.getObjectMapper().getJsonFactory().createJsonParser(response.getBody());
+            try {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException("json object expected", parser.getCurrentLocation());
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("NextCursor".equals(name)) {
+                        nextCursor = parser.getText();
+                    } else if ("StartSeq".equals(name)) {
+                        startSeq = readLong(parser);
+                    } else if ("Records".equals(name) && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            records.add(readRecord(parser, shardId, response));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+        } catch (JsonParseException e) {
+            throw new DatahubServiceException(
+                    "JsonParseError", "Parse body failed:" + e.getMessage(), response);
+        } catch (IOException e) {
+            throw new DatahubClientException("Decode records failed:" + e.getMessage(), e);
+        }
+
+        // StartSeq is not guaranteed to come before Records
+        long sequence = startSeq;
+        for (T record : records) {
+            record.setSequence(sequence++);
+        }
+    }
+
+    private T readRecord(JsonParser parser, String shardId, Response response) throws IOException {
+        T record = newRecord();
+        record.setShardId(shardId);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("SystemTime".equals(name)) {
+                record.setSystemTime(readLong(parser));
+            } else if ("Data".equals(name)) {
+                readData(parser, record, response);
+            } else if ("Attributes".equals(name) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.getCurrentName();
+                    parser.nextToken();
+                    record.putAttribute(key, parser.getText());
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return record;
+    }
+
+    /**
+     * @throws JsonParseException if the value is not a long, failing the whole body as malformed
+     */
+    private static long readLong(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        try {
+            return parseLong(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } catch (NumberFormatException e) {
+            throw new JsonParseException("invalid long value: " + parser.getText(), parser.getCurrentLocation());
+        }
+    }
+
+    /**
+     * Same as Long.parseLong, parse directly from parser buffer without creating a string.
+     */
+    static long parseLong(char[] chars, int offset, int length) throws NumberFormatException {
+        if (length <= 0) {
+            throw new NumberFormatException("empty number");
+        }
+        int i = offset;
+        int end = offset + length;
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        if (chars[i] == '-' || chars[i] == '+') {
+            negative = chars[i] == '-';
+            if (negative) {
+                limit = Long.MIN_VALUE;
+            }
+            if (++i == end) {
+                throw new NumberFormatException(new String(chars, offset, length));
+            }
+        }
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; ++i) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                throw new NumberFormatException(new String(chars, offset, length));
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException(new String(chars, offset, length));
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+}
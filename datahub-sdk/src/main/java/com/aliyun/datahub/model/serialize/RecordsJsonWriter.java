@@ -0,0 +1,95 @@
+package com.aliyun.datahub.model.serialize;
+
+import com.aliyun.datahub.common.transport.BodyWriter;
+import com.aliyun.datahub.common.util.JacksonParser;
+import com.aliyun.datahub.exception.DatahubClientException;
+import com.aliyun.datahub.model.Record;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Write PutRecords request body straight into a per thread buffer, the only
+ * copy made is the returned body. The body can also be streamed to the
+ * connection by {@link #writer(List)}.
+ */
+class RecordsJsonWriter {
+
+    /** buffer grown above this size is dropped after use, not kept by the thread */
+    private static final int MAX_RETAINED_SIZE = 8 * 1024 * 1024;
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private static class BodyBuffer extends ByteArrayOutputStream {
+        BodyBuffer() {
+            super(INITIAL_SIZE);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    private static final ThreadLocal<BodyBuffer> buffers = new ThreadLocal<BodyBuffer>() {
+        @Override
+        protected BodyBuffer initialValue() {
+            return new BodyBuffer();
+        }
+    };
+
+    private RecordsJsonWriter() {
+
+    }
+
+    static byte[] write(List<? extends Record> records) throws DatahubClientException {
+        BodyBuffer buffer = buffers.get();
+        buffer.reset();
+        try {
+            writeRecords(buffer, records);
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new DatahubClientException("serialize error", e);
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_SIZE) {
+                buffers.remove();
+            }
+        }
+    }
+
+    /**
+     * Body writing the records while it is sent, through the generator buffer
+     * only. The records must not be changed until the request is done.
+     */
+    static BodyWriter writer(final List<? extends Record> records) {
+        return new BodyWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                writeRecords(out, records);
+            }
+
+            @Override
+            public byte[] toByteArray() {
+                return write(records);
+            }
+        };
+    }
+
+    private static void writeRecords(OutputStream out, List<? extends Record> records) throws IOException {
+        JsonGenerator generator = JacksonParser.getObjectMapper().getJsonFactory()
+                .createJsonGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeStringField("Action", "pub");
+        generator.writeArrayFieldStart("Records");
+        for (Record record : records) {
+            record.writeJson(generator);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -0,0 +1,39 @@
+package com.aliyun.datahub.model.serialize;
+
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.model.GetBlobRecordsRequest;
+import com.aliyun.datahub.model.GetBlobRecordsResult;
+import com.aliyun.datahub.model.GetRecordsRequest;
+import com.aliyun.datahub.model.GetRecordsResult;
+
+/**
+ * Json serializer factory decoding GetRecords results with a streaming parser
+ * instead of a json tree, other methods are the same as {@link JsonSerializerFactory}.
+ *
+ * <pre>
+ * DatahubClient client = new DatahubClient(conf, StreamingJsonSerializerFactory.getInstance());
+ * </pre>
+ */
+public class StreamingJsonSerializerFactory extends JsonSerializerFactory {
+    @Override
+    public Deserializer<GetRecordsResult, GetRecordsRequest, Response> getGetRecordsResultDeser() {
+        return GetRecordsResultJsonStreamDeser.getInstance();
+    }
+
+    @Override
+    public Deserializer<GetBlobRecordsResult, GetBlobRecordsRequest, Response> getGetBlobRecordsResultDeser() {
+        return GetBlobRecordsResultJsonStreamDeser.getInstance();
+    }
+
+    protected StreamingJsonSerializerFactory() {
+    }
+
+    private static StreamingJsonSerializerFactory instance;
+
+    public static StreamingJsonSerializerFactory getInstance() {
+        if (instance == null) {
+            instance = new StreamingJsonSerializerFactory();
+        }
+        return instance;
+    }
+}
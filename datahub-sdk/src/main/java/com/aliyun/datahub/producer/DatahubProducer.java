@@ -0,0 +1,459 @@
+package com.aliyun.datahub.producer;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.common.util.NamedThreadFactory;
+import com.aliyun.datahub.exception.DatahubClientException;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.model.BlobRecordEntry;
+import com.aliyun.datahub.model.ErrorEntry;
+import com.aliyun.datahub.model.PutBlobRecordsResult;
+import com.aliyun.datahub.model.PutRecordsResult;
+import com.aliyun.datahub.model.Record;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.model.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous producer writing records through {@link DatahubClient}.
+ *
+ * Records are buffered per project, topic and shard (records without shard id
+ * share one buffer per topic and are routed by service, unless
+ * <code>routeByKey</code> finds the shard of keyed records by
+ * {@link ShardRouter}), and sent as one
+ * PutRecords request once the batch reaches the record count or byte threshold,
+ * or has waited for the linger time. Batches of different shards are sent in
+ * parallel by up to <code>maxInFlightRequests</code> threads, batches of the same
+ * shard are sent one after another to keep the write order.
+ *
+ * Records failed with a retryable error, e.g. LimitExceeded, are batched again
+ * with the records buffered for their shard, and the shard backs off before
+ * its next batch is sent, see {@link ProducerConfiguration#setRetryPolicy}.
+ *
+ * The producer is thread safe, and should be closed to flush buffered records.
+ */
+public class DatahubProducer {
+    private static final Logger LOG = LoggerFactory.getLogger(DatahubProducer.class);
+    private static final String INVALID_SHARD_OPERATION = "InvalidShardOperation";
+
+    /**
+     * Buffer of one project/topic/shard, all fields are guarded by the queue itself.
+     */
+    private static class BatchQueue {
+        private RecordBatch open;
+        private final LinkedList<RecordBatch> ready = new LinkedList<RecordBatch>();
+        private RecordBatch sending;
+        private long retryAt = 0;
+        private int failures = 0;
+        private boolean retryScheduled = false;
+    }
+
+    private final DatahubClient client;
+    private final boolean ownsClient;
+    private final ProducerConfiguration conf;
+    private final ConcurrentHashMap<String, BatchQueue> queues = new ConcurrentHashMap<String, BatchQueue>();
+    private final ExecutorService sender;
+    private final ScheduledExecutorService lingerTimer;
+    private final Semaphore bufferedBytes;
+    private final ShardRouter router;
+    private volatile boolean closed = false;
+
+    /**
+     * Construct a producer with default options, the producer owns a new client.
+     *
+     * @param conf The client configuration options.
+     */
+    public DatahubProducer(DatahubConfiguration conf) {
+        this(new DatahubClient(conf), new ProducerConfiguration(), true);
+    }
+
+    /**
+     * Construct a producer on an existing client, the client is not closed with producer.
+     *
+     * @param client       The client to send requests.
+     * @param producerConf The producer options.
+     */
+    public DatahubProducer(DatahubClient client, ProducerConfiguration producerConf) {
+        this(client, producerConf, false);
+    }
+
+    private DatahubProducer(DatahubClient client, ProducerConfiguration producerConf, boolean ownsClient) {
+        if (client == null || producerConf == null) {
+            throw new IllegalArgumentException("client and producer configuration must not be null");
+        }
+        this.client = client;
+        this.conf = producerConf;
+        this.ownsClient = ownsClient;
+        this.bufferedBytes = new Semaphore((int) producerConf.getMaxBufferedBytes());
+        this.router = producerConf.isRouteByKey()
+                ? new ShardRouter(client, producerConf.getShardRefreshIntervalMs()) : null;
+        this.sender = Executors.newFixedThreadPool(producerConf.getMaxInFlightRequests(),
+                new NamedThreadFactory("datahub-producer-sender"));
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("datahub-producer-linger"));
+
+        long period = Math.max(1, producerConf.getLingerMs() / 2);
+        lingerTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sealExpired(System.currentTimeMillis());
+                } catch (Throwable e) {
+                    LOG.error("seal expired batches failed", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Append a tuple record into buffer. The call blocks only when buffered
+     * record bytes exceed <code>maxBufferedBytes</code>.
+     *
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic.
+     * @param record      The record to write.
+     * @return future completed once the record is written, or failed with the
+     *         error returned by service.
+     */
+    public Future<RecordEntry> send(String projectName, String topicName, RecordEntry record) {
+        return append(projectName, topicName, record, false);
+    }
+
+    /**
+     * Append a blob record into buffer. The call blocks only when buffered
+     * record bytes exceed <code>maxBufferedBytes</code>.
+     *
+     * @param projectName The name of the project.
+     * @param topicName   The name of the topic.
+     * @param record      The record to write.
+     * @return future completed once the record is written, or failed with the
+     *         error returned by service.
+     */
+    public Future<BlobRecordEntry> send(String projectName, String topicName, BlobRecordEntry record) {
+        return append(projectName, topicName, record, true);
+    }
+
+    /**
+     * Send all buffered records and wait until they are acknowledged.
+     */
+    public void flush() {
+        boolean retried = true;
+        while (retried) {
+            List<RecordBatch> pending = new ArrayList<RecordBatch>();
+            for (BatchQueue queue : queues.values()) {
+                synchronized (queue) {
+                    seal(queue);
+                    if (queue.sending != null) {
+                        pending.add(queue.sending);
+                    }
+                    pending.addAll(queue.ready);
+                }
+                drain(queue);
+            }
+            retried = false;
+            try {
+                for (RecordBatch batch : pending) {
+                    batch.await();
+                    // records moved to batches not known yet
+                    retried |= batch.isRetried();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatahubClientException("flush interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Flush buffered records and release sender threads. Records still buffered
+     * after the final flush, e.g. if it is interrupted, are failed.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        // appends check the flag with their queue locked, so nothing is buffered
+        // into a queue after flush has sealed it
+        try {
+            flush();
+        } finally {
+            lingerTimer.shutdownNow();
+            sender.shutdown();
+            try {
+                sender.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            abortPending();
+            if (ownsClient) {
+                client.close();
+            }
+        }
+    }
+
+    private void abortPending() {
+        DatahubClientException error = new DatahubClientException("producer is closed");
+        for (BatchQueue queue : queues.values()) {
+            List<RecordBatch> pending = new ArrayList<RecordBatch>();
+            synchronized (queue) {
+                seal(queue);
+                pending.addAll(queue.ready);
+                queue.ready.clear();
+            }
+            for (RecordBatch batch : pending) {
+                abort(batch, error);
+            }
+        }
+    }
+
+    private void abort(RecordBatch batch, Throwable error) {
+        batch.abort(error);
+        bufferedBytes.release(batch.getPermits());
+    }
+
+    private <T extends Record> Future<T> append(String projectName, String topicName, T record, boolean blob) {
+        if (closed) {
+            throw new DatahubClientException("producer is closed");
+        }
+        if (record == null) {
+            throw new IllegalArgumentException("record must not be null");
+        }
+
+        // routing rejects invalid hash keys, before buffer space is taken
+        String shardId = router != null ? router.route(projectName, topicName, record) : record.getShardId();
+        long size = record.getRecordSize();
+        int permits = (int) Math.min(size, conf.getMaxBufferedBytes());
+        try {
+            bufferedBytes.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatahubClientException("send interrupted", e);
+        }
+
+        RecordFuture<T> future = new RecordFuture<T>(record, size, permits);
+        BatchQueue queue = getQueue(projectName, topicName, shardId, blob);
+        synchronized (queue) {
+            if (closed) {
+                bufferedBytes.release(permits);
+                throw new DatahubClientException("producer is closed");
+            }
+            if (queue.open != null && !queue.open.hasRoomFor(size, conf)) {
+                seal(queue);
+            }
+            if (queue.open == null) {
+                queue.open = new RecordBatch(projectName, topicName, blob);
+            }
+            queue.open.append(future);
+            if (queue.open.isFull(conf) || conf.getLingerMs() == 0) {
+                seal(queue);
+            }
+        }
+        drain(queue);
+        return future;
+    }
+
+    private BatchQueue getQueue(String projectName, String topicName, String shardId, boolean blob) {
+        String key = projectName + "/" + topicName + "/" + (shardId == null ? "" : shardId) + (blob ? "/blob" : "");
+        BatchQueue queue = queues.get(key);
+        if (queue == null) {
+            BatchQueue created = new BatchQueue();
+            queue = queues.putIfAbsent(key, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Move the open batch to ready list, must be called with queue locked.
+     */
+    private void seal(BatchQueue queue) {
+        if (queue.open != null) {
+            queue.ready.add(queue.open);
+            queue.open = null;
+        }
+    }
+
+    private void sealExpired(long now) {
+        for (BatchQueue queue : queues.values()) {
+            synchronized (queue) {
+                if (queue.open != null && queue.open.isExpired(now, conf)) {
+                    seal(queue);
+                }
+            }
+            drain(queue);
+        }
+    }
+
+    /**
+     * Submit the next ready batch of the queue if none of its batches is in
+     * flight, and the queue is not backing off.
+     */
+    private void drain(final BatchQueue queue) {
+        final RecordBatch batch;
+        synchronized (queue) {
+            if (queue.sending != null || queue.ready.isEmpty()) {
+                return;
+            }
+            long delay = queue.retryAt - System.currentTimeMillis();
+            if (delay > 0) {
+                if (!queue.retryScheduled) {
+                    try {
+                        lingerTimer.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                synchronized (queue) {
+                                    queue.retryScheduled = false;
+                                }
+                                drain(queue);
+                            }
+                        }, delay, TimeUnit.MILLISECONDS);
+                        queue.retryScheduled = true;
+                    } catch (RejectedExecutionException e) {
+                        // closing, batches left are failed by close
+                    }
+                }
+                return;
+            }
+            batch = queue.ready.poll();
+            queue.sending = batch;
+        }
+        try {
+            sender.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int released = batch.getPermits();
+                    try {
+                        released = sendBatch(queue, batch);
+                    } finally {
+                        bufferedBytes.release(released);
+                        synchronized (queue) {
+                            queue.sending = null;
+                        }
+                        drain(queue);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (queue) {
+                queue.sending = null;
+            }
+            abort(batch, new DatahubClientException("producer is closed", e));
+        }
+    }
+
+    /**
+     * Send the batch and complete its records, records to retry are queued again.
+     *
+     * @return buffer permits of the records completed
+     */
+    private int sendBatch(BatchQueue queue, RecordBatch batch) {
+        List<RecordFuture<? extends Record>> retry;
+        try {
+            if (batch.isBlob()) {
+                PutBlobRecordsResult result = client.putBlobRecords(batch.getProjectName(), batch.getTopicName(),
+                        batch.getRecords(BlobRecordEntry.class));
+                checkShardErrors(batch, result.getFailedRecordError());
+                retry = batch.complete(result.getFailedRecords(), result.getFailedRecordError(), conf);
+            } else {
+                PutRecordsResult result = client.putRecords(batch.getProjectName(), batch.getTopicName(),
+                        batch.getRecords(RecordEntry.class));
+                checkShardErrors(batch, result.getFailedRecordError());
+                retry = batch.complete(result.getFailedRecords(), result.getFailedRecordError(), conf);
+            }
+        } catch (Throwable e) {
+            LOG.error("put records to " + batch.getProjectName() + "/" + batch.getTopicName() + " failed", e);
+            if (e instanceof DatahubServiceException
+                    && INVALID_SHARD_OPERATION.equals(((DatahubServiceException) e).getErrorCode())) {
+                invalidateShards(batch);
+            }
+            retry = batch.fail(e, conf);
+        }
+
+        int permits = batch.getPermits();
+        for (RecordFuture<? extends Record> future : retry) {
+            permits -= future.getPermits();
+        }
+        synchronized (queue) {
+            if (retry.isEmpty()) {
+                queue.failures = 0;
+            } else {
+                requeue(queue, batch, retry);
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Batch retried records again with the records buffered, and back off the
+     * queue. Must be called with queue locked.
+     */
+    private void requeue(BatchQueue queue, RecordBatch failed, List<RecordFuture<? extends Record>> retry) {
+        List<RecordFuture<? extends Record>> pending = new ArrayList<RecordFuture<? extends Record>>();
+        if (conf.isKeepKeyOrder()) {
+            pending.addAll(retry);
+        }
+        for (RecordBatch batch : queue.ready) {
+            pending.addAll(batch.getFutures());
+            batch.moved();
+        }
+        if (queue.open != null) {
+            pending.addAll(queue.open.getFutures());
+            queue.open.moved();
+        }
+        if (!conf.isKeepKeyOrder()) {
+            pending.addAll(retry);
+        }
+        queue.ready.clear();
+        queue.open = null;
+        for (RecordFuture<? extends Record> future : pending) {
+            if (queue.open != null && !queue.open.hasRoomFor(future.getSize(), conf)) {
+                seal(queue);
+            }
+            if (queue.open == null) {
+                queue.open = new RecordBatch(failed.getProjectName(), failed.getTopicName(), failed.isBlob());
+            }
+            queue.open.append(future);
+        }
+        seal(queue);
+        queue.retryAt = System.currentTimeMillis()
+                + conf.getRetryPolicy().getRetryDelay(failed.getRetryCause(), queue.failures++);
+    }
+
+    /**
+     * Reload shards of the topic when records were written to a closed shard.
+     */
+    private void checkShardErrors(RecordBatch batch, List<ErrorEntry> errors) {
+        if (errors == null) {
+            return;
+        }
+        for (ErrorEntry error : errors) {
+            if (INVALID_SHARD_OPERATION.equals(error.getErrorcode())) {
+                invalidateShards(batch);
+                return;
+            }
+        }
+    }
+
+    private void invalidateShards(RecordBatch batch) {
+        if (router != null) {
+            router.invalidate(batch.getProjectName(), batch.getTopicName());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.aliyun.datahub.producer;
+
+import com.aliyun.datahub.model.ShardRouter;
+import com.aliyun.datahub.retry.RecordRetryPolicy;
+
+/**
+ * Options of {@link DatahubProducer}.
+ *
+ * A batch is sent as soon as one of the record count, record bytes or linger
+ * time thresholds is reached.
+ */
+public class ProducerConfiguration {
+
+    /** default max record count of one PutRecords request */
+    public static final int DEFAULT_MAX_BATCH_RECORDS = 1000;
+
+    /** default max record bytes of one PutRecords request, see Record.getRecordSize() */
+    public static final long DEFAULT_MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    /** default time a record may wait in buffer before its batch is sent, in milliseconds */
+    public static final long DEFAULT_LINGER_MS = 100;
+
+    /** default count of PutRecords requests in flight */
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 4;
+
+    /** default max record bytes buffered or in flight, writers block above it */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    /** default retry count of records failed with a retryable error */
+    public static final int DEFAULT_RETRIES = 3;
+
+    /** default interval to reload shards when records are routed by client */
+    public static final long DEFAULT_SHARD_REFRESH_INTERVAL_MS = ShardRouter.DEFAULT_REFRESH_INTERVAL_MS;
+
+    private int maxBatchRecords = DEFAULT_MAX_BATCH_RECORDS;
+    private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private long lingerMs = DEFAULT_LINGER_MS;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private long maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+    private int retries = DEFAULT_RETRIES;
+    private RecordRetryPolicy retryPolicy = new RecordRetryPolicy();
+    private boolean keepKeyOrder = false;
+    private boolean routeByKey = false;
+    private long shardRefreshIntervalMs = DEFAULT_SHARD_REFRESH_INTERVAL_MS;
+
+    public int getMaxBatchRecords() {
+        return maxBatchRecords;
+    }
+
+    public void setMaxBatchRecords(int maxBatchRecords) {
+        if (maxBatchRecords <= 0) {
+            throw new IllegalArgumentException("invalid max batch records: " + maxBatchRecords);
+        }
+        this.maxBatchRecords = maxBatchRecords;
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("invalid max batch bytes: " + maxBatchBytes);
+        }
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    public void setLingerMs(long lingerMs) {
+        if (lingerMs < 0) {
+            throw new IllegalArgumentException("invalid linger time: " + lingerMs);
+        }
+        this.lingerMs = lingerMs;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        if (maxInFlightRequests <= 0) {
+            throw new IllegalArgumentException("invalid max in flight requests: " + maxInFlightRequests);
+        }
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public long getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    public void setMaxBufferedBytes(long maxBufferedBytes) {
+        if (maxBufferedBytes <= 0 || maxBufferedBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid max buffered bytes: " + maxBufferedBytes);
+        }
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("invalid retries: " + retries);
+        }
+        this.retries = retries;
+    }
+
+    public RecordRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Policy deciding which failed records are sent again, and how long their
+     * shard backs off before.
+     */
+    public void setRetryPolicy(RecordRetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retry policy must not be null");
+        }
+        this.retryPolicy = retryPolicy;
+    }
+
+    public boolean isKeepKeyOrder() {
+        return keepKeyOrder;
+    }
+
+    /**
+     * Send retried records of a shard ahead of the records buffered after
+     * them, so records of a partition key sent later are not written before a
+     * retried one. By default retried records are batched behind the records
+     * buffered meanwhile.
+     */
+    public void setKeepKeyOrder(boolean keepKeyOrder) {
+        this.keepKeyOrder = keepKeyOrder;
+    }
+
+    public boolean isRouteByKey() {
+        return routeByKey;
+    }
+
+    /**
+     * Find the shard of records with partition key or hash key on client, so
+     * records of one shard are batched together and written in order.
+     *
+     * @param routeByKey true to route by {@link ShardRouter}, which needs permission to list shards.
+     */
+    public void setRouteByKey(boolean routeByKey) {
+        this.routeByKey = routeByKey;
+    }
+
+    public long getShardRefreshIntervalMs() {
+        return shardRefreshIntervalMs;
+    }
+
+    public void setShardRefreshIntervalMs(long shardRefreshIntervalMs) {
+        if (shardRefreshIntervalMs <= 0) {
+            throw new IllegalArgumentException("invalid shard refresh interval: " + shardRefreshIntervalMs);
+        }
+        this.shardRefreshIntervalMs = shardRefreshIntervalMs;
+    }
+}
@@ -0,0 +1,200 @@
+package com.aliyun.datahub.producer;
+
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.model.ErrorEntry;
+import com.aliyun.datahub.model.Record;
+import com.aliyun.datahub.retry.RecordRetryPolicy;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Records of one project/topic/shard collected into a single PutRecords request.
+ */
+class RecordBatch {
+    private final String projectName;
+    private final String topicName;
+    private final boolean blob;
+    private final long createTime;
+    private final List<Record> records = new ArrayList<Record>();
+    private final List<RecordFuture<? extends Record>> futures = new ArrayList<RecordFuture<? extends Record>>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private long bytes = 0;
+    private int permits = 0;
+    private volatile boolean retried = false;
+    private ErrorEntry retryCause;
+
+    RecordBatch(String projectName, String topicName, boolean blob) {
+        this.projectName = projectName;
+        this.topicName = topicName;
+        this.blob = blob;
+        this.createTime = System.currentTimeMillis();
+    }
+
+    void append(RecordFuture<? extends Record> future) {
+        records.add(future.getRecord());
+        futures.add(future);
+        bytes += future.getSize();
+        permits += future.getPermits();
+    }
+
+    boolean isFull(ProducerConfiguration conf) {
+        return records.size() >= conf.getMaxBatchRecords() || bytes >= conf.getMaxBatchBytes();
+    }
+
+    /**
+     * Check whether one more record of the given size still fits, an empty batch
+     * always accepts the record so that an oversized record is sent alone.
+     */
+    boolean hasRoomFor(long size, ProducerConfiguration conf) {
+        return records.isEmpty()
+                || (records.size() < conf.getMaxBatchRecords() && bytes + size <= conf.getMaxBatchBytes());
+    }
+
+    boolean isExpired(long now, ProducerConfiguration conf) {
+        return now - createTime >= conf.getLingerMs();
+    }
+
+    String getProjectName() {
+        return projectName;
+    }
+
+    String getTopicName() {
+        return topicName;
+    }
+
+    boolean isBlob() {
+        return blob;
+    }
+
+    List<Record> getRecords() {
+        return records;
+    }
+
+    /**
+     * Records of the batch without copying, all records of one batch have the type of its topic.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Record> List<T> getRecords(Class<T> type) {
+        return (List<T>) (List<?>) records;
+    }
+
+    int getPermits() {
+        return permits;
+    }
+
+    List<RecordFuture<? extends Record>> getFutures() {
+        return futures;
+    }
+
+    /**
+     * Complete every record future, the failed ones with the error returned by
+     * service unless the error is retryable and the record has retries left.
+     *
+     * @param failedRecords records failed
+     * @param errors        errors of failed records, in the same order
+     * @return futures of records to send again
+     */
+    List<RecordFuture<? extends Record>> complete(List<? extends Record> failedRecords, List<ErrorEntry> errors,
+                                                  ProducerConfiguration conf) {
+        Map<Record, ErrorEntry> failed = new IdentityHashMap<Record, ErrorEntry>();
+        for (int i = 0; i < failedRecords.size(); ++i) {
+            failed.put(failedRecords.get(i), i < errors.size() ? errors.get(i) : null);
+        }
+        List<RecordFuture<? extends Record>> retry = new ArrayList<RecordFuture<? extends Record>>();
+        for (RecordFuture<? extends Record> future : futures) {
+            if (failed.containsKey(future.getRecord())) {
+                ErrorEntry error = failed.get(future.getRecord());
+                if (retry(future, error, conf)) {
+                    retry.add(future);
+                    continue;
+                }
+                DatahubServiceException e = new DatahubServiceException(
+                        error != null ? error.getMessage() : "put record failed");
+                if (error != null) {
+                    e.setErrorCode(error.getErrorcode());
+                }
+                future.fail(e);
+            } else {
+                future.complete();
+            }
+        }
+        retried = !retry.isEmpty();
+        done.countDown();
+        return retry;
+    }
+
+    /**
+     * Fail every record future, unless the error is retryable and the record has retries left.
+     *
+     * @return futures of records to send again
+     */
+    List<RecordFuture<? extends Record>> fail(Throwable error, ProducerConfiguration conf) {
+        ErrorEntry entry = null;
+        if (error instanceof DatahubServiceException && ((DatahubServiceException) error).getErrorCode() != null) {
+            entry = new ErrorEntry(((DatahubServiceException) error).getErrorCode(), error.getMessage());
+        }
+        List<RecordFuture<? extends Record>> retry = new ArrayList<RecordFuture<? extends Record>>();
+        for (RecordFuture<? extends Record> future : futures) {
+            if (retry(future, entry, conf)) {
+                retry.add(future);
+            } else {
+                future.fail(error);
+            }
+        }
+        retried = !retry.isEmpty();
+        done.countDown();
+        return retry;
+    }
+
+    /**
+     * Fail every record future without retry, the batch is not sent any more.
+     */
+    void abort(Throwable error) {
+        for (RecordFuture<? extends Record> future : futures) {
+            future.fail(error);
+        }
+        done.countDown();
+    }
+
+    /**
+     * Give up the batch, its records were moved to other batches.
+     */
+    void moved() {
+        retried = true;
+        done.countDown();
+    }
+
+    private boolean retry(RecordFuture<? extends Record> future, ErrorEntry error, ProducerConfiguration conf) {
+        RecordRetryPolicy policy = conf.getRetryPolicy();
+        if (!policy.isRetryable(error) || future.getAttempts() >= conf.getRetries()) {
+            return false;
+        }
+        future.onRetry();
+        if (retryCause == null || (!policy.isThrottled(retryCause) && policy.isThrottled(error))) {
+            retryCause = error;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if records of the batch are sent again by other batches
+     */
+    boolean isRetried() {
+        return retried;
+    }
+
+    /**
+     * @return error deciding the backoff before records are sent again, throttling first
+     */
+    ErrorEntry getRetryCause() {
+        return retryCause;
+    }
+
+    void await() throws InterruptedException {
+        done.await();
+    }
+}
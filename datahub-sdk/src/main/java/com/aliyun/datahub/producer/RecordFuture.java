@@ -0,0 +1,97 @@
+package com.aliyun.datahub.producer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of one record handed to {@link DatahubProducer}, completed by the
+ * sender thread once the batch holding the record is acknowledged.
+ */
+class RecordFuture<T> implements Future<T> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final T record;
+    private final long size;
+    private final int permits;
+    private int attempts = 0;
+    private volatile Throwable error;
+
+    RecordFuture(T record, long size, int permits) {
+        this.record = record;
+        this.size = size;
+        this.permits = permits;
+    }
+
+    T getRecord() {
+        return record;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return buffer permits held until the record is completed
+     */
+    int getPermits() {
+        return permits;
+    }
+
+    /**
+     * @return count of re-sends of the record so far
+     */
+    int getAttempts() {
+        return attempts;
+    }
+
+    void onRetry() {
+        ++attempts;
+    }
+
+    void complete() {
+        done.countDown();
+    }
+
+    void fail(Throwable error) {
+        this.error = error;
+        done.countDown();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("record is not acknowledged in " + unit.toMillis(timeout) + " ms");
+        }
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return record;
+    }
+}
@@ -0,0 +1,141 @@
+package com.aliyun.datahub.ratelimit;
+
+/**
+ * Token bucket whose rate follows additive increase, multiplicative decrease:
+ * it is cut when the service throttles and probes back up while requests
+ * succeed. The bucket holds at most one second of permits.
+ *
+ * Thread safe, waiting callers are served in order of arrival.
+ */
+public class AimdRateLimiter {
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final double minRate;
+    private final double maxRate;
+    private final double increase;
+    private final double decreaseFactor;
+    private final long decreaseIntervalNanos;
+
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+
+    // permits taken in the current and the last second, the rate is cut from what was really sent
+    private long windowStartNanos;
+    private int windowCount = 0;
+    private double lastWindowRate = 0;
+
+    /**
+     * @param initialRate        The permits per second to start with.
+     * @param minRate            The lowest permits per second.
+     * @param maxRate            The highest permits per second.
+     * @param increase           The permits per second added by every second of successful requests.
+     * @param decreaseFactor     The factor applied to the rate on throttling, between 0 and 1.
+     * @param decreaseIntervalMs The time after a cut in which more throttling is taken as the same signal.
+     */
+    public AimdRateLimiter(double initialRate, double minRate, double maxRate, double increase,
+                           double decreaseFactor, long decreaseIntervalMs) {
+        if (minRate <= 0 || maxRate < minRate || initialRate < minRate || initialRate > maxRate) {
+            throw new IllegalArgumentException("invalid rates: initial " + initialRate + ", min " + minRate + ", max " + maxRate);
+        }
+        if (increase < 0) {
+            throw new IllegalArgumentException("invalid rate increase: " + increase);
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("invalid rate decrease factor: " + decreaseFactor);
+        }
+        if (decreaseIntervalMs < 0) {
+            throw new IllegalArgumentException("invalid rate decrease interval: " + decreaseIntervalMs);
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.increase = increase;
+        this.decreaseFactor = decreaseFactor;
+        this.decreaseIntervalNanos = decreaseIntervalMs * 1000000L;
+        this.rate = initialRate;
+        this.tokens = Math.max(1, initialRate);
+        long now = System.nanoTime();
+        this.lastRefillNanos = now;
+        this.lastDecreaseNanos = now - decreaseIntervalNanos;
+        this.windowStartNanos = now;
+    }
+
+    /**
+     * Wait until a permit is available. An interrupted wait returns at once,
+     * with the interrupt flag set.
+     */
+    public void acquire() {
+        long waitNanos = reserve(System.nanoTime());
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Take a permit, possibly ahead of time.
+     *
+     * @return nanoseconds to wait until the permit is due
+     */
+    synchronized long reserve(long now) {
+        refill(now);
+        count(now);
+        ++windowCount;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * NANOS_PER_SECOND);
+    }
+
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + increase / Math.max(rate, 1));
+    }
+
+    /**
+     * Cut the rate, at most once per decrease interval as requests in flight
+     * are throttled together.
+     */
+    public synchronized void onThrottle() {
+        onThrottle(System.nanoTime());
+    }
+
+    synchronized void onThrottle(long now) {
+        if (now - lastDecreaseNanos < decreaseIntervalNanos) {
+            return;
+        }
+        refill(now);
+        count(now);
+        // without a full second measured the cut starts from the allowed rate
+        double base = lastWindowRate > 0 ? Math.min(rate, lastWindowRate) : rate;
+        rate = Math.max(minRate, base * decreaseFactor);
+        // no burst right after throttling
+        tokens = Math.min(tokens, 0);
+        lastDecreaseNanos = now;
+    }
+
+    /**
+     * @return current permits per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(Math.max(1, rate), tokens + elapsed * rate / NANOS_PER_SECOND);
+            lastRefillNanos = now;
+        }
+    }
+
+    private void count(long now) {
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= NANOS_PER_SECOND) {
+            lastWindowRate = elapsed < 2 * NANOS_PER_SECOND ? windowCount * (double) NANOS_PER_SECOND / elapsed : 0;
+            windowStartNanos = now;
+            windowCount = 0;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.aliyun.datahub.ratelimit;
+
+import com.aliyun.datahub.common.util.IdleEvictingMap;
+import com.aliyun.datahub.common.util.ResourceKey;
+
+/**
+ * {@link AimdRateLimiter} per operation and shard, set by
+ * {@link com.aliyun.datahub.DatahubConfiguration#setRateLimiter(ShardRateLimiter)}.
+ *
+ * DatahubClient takes a permit per shard before every put or get of records,
+ * cuts the rate of a shard when the service answers LimitExceeded for it and
+ * raises the rate while requests to the shard succeed. Records without shard
+ * id share the limiter of their topic.
+ *
+ * Settings apply to the limiters created afterwards, set them before use.
+ */
+public class ShardRateLimiter {
+    static final int MAX_KEYS = 4096;
+
+    /** default max requests per second to one shard */
+    public static final double DEFAULT_MAX_RATE = 1000;
+
+    /** default min requests per second to one shard */
+    public static final double DEFAULT_MIN_RATE = 1;
+
+    /** default requests per second added by every second of successful requests */
+    public static final double DEFAULT_RATE_INCREASE = 5;
+
+    /** default factor applied to the rate when throttled */
+    public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+
+    /** default time in which throttling of requests in flight cuts the rate once, in milliseconds */
+    public static final long DEFAULT_DECREASE_INTERVAL_MS = 1000;
+
+    private double initialRate = DEFAULT_MAX_RATE;
+    private double minRate = DEFAULT_MIN_RATE;
+    private double maxRate = DEFAULT_MAX_RATE;
+    private double rateIncrease = DEFAULT_RATE_INCREASE;
+    private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+    private long decreaseIntervalMs = DEFAULT_DECREASE_INTERVAL_MS;
+
+    // shards idle longest are evicted, not the ones throttled now
+    private final IdleEvictingMap<ResourceKey, AimdRateLimiter> limiters = new IdleEvictingMap<ResourceKey, AimdRateLimiter>(MAX_KEYS);
+
+    /**
+     * Wait for a permit to send a request to the shard.
+     */
+    public void acquire(String operation, String projectName, String topicName, String shardId) {
+        getOrCreate(operation, projectName, topicName, shardId).acquire();
+    }
+
+    public void onSuccess(String operation, String projectName, String topicName, String shardId) {
+        getOrCreate(operation, projectName, topicName, shardId).onSuccess();
+    }
+
+    public void onThrottle(String operation, String projectName, String topicName, String shardId) {
+        getOrCreate(operation, projectName, topicName, shardId).onThrottle();
+    }
+
+    /**
+     * @return current requests per second allowed to the shard
+     */
+    public double getRate(String operation, String projectName, String topicName, String shardId) {
+        return getOrCreate(operation, projectName, topicName, shardId).getRate();
+    }
+
+    private AimdRateLimiter getOrCreate(String operation, String projectName, String topicName, String shardId) {
+        ResourceKey key = new ResourceKey(operation, projectName, topicName, shardId);
+        AimdRateLimiter limiter = limiters.get(key);
+        if (limiter == null) {
+            limiter = new AimdRateLimiter(initialRate, minRate, maxRate, rateIncrease, decreaseFactor, decreaseIntervalMs);
+            AimdRateLimiter old = limiters.putIfAbsent(key, limiter);
+            if (old != null) {
+                limiter = old;
+            }
+        }
+        return limiter;
+    }
+
+    public double getInitialRate() {
+        return initialRate;
+    }
+
+    /**
+     * Requests per second to a shard before any feedback, the max rate by default.
+     */
+    public void setInitialRate(double initialRate) {
+        if (initialRate < minRate || initialRate > maxRate) {
+            throw new IllegalArgumentException("invalid initial rate: " + initialRate);
+        }
+        this.initialRate = initialRate;
+    }
+
+    public double getMinRate() {
+        return minRate;
+    }
+
+    public void setMinRate(double minRate) {
+        if (minRate <= 0 || minRate > initialRate) {
+            throw new IllegalArgumentException("invalid min rate: " + minRate);
+        }
+        this.minRate = minRate;
+    }
+
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * Set the max rate, the initial rate is lowered to it if higher.
+     */
+    public void setMaxRate(double maxRate) {
+        if (maxRate < minRate) {
+            throw new IllegalArgumentException("invalid max rate: " + maxRate);
+        }
+        this.maxRate = maxRate;
+        this.initialRate = Math.min(initialRate, maxRate);
+    }
+
+    public double getRateIncrease() {
+        return rateIncrease;
+    }
+
+    public void setRateIncrease(double rateIncrease) {
+        if (rateIncrease < 0) {
+            throw new IllegalArgumentException("invalid rate increase: " + rateIncrease);
+        }
+        this.rateIncrease = rateIncrease;
+    }
+
+    public double getDecreaseFactor() {
+        return decreaseFactor;
+    }
+
+    public void setDecreaseFactor(double decreaseFactor) {
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("invalid decrease factor: " + decreaseFactor);
+        }
+        this.decreaseFactor = decreaseFactor;
+    }
+
+    public long getDecreaseIntervalMs() {
+        return decreaseIntervalMs;
+    }
+
+    public void setDecreaseIntervalMs(long decreaseIntervalMs) {
+        if (decreaseIntervalMs < 0) {
+            throw new IllegalArgumentException("invalid decrease interval: " + decreaseIntervalMs);
+        }
+        this.decreaseIntervalMs = decreaseIntervalMs;
+    }
+}
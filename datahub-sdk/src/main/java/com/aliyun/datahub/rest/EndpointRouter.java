@@ -0,0 +1,236 @@
+package com.aliyun.datahub.rest;
+
+import com.aliyun.datahub.common.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server endpoints of P2P mode, requests are sent to servers directly instead
+ * of through the load balancer.
+ *
+ * Endpoints are discovered on a daemon thread every
+ * <code>refreshIntervalMs</code> and dropped when not discovered for
+ * <code>endpointTtlMs</code>. Every request picks the faster of two random
+ * healthy endpoints by their average latency, without locking. An endpoint
+ * failing a request is ejected for <code>ejectMs</code>, doubled by every
+ * further failure in a row. Requests go to the configured endpoint, null,
+ * while no endpoint is healthy.
+ *
+ * Thread safe.
+ */
+public class EndpointRouter {
+    private static final Logger LOG = LoggerFactory.getLogger(EndpointRouter.class);
+
+    static final int MAX_ENDPOINTS = 64;
+    static final long MAX_EJECT_MS = 60000;
+    /** weight of the latest latency in the average */
+    static final double EWMA_ALPHA = 0.3;
+
+    /** default interval between discoveries, in milliseconds */
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 10000;
+
+    /** default time a failed endpoint is not used, in milliseconds */
+    public static final long DEFAULT_EJECT_MS = 1000;
+
+    /** default time an endpoint is kept after it was discovered last, in milliseconds */
+    public static final long DEFAULT_ENDPOINT_TTL_MS = 60000;
+
+    /**
+     * Request returning the endpoint of a server, e.g. from /system/status.
+     */
+    public interface Discovery {
+        /**
+         * @return endpoint of a server, null if none
+         */
+        String discover() throws Exception;
+    }
+
+    public static class Endpoint {
+        private final String url;
+        private volatile long lastSeenMs;
+        private volatile long ejectedUntilMs = 0;
+        private final AtomicInteger failures = new AtomicInteger(0);
+        // concurrent updates may get lost, they only skew the average
+        private volatile double latencyNanos = 0;
+
+        Endpoint(String url, long now) {
+            this.url = url;
+            this.lastSeenMs = now;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return average latency in nanoseconds, 0 if not measured yet
+         */
+        public double getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        public boolean isHealthy(long now) {
+            return ejectedUntilMs <= now;
+        }
+    }
+
+    private final Discovery discovery;
+    private final long ejectMs;
+    private final long endpointTtlMs;
+    private final Random random = new Random();
+    // replaced as a whole by refresh, read by requests without locking
+    private volatile Endpoint[] endpoints = new Endpoint[0];
+    private ScheduledExecutorService executor = null;
+
+    public EndpointRouter(Discovery discovery) {
+        this(discovery, DEFAULT_EJECT_MS, DEFAULT_ENDPOINT_TTL_MS);
+    }
+
+    /**
+     * @param discovery     The request discovering endpoints.
+     * @param ejectMs       The time a failed endpoint is not used first, in milliseconds.
+     * @param endpointTtlMs The time an endpoint is kept after discovered last, in milliseconds.
+     */
+    public EndpointRouter(Discovery discovery, long ejectMs, long endpointTtlMs) {
+        if (discovery == null) {
+            throw new IllegalArgumentException("discovery must not be null");
+        }
+        if (ejectMs < 0) {
+            throw new IllegalArgumentException("invalid eject time: " + ejectMs);
+        }
+        if (endpointTtlMs <= 0) {
+            throw new IllegalArgumentException("invalid endpoint ttl: " + endpointTtlMs);
+        }
+        this.discovery = discovery;
+        this.ejectMs = ejectMs;
+        this.endpointTtlMs = endpointTtlMs;
+    }
+
+    /**
+     * Discover endpoints on a daemon thread, the first time at once.
+     */
+    public synchronized void start(long refreshIntervalMs) {
+        if (refreshIntervalMs <= 0) {
+            throw new IllegalArgumentException("invalid refresh interval: " + refreshIntervalMs);
+        }
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("datahub-route"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Discover an endpoint and drop the endpoints expired.
+     */
+    public void refresh() {
+        String url = null;
+        try {
+            url = discovery.discover();
+        } catch (Exception e) {
+            LOG.warn("discover server endpoint failed", e);
+        }
+        refresh(url, System.currentTimeMillis());
+    }
+
+    synchronized void refresh(String url, long now) {
+        List<Endpoint> next = new ArrayList<Endpoint>();
+        boolean found = false;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.url.equals(url)) {
+                endpoint.lastSeenMs = now;
+                found = true;
+            }
+            if (now - endpoint.lastSeenMs < endpointTtlMs) {
+                next.add(endpoint);
+            }
+        }
+        if (!found && url != null && next.size() < MAX_ENDPOINTS) {
+            next.add(new Endpoint(url, now));
+        }
+        endpoints = next.toArray(new Endpoint[next.size()]);
+    }
+
+    /**
+     * @return the endpoint to send a request to, null if none is healthy
+     */
+    public Endpoint select() {
+        return select(System.currentTimeMillis());
+    }
+
+    Endpoint select(long now) {
+        Endpoint[] all = endpoints;
+        if (all.length == 0) {
+            return null;
+        }
+        Endpoint first = healthyFrom(all, random.nextInt(all.length), now);
+        if (first == null) {
+            return null;
+        }
+        Endpoint second = healthyFrom(all, random.nextInt(all.length), now);
+        return second == null || first.latencyNanos <= second.latencyNanos ? first : second;
+    }
+
+    public void onSuccess(Endpoint endpoint, long latencyNanos) {
+        if (endpoint == null) {
+            return;
+        }
+        endpoint.failures.set(0);
+        double average = endpoint.latencyNanos;
+        endpoint.latencyNanos = average == 0 ? latencyNanos : average + EWMA_ALPHA * (latencyNanos - average);
+    }
+
+    public void onFailure(Endpoint endpoint) {
+        onFailure(endpoint, System.currentTimeMillis());
+    }
+
+    void onFailure(Endpoint endpoint, long now) {
+        if (endpoint == null) {
+            return;
+        }
+        int failures = endpoint.failures.incrementAndGet();
+        endpoint.ejectedUntilMs = now + Math.min(MAX_EJECT_MS, ejectMs << Math.min(failures - 1, 16));
+        LOG.info("server endpoint " + endpoint.url + " ejected after " + failures + " failures");
+    }
+
+    /**
+     * @return endpoints known now
+     */
+    public List<Endpoint> getEndpoints() {
+        List<Endpoint> result = new ArrayList<Endpoint>();
+        for (Endpoint endpoint : endpoints) {
+            result.add(endpoint);
+        }
+        return result;
+    }
+
+    private static Endpoint healthyFrom(Endpoint[] all, int start, long now) {
+        for (int i = 0; i < all.length; ++i) {
+            Endpoint endpoint = all[(start + i) % all.length];
+            if (endpoint.isHealthy(now)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+}
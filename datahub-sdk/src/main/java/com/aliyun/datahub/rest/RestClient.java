@@ -19,23 +19,32 @@
 
 package com.aliyun.datahub.rest;
 
+import com.aliyun.datahub.AsyncCallback;
 import com.aliyun.datahub.auth.Account;
 import com.aliyun.datahub.common.transport.*;
 import com.aliyun.datahub.common.util.JacksonParser;
-import com.aliyun.datahub.common.util.RetryUtil;
+import com.aliyun.datahub.exception.DatahubClientException;
 import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.metrics.MetricsListener;
 import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.model.compress.AdaptiveCompressor;
 import com.aliyun.datahub.model.compress.Compression;
 import com.aliyun.datahub.model.compress.CompressionFormat;
+import com.aliyun.datahub.model.compress.CompressionOptions;
 import com.aliyun.datahub.model.serialize.JsonErrorParser;
+import com.aliyun.datahub.retry.DefaultRetryPolicy;
+import com.aliyun.datahub.retry.RetryPolicy;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
-import java.util.concurrent.Callable;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * RESTful API客户端
@@ -56,6 +65,24 @@ public class RestClient {
         public abstract void onRetryLog(Throwable e, long retryCount, long retrySleepTime);
     }
 
+    /**
+     * Callback of every attempt of a request sent with retries.
+     */
+    public interface AttemptListener {
+
+        /**
+         * Called before every attempt, the first one included.
+         */
+        void beforeAttempt();
+
+        /**
+         * Called after an attempt failed, before it is retried or given up.
+         *
+         * @param e The error of the response, or the connection error with status 0.
+         */
+        void onAttemptFailed(DatahubServiceException e);
+    }
+
     /**
      * 底层网络建立超时时间,50秒
      */
@@ -87,9 +114,14 @@ public class RestClient {
     private String userAgent;
 
     private CompressionFormat compressionFormat;
+    private CompressionOptions compressionOptions = new CompressionOptions();
+    private AdaptiveCompressor adaptiveCompressor = null;
 
     private String sourceIp;
     private Boolean secureTransport;
+    private volatile MetricsListener metricsListener = null;
+    private boolean streamingRequestBody = false;
+    private RetryPolicy retryPolicy = RetryPolicy.NO_RETRY;
 
     public RetryLogger getRetryLogger() {
         return logger;
@@ -101,9 +133,11 @@ public class RestClient {
 
     private RetryLogger logger = null;
 
-    private boolean enableP2P = false;
-    private String serverEndpoint = null;
-    private int requestCount = 1000;
+    private volatile boolean enableP2P = false;
+    // created, started and closed with this locked, read by requests without locking
+    private volatile EndpointRouter router = null;
+    private boolean closed = false;
+    private long routeRefreshIntervalMs = EndpointRouter.DEFAULT_REFRESH_INTERVAL_MS;
 
     /**
      * 创建RestClient对象
@@ -115,6 +149,49 @@ public class RestClient {
         this.compressionFormat = compressionFormat;
     }
 
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public CompressionOptions getCompressionOptions() {
+        return compressionOptions;
+    }
+
+    public void setCompressionOptions(CompressionOptions compressionOptions) {
+        this.compressionOptions = compressionOptions;
+        this.adaptiveCompressor = compressionOptions.isAdaptive() ? new AdaptiveCompressor(compressionOptions) : null;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retry policy must not be null");
+        }
+        this.retryPolicy = retryPolicy;
+    }
+
+    public boolean isStreamingRequestBody() {
+        return streamingRequestBody;
+    }
+
+    /**
+     * Send bodies set by {@link DefaultRequest#setBodyWriter} chunked while
+     * they are written instead of buffering them first. Streamed bodies are
+     * only compressed with a fixed zlib format, other codecs need the whole body.
+     *
+     * @param streamingRequestBody true to stream request bodies
+     */
+    public void setStreamingRequestBody(boolean streamingRequestBody) {
+        this.streamingRequestBody = streamingRequestBody;
+    }
+
 //    /**
 //     * 请求RESTful API
 //     *
@@ -235,72 +312,141 @@ public class RestClient {
 //    }
 
     /**
-     * 带有重试的request
+     * 带有重试的request, 由 {@link RetryPolicy} 决定是否以及何时重试
      *
      * @param request request实体
-     * @return response
+     * @return 成功的response, 或者放弃重试时最后一次的错误response
+     * @throws DatahubServiceException 放弃重试时最后一次的连接错误
      */
     public Response request(final DefaultRequest request) {
-        int retryTimes = 0;
-        HttpMethod method = request.getHttpMethod();
-        if (method == HttpMethod.GET || method == HttpMethod.HEAD) {
-            retryTimes = getRetryTimes();
-        }
-        long retryWaitTime = getConnectTimeout() + getReadTimeout();
-        try {
-            return RetryUtil.executeWithRetry(new Callable<Response>() {
-                @Override
-                public Response call() throws Exception {
-                    Response response = requestWithNoRetry(request);
-                    if (response == null) {
-                        throw new DatahubServiceException("Response is null.");
-                    }
-                    // IF THE HTTP CODE IS 4XX,
-                    // IT SHOULD NOT RETRY IF THE REQUEST NOT CHANGED
-                    if (response.getStatus() / 100 == 4) {
-                        return response;
-                    }
-                    handleErrorResponse(response);
-                    return response;
-                }
-            }, retryTimes, retryWaitTime * 1000, false);
-        } catch (Exception e) {
-            LOG.error("", e);
-        }
-        throw new DatahubServiceException("Failed in Connection Retry.");
+        return request(request, null);
     }
 
     /**
-     * 解析response异常并抛出
+     * 带有重试的request, 每次尝试都回调 listener
      *
-     * @param resp response
+     * @param request  request实体
+     * @param listener 每次尝试前后的回调, 可以为 null
+     * @return 成功的response, 或者放弃重试时最后一次的错误response
+     * @throws DatahubServiceException 放弃重试时最后一次的连接错误
      */
-    private void handleErrorResponse(Response resp) {
-        if (!resp.isOK()) {
-            ErrorMessage error = null;
+    public Response request(final DefaultRequest request, AttemptListener listener) {
+        return request(request, this.retryPolicy, listener);
+    }
+
+    /**
+     * 带有重试的request, 由指定的 policy 而不是配置的 {@link RetryPolicy} 决定是否以及何时重试,
+     * 例如已经在上层重试的请求使用 {@link RetryPolicy#NO_RETRY}
+     *
+     * @param request  request实体
+     * @param policy   本次请求的重试策略
+     * @param listener 每次尝试前后的回调, 可以为 null
+     * @return 成功的response, 或者放弃重试时最后一次的错误response
+     * @throws DatahubServiceException 放弃重试时最后一次的连接错误
+     */
+    public Response request(final DefaultRequest request, RetryPolicy policy, AttemptListener listener) {
+        for (int retries = 0; ; ++retries) {
+            if (listener != null) {
+                listener.beforeAttempt();
+            }
+            Response response = null;
+            DatahubServiceException error;
             try {
-                error = JAXBUtils.unmarshal(resp, ErrorMessage.class);
-            } catch (Exception e) {
-                //
+                response = requestWithNoRetry(request);
+                if (response.isOK()) {
+                    policy.onSuccess(request);
+                    return response;
+                }
+                error = errorOf(response);
+            } catch (DatahubServiceException e) {
+                error = e;
+            }
+            if (listener != null) {
+                listener.onAttemptFailed(error);
             }
 
-            DatahubServiceException e = null;
-            if (resp.getStatus() == 404) {
-                if (error != null) {
-                    e = new DatahubServiceException(error.getMessage(), new RestException(error));
+            long delay = policy.getRetryDelay(request, error, retries);
+            if (delay < 0) {
+                if (response != null) {
+                    return response;
                 }
-            } else {
-                if (error != null) {
-                    e = new DatahubServiceException(error.getMessage(), new RestException(error));
-                } else {
-                    e = new DatahubServiceException(new String(resp.getBody()));
-                    e.setRequestId(resp.getHeader(DatahubHttpHeaders.HEADER_DATAHUB_REQUEST_ID));
+                throw error;
+            }
+            if (logger != null) {
+                logger.onRetryLog(error, retries + 1, delay);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (response != null) {
+                    return response;
                 }
+                throw error;
             }
-            throw e;
+        }
+    }
+
+    private static DatahubServiceException errorOf(Response response) {
+        try {
+            return JsonErrorParser.getInstance().parse(response);
+        } catch (RuntimeException e) {
+            // not a json error, e.g. from a proxy
+            DatahubServiceException error = new DatahubServiceException(
+                    response.getBody() == null ? "" : new String(response.getBody()));
+            error.setStatusCode(response.getStatus());
+            return error;
         }
     }
 
+    /**
+     * Compress request body with the fixed or adaptively selected codec, small
+     * bodies and bodies not getting smaller are sent as is.
+     */
+    private void compressBody(DefaultRequest request) {
+        if (compressionFormat == null && adaptiveCompressor == null) {
+            return;
+        }
+        CompressionFormat accept = compressionFormat != null ? compressionFormat : CompressionFormat.LZ4;
+        request.addHeader(Headers.ACCEPT_ENCODING, accept.toString());
+        if (request.getHeaders().containsKey(Headers.CONTENT_ENCODING)) {
+            // compressed by an earlier attempt
+            return;
+        }
+
+        if (request.isStreaming() && adaptiveCompressor == null && compressionFormat.equals(CompressionFormat.ZLIB)) {
+            request.addHeader(Headers.CONTENT_ENCODING, compressionFormat.toString());
+            request.setBodyWriter(new ZlibBodyWriter(request.getBodyWriter()));
+            return;
+        }
+
+        byte[] body = request.getBody();
+        if (body == null || body.length < compressionOptions.getMinCompressSize()) {
+            return;
+        }
+        CompressionFormat format = compressionFormat;
+        if (adaptiveCompressor != null) {
+            format = adaptiveCompressor.select(request.getResource(), body.length);
+            if (format == null) {
+                return;
+            }
+        }
+
+        long start = System.nanoTime();
+        byte[] compressed = Compression.compress(body, format, compressionOptions);
+        if (adaptiveCompressor != null) {
+            adaptiveCompressor.record(request.getResource(), format, body.length, compressed.length, System.nanoTime() - start);
+            if (compressed.length >= body.length) {
+                return;
+            }
+        }
+        request.addHeader(Headers.CONTENT_ENCODING, format.toString());
+        if (format.equals(CompressionFormat.LZ4)) {
+            request.addHeader(DatahubHttpHeaders.HEADER_DATAHUB_CONTENT_RAW_SIZE, Integer.toString(body.length));
+        }
+        request.setBody(compressed);
+    }
+
     /**
      * 没有重试的request
      *
@@ -319,15 +465,112 @@ public class RestClient {
      * @return response
      */
     public Response requestWithNoRetry(DefaultRequest request, boolean p2p) {
-        if (compressionFormat != null && request.getBody() != null) {
-            request.addHeader(Headers.CONTENT_ENCODING, compressionFormat.toString());
-            if (compressionFormat.equals(CompressionFormat.LZ4)) {
-                request.addHeader(DatahubHttpHeaders.HEADER_DATAHUB_CONTENT_RAW_SIZE, Integer.toString(request.getBody().length));
+        MetricsListener listener = this.metricsListener;
+        BodySize bodySize = listener == null ? null : new BodySize(request);
+        prepare(request);
+        if (bodySize != null) {
+            bodySize.prepared(request);
+        }
+
+        Response response = null;
+        EndpointRouter router = p2p ? this.router : null;
+        EndpointRouter.Endpoint endpoint = router == null ? null : router.select();
+        long start = System.nanoTime();
+        try {
+            if (p2p) {
+                response = transport.request(request, endpoint == null ? null : endpoint.getUrl());
+            } else {
+                response = transport.request(request);
             }
-            request.addHeader(Headers.ACCEPT_ENCODING, compressionFormat.toString());
-            byte[] compressed = Compression.compress(request.getBody(), compressionFormat);
-            request.setBody(compressed);
+        } catch (IOException e) {
+            if (router != null) {
+                router.onFailure(endpoint);
+            }
+            if (listener != null) {
+                listener.onRequest(request.getHttpMethod(), request.getResource(), 0, System.nanoTime() - start,
+                        bodySize.getRaw(), bodySize.getSent(request), 0, 0);
+            }
+            throw new DatahubServiceException(e.getMessage(), e);
         }
+        long latency = System.nanoTime() - start;
+        if (router != null) {
+            onRouted(router, endpoint, response, latency);
+        }
+        int bytesReceived = listener == null ? 0 : sizeOf(response.getBody());
+
+        decompressBody(response);
+
+        if (listener != null) {
+            listener.onRequest(request.getHttpMethod(), request.getResource(), response.getStatus(), latency,
+                    bodySize.getRaw(), bodySize.getSent(request), bytesReceived, sizeOf(response.getBody()));
+        }
+        return response;
+    }
+
+    /**
+     * 异步的没有重试的request, transport 需要实现 {@link AsyncTransport}
+     *
+     * @param request  request实体
+     * @param callback 在 transport 的 IO 线程上回调, 不能阻塞
+     */
+    public void requestAsync(final DefaultRequest request, final AsyncCallback<Response> callback) {
+        if (!(transport instanceof AsyncTransport)) {
+            throw new DatahubClientException("transport does not support async request");
+        }
+        final MetricsListener listener = this.metricsListener;
+        final BodySize bodySize = listener == null ? null : new BodySize(request);
+        prepare(request);
+        if (bodySize != null) {
+            bodySize.prepared(request);
+        }
+
+        final EndpointRouter router = enableP2P ? this.router : null;
+        final EndpointRouter.Endpoint endpoint = router == null ? null : router.select();
+        final long start = System.nanoTime();
+        ((AsyncTransport) transport).request(request, endpoint == null ? null : endpoint.getUrl(), new AsyncCallback<Response>() {
+            @Override
+            public void onSuccess(Response response) {
+                long latency = System.nanoTime() - start;
+                if (router != null) {
+                    onRouted(router, endpoint, response, latency);
+                }
+                int bytesReceived = listener == null ? 0 : sizeOf(response.getBody());
+                try {
+                    decompressBody(response);
+                } catch (DatahubServiceException e) {
+                    callback.onFailure(e);
+                    return;
+                }
+                if (listener != null) {
+                    listener.onRequest(request.getHttpMethod(), request.getResource(), response.getStatus(), latency,
+                            bodySize.getRaw(), bodySize.getSent(request), bytesReceived, sizeOf(response.getBody()));
+                }
+                callback.onSuccess(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (router != null) {
+                    router.onFailure(endpoint);
+                }
+                if (listener != null) {
+                    listener.onRequest(request.getHttpMethod(), request.getResource(), 0, System.nanoTime() - start,
+                            bodySize.getRaw(), bodySize.getSent(request), 0, 0);
+                }
+                callback.onFailure(e instanceof IOException ? new DatahubServiceException(e.getMessage(), (IOException) e) : e);
+            }
+        });
+    }
+
+    /**
+     * 压缩, 添加header并签名
+     */
+    private void prepare(DefaultRequest request) {
+        if (request.isStreaming() && !streamingRequestBody) {
+            // buffer the whole body, sent with Content-Length
+            request.getBody();
+        }
+        compressBody(request);
 
         if (sourceIp != null && !sourceIp.isEmpty()) {
             request.addHeader(DatahubHttpHeaders.HEADER_DATAHUB_SOURCE_IP, sourceIp);
@@ -341,19 +584,9 @@ public class RestClient {
          * 请求之前需要做签名
          */
         this.account.getRequestSigner().sign(request.getResource(), request);
+    }
 
-        Response response = null;
-        try {
-            if (p2p) {
-                updateRoute();
-                response = transport.request(request, serverEndpoint);
-            } else {
-                response = transport.request(request);
-            }
-        } catch (IOException e) {
-            throw new DatahubServiceException(e.getMessage(), e);
-        }
-
+    private void decompressBody(Response response) {
         if (response.getBody() != null && response.getBody().length != 0) {
             String type = response.getHeaders().get(Headers.CONTENT_ENCODING);
             if (type != null && !type.isEmpty()) {
@@ -364,10 +597,12 @@ public class RestClient {
                         if (rawSizeString == null || rawSizeString.isEmpty()) {
                             throw new DatahubServiceException("DecompressError", DatahubHttpHeaders.HEADER_DATAHUB_CONTENT_RAW_SIZE + "is missing.", response);
                         }
-                        byte[] restored = Compression.decompress(response.getBody(), format, Integer.valueOf(rawSizeString));
+                        byte[] restored = Compression.decompress(response.getBody(), format, Integer.valueOf(rawSizeString), compressionOptions);
                         response.setBody(restored);
                     } else {
-                        byte[] restored = Compression.decompress(response.getBody(), format);
+                        String rawSizeString = response.getHeader(DatahubHttpHeaders.HEADER_DATAHUB_CONTENT_RAW_SIZE);
+                        int rawSize = rawSizeString == null || rawSizeString.isEmpty() ? 0 : Integer.valueOf(rawSizeString);
+                        byte[] restored = Compression.decompress(response.getBody(), format, rawSize, compressionOptions);
                         response.setBody(restored);
                     }
                 } catch (RuntimeException e) {
@@ -375,8 +610,114 @@ public class RestClient {
                 }
             }
         }
+    }
 
-        return response;
+    private static int sizeOf(byte[] body) {
+        return body == null ? 0 : body.length;
+    }
+
+    /**
+     * Zlib stream of a streamed body, compressed through the deflater buffer.
+     */
+    private static class ZlibBodyWriter extends BodyWriter {
+        private static final int BUFFER_SIZE = 8 * 1024;
+
+        private final BodyWriter writer;
+
+        ZlibBodyWriter(BodyWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream zout = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+                writer.writeTo(zout);
+                zout.finish();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] toByteArray() throws IOException {
+            return Compression.zlibCompress(writer.toByteArray());
+        }
+    }
+
+    /**
+     * Counts bytes of a streamed body, its size is known when it is sent.
+     */
+    private static class CountingBodyWriter extends BodyWriter {
+        private final BodyWriter writer;
+        private volatile int count = 0;
+
+        CountingBodyWriter(BodyWriter writer) {
+            this.writer = writer;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            count = 0;
+            writer.writeTo(new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    ++count;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    count += len;
+                }
+            });
+        }
+
+        @Override
+        public byte[] toByteArray() throws IOException {
+            byte[] body = writer.toByteArray();
+            count = body.length;
+            return body;
+        }
+    }
+
+    /**
+     * Request body size before and after compression for metrics.
+     */
+    private static class BodySize {
+        private int raw = 0;
+        private CountingBodyWriter rawCounter = null;
+        private CountingBodyWriter sentCounter = null;
+
+        BodySize(DefaultRequest request) {
+            if (request.isStreaming()) {
+                rawCounter = new CountingBodyWriter(request.getBodyWriter());
+                request.setBodyWriter(rawCounter);
+            } else {
+                raw = sizeOf(request.getBody());
+            }
+        }
+
+        void prepared(DefaultRequest request) {
+            if (request.isStreaming()) {
+                sentCounter = request.getBodyWriter() == rawCounter ? rawCounter : new CountingBodyWriter(request.getBodyWriter());
+                request.setBodyWriter(sentCounter);
+            }
+        }
+
+        int getRaw() {
+            return rawCounter != null ? rawCounter.getCount() : raw;
+        }
+
+        int getSent(DefaultRequest request) {
+            return sentCounter != null ? sentCounter.getCount() : sizeOf(request.getBody());
+        }
     }
 
     /**
@@ -541,20 +882,60 @@ public class RestClient {
     /**
      * 获取网络重试次数
      *
-     * @return 重试次数
+     * @return 重试次数, 即 {@link DefaultRetryPolicy} 的最大重试次数
+     * @deprecated 由 {@link RetryPolicy} 决定是否重试, 见 {@link #getRetryPolicy()}
      */
+    @Deprecated
     public int getRetryTimes() {
+        if (retryPolicy instanceof DefaultRetryPolicy) {
+            return ((DefaultRetryPolicy) retryPolicy).getMaxRetries();
+        }
         return retryTimes;
     }
 
 
     /**
-     * 设置网络重试次数
+     * 设置网络重试次数, 替换为最大重试次数为 retryTimes 的 {@link DefaultRetryPolicy},
+     * 其他的 {@link RetryPolicy} 最多重试 retryTimes 次
      *
      * @param retryTimes 重试次数
+     * @deprecated 使用 {@link #setRetryPolicy(RetryPolicy)}, 例如 {@link DefaultRetryPolicy#setMaxRetries(int)}
      */
+    @Deprecated
     public void setRetryTimes(int retryTimes) {
+        if (retryTimes < 0) {
+            throw new IllegalArgumentException("invalid retry times: " + retryTimes);
+        }
         this.retryTimes = retryTimes;
+        this.retryPolicy = withMaxRetries(retryPolicy, retryTimes);
+    }
+
+    /**
+     * The policy retrying at most maxRetries times. A {@link DefaultRetryPolicy}
+     * is copied, sharing its budget, since policies are shared by clients.
+     */
+    private static RetryPolicy withMaxRetries(final RetryPolicy policy, final int maxRetries) {
+        if (policy.getClass() == DefaultRetryPolicy.class) {
+            DefaultRetryPolicy origin = (DefaultRetryPolicy) policy;
+            DefaultRetryPolicy copy = new DefaultRetryPolicy();
+            copy.setMaxRetries(maxRetries);
+            copy.setBaseDelayMs(origin.getBaseDelayMs());
+            copy.setThrottledBaseDelayMs(origin.getThrottledBaseDelayMs());
+            copy.setMaxDelayMs(origin.getMaxDelayMs());
+            copy.setBudget(origin.getBudget());
+            return copy;
+        }
+        return new RetryPolicy() {
+            @Override
+            public long getRetryDelay(DefaultRequest request, DatahubServiceException e, int retries) {
+                return retries >= maxRetries ? -1 : policy.getRetryDelay(request, e, retries);
+            }
+
+            @Override
+            public void onSuccess(DefaultRequest request) {
+                policy.onSuccess(request);
+            }
+        };
     }
 
     /**
@@ -592,41 +973,94 @@ public class RestClient {
     }
 
     public void close() {
+        synchronized (this) {
+            closed = true;
+            if (router != null) {
+                router.close();
+                router = null;
+            }
+        }
         transport.close();
     }
 
-    public void enableP2P(boolean enabled) {
+    /**
+     * Send requests to servers directly, their endpoints are discovered from
+     * /system/status in background and requests are routed by their health
+     * and latency. Discovery is not started again once the client is closed.
+     *
+     * @param enabled true to enable P2P mode
+     */
+    public synchronized void enableP2P(boolean enabled) {
         this.enableP2P = enabled;
+        if (enabled && router == null && !closed) {
+            EndpointRouter created = new EndpointRouter(new EndpointRouter.Discovery() {
+                @Override
+                public String discover() throws IOException {
+                    return discoverEndpoint();
+                }
+            });
+            created.start(routeRefreshIntervalMs);
+            router = created;
+        } else if (!enabled && router != null) {
+            router.close();
+            router = null;
+        }
     }
 
-    private void updateRoute() {
-        if (requestCount >= 1000) {
-            try {
-                DefaultRequest req = new DefaultRequest();
-                req.setHttpMethod(HttpMethod.GET);
-                req.setResource("/system/status");
-
-                Response resp = requestWithNoRetry(req, false);
-                if (!resp.isOK()) {
-                    throw JsonErrorParser.getInstance().parse(resp);
-                }
+    public long getRouteRefreshIntervalMs() {
+        return routeRefreshIntervalMs;
+    }
 
-                ObjectMapper mapper = JacksonParser.getObjectMapper();
+    /**
+     * Interval between discoveries of server endpoints in P2P mode, applies
+     * when P2P mode is enabled afterwards.
+     */
+    public void setRouteRefreshIntervalMs(long routeRefreshIntervalMs) {
+        if (routeRefreshIntervalMs <= 0) {
+            throw new IllegalArgumentException("invalid route refresh interval: " + routeRefreshIntervalMs);
+        }
+        this.routeRefreshIntervalMs = routeRefreshIntervalMs;
+    }
 
-                // convert JSON string to Map
-                Map<String, String> map = mapper.readValue(resp.getBody(), new TypeReference<Map<String, String>>() {
-                });
+    /**
+     * @return endpoints of P2P mode, null if not enabled
+     */
+    public EndpointRouter getEndpointRouter() {
+        return router;
+    }
 
-                String serverIp = map.get("IP");
-                if (serverIp != null) {
-                    serverEndpoint = "http://" + serverIp;
-                }
-                requestCount = 0;
-            } catch (IOException e) {
-                // ignore
-            }
+    /**
+     * Server errors and failed connections eject the endpoint, other responses
+     * measure its latency.
+     */
+    private static void onRouted(EndpointRouter router, EndpointRouter.Endpoint endpoint, Response response, long latency) {
+        if (response.getStatus() >= 500) {
+            router.onFailure(endpoint);
         } else {
-            ++requestCount;
+            router.onSuccess(endpoint, latency);
         }
     }
+
+    /**
+     * @return endpoint of the server answering /system/status, through the configured endpoint
+     */
+    private String discoverEndpoint() throws IOException {
+        DefaultRequest req = new DefaultRequest();
+        req.setHttpMethod(HttpMethod.GET);
+        req.setResource("/system/status");
+
+        Response resp = requestWithNoRetry(req, false);
+        if (!resp.isOK()) {
+            throw JsonErrorParser.getInstance().parse(resp);
+        }
+
+        ObjectMapper mapper = JacksonParser.getObjectMapper();
+
+        // convert JSON string to Map
+        Map<String, String> map = mapper.readValue(resp.getBody(), new TypeReference<Map<String, String>>() {
+        });
+
+        String serverIp = map.get("IP");
+        return serverIp == null ? null : "http://" + serverIp;
+    }
 }
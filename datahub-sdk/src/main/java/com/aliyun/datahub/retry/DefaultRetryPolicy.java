@@ -0,0 +1,137 @@
+package com.aliyun.datahub.retry;
+
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.exception.InternalFailureException;
+import com.aliyun.datahub.exception.LimitExceededException;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Retry with exponential backoff and full jitter, limited by a {@link RetryBudget}.
+ *
+ * Throttled requests, {@link LimitExceededException} or status 429 and 503,
+ * were rejected before being processed and are retried for every request,
+ * starting from a longer delay. Server errors, {@link InternalFailureException}
+ * or other 5xx, and connection errors may leave a request processed, they are
+ * retried only if the request is idempotent. Other errors, e.g.
+ * {@link com.aliyun.datahub.exception.InvalidParameterException}, are not retried.
+ */
+public class DefaultRetryPolicy implements RetryPolicy {
+
+    /** default max count of retries of one request */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /** default delay before the first retry, in milliseconds */
+    public static final long DEFAULT_BASE_DELAY_MS = 100;
+
+    /** default delay before the first retry of a throttled request, in milliseconds */
+    public static final long DEFAULT_THROTTLED_BASE_DELAY_MS = 500;
+
+    /** default max delay between retries, in milliseconds */
+    public static final long DEFAULT_MAX_DELAY_MS = 10000;
+
+    /** default max count of retries without successful requests in between */
+    public static final int DEFAULT_RETRY_BUDGET = 100;
+
+    /** default retries earned by a successful request */
+    public static final double DEFAULT_RETRIES_PER_SUCCESS = 0.1;
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long baseDelayMs = DEFAULT_BASE_DELAY_MS;
+    private long throttledBaseDelayMs = DEFAULT_THROTTLED_BASE_DELAY_MS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private RetryBudget budget = new RetryBudget(DEFAULT_RETRY_BUDGET, DEFAULT_RETRIES_PER_SUCCESS);
+    private final Random random = new Random();
+
+    @Override
+    public long getRetryDelay(DefaultRequest request, DatahubServiceException e, int retries) {
+        if (retries >= maxRetries || !isRetryable(request, e) || !budget.tryAcquire()) {
+            return -1;
+        }
+        long base = isThrottled(e) ? throttledBaseDelayMs : baseDelayMs;
+        long ceiling = Math.min(maxDelayMs, base << Math.min(retries, 30));
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    @Override
+    public void onSuccess(DefaultRequest request) {
+        budget.onSuccess();
+    }
+
+    /**
+     * @return true if the request was rejected without being processed
+     */
+    protected boolean isThrottled(DatahubServiceException e) {
+        return e instanceof LimitExceededException || e.getStatusCode() == 429 || e.getStatusCode() == 503;
+    }
+
+    protected boolean isRetryable(DefaultRequest request, DatahubServiceException e) {
+        if (isThrottled(e)) {
+            return true;
+        }
+        if (!request.isIdempotent()) {
+            return false;
+        }
+        return e instanceof InternalFailureException || e.getCause() instanceof IOException
+                || (e.getStatusCode() / 100 == 5 && e.getErrorCode() == null);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("invalid max retries: " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public long getBaseDelayMs() {
+        return baseDelayMs;
+    }
+
+    public void setBaseDelayMs(long baseDelayMs) {
+        if (baseDelayMs < 0) {
+            throw new IllegalArgumentException("invalid base delay: " + baseDelayMs);
+        }
+        this.baseDelayMs = baseDelayMs;
+    }
+
+    public long getThrottledBaseDelayMs() {
+        return throttledBaseDelayMs;
+    }
+
+    public void setThrottledBaseDelayMs(long throttledBaseDelayMs) {
+        if (throttledBaseDelayMs < 0) {
+            throw new IllegalArgumentException("invalid throttled base delay: " + throttledBaseDelayMs);
+        }
+        this.throttledBaseDelayMs = throttledBaseDelayMs;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    public void setMaxDelayMs(long maxDelayMs) {
+        if (maxDelayMs < 0) {
+            throw new IllegalArgumentException("invalid max delay: " + maxDelayMs);
+        }
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    public void setBudget(RetryBudget budget) {
+        if (budget == null) {
+            throw new IllegalArgumentException("retry budget must not be null");
+        }
+        this.budget = budget;
+    }
+}
@@ -0,0 +1,87 @@
+package com.aliyun.datahub.retry;
+
+import com.aliyun.datahub.model.ErrorEntry;
+
+import java.util.Random;
+
+/**
+ * Retry of records failed in a PutRecords result, with exponential backoff
+ * and full jitter per shard.
+ *
+ * Records throttled by their shard, error code LimitExceeded, or failed by a
+ * server error, InternalServerError, are retried, throttled ones starting from
+ * a longer delay. Other errors, e.g. MalformedRecord or InvalidShardOperation,
+ * fail again when re-sent and are not retried.
+ */
+public class RecordRetryPolicy {
+    static final String LIMIT_EXCEEDED = "LimitExceeded";
+    static final String INTERNAL_SERVER_ERROR = "InternalServerError";
+
+    /** default delay before the first retry of a shard, in milliseconds */
+    public static final long DEFAULT_BASE_DELAY_MS = 100;
+
+    /** default delay before the first retry of a throttled shard, in milliseconds */
+    public static final long DEFAULT_THROTTLED_BASE_DELAY_MS = 500;
+
+    /** default max delay between retries of a shard, in milliseconds */
+    public static final long DEFAULT_MAX_DELAY_MS = 10000;
+
+    private long baseDelayMs = DEFAULT_BASE_DELAY_MS;
+    private long throttledBaseDelayMs = DEFAULT_THROTTLED_BASE_DELAY_MS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private final Random random = new Random();
+
+    public boolean isRetryable(ErrorEntry error) {
+        return error != null && (isThrottled(error) || INTERNAL_SERVER_ERROR.equals(error.getErrorcode()));
+    }
+
+    public boolean isThrottled(ErrorEntry error) {
+        return error != null && LIMIT_EXCEEDED.equals(error.getErrorcode());
+    }
+
+    /**
+     * @param error    The error of a record of the shard.
+     * @param failures The count of failed sends to the shard before, from 0.
+     * @return milliseconds to wait before re-sending records of the shard
+     */
+    public long getRetryDelay(ErrorEntry error, int failures) {
+        long base = isThrottled(error) ? throttledBaseDelayMs : baseDelayMs;
+        long ceiling = Math.min(maxDelayMs, base << Math.min(failures, 30));
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    public long getBaseDelayMs() {
+        return baseDelayMs;
+    }
+
+    public void setBaseDelayMs(long baseDelayMs) {
+        if (baseDelayMs < 0) {
+            throw new IllegalArgumentException("invalid base delay: " + baseDelayMs);
+        }
+        this.baseDelayMs = baseDelayMs;
+    }
+
+    public long getThrottledBaseDelayMs() {
+        return throttledBaseDelayMs;
+    }
+
+    public void setThrottledBaseDelayMs(long throttledBaseDelayMs) {
+        if (throttledBaseDelayMs < 0) {
+            throw new IllegalArgumentException("invalid throttled base delay: " + throttledBaseDelayMs);
+        }
+        this.throttledBaseDelayMs = throttledBaseDelayMs;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    public void setMaxDelayMs(long maxDelayMs) {
+        if (maxDelayMs < 0) {
+            throw new IllegalArgumentException("invalid max delay: " + maxDelayMs);
+        }
+        this.maxDelayMs = maxDelayMs;
+    }
+}
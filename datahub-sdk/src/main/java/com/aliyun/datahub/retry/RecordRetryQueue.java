@@ -0,0 +1,248 @@
+package com.aliyun.datahub.retry;
+
+import com.aliyun.datahub.model.ErrorEntry;
+import com.aliyun.datahub.model.Record;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records failed in PutRecords results waiting to be re-sent, grouped by shard.
+ *
+ * Records written by partition key or hash key are grouped by the shard the
+ * {@link ShardResolver} finds for them, or by their key if it finds none.
+ *
+ * Every shard backs off on its own: its records are due once the delay of the
+ * {@link RecordRetryPolicy} has passed since its last failure, while records of
+ * other shards are re-sent meanwhile. A record is re-sent at most
+ * <code>retries</code> times. Records not retryable or out of retries are kept
+ * as failed with their last error.
+ *
+ * Not thread safe.
+ */
+public class RecordRetryQueue<T extends Record> {
+
+    /**
+     * Finds the shard of a record written by partition key or hash key.
+     */
+    public interface ShardResolver {
+        /**
+         * @return the shard the record is written to, null if unknown
+         */
+        String resolve(Record record);
+    }
+
+    private static class Shard<T> {
+        private final List<T> records = new ArrayList<T>();
+        private final List<ErrorEntry> errors = new ArrayList<ErrorEntry>();
+        private long dueMs = 0;
+        private int failures = 0;
+    }
+
+    private final RecordRetryPolicy policy;
+    private final int retries;
+    private final List<T> records;
+    private final ShardResolver resolver;
+    private final Map<T, Integer> attempts = new IdentityHashMap<T, Integer>();
+    private final Map<String, Shard<T>> shards = new LinkedHashMap<String, Shard<T>>();
+    private final List<T> failedRecords = new ArrayList<T>();
+    private final List<ErrorEntry> failedErrors = new ArrayList<ErrorEntry>();
+
+    /**
+     * @param policy  The policy classifying errors and computing delays.
+     * @param retries The max count of re-sends of one record.
+     * @param records The records of the first request, failed records are indexed in them.
+     */
+    public RecordRetryQueue(RecordRetryPolicy policy, int retries, List<T> records) {
+        this(policy, retries, records, null);
+    }
+
+    /**
+     * @param policy   The policy classifying errors and computing delays.
+     * @param retries  The max count of re-sends of one record.
+     * @param records  The records of the first request, failed records are indexed in them.
+     * @param resolver The resolver of records without shard id, may be null.
+     */
+    public RecordRetryQueue(RecordRetryPolicy policy, int retries, List<T> records, ShardResolver resolver) {
+        if (policy == null) {
+            throw new IllegalArgumentException("retry policy must not be null");
+        }
+        this.policy = policy;
+        this.retries = retries;
+        this.records = records;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Queue the failed records of a PutRecords result.
+     *
+     * @param sent        The records of the request.
+     * @param failedIndex The indexes of failed records in sent.
+     * @param failedError The errors of failed records, in the same order.
+     * @param now         The current time in milliseconds.
+     */
+    public void onResult(List<T> sent, List<Integer> failedIndex, List<ErrorEntry> failedError, long now) {
+        // error of every failed shard deciding its delay, throttling first
+        Map<String, ErrorEntry> causes = new HashMap<String, ErrorEntry>();
+        for (int i = 0; i < failedIndex.size(); ++i) {
+            T record = sent.get(failedIndex.get(i));
+            ErrorEntry error = i < failedError.size() ? failedError.get(i) : null;
+            Integer attempt = attempts.get(record);
+            if (!policy.isRetryable(error) || (attempt != null && attempt >= retries)) {
+                failedRecords.add(record);
+                failedErrors.add(error);
+                continue;
+            }
+            String shardId = shardOf(record);
+            Shard<T> shard = shards.get(shardId);
+            if (shard == null) {
+                shard = new Shard<T>();
+                shards.put(shardId, shard);
+            }
+            shard.records.add(record);
+            shard.errors.add(error);
+            ErrorEntry cause = causes.get(shardId);
+            if (cause == null || (!policy.isThrottled(cause) && policy.isThrottled(error))) {
+                causes.put(shardId, error);
+            }
+        }
+        for (Map.Entry<String, ErrorEntry> entry : causes.entrySet()) {
+            Shard<T> shard = shards.get(entry.getKey());
+            shard.dueMs = now + policy.getRetryDelay(entry.getValue(), shard.failures);
+            ++shard.failures;
+        }
+        // shards written without retryable failure start backoff over
+        for (T record : sent) {
+            String shardId = shardOf(record);
+            if (!causes.containsKey(shardId)) {
+                Shard<T> shard = shards.get(shardId);
+                if (shard != null && shard.records.isEmpty()) {
+                    shards.remove(shardId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue the records of a request failed as a whole, e.g. throttled, all of
+     * them failed with the error of the request.
+     */
+    public void onRequestFailed(List<T> sent, ErrorEntry error, long now) {
+        List<Integer> failedIndex = new ArrayList<Integer>(sent.size());
+        List<ErrorEntry> failedError = new ArrayList<ErrorEntry>(sent.size());
+        for (int i = 0; i < sent.size(); ++i) {
+            failedIndex.add(i);
+            failedError.add(error);
+        }
+        onResult(sent, failedIndex, failedError, now);
+    }
+
+    /**
+     * @return true if no record is waiting to be re-sent
+     */
+    public boolean isEmpty() {
+        for (Shard<T> shard : shards.values()) {
+            if (!shard.records.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return milliseconds until records of some shard are due, 0 if due now
+     */
+    public long getDelay(long now) {
+        long delay = Long.MAX_VALUE;
+        for (Shard<T> shard : shards.values()) {
+            if (!shard.records.isEmpty()) {
+                delay = Math.min(delay, Math.max(0, shard.dueMs - now));
+            }
+        }
+        return delay == Long.MAX_VALUE ? 0 : delay;
+    }
+
+    /**
+     * Take the records of all shards due, in the order they failed.
+     */
+    public List<T> poll(long now) {
+        List<T> due = new ArrayList<T>();
+        for (Shard<T> shard : shards.values()) {
+            if (!shard.records.isEmpty() && shard.dueMs <= now) {
+                for (T record : shard.records) {
+                    Integer attempt = attempts.get(record);
+                    attempts.put(record, attempt == null ? 1 : attempt + 1);
+                }
+                due.addAll(shard.records);
+                shard.records.clear();
+                shard.errors.clear();
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Stop retrying, records waiting are failed with their last error.
+     */
+    public void giveUp() {
+        for (Shard<T> shard : shards.values()) {
+            failedRecords.addAll(shard.records);
+            failedErrors.addAll(shard.errors);
+            shard.records.clear();
+            shard.errors.clear();
+        }
+    }
+
+    /**
+     * @return the shard of the record, or its key prefixed by the key type if
+     * the shard is unknown, null if the record has neither
+     */
+    private String shardOf(T record) {
+        if (!isEmpty(record.getShardId())) {
+            return record.getShardId();
+        }
+        String shardId = resolver == null ? null : resolver.resolve(record);
+        if (shardId != null) {
+            return shardId;
+        }
+        // records of one key are written to one shard
+        if (!isEmpty(record.getPartitionKey())) {
+            return "partition:" + record.getPartitionKey();
+        }
+        if (!isEmpty(record.getHashKey())) {
+            return "hash:" + record.getHashKey();
+        }
+        return null;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    public List<T> getFailedRecords() {
+        return failedRecords;
+    }
+
+    public List<ErrorEntry> getFailedErrors() {
+        return failedErrors;
+    }
+
+    /**
+     * @return indexes of failed records in the records of the first request
+     */
+    public List<Integer> getFailedIndex() {
+        Map<T, Integer> indexes = new IdentityHashMap<T, Integer>();
+        for (int i = records.size() - 1; i >= 0; --i) {
+            indexes.put(records.get(i), i);
+        }
+        List<Integer> result = new ArrayList<Integer>(failedRecords.size());
+        for (T record : failedRecords) {
+            result.add(indexes.get(record));
+        }
+        return result;
+    }
+}
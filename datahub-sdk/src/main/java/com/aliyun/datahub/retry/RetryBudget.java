@@ -0,0 +1,74 @@
+package com.aliyun.datahub.retry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token bucket limiting retries to a share of successful requests, so retries
+ * stop adding load when most requests fail.
+ *
+ * The bucket starts full. A retry takes one token, every successful request
+ * puts back a fraction of a token up to the capacity.
+ */
+public class RetryBudget {
+    /** tokens are counted in units of 1 / SCALE */
+    private static final int SCALE = 100;
+
+    private final int capacity;
+    private final int refill;
+    private final AtomicInteger tokens;
+
+    /**
+     * @param capacity          The max count of retries without successful requests in between.
+     * @param retriesPerSuccess The tokens put back by a successful request, e.g. 0.1 for one retry per ten successes.
+     */
+    public RetryBudget(int capacity, double retriesPerSuccess) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid retry budget capacity: " + capacity);
+        }
+        if (retriesPerSuccess < 0 || retriesPerSuccess > 1) {
+            throw new IllegalArgumentException("invalid retries per success: " + retriesPerSuccess);
+        }
+        this.capacity = capacity * SCALE;
+        this.refill = (int) Math.round(retriesPerSuccess * SCALE);
+        this.tokens = new AtomicInteger(this.capacity);
+    }
+
+    /**
+     * Take one retry from the budget.
+     *
+     * @return false if the budget is used up
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    public void onSuccess() {
+        if (refill == 0) {
+            return;
+        }
+        while (true) {
+            int current = tokens.get();
+            if (current >= capacity) {
+                return;
+            }
+            if (tokens.compareAndSet(current, Math.min(capacity, current + refill))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return count of retries left
+     */
+    public int getAvailable() {
+        return tokens.get() / SCALE;
+    }
+}
@@ -0,0 +1,45 @@
+package com.aliyun.datahub.retry;
+
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.exception.DatahubServiceException;
+
+/**
+ * Decides if and when a failed request is sent again, set by
+ * {@link com.aliyun.datahub.DatahubConfiguration#setRetryPolicy(RetryPolicy)}.
+ *
+ * A policy is shared by all requests of the clients created from one
+ * configuration and must be thread safe.
+ */
+public interface RetryPolicy {
+
+    /**
+     * Policy never retrying.
+     */
+    RetryPolicy NO_RETRY = new RetryPolicy() {
+        @Override
+        public long getRetryDelay(DefaultRequest request, DatahubServiceException e, int retries) {
+            return -1;
+        }
+
+        @Override
+        public void onSuccess(DefaultRequest request) {
+        }
+    };
+
+    /**
+     * Called after a request failed.
+     *
+     * @param request The failed request, see {@link DefaultRequest#isIdempotent()}.
+     * @param e       The error of the response, or the connection error with an IOException cause and status 0.
+     * @param retries The count of retries done so far, from 0.
+     * @return The milliseconds to wait before sending the request again, negative to give up.
+     */
+    long getRetryDelay(DefaultRequest request, DatahubServiceException e, int retries);
+
+    /**
+     * Called after a request succeeded.
+     *
+     * @param request The request.
+     */
+    void onSuccess(DefaultRequest request);
+}
@@ -0,0 +1,217 @@
+package com.aliyun.datahub;
+
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.exception.InvalidParameterException;
+import com.aliyun.datahub.model.GetCursorRequest;
+import com.aliyun.datahub.model.GetCursorResult;
+import com.aliyun.datahub.model.GetRecordsResult;
+import com.aliyun.datahub.model.PutRecordsResult;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.util.DatahubTestUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Test
+public class AsyncDatahubClientTest {
+    private static final int SHARD_COUNT = 50;
+
+    private HttpServer server;
+    private AsyncDatahubClient client;
+    private RecordSchema schema;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(SHARD_COUNT));
+        server.createContext("/projects/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    AsyncDatahubClientTest.handle(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+
+        DatahubConfiguration conf = new DatahubConfiguration(new AliyunAccount("id", "key"),
+                "http://127.0.0.1:" + server.getAddress().getPort());
+        conf.setIoThreadCount(2);
+        conf.setConnectionsPerEndpoint(SHARD_COUNT);
+        client = new AsyncDatahubClient(conf);
+        schema = DatahubTestUtils.createSchema("string a");
+    }
+
+    @AfterClass
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            sb.append((char) c);
+        }
+        String request = sb.toString();
+        String path = exchange.getRequestURI().getPath();
+
+        if (path.endsWith("/shards")) {
+            reply(exchange, 200, "{\"FailedRecordCount\":1,\"FailedRecords\":"
+                    + "[{\"Index\":1,\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}]}");
+        } else if (request.contains("\"Action\":\"cursor\"")) {
+            reply(exchange, 200, "{\"Cursor\":\"cursor\",\"RecordTime\":0,\"Sequence\":0}");
+        } else if (path.contains("/topics/slow/")) {
+            try {
+                // slow down every shard, so requests are in flight together
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String shardId = path.substring(path.lastIndexOf('/') + 1);
+            reply(exchange, 200, "{\"NextCursor\":\"next\",\"RecordCount\":1,\"StartSeq\":0,"
+                    + "\"Records\":[{\"Data\":[\"" + shardId + "\"],\"SystemTime\":1}]}");
+        } else {
+            reply(exchange, 400, "{\"ErrorCode\":\"InvalidParameter\",\"ErrorMessage\":\"invalid request\"}");
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    @Test
+    public void testPutRecords() throws Exception {
+        List<RecordEntry> records = new ArrayList<RecordEntry>();
+        for (int i = 0; i < 3; ++i) {
+            RecordEntry entry = new RecordEntry(schema);
+            entry.setString(0, "v" + i);
+            entry.setShardId("0");
+            records.add(entry);
+        }
+        PutRecordsResult result = client.putRecords("project", "topic", records).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(result.getFailedRecordCount(), 1);
+        Assert.assertSame(result.getFailedRecords().get(0), records.get(1));
+    }
+
+    @Test
+    public void testConcurrentGetRecords() throws Exception {
+        GetCursorResult cursor = client.getCursor("project", "topic", "0", GetCursorRequest.CursorType.OLDEST)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(cursor.getCursor(), "cursor");
+
+        final CountDownLatch done = new CountDownLatch(SHARD_COUNT);
+        final AtomicInteger received = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < SHARD_COUNT; ++i) {
+            final String shardId = String.valueOf(i);
+            client.getRecords("project", "slow", shardId, "cursor", 10, schema).addCallback(new AsyncCallback<GetRecordsResult>() {
+                @Override
+                public void onSuccess(GetRecordsResult result) {
+                    if (shardId.equals(result.getRecords().get(0).getString(0))) {
+                        received.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(received.get(), SHARD_COUNT);
+        // 50 requests of 200 ms on 2 io threads, far less than sequential
+        Assert.assertTrue(System.currentTimeMillis() - start < SHARD_COUNT * 200 / 4);
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        DatahubFuture<GetRecordsResult> future = client.getRecords("project", "topic", "0", "cursor", 10, schema);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("should throw");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InvalidParameterException);
+        }
+
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        future.addCallback(new AsyncCallback<GetRecordsResult>() {
+            @Override
+            public void onSuccess(GetRecordsResult result) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                error.set(e);
+            }
+        });
+        Assert.assertTrue(error.get() instanceof InvalidParameterException);
+    }
+
+    @Test
+    public void testConnectionRefused() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        DatahubConfiguration conf = new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:" + port);
+        AsyncDatahubClient refused = new AsyncDatahubClient(conf);
+        try {
+            refused.getCursor("project", "topic", "0", GetCursorRequest.CursorType.OLDEST).get(10, TimeUnit.SECONDS);
+            Assert.fail("should throw");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DatahubServiceException);
+        } finally {
+            refused.close();
+        }
+    }
+
+    @Test
+    public void testFutureCompletesOnce() throws Exception {
+        DatahubFuture<String> future = new DatahubFuture<String>();
+        future.onSuccess("first");
+        future.onFailure(new IOException("late"));
+        future.onSuccess("second");
+        Assert.assertEquals(future.get(), "first");
+
+        DatahubFuture<String> failed = new DatahubFuture<String>();
+        failed.onFailure(new IOException("first"));
+        failed.onSuccess("late");
+        try {
+            failed.get();
+            Assert.fail("should throw");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "first");
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.aliyun.datahub;
 
+import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldType;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.transport.DefaultRequest;
 import com.aliyun.datahub.common.transport.DefaultResponse;
 import com.aliyun.datahub.common.transport.Response;
 import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.exception.MalformedRecordException;
 import com.aliyun.datahub.model.*;
 import com.aliyun.datahub.model.serialize.*;
+import com.aliyun.datahub.common.util.JacksonParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.testng.Assert;
 import org.testng.annotations.*;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 @Test
@@ -73,4 +84,180 @@ public class SerDeTest {
         response.setBody(malformedBody.getBytes());
         PutRecordsResultJsonDeser.getInstance().deserialize(request, response);
     }
+
+    private String toTreeBody(List<? extends Record> list) throws Exception {
+        ObjectMapper mapper = JacksonParser.getObjectMapper();
+        ObjectNode node = mapper.createObjectNode();
+        node.put("Action", "pub");
+        ArrayNode records = node.putArray("Records");
+        for (Record record : list) {
+            records.add(record.toJsonNode());
+        }
+        return mapper.writeValueAsString(node);
+    }
+
+    @Test
+    public void testPutRecordsRequestJsonSerSameAsTree() throws Exception {
+        RecordSchema schema = new RecordSchema();
+        schema.addField(new Field("a", FieldType.BIGINT));
+        schema.addField(new Field("b", FieldType.STRING));
+        schema.addField(new Field("c", FieldType.DOUBLE));
+        schema.addField(new Field("d", FieldType.BOOLEAN));
+        schema.addField(new Field("e", FieldType.TIMESTAMP));
+        schema.addField(new Field("f", FieldType.DECIMAL));
+
+        List<RecordEntry> list = new ArrayList<RecordEntry>();
+        for (int i = 0; i < 10; ++i) {
+            RecordEntry entry = new RecordEntry(schema);
+            entry.setBigint(0, (long) i);
+            entry.setString(1, i % 3 == 0 ? null : "str\"\u4e2d\u6587" + i);
+            entry.setDouble(2, i * 1.5);
+            entry.setBoolean(3, i % 2 == 0);
+            entry.setTimeStamp(4, 1455869335000000L + i);
+            entry.setDecimal(5, new BigDecimal("1.23E+" + i));
+            if (i % 3 == 0) {
+                entry.setShardId(String.valueOf(i));
+            } else if (i % 3 == 1) {
+                entry.setPartitionKey("pk" + i);
+            } else {
+                entry.setHashKey("00000000000000000000000000000000");
+            }
+            entry.putAttribute("k" + i, "v" + i);
+            list.add(entry);
+        }
+
+        DefaultRequest req = PutRecordsRequestJsonSer.getInstance().serialize(
+                new PutRecordsRequest("project", "topic", list));
+        Assert.assertEquals(new String(req.getBody(), "UTF-8"), toTreeBody(list));
+        Assert.assertEquals(req.getHeaders().get("Content-Length"), String.valueOf(req.getBody().length));
+    }
+
+    @Test
+    public void testPutBlobRecordsRequestJsonSerSameAsTree() throws Exception {
+        List<BlobRecordEntry> list = new ArrayList<BlobRecordEntry>();
+        for (int i = 0; i < 10; ++i) {
+            BlobRecordEntry entry = new BlobRecordEntry();
+            byte[] data = new byte[i * 7];
+            for (int j = 0; j < data.length; ++j) {
+                data[j] = (byte) (i * j);
+            }
+            entry.setData(data);
+            entry.setShardId(String.valueOf(i));
+            entry.putAttribute("k", "v" + i);
+            list.add(entry);
+        }
+
+        DefaultRequest req = PutBlobRecordsRequestJsonSer.getInstance().serialize(
+                new PutBlobRecordsRequest("project", "topic", list));
+        Assert.assertEquals(new String(req.getBody(), "UTF-8"), toTreeBody(list));
+    }
+
+    private static final String GET_RECORDS_BODY = "{\"NextCursor\":\"30005af19b3800000000000000010000\","
+            + "\"RecordCount\":3,\"StartSeq\":5,\"Records\":["
+            + "{\"SystemTime\":1455869335000,\"Data\":[\"-9223372036854775807\",\"str\\u4e2d\",\"1.5E10\",\"TRUE\",\"1455869335000000\",\"12345.678900\"],"
+            + "\"Attributes\":{\"k1\":\"v1\",\"k2\":\"v2\"}},"
+            + "{\"SystemTime\":1455869335001,\"Data\":[null,null,null,null,null,null]},"
+            + "{\"Attributes\":null,\"Data\":[\"9223372036854775807\",\"\",\"-0.25\",\"false\"],\"SystemTime\":1455869335002}]}";
+
+    private RecordSchema getRecordsSchema() {
+        RecordSchema schema = new RecordSchema();
+        schema.addField(new Field("a", FieldType.BIGINT));
+        schema.addField(new Field("b", FieldType.STRING));
+        schema.addField(new Field("c", FieldType.DOUBLE));
+        schema.addField(new Field("d", FieldType.BOOLEAN));
+        schema.addField(new Field("e", FieldType.TIMESTAMP));
+        schema.addField(new Field("f", FieldType.DECIMAL));
+        return schema;
+    }
+
+    @Test
+    public void testGetRecordsResultJsonStreamDeserSameAsTree() throws Exception {
+        GetRecordsRequest request = new GetRecordsRequest("project", "topic", "0", "cursor", 10);
+        request.setSchema(getRecordsSchema());
+        DefaultResponse response = new DefaultResponse();
+        response.setStatus(200);
+        response.setBody(GET_RECORDS_BODY.getBytes("UTF-8"));
+
+        GetRecordsResult expected = GetRecordsResultJsonDeser.getInstance().deserialize(request, response);
+        GetRecordsResult actual = GetRecordsResultJsonStreamDeser.getInstance().deserialize(request, response);
+
+        Assert.assertEquals(actual.getNextCursor(), expected.getNextCursor());
+        Assert.assertEquals(actual.getStartSeq(), expected.getStartSeq());
+        Assert.assertEquals(actual.getRecordCount(), 3);
+        Assert.assertEquals(actual.getRecordCount(), expected.getRecordCount());
+        for (int i = 0; i < actual.getRecordCount(); ++i) {
+            RecordEntry a = actual.getRecords().get(i);
+            RecordEntry e = expected.getRecords().get(i);
+            Assert.assertEquals(a.getSequence(), e.getSequence());
+            Assert.assertEquals(a.getSystemTime(), e.getSystemTime());
+            Assert.assertEquals(a.getShardId(), e.getShardId());
+            Assert.assertEquals(a.getAttributes(), e.getAttributes());
+            Assert.assertEquals(a.getBigint(0), e.getBigint(0));
+            Assert.assertEquals(a.getString(1), e.getString(1));
+            Assert.assertEquals(a.getDouble(2), e.getDouble(2));
+            Assert.assertEquals(a.getBoolean(3), e.getBoolean(3));
+            Assert.assertEquals(a.getTimeStamp(4), e.getTimeStamp(4));
+            Assert.assertEquals(a.getDecimal(5), e.getDecimal(5));
+        }
+    }
+
+    @Test(expectedExceptions = MalformedRecordException.class)
+    public void testGetRecordsResultJsonStreamDeserWithInvalidBigint() throws Exception {
+        GetRecordsRequest request = new GetRecordsRequest("project", "topic", "0", "cursor", 10);
+        request.setSchema(getRecordsSchema());
+        DefaultResponse response = new DefaultResponse();
+        response.setStatus(200);
+        response.setBody("{\"NextCursor\":\"c\",\"StartSeq\":0,\"Records\":[{\"SystemTime\":1,\"Data\":[\"9223372036854775808\"]}]}".getBytes());
+        GetRecordsResultJsonStreamDeser.getInstance().deserialize(request, response);
+    }
+
+    @Test
+    public void testGetRecordsResultJsonStreamDeserWithInvalidSystemTime() throws Exception {
+        GetRecordsRequest request = new GetRecordsRequest("project", "topic", "0", "cursor", 10);
+        request.setSchema(getRecordsSchema());
+        DefaultResponse response = new DefaultResponse();
+        response.setStatus(200);
+        response.setBody("{\"NextCursor\":\"c\",\"StartSeq\":0,\"Records\":[{\"SystemTime\":\"1x\",\"Data\":[]}]}".getBytes());
+        try {
+            GetRecordsResultJsonStreamDeser.getInstance().deserialize(request, response);
+            Assert.fail("should throw");
+        } catch (DatahubServiceException e) {
+            Assert.assertEquals(e.getErrorCode(), "JsonParseError");
+        }
+    }
+
+    @Test(expectedExceptions = DatahubServiceException.class)
+    public void testGetRecordsResultJsonStreamDeserWithInvalidRequestBody() {
+        GetRecordsRequest request = new GetRecordsRequest("project", "topic", "0", "cursor", 10);
+        request.setSchema(getRecordsSchema());
+        DefaultResponse response = new DefaultResponse();
+        response.setStatus(200);
+        response.setBody("{".getBytes());
+        GetRecordsResultJsonStreamDeser.getInstance().deserialize(request, response);
+    }
+
+    @Test
+    public void testGetBlobRecordsResultJsonStreamDeserSameAsTree() throws Exception {
+        GetBlobRecordsRequest request = new GetBlobRecordsRequest("project", "topic", "0", "cursor", 10);
+        DefaultResponse response = new DefaultResponse();
+        response.setStatus(200);
+        response.setBody(("{\"NextCursor\":\"c\",\"StartSeq\":7,\"Records\":["
+                + "{\"SystemTime\":1,\"Data\":\"AAECAwQ=\",\"Attributes\":{\"k\":\"v\"}},"
+                + "{\"SystemTime\":2,\"Data\":\"\"}]}").getBytes());
+
+        GetBlobRecordsResult expected = GetBlobRecordsResultJsonDeser.getInstance().deserialize(request, response);
+        GetBlobRecordsResult actual = GetBlobRecordsResultJsonStreamDeser.getInstance().deserialize(request, response);
+
+        Assert.assertEquals(actual.getNextCursor(), expected.getNextCursor());
+        Assert.assertEquals(actual.getStartSeq(), expected.getStartSeq());
+        Assert.assertEquals(actual.getRecords().size(), 2);
+        for (int i = 0; i < actual.getRecords().size(); ++i) {
+            BlobRecordEntry a = actual.getRecords().get(i);
+            BlobRecordEntry e = expected.getRecords().get(i);
+            Assert.assertEquals(a.getSequence(), e.getSequence());
+            Assert.assertEquals(a.getSystemTime(), e.getSystemTime());
+            Assert.assertEquals(a.getAttributes(), e.getAttributes());
+            Assert.assertEquals(a.getData(), e.getData());
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package com.aliyun.datahub.auth;
+
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.transport.HttpMethod;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Test
+public class AliyunRequestSignerTest {
+
+    private DefaultRequest newPostRequest() {
+        DefaultRequest req = new DefaultRequest();
+        req.setHttpMethod(HttpMethod.POST);
+        req.addHeader("Content-Type", "application/json");
+        req.addHeader("Date", "Tue, 18 Oct 2026 08:00:00 GMT");
+        req.addHeader("x-datahub-client-version", "1.1");
+        req.addHeader("X-Datahub-Request-Action", "pub");
+        req.addHeader("Content-Length", "12");
+        req.addParam("b", "2");
+        req.addParam("a", "");
+        return req;
+    }
+
+    private DefaultRequest newGetRequest() {
+        DefaultRequest req = new DefaultRequest();
+        req.setHttpMethod(HttpMethod.GET);
+        req.addHeader("Date", "Tue, 18 Oct 2026 08:00:00 GMT");
+        return req;
+    }
+
+    @Test
+    public void testSignature() {
+        AliyunRequestSigner signer = new AliyunRequestSigner("testId", "testKey");
+        // signatures computed by the uncached implementation
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertEquals(signer.getSignature("/projects/p%20x/topics/t+1/shards/0", newPostRequest()),
+                    "DATAHUB testId:QHOMZ6OPhGpMosA+w/ZDLqzGhx4=");
+            Assert.assertEquals(signer.getSignature("/projects/p/topics/t", newGetRequest()),
+                    "DATAHUB testId:SVg2Tw4w98NbPQ/z48jaabT4EqM=");
+        }
+    }
+
+    @Test
+    public void testSignConcurrently() throws Exception {
+        final AliyunRequestSigner signer = new AliyunRequestSigner("testId", "testKey");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (int i = 0; i < 400; ++i) {
+            final boolean post = i % 2 == 0;
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return post ? signer.getSignature("/projects/p%20x/topics/t+1/shards/0", newPostRequest())
+                            : signer.getSignature("/projects/p/topics/t", newGetRequest());
+                }
+            }));
+        }
+        for (int i = 0; i < futures.size(); ++i) {
+            Assert.assertEquals(futures.get(i).get(), i % 2 == 0 ? "DATAHUB testId:QHOMZ6OPhGpMosA+w/ZDLqzGhx4="
+                    : "DATAHUB testId:SVg2Tw4w98NbPQ/z48jaabT4EqM=");
+        }
+        executor.shutdown();
+    }
+}
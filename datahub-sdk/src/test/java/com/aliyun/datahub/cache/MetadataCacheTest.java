@@ -0,0 +1,130 @@
+package com.aliyun.datahub.cache;
+
+import com.aliyun.datahub.exception.DatahubClientException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class MetadataCacheTest {
+
+    private static class CountingLoader implements MetadataCache.Loader<String> {
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public String load() {
+            return "v" + loads.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testCoalesceConcurrentLoads() throws InterruptedException {
+        final MetadataCache cache = new MetadataCache(60000);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final MetadataCache.Loader<String> loader = new MetadataCache.Loader<String>() {
+            @Override
+            public String load() {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new DatahubClientException("interrupted");
+                }
+                return "topic";
+            }
+        };
+
+        int threadCount = 1000;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicInteger results = new AtomicInteger();
+        for (int i = 0; i < threadCount; ++i) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if ("topic".equals(cache.get("GetTopic", "p", "t", loader))) {
+                            results.incrementAndGet();
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        loading.await();
+        // let the other threads join the load in flight
+        Thread.sleep(200);
+        release.countDown();
+        done.await();
+
+        Assert.assertEquals(results.get(), threadCount);
+        Assert.assertEquals(loads.get(), 1);
+    }
+
+    @Test
+    public void testNotKeptWithoutTtl() {
+        MetadataCache cache = new MetadataCache(0);
+        CountingLoader loader = new CountingLoader();
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "v1");
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "v2");
+    }
+
+    @Test
+    public void testTtl() throws InterruptedException {
+        MetadataCache cache = new MetadataCache(100);
+        CountingLoader loader = new CountingLoader();
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "v1");
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "v1");
+        Assert.assertEquals(cache.get("ListShard", "p", "t", loader), "v2");
+        Thread.sleep(150);
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "v3");
+    }
+
+    @Test
+    public void testInvalidate() {
+        MetadataCache cache = new MetadataCache(60000);
+        CountingLoader loader = new CountingLoader();
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "v1");
+        Assert.assertEquals(cache.get("ListShard", "p", "t", loader), "v2");
+        Assert.assertEquals(cache.get("GetTopic", "p", "t2", loader), "v3");
+        Assert.assertEquals(cache.get("GetProject", "p", null, loader), "v4");
+
+        cache.invalidate("p", "t");
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "v5");
+        Assert.assertEquals(cache.get("ListShard", "p", "t", loader), "v6");
+        Assert.assertEquals(cache.get("GetTopic", "p", "t2", loader), "v3");
+        Assert.assertEquals(cache.get("GetProject", "p", null, loader), "v4");
+
+        cache.invalidateProject("p");
+        Assert.assertEquals(cache.get("GetTopic", "p", "t2", loader), "v7");
+        Assert.assertEquals(cache.get("GetProject", "p", null, loader), "v8");
+    }
+
+    @Test
+    public void testFailedLoadNotKept() {
+        MetadataCache cache = new MetadataCache(60000);
+        final AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Loader<String> loader = new MetadataCache.Loader<String>() {
+            @Override
+            public String load() {
+                if (loads.incrementAndGet() == 1) {
+                    throw new DatahubClientException("failed");
+                }
+                return "topic";
+            }
+        };
+        try {
+            cache.get("GetTopic", "p", "t", loader);
+            Assert.fail("should throw");
+        } catch (DatahubClientException e) {
+            Assert.assertEquals(e.getMessage(), "failed");
+        }
+        Assert.assertEquals(cache.get("GetTopic", "p", "t", loader), "topic");
+        Assert.assertEquals(loads.get(), 2);
+    }
+}
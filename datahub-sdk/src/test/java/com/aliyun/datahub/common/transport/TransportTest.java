@@ -0,0 +1,179 @@
+package com.aliyun.datahub.common.transport;
+
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+
+@Test
+public class TransportTest {
+    private static final int[] SIZES = {1, 4096, 100000, 4 * 1024 * 1024 + 3};
+
+    private HttpServer server;
+    private DatahubConfiguration conf;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    InputStream in = exchange.getRequestBody();
+                    ByteArrayOutputStream request = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                        request.write(buffer, 0, n);
+                    }
+                    // /chunked/size, /fixed/size or /echo
+                    String[] path = exchange.getRequestURI().getPath().split("/");
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.getResponseHeaders().set("X-remote-port", String.valueOf(exchange.getRemoteAddress().getPort()));
+                    if ("echo".equals(path[1])) {
+                        String encoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+                        exchange.getResponseHeaders().set("X-request-transfer-encoding", String.valueOf(encoding));
+                        exchange.sendResponseHeaders(200, request.size());
+                        OutputStream out = exchange.getResponseBody();
+                        request.writeTo(out);
+                        out.close();
+                        return;
+                    }
+                    byte[] body = newBody(Integer.parseInt(path[2]));
+                    if ("chunked".equals(path[1])) {
+                        exchange.sendResponseHeaders(200, 0);
+                    } else {
+                        exchange.sendResponseHeaders(200, body.length);
+                    }
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        conf = new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterClass
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static byte[] newBody(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    private void checkBody(Transport transport, String mode, int size) throws IOException {
+        DefaultRequest request = new DefaultRequest();
+        request.setHttpMethod(HttpMethod.POST);
+        request.setResource("/" + mode + "/" + size);
+        request.setBody("{}".getBytes());
+        Response response = transport.request(request);
+        Assert.assertEquals(response.getStatus(), 200);
+        byte[] body = response.getBody() == null ? new byte[0] : response.getBody();
+        Assert.assertEquals(body, newBody(size), mode + " " + size);
+    }
+
+    private void checkBodies(Transport transport) throws IOException {
+        try {
+            for (String mode : new String[]{"fixed", "chunked"}) {
+                for (int size : SIZES) {
+                    checkBody(transport, mode, size);
+                }
+            }
+            checkBody(transport, "chunked", 0);
+        } finally {
+            transport.close();
+        }
+    }
+
+    private void checkStreamedBody(Transport transport, String transferEncoding) throws IOException {
+        try {
+            for (final int size : SIZES) {
+                DefaultRequest request = new DefaultRequest();
+                request.setHttpMethod(HttpMethod.POST);
+                request.setResource("/echo");
+                request.setBodyWriter(new BodyWriter() {
+                    @Override
+                    public void writeTo(OutputStream out) throws IOException {
+                        byte[] body = newBody(size);
+                        for (int i = 0; i < size; i += 1000) {
+                            out.write(body, i, Math.min(1000, size - i));
+                        }
+                    }
+                });
+                Response response = transport.request(request);
+                Assert.assertEquals(response.getStatus(), 200);
+                Assert.assertEquals(response.getBody(), newBody(size), "streamed " + size);
+                Assert.assertEquals(response.getHeader("X-request-transfer-encoding"), transferEncoding);
+            }
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testJerseyTransport() throws IOException {
+        checkBodies(new JerseyTransport(conf));
+        checkStreamedBody(new JerseyTransport(conf), "chunked");
+    }
+
+    @Test
+    public void testDefaultTransport() throws IOException {
+        checkBodies(new DefaultTransport(conf));
+        checkStreamedBody(new DefaultTransport(conf), "chunked");
+    }
+
+    @Test
+    public void testDefaultTransportKeepAlive() throws IOException {
+        DefaultTransport transport = new DefaultTransport(conf);
+        Set<String> ports = new HashSet<String>();
+        for (int i = 0; i < 10; ++i) {
+            DefaultRequest request = new DefaultRequest();
+            request.setHttpMethod(i % 2 == 0 ? HttpMethod.POST : HttpMethod.GET);
+            request.setResource((i % 3 == 0 ? "/chunked/" : "/fixed/") + 1000);
+            if (request.getHttpMethod() == HttpMethod.POST) {
+                request.setBody("{}".getBytes());
+            }
+            Response response = transport.request(request);
+            Assert.assertEquals(response.getBody(), newBody(1000));
+            ports.add(response.getHeader("X-remote-port"));
+        }
+        Assert.assertEquals(ports.size(), 1, "connection not reused: " + ports);
+    }
+
+    @Test
+    public void testDefaultTransportEndpoint() throws IOException {
+        DatahubConfiguration unreachable = new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:1");
+        DefaultRequest request = new DefaultRequest();
+        request.setResource("/fixed/10");
+        Response response = new DefaultTransport(unreachable).request(request, conf.getEndpoint());
+        Assert.assertEquals(response.getBody(), newBody(10));
+    }
+
+    @Test
+    public void testNioTransport() throws IOException {
+        checkBodies(new NioTransport(conf));
+        // buffered with Content-Length
+        checkStreamedBody(new NioTransport(conf), "null");
+    }
+}
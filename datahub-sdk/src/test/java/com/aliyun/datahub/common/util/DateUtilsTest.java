@@ -1,5 +1,46 @@
 package com.aliyun.datahub.common.util;
 
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.SimpleTimeZone;
+
+@Test
 public class DateUtilsTest {
-    // TODO please fill some cases
+
+    private String format(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+        format.setTimeZone(new SimpleTimeZone(0, "GMT"));
+        return format.format(date);
+    }
+
+    @Test
+    public void testFormatRfc822Date() throws Exception {
+        long[] times = {0L, 999L, 1000L, 1455869335123L, 1455869335999L, 1455869336000L, -1L, -1000L, -1001L};
+        for (long time : times) {
+            Date date = new Date(time);
+            Assert.assertEquals(DateUtils.formatRfc822Date(date), format(date), String.valueOf(time));
+            // again from cache
+            Assert.assertEquals(DateUtils.formatRfc822Date(date), format(date), String.valueOf(time));
+        }
+    }
+
+    @Test
+    public void testFormatCurrentRfc822Date() throws Exception {
+        long before = System.currentTimeMillis() / 1000 * 1000;
+        Date parsed = DateUtils.parseRfc822Date(DateUtils.formatCurrentRfc822Date());
+        long after = System.currentTimeMillis();
+        Assert.assertTrue(parsed.getTime() >= before && parsed.getTime() <= after, parsed.toString());
+    }
+
+    @Test
+    public void testParseDoesNotAffectFormat() throws Exception {
+        Date date = DateUtils.parseRfc822Date("Thu, 18 Feb 2016 08:08:55 PST");
+        Assert.assertEquals(date.getTime(), 1455811735000L);
+        Date other = new Date(1455811735000L + 5000);
+        Assert.assertEquals(DateUtils.formatRfc822Date(other), "Thu, 18 Feb 2016 16:09:00 GMT");
+    }
 }
@@ -1,5 +1,88 @@
 package com.aliyun.datahub.common.util;
 
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+@Test
 public class IOUtilsTest {
-    // TODO please fill some cases
+
+    private static byte[] newData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    /**
+     * Stream returning few bytes per read like a socket.
+     */
+    private static InputStream trickle(byte[] data) {
+        return new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+
+    @Test
+    public void testReadFully() throws IOException {
+        int[] sizes = {0, 1, IOUtils.READ_BUFFER_SIZE, IOUtils.READ_BUFFER_SIZE + 1, 100000};
+        for (int size : sizes) {
+            byte[] data = newData(size);
+            Assert.assertEquals(IOUtils.readFully(trickle(data)), data);
+        }
+    }
+
+    @Test
+    public void testReadFullyExpectedLength() throws IOException {
+        byte[] data = newData(10000);
+        Assert.assertEquals(IOUtils.readFully(trickle(data), 10000), data);
+        // stream longer or shorter than expected
+        Assert.assertEquals(IOUtils.readFully(trickle(data), 100), data);
+        Assert.assertEquals(IOUtils.readFully(trickle(data), 20000), data);
+        Assert.assertEquals(IOUtils.readFully(trickle(new byte[0]), 0), new byte[0]);
+    }
+
+    @Test
+    public void testReadFullyBogusExpectedLength() throws IOException {
+        byte[] data = newData(10000);
+        Assert.assertEquals(IOUtils.readFully(trickle(data), Integer.MAX_VALUE), data);
+
+        // allocated up front only to the cap, then grown to the expected length
+        int max = IOUtils.MAX_INITIAL_BUFFER_SIZE;
+        Assert.assertEquals(IOUtils.initialBufferSize(Long.MAX_VALUE), max);
+        Assert.assertEquals(IOUtils.initialBufferSize(-1), IOUtils.READ_BUFFER_SIZE);
+        Assert.assertEquals(IOUtils.nextBufferSize(max, max + 10), max + 10);
+        Assert.assertEquals(IOUtils.nextBufferSize(max, Long.MAX_VALUE), max * 2);
+        Assert.assertEquals(IOUtils.nextBufferSize(max, -1), max * 2);
+    }
+
+    @Test
+    public void testReadFullyNoCopy() throws IOException {
+        final byte[][] target = new byte[1][];
+        InputStream in = new InputStream() {
+            private int left = 5000;
+
+            @Override
+            public int read() {
+                return left-- > 0 ? 1 : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                target[0] = b;
+                return super.read(b, off, len);
+            }
+        };
+        byte[] result = IOUtils.readFully(in, 5000);
+        Assert.assertEquals(result.length, 5000);
+        Assert.assertSame(result, target[0]);
+    }
 }
@@ -0,0 +1,38 @@
+package com.aliyun.datahub.common.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class IdleEvictingMapTest {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        IdleEvictingMap<Integer, String> map = new IdleEvictingMap<Integer, String>(8);
+        for (int i = 0; i < 8; ++i) {
+            Assert.assertNull(map.putIfAbsent(i, "v" + i));
+        }
+        // keys in use survive new keys
+        map.get(0);
+        map.get(1);
+        Assert.assertNull(map.putIfAbsent(8, "v8"));
+
+        Assert.assertEquals(map.size(), 7);
+        Assert.assertEquals(map.get(0), "v0");
+        Assert.assertEquals(map.get(1), "v1");
+        Assert.assertNull(map.get(2));
+        Assert.assertNull(map.get(3));
+        Assert.assertEquals(map.get(4), "v4");
+        Assert.assertEquals(map.get(8), "v8");
+    }
+
+    @Test
+    public void testPutIfAbsentAndRemove() {
+        IdleEvictingMap<String, String> map = new IdleEvictingMap<String, String>(4);
+        Assert.assertNull(map.putIfAbsent("a", "1"));
+        Assert.assertEquals(map.putIfAbsent("a", "2"), "1");
+        Assert.assertFalse(map.remove("a", new String("1")));
+        Assert.assertTrue(map.remove("a", map.get("a")));
+        Assert.assertNull(map.get("a"));
+    }
+}
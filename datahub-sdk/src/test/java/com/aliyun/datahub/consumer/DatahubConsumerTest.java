@@ -0,0 +1,350 @@
+package com.aliyun.datahub.consumer;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldType;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.data.RecordType;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.exception.InvalidCursorException;
+import com.aliyun.datahub.model.GetCursorRequest;
+import com.aliyun.datahub.model.GetCursorResult;
+import com.aliyun.datahub.model.GetRecordsRequest;
+import com.aliyun.datahub.model.GetRecordsResult;
+import com.aliyun.datahub.model.GetSubscriptionOffsetResult;
+import com.aliyun.datahub.model.GetTopicResult;
+import com.aliyun.datahub.model.ListShardResult;
+import com.aliyun.datahub.model.Offset;
+import com.aliyun.datahub.model.Record;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.model.RecordPool;
+import com.aliyun.datahub.model.ShardEntry;
+import com.aliyun.datahub.model.ShardState;
+import com.aliyun.datahub.model.UpdateSubscriptionOffsetResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test
+public class DatahubConsumerTest {
+
+    /**
+     * Client serving records of in memory shards, the cursor is the index of next record.
+     */
+    private static class MockClient extends DatahubClient {
+        final RecordSchema schema = new RecordSchema();
+        final Map<String, ShardEntry> shards = new LinkedHashMap<String, ShardEntry>();
+        final Map<String, List<RecordEntry>> records = new HashMap<String, List<RecordEntry>>();
+        final Map<String, Offset> committed = Collections.synchronizedMap(new HashMap<String, Offset>());
+        final AtomicInteger commits = new AtomicInteger(0);
+        final AtomicInteger created = new AtomicInteger(0);
+        final Set<String> issuedCursors = Collections.synchronizedSet(new HashSet<String>());
+        final AtomicInteger cursorsToExpire = new AtomicInteger(0);
+        final Set<String> expiredCursors = Collections.synchronizedSet(new HashSet<String>());
+        // true to reject cursors by sequence, cursors by system time then start at the first record
+        volatile boolean sequenceOutOfRange = false;
+
+        MockClient() {
+            super(new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:1"));
+            schema.addField(new Field("f", FieldType.STRING));
+        }
+
+        void addShard(String shardId, ShardState state, int count, String... parents) {
+            ShardEntry shard = new ShardEntry();
+            shard.setShardId(shardId);
+            shard.setState(state);
+            shard.setParentShardIds(new ArrayList<String>(Arrays.asList(parents)));
+            shards.put(shardId, shard);
+            List<RecordEntry> list = new ArrayList<RecordEntry>();
+            for (int i = 0; i < count; ++i) {
+                RecordEntry entry = new RecordEntry(schema);
+                entry.setString(0, shardId + ":" + i);
+                entry.setShardId(shardId);
+                entry.setSequence(i);
+                entry.setSystemTime(1000L + i);
+                list.add(entry);
+            }
+            records.put(shardId, list);
+        }
+
+        @Override
+        public GetTopicResult getTopic(String projectName, String topicName) {
+            GetTopicResult result = new GetTopicResult();
+            result.setRecordType(RecordType.TUPLE);
+            result.setRecordSchema(schema);
+            return result;
+        }
+
+        @Override
+        public ListShardResult listShard(String projectName, String topicName) {
+            ListShardResult result = new ListShardResult();
+            for (ShardEntry shard : shards.values()) {
+                result.addShard(shard);
+            }
+            return result;
+        }
+
+        @Override
+        public GetSubscriptionOffsetResult getSubscriptionOffset(String projectName, String subId) {
+            GetSubscriptionOffsetResult result = new GetSubscriptionOffsetResult();
+            result.setOffsets(new HashMap<String, Offset>(committed));
+            return result;
+        }
+
+        @Override
+        public UpdateSubscriptionOffsetResult commitSubscriptionOffset(String projectName, String subId, Map<String, Offset> offsets) {
+            committed.putAll(offsets);
+            commits.incrementAndGet();
+            return new UpdateSubscriptionOffsetResult();
+        }
+
+        @Override
+        public GetCursorResult getCursor(String projectName, String topicName, String shardId, GetCursorRequest.CursorType type) {
+            GetCursorResult result = new GetCursorResult();
+            result.setCursor("0");
+            issuedCursors.add("0");
+            return result;
+        }
+
+        @Override
+        public GetCursorResult getCursor(String projectName, String topicName, String shardId, GetCursorRequest.CursorType type, long param) {
+            if (sequenceOutOfRange && type == GetCursorRequest.CursorType.SEQUENCE) {
+                throw new DatahubServiceException("sequence out of range");
+            }
+            GetCursorResult result = new GetCursorResult();
+            result.setCursor(type == GetCursorRequest.CursorType.SEQUENCE ? String.valueOf(param) : "0");
+            issuedCursors.add(result.getCursor());
+            return result;
+        }
+
+        @Override
+        public GetRecordsResult getRecords(GetRecordsRequest request) {
+            // cursors returned by GetRecords expire for good, those just got by GetCursor do not
+            if (!issuedCursors.remove(request.getCursor())) {
+                if (cursorsToExpire.getAndDecrement() > 0) {
+                    expiredCursors.add(request.getCursor());
+                }
+                if (expiredCursors.contains(request.getCursor())) {
+                    throw new InvalidCursorException("cursor expired");
+                }
+            }
+            List<RecordEntry> list = records.get(request.getShardId());
+            int start = Math.min(Integer.parseInt(request.getCursor()), list.size());
+            int end = Math.min(start + request.getLimit(), list.size());
+            RecordPool pool = request.getRecordPool();
+            List<RecordEntry> result = new ArrayList<RecordEntry>();
+            for (RecordEntry source : list.subList(start, end)) {
+                // records are copied as deserializers do, taken from the pool if any
+                if (pool == null || pool.size(schema.getLayout()) == 0) {
+                    created.incrementAndGet();
+                }
+                RecordEntry entry = pool != null ? pool.acquire(schema.getLayout()) : new RecordEntry(schema);
+                entry.setString(0, source.getString(0));
+                entry.setShardId(source.getShardId());
+                entry.setSequence(source.getSequence());
+                entry.setSystemTime(source.getSystemTime());
+                result.add(entry);
+            }
+            GetRecordsResult rs = new GetRecordsResult();
+            rs.setRecords(result);
+            rs.setNextCursor(String.valueOf(end));
+            rs.setStartSeq(start);
+            return rs;
+        }
+    }
+
+    /**
+     * Handler collecting values of handled records in order.
+     */
+    private static class CollectHandler implements RecordHandler {
+        final List<String> values = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void onRecords(String shardId, List<Record> records) throws Exception {
+            for (Record record : records) {
+                values.add(((RecordEntry) record).getString(0));
+            }
+        }
+
+        void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (values.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(values.size(), count, values.toString());
+        }
+    }
+
+    private ConsumerConfiguration newConf() {
+        ConsumerConfiguration conf = new ConsumerConfiguration();
+        conf.setFetchLimit(3);
+        conf.setIdleIntervalMs(10);
+        conf.setCommitIntervalMs(20);
+        return conf;
+    }
+
+    @Test
+    public void testReadShardsInParallel() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.ACTIVE, 10);
+        client.addShard("1", ShardState.ACTIVE, 7);
+        CollectHandler handler = new CollectHandler();
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, newConf());
+        consumer.start();
+
+        handler.await(17);
+        Assert.assertEquals(consumer.getReadingShards().size(), 2);
+        consumer.close();
+
+        Assert.assertEquals(client.committed.get("0").getSequence(), 10);
+        Assert.assertEquals(client.committed.get("0").getTimestamp(), 1009);
+        Assert.assertEquals(client.committed.get("1").getSequence(), 7);
+        // records of one shard are handled in order
+        List<String> shard0 = new ArrayList<String>();
+        for (String value : handler.values) {
+            if (value.startsWith("0:")) {
+                shard0.add(value);
+            }
+        }
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertEquals(shard0.get(i), "0:" + i);
+        }
+    }
+
+    @Test
+    public void testChildrenWaitForParent() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.CLOSED, 8);
+        client.addShard("1", ShardState.ACTIVE, 4, "0");
+        client.addShard("2", ShardState.ACTIVE, 4, "0");
+        CollectHandler handler = new CollectHandler();
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, newConf());
+        consumer.start();
+
+        handler.await(16);
+        for (int i = 0; i < 8; ++i) {
+            Assert.assertEquals(handler.values.get(i), "0:" + i);
+        }
+        Assert.assertFalse(consumer.getReadingShards().contains("0"));
+        consumer.close();
+        Assert.assertEquals(client.committed.get("0").getSequence(), 8);
+    }
+
+    @Test
+    public void testResumeFromCommittedOffset() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.ACTIVE, 10);
+        client.committed.put("0", new Offset(6, 1005));
+        CollectHandler handler = new CollectHandler();
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, newConf());
+        consumer.start();
+
+        handler.await(4);
+        consumer.close();
+        Assert.assertEquals(handler.values, Arrays.asList("0:6", "0:7", "0:8", "0:9"));
+        Assert.assertEquals(client.committed.get("0").getSequence(), 10);
+    }
+
+    @Test
+    public void testSkipRecordsBeforeCommittedOffset() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.ACTIVE, 10);
+        client.committed.put("0", new Offset(6, 1005));
+        client.sequenceOutOfRange = true;
+        CollectHandler handler = new CollectHandler();
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, newConf());
+        consumer.start();
+
+        handler.await(4);
+        consumer.close();
+        Assert.assertEquals(handler.values, Arrays.asList("0:6", "0:7", "0:8", "0:9"));
+    }
+
+    @Test
+    public void testRetryFailedHandler() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.ACTIVE, 3);
+        final AtomicInteger calls = new AtomicInteger(0);
+        CollectHandler handler = new CollectHandler() {
+            @Override
+            public void onRecords(String shardId, List<Record> records) throws Exception {
+                if (calls.incrementAndGet() <= 2) {
+                    throw new IllegalStateException("handler failed");
+                }
+                super.onRecords(shardId, records);
+            }
+        };
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, newConf());
+        consumer.start();
+
+        handler.await(3);
+        consumer.close();
+        Assert.assertEquals(calls.get(), 3);
+        Assert.assertEquals(handler.values, Arrays.asList("0:0", "0:1", "0:2"));
+        Assert.assertEquals(client.committed.get("0").getSequence(), 3);
+    }
+
+    @Test
+    public void testReuseRecords() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.ACTIVE, 30);
+        CollectHandler handler = new CollectHandler();
+        ConsumerConfiguration conf = newConf();
+        conf.setRecordPoolSize(100);
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, conf);
+        consumer.start();
+
+        handler.await(30);
+        consumer.close();
+        for (int i = 0; i < 30; ++i) {
+            Assert.assertEquals(handler.values.get(i), "0:" + i);
+        }
+        // only batches fetched ahead of processing need new records
+        Assert.assertTrue(client.created.get() < 30, "created " + client.created.get());
+        Assert.assertEquals(client.committed.get("0").getSequence(), 30);
+    }
+
+    @Test
+    public void testResumeAfterExpiredCursor() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.ACTIVE, 10);
+        client.cursorsToExpire.set(1);
+        CollectHandler handler = new CollectHandler();
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, newConf());
+        consumer.start();
+
+        handler.await(10);
+        consumer.close();
+        // read on from the record after the last one fetched, not from the start
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertEquals(handler.values.get(i), "0:" + i);
+        }
+        Assert.assertEquals(client.committed.get("0").getSequence(), 10);
+    }
+
+    @Test
+    public void testClosedCommitterDoesNotStopShard() throws Exception {
+        MockClient client = new MockClient();
+        client.addShard("0", ShardState.ACTIVE, 10);
+        OffsetCommitter committer = new OffsetCommitter(client, 20);
+        committer.close();
+        CollectHandler handler = new CollectHandler();
+        DatahubConsumer consumer = new DatahubConsumer(client, "project", "topic", "sub", handler, newConf(), committer);
+        consumer.start();
+
+        handler.await(10);
+        consumer.close();
+    }
+}
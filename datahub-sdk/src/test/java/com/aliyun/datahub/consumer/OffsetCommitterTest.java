@@ -0,0 +1,103 @@
+package com.aliyun.datahub.consumer;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.model.Offset;
+import com.aliyun.datahub.model.UpdateSubscriptionOffsetResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Test
+public class OffsetCommitterTest {
+
+    /**
+     * Client recording every CommitSubscriptionOffset call instead of sending it.
+     */
+    private static class MockClient extends DatahubClient {
+        final List<String> subIds = Collections.synchronizedList(new ArrayList<String>());
+        final List<Map<String, Offset>> requests = Collections.synchronizedList(new ArrayList<Map<String, Offset>>());
+        volatile boolean failing = false;
+
+        MockClient() {
+            super(new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:1"));
+        }
+
+        @Override
+        public UpdateSubscriptionOffsetResult commitSubscriptionOffset(String projectName, String subId, Map<String, Offset> offsets) {
+            if (failing) {
+                throw new DatahubServiceException("InternalServerError", "commit failed", null);
+            }
+            subIds.add(subId);
+            requests.add(new HashMap<String, Offset>(offsets));
+            return new UpdateSubscriptionOffsetResult();
+        }
+    }
+
+    @Test
+    public void testMergeShardsPerSubscription() {
+        MockClient client = new MockClient();
+        OffsetCommitter committer = new OffsetCommitter(client, 60000);
+        for (int i = 0; i < 100; ++i) {
+            committer.commit("project", "sub1", String.valueOf(i), new Offset(i, 1000L + i));
+            committer.commit("project", "sub1", String.valueOf(i), new Offset(i + 1, 1001L + i));
+        }
+        committer.commit("project", "sub2", "0", new Offset(5, 1005));
+        Assert.assertTrue(committer.flush());
+
+        Assert.assertEquals(client.requests.size(), 2);
+        Map<String, Offset> sub1 = client.requests.get(client.subIds.indexOf("sub1"));
+        Assert.assertEquals(sub1.size(), 100);
+        Assert.assertEquals(sub1.get("99").getSequence(), 100);
+        Assert.assertEquals(client.requests.get(client.subIds.indexOf("sub2")).get("0").getSequence(), 5);
+
+        // nothing left to commit
+        Assert.assertTrue(committer.flush());
+        Assert.assertEquals(client.requests.size(), 2);
+        committer.close();
+    }
+
+    @Test
+    public void testRetryFailedCommit() {
+        MockClient client = new MockClient();
+        OffsetCommitter committer = new OffsetCommitter(client, 60000);
+        committer.commit("project", "sub", "0", new Offset(3, 1003));
+        client.failing = true;
+        Assert.assertFalse(committer.flush());
+
+        committer.commit("project", "sub", "1", new Offset(7, 1007));
+        client.failing = false;
+        committer.close();
+        Assert.assertEquals(client.requests.size(), 1);
+        Assert.assertEquals(client.requests.get(0).size(), 2);
+        Assert.assertEquals(client.requests.get(0).get("0").getSequence(), 3);
+    }
+
+    @Test
+    public void testBackgroundFlush() throws Exception {
+        MockClient client = new MockClient();
+        OffsetCommitter committer = new OffsetCommitter(client, 10);
+        committer.commit("project", "sub", "0", new Offset(3, 1003));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.requests.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(client.requests.size(), 1);
+        committer.close();
+        Assert.assertEquals(client.requests.size(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCommitAfterClose() {
+        OffsetCommitter committer = new OffsetCommitter(new MockClient(), 1000);
+        committer.close();
+        committer.commit("project", "sub", "0", new Offset(1, 1));
+    }
+}
@@ -0,0 +1,165 @@
+package com.aliyun.datahub.metrics;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.transport.Connection;
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.transport.DefaultResponse;
+import com.aliyun.datahub.common.transport.HttpMethod;
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.common.transport.Transport;
+import com.aliyun.datahub.common.util.ResourceKey;
+import com.aliyun.datahub.exception.LimitExceededException;
+import com.aliyun.datahub.model.PutRecordsResult;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.rest.RestClient;
+import com.aliyun.datahub.util.DatahubTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+@Test
+public class DatahubMetricsTest {
+
+    private static class StubTransport implements Transport {
+        final LinkedList<DefaultResponse> responses = new LinkedList<DefaultResponse>();
+
+        void add(int status, String body) {
+            DefaultResponse response = new DefaultResponse();
+            response.setStatus(status);
+            response.setBody(body.getBytes());
+            responses.add(response);
+        }
+
+        @Override
+        public Response request(DefaultRequest req) throws IOException {
+            if (responses.isEmpty()) {
+                throw new IOException("connection refused");
+            }
+            return responses.removeFirst();
+        }
+
+        @Override
+        public Response request(DefaultRequest req, String endpoint) throws IOException {
+            return request(req);
+        }
+
+        @Override
+        public Connection connect(DefaultRequest req) throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class StubClient extends DatahubClient {
+        StubClient(DatahubConfiguration conf, Transport transport) {
+            super(conf);
+            RestClient client = new RestClient(transport, null);
+            client.setAccount(conf.getAccount());
+            client.setEndpoint(conf.getEndpoint());
+            client.setMetricsListener(conf.getMetricsListener());
+            this.restClient = client;
+        }
+    }
+
+    private static List<RecordEntry> newRecords(int count) {
+        RecordSchema schema = DatahubTestUtils.createSchema("string a");
+        List<RecordEntry> records = new ArrayList<RecordEntry>();
+        for (int i = 0; i < count; ++i) {
+            RecordEntry entry = new RecordEntry(schema);
+            entry.setString(0, "v" + i);
+            entry.setShardId("0");
+            records.add(entry);
+        }
+        return records;
+    }
+
+    @Test
+    public void testParseResource() {
+        ResourceKey key = DatahubMetrics.parseResource(HttpMethod.POST, "/projects/p1/topics/t1/shards/2?x=1");
+        Assert.assertEquals(key.getOperation(), "POST /projects/*/topics/*/shards/*");
+        Assert.assertEquals(key.getProjectName(), "p1");
+        Assert.assertEquals(key.getTopicName(), "t1");
+        Assert.assertEquals(key.getShardId(), "2");
+
+        key = DatahubMetrics.parseResource(HttpMethod.GET, "/projects/p1/topics/t1/shards");
+        Assert.assertEquals(key.getOperation(), "GET /projects/*/topics/*/shards");
+        Assert.assertNull(key.getShardId());
+
+        key = DatahubMetrics.parseResource(HttpMethod.GET, "/");
+        Assert.assertEquals(key.getOperation(), "GET /");
+    }
+
+    @Test
+    public void testRequestMetrics() {
+        DatahubMetrics metrics = new DatahubMetrics();
+        metrics.onRequest(HttpMethod.POST, "/projects/p/topics/t/shards", 200, 1000, 100, 40, 10, 10);
+        metrics.onRequest(HttpMethod.POST, "/projects/p/topics/t/shards", 500, 3000, 100, 40, 20, 20);
+        metrics.onRequest(HttpMethod.POST, "/projects/p/topics/t/shards", 0, 5000, 100, 40, 0, 0);
+
+        OperationMetrics m = metrics.getMetrics(new ResourceKey("POST /projects/*/topics/*/shards", "p", "t", null));
+        Assert.assertNotNull(m);
+        Assert.assertEquals(m.getCount(), 3);
+        Assert.assertEquals(m.getErrorCount(), 2);
+        Assert.assertEquals(m.getErrorCodes().get("500"), Long.valueOf(1));
+        Assert.assertEquals(m.getErrorCodes().get(DatahubMetrics.CONNECTION_ERROR), Long.valueOf(1));
+        Assert.assertEquals(m.getRawBytesSent(), 300);
+        Assert.assertEquals(m.getBytesSent(), 120);
+        Assert.assertEquals(m.getCompressionRatio(), 0.4, 0.0001);
+        Assert.assertEquals(m.getLatency().getMax(), 5000);
+    }
+
+    @Test
+    public void testClientMetrics() {
+        DatahubConfiguration conf = new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:1");
+        DatahubMetrics metrics = new DatahubMetrics();
+        conf.setMetricsListener(metrics);
+        StubTransport transport = new StubTransport();
+        DatahubClient client = new StubClient(conf, transport);
+
+        transport.add(200, "{\"FailedRecordCount\":1,\"FailedRecords\":[{\"Index\":1,\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}]}");
+        transport.add(200, "{\"FailedRecordCount\":0,\"FailedRecords\":[]}");
+        PutRecordsResult result = client.putRecords("p", "t", newRecords(3), 1);
+        Assert.assertEquals(result.getFailedRecordCount(), 0);
+
+        transport.add(429, "{\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}");
+        try {
+            client.putRecords("p", "t", newRecords(2));
+            Assert.fail("should throw");
+        } catch (LimitExceededException e) {
+            // expected
+        }
+
+        OperationMetrics put = metrics.getMetrics(new ResourceKey(MetricsListener.PUT_RECORDS, "p", "t", null));
+        Assert.assertEquals(put.getCount(), 3);
+        Assert.assertEquals(put.getRecordCount(), 6);
+        Assert.assertEquals(put.getFailedRecordCount(), 3);
+        Assert.assertEquals(put.getRetryCount(), 1);
+        Assert.assertEquals(put.getErrorCodes().get("LimitExceeded"), Long.valueOf(1));
+
+        OperationMetrics request = metrics.getMetrics(new ResourceKey("POST /projects/*/topics/*/shards", "p", "t", null));
+        Assert.assertEquals(request.getCount(), 3);
+        Assert.assertEquals(request.getErrorCodes().get("429"), Long.valueOf(1));
+        Assert.assertTrue(request.getBytesSent() > 0);
+
+        Map<ResourceKey, OperationMetrics> all = metrics.getMetrics();
+        Assert.assertEquals(all.size(), 2);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        DatahubConfiguration conf = new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:1");
+        Assert.assertNull(conf.getMetricsListener());
+        Assert.assertNull(conf.newRestClient().getMetricsListener());
+    }
+}
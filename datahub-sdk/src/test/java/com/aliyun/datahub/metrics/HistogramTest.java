@@ -0,0 +1,50 @@
+package com.aliyun.datahub.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class HistogramTest {
+
+    @Test
+    public void testSmallValuesExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 20; ++i) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(histogram.getCount(), 20);
+        Assert.assertEquals(histogram.getMax(), 20);
+        Assert.assertEquals(histogram.getMean(), 10.5, 0.001);
+        Assert.assertEquals(histogram.getValueAtPercentile(50), 10);
+        Assert.assertEquals(histogram.getValueAtPercentile(100), 20);
+    }
+
+    @Test
+    public void testPrecision() {
+        Histogram histogram = new Histogram();
+        for (long v = 1; v < 1000000000L; v = v * 3 + 7) {
+            histogram.record(v);
+            long got = histogram.getValueAtPercentile(100);
+            Assert.assertTrue(got >= v && got <= v + v / 32, v + " read as " + got);
+        }
+    }
+
+    @Test
+    public void testBucketIndex() {
+        long[] values = {0, 31, 32, 33, 63, 64, 65, 1000, 123456789L, Long.MAX_VALUE};
+        for (long v : values) {
+            int index = Histogram.indexOf(v);
+            Assert.assertTrue(Histogram.highestValueOf(index) >= v);
+            if (index > 0) {
+                Assert.assertTrue(Histogram.highestValueOf(index - 1) < v);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(histogram.getValueAtPercentile(99), 0);
+        Assert.assertEquals(histogram.getMean(), 0.0);
+    }
+}
@@ -5,6 +5,7 @@ import com.aliyun.datahub.common.data.FieldType;
 import com.aliyun.datahub.common.data.RecordSchema;
 import com.aliyun.datahub.exception.DatahubClientException;
 import com.aliyun.datahub.util.DatahubTestUtils;
+import org.codehaus.jackson.JsonNode;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -449,4 +450,94 @@ public class RecordEntryTest {
         Assert.assertTrue(entry.getBoolean("ColBOOL4"));
         Assert.assertEquals(entry.getTimeStamp("ColTIME5").longValue(), 123456789000000L);
     }
+
+    @Test
+    public void testPrimitiveValue() {
+        RecordSchema schema = DatahubTestUtils.createSchema("bigint a, timestamp b, double c, boolean d, string e");
+        RecordEntry entry = new RecordEntry(schema);
+        Assert.assertTrue(entry.isNull(0));
+
+        entry.setBigint(0, -5L);
+        entry.setTimeStamp(1, 123456789000000L);
+        entry.setDouble(2, 1.5);
+        entry.setBoolean(3, true);
+
+        Assert.assertFalse(entry.isNull(0));
+        Assert.assertEquals(-5L, entry.getBigintValue(0));
+        Assert.assertEquals(123456789000000L, entry.getTimeStampValue("b"));
+        Assert.assertEquals(1.5, entry.getDoubleValue(2));
+        Assert.assertTrue(entry.getBooleanValue(3));
+        Assert.assertEquals(Long.valueOf(-5L), entry.getBigint(0));
+        Assert.assertEquals(Double.valueOf(1.5), entry.getDouble("c"));
+
+        entry.setDouble(2, (Double) null);
+        Assert.assertTrue(entry.isNull("c"));
+        Assert.assertNull(entry.getDouble(2));
+    }
+
+    @Test (expectedExceptions = NullPointerException.class)
+    public void testPrimitiveNullValue() {
+        RecordSchema schema = DatahubTestUtils.createSchema("bigint a");
+        RecordEntry entry = new RecordEntry(schema);
+        entry.getBigintValue(0);
+    }
+
+    @Test
+    public void testMismatchedType() {
+        RecordSchema schema = DatahubTestUtils.createSchema("string a, bigint b");
+        RecordEntry entry = new RecordEntry(schema);
+        entry.setDouble(0, 1.0);
+        entry.setString(1, "12");
+        Assert.assertEquals(Double.valueOf(1.0), entry.getDouble(0));
+        Assert.assertEquals("12", entry.getString(1));
+        Assert.assertEquals(entry.getRecordSize(), 5);
+
+        JsonNode data = entry.toJsonNode().get("Data");
+        Assert.assertEquals(data.get(0).asText(), "1.0");
+        Assert.assertEquals(data.get(1).asText(), "12");
+
+        entry.setBigint(1, 12L);
+        Assert.assertEquals(12L, entry.getBigintValue(1));
+        Assert.assertEquals(entry.getRecordSize(), 11);
+    }
+
+    @Test (expectedExceptions = ClassCastException.class)
+    public void testMismatchedGetter() {
+        RecordSchema schema = DatahubTestUtils.createSchema("string a");
+        RecordEntry entry = new RecordEntry(schema);
+        entry.setDouble(0, 1.0);
+        entry.getString(0);
+    }
+
+    @Test
+    public void testSharedLayout() {
+        RecordSchema schema = DatahubTestUtils.createSchema("string a, bigint b");
+        RecordEntry entry1 = new RecordEntry(schema);
+        RecordEntry entry2 = new RecordEntry(schema);
+        Assert.assertSame(entry1.getLayout(), entry2.getLayout());
+
+        schema.addField(new Field("c", FieldType.DOUBLE));
+        RecordEntry entry3 = new RecordEntry(schema);
+        Assert.assertNotSame(entry1.getLayout(), entry3.getLayout());
+        Assert.assertEquals(3, entry3.getFieldCount());
+        Assert.assertEquals(2, entry1.getFieldCount());
+    }
+
+    @Test
+    public void testManyFields() {
+        RecordSchema schema = new RecordSchema();
+        for (int i = 0; i < 100; ++i) {
+            schema.addField(new Field("f" + i, FieldType.BIGINT));
+        }
+        RecordEntry entry = new RecordEntry(schema);
+        for (int i = 0; i < 100; i += 3) {
+            entry.setBigint(i, i);
+        }
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertEquals(i % 3 != 0, entry.isNull(i));
+        }
+        Assert.assertEquals(99L, entry.getBigintValue("f99"));
+        entry.clear();
+        Assert.assertTrue(entry.isNull(99));
+    }
 }
@@ -0,0 +1,79 @@
+package com.aliyun.datahub.model;
+
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.util.DatahubTestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class RecordPoolTest {
+
+    @Test
+    public void testReuseReleasedRecord() {
+        RecordSchema schema = DatahubTestUtils.createSchema("string a, bigint b");
+        RecordPool pool = new RecordPool(10);
+        RecordEntry entry = pool.acquire(schema.getLayout());
+        entry.setString(0, "value");
+        entry.setBigint(1, 5L);
+        entry.setShardId("0");
+        entry.setSequence(7);
+        entry.setSystemTime(1000);
+        entry.putAttribute("key", "val");
+
+        pool.release(entry);
+        Assert.assertEquals(pool.size(schema.getLayout()), 1);
+
+        RecordEntry reused = pool.acquire(schema.getLayout());
+        Assert.assertSame(reused, entry);
+        Assert.assertEquals(pool.size(schema.getLayout()), 0);
+        Assert.assertTrue(reused.isNull(0));
+        Assert.assertTrue(reused.isNull(1));
+        Assert.assertNull(reused.getShardId());
+        Assert.assertEquals(reused.getSequence(), 0);
+        Assert.assertEquals(reused.getSystemTime(), 0);
+        Assert.assertTrue(reused.getAttributes().isEmpty());
+    }
+
+    @Test
+    public void testPoolPerLayout() {
+        RecordSchema schema1 = DatahubTestUtils.createSchema("string a");
+        RecordSchema schema2 = DatahubTestUtils.createSchema("string a");
+        RecordPool pool = new RecordPool(10);
+        RecordEntry entry = pool.acquire(schema1.getLayout());
+        pool.release(entry);
+
+        Assert.assertNotSame(pool.acquire(schema2.getLayout()), entry);
+        Assert.assertSame(pool.acquire(schema1.getLayout()), entry);
+    }
+
+    @Test
+    public void testCapacity() {
+        RecordSchema schema = DatahubTestUtils.createSchema("bigint a");
+        RecordPool pool = new RecordPool(2);
+        for (int i = 0; i < 5; ++i) {
+            pool.release(new RecordEntry(schema));
+        }
+        pool.release(new BlobRecordEntry());
+        Assert.assertEquals(pool.size(schema.getLayout()), 2);
+    }
+
+    @Test
+    public void testOldLayoutsDropped() {
+        RecordSchema old = DatahubTestUtils.createSchema("bigint a");
+        RecordPool pool = new RecordPool(2);
+        pool.release(new RecordEntry(old));
+        for (int i = 0; i < RecordPool.MAX_LAYOUTS; ++i) {
+            pool.release(new RecordEntry(DatahubTestUtils.createSchema("bigint a")));
+        }
+        RecordSchema current = DatahubTestUtils.createSchema("bigint a");
+        pool.release(new RecordEntry(current));
+
+        Assert.assertEquals(pool.size(old.getLayout()), 0);
+        Assert.assertEquals(pool.size(current.getLayout()), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RecordPool(0);
+    }
+}
@@ -0,0 +1,166 @@
+package com.aliyun.datahub.model;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldType;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.util.KeyRangeUtils;
+import com.aliyun.datahub.exception.DatahubClientException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+@Test
+public class ShardRouterTest {
+    private static final String MIN_KEY = "00000000000000000000000000000000";
+    private static final String MID_KEY = "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+    private static final String QUARTER_KEY = "BFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+    private static final String MAX_KEY = "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+
+    /**
+     * Client returning a settable shard list and counting ListShard calls.
+     */
+    static class MockClient extends DatahubClient {
+        volatile List<ShardEntry> shards = new ArrayList<ShardEntry>();
+        volatile int listCount = 0;
+        volatile boolean failing = false;
+
+        MockClient() {
+            super(new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:1"));
+        }
+
+        @Override
+        public ListShardResult listShard(String projectName, String topicName) {
+            ++listCount;
+            if (failing) {
+                throw new DatahubClientException("list shard failed");
+            }
+            ListShardResult result = new ListShardResult();
+            for (ShardEntry shard : shards) {
+                result.addShard(shard);
+            }
+            return result;
+        }
+    }
+
+    public static ShardEntry newShard(String shardId, ShardState state, String begin, String end) {
+        ShardEntry shard = new ShardEntry();
+        shard.setShardId(shardId);
+        shard.setState(state);
+        shard.setBeginHashKey(begin);
+        shard.setEndHashKey(end);
+        return shard;
+    }
+
+    private RecordEntry newRecord(String partitionKey, String hashKey) {
+        RecordSchema schema = new RecordSchema();
+        schema.addField(new Field("f", FieldType.STRING));
+        RecordEntry entry = new RecordEntry(schema);
+        entry.setString(0, "v");
+        entry.setPartitionKey(partitionKey);
+        entry.setHashKey(hashKey);
+        return entry;
+    }
+
+    @Test
+    public void testKeyCompareSameAsBigInteger() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; ++i) {
+            String k1 = KeyRangeUtils.bigIntToHash(new BigInteger(128, random));
+            String k2 = i % 10 == 0 ? k1 : KeyRangeUtils.bigIntToHash(new BigInteger(128, random));
+            long[] p1 = ShardRouter.parseHashKey(k1);
+            long[] p2 = ShardRouter.parseHashKey(k2);
+            Assert.assertEquals(ShardRouter.compare(p1[0], p1[1], p2[0], p2[1]),
+                    Integer.signum(KeyRangeUtils.hashKeyToBigInt(k1).compareTo(KeyRangeUtils.hashKeyToBigInt(k2))));
+        }
+    }
+
+    @Test
+    public void testHashPartitionKey() {
+        for (String key : new String[]{"a", "user-1", "partition key 2"}) {
+            long[] hashed = ShardRouter.hashPartitionKey(key);
+            long[] expected = ShardRouter.parseHashKey(KeyRangeUtils.md5Signature(key));
+            Assert.assertEquals(hashed, expected);
+        }
+    }
+
+    @Test
+    public void testRoute() {
+        MockClient client = new MockClient();
+        client.shards.add(newShard("0", ShardState.ACTIVE, MIN_KEY, MID_KEY));
+        client.shards.add(newShard("1", ShardState.ACTIVE, MID_KEY, MAX_KEY));
+        ShardRouter router = new ShardRouter(client, 60000);
+
+        Assert.assertEquals(router.route("p", "t", newRecord(null, MIN_KEY)), "0");
+        Assert.assertEquals(router.route("p", "t", newRecord(null, "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFE")), "0");
+        Assert.assertEquals(router.route("p", "t", newRecord(null, MID_KEY)), "1");
+        Assert.assertEquals(router.route("p", "t", newRecord(null, MAX_KEY)), "1");
+        Assert.assertNull(router.route("p", "t", newRecord(null, null)));
+
+        String partitionKey = "user-1";
+        String expected = KeyRangeUtils.hashKeyToBigInt(KeyRangeUtils.md5Signature(partitionKey))
+                .compareTo(KeyRangeUtils.hashKeyToBigInt(MID_KEY)) < 0 ? "0" : "1";
+        Assert.assertEquals(router.route("p", "t", newRecord(partitionKey, null)), expected);
+
+        RecordEntry withShard = newRecord(partitionKey, null);
+        withShard.setShardId("5");
+        Assert.assertEquals(router.route("p", "t", withShard), "5");
+        Assert.assertEquals(client.listCount, 1);
+    }
+
+    @Test
+    public void testRouteAfterSplit() {
+        MockClient client = new MockClient();
+        client.shards.add(newShard("0", ShardState.ACTIVE, MIN_KEY, MID_KEY));
+        client.shards.add(newShard("1", ShardState.ACTIVE, MID_KEY, MAX_KEY));
+        ShardRouter router = new ShardRouter(client, 60000);
+        Assert.assertEquals(router.route("p", "t", newRecord(null, "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF0")), "1");
+
+        List<ShardEntry> split = new ArrayList<ShardEntry>();
+        split.add(newShard("0", ShardState.ACTIVE, MIN_KEY, MID_KEY));
+        split.add(newShard("1", ShardState.CLOSED, MID_KEY, MAX_KEY));
+        split.add(newShard("2", ShardState.ACTIVE, MID_KEY, QUARTER_KEY));
+        split.add(newShard("3", ShardState.ACTIVE, QUARTER_KEY, MAX_KEY));
+        client.shards = split;
+
+        // cached until invalidated
+        Assert.assertEquals(router.route("p", "t", newRecord(null, "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF0")), "1");
+        router.invalidate("p", "t");
+        Assert.assertEquals(router.route("p", "t", newRecord(null, "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF0")), "3");
+        Assert.assertEquals(router.route("p", "t", newRecord(null, "8FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF")), "2");
+        Assert.assertEquals(client.listCount, 2);
+    }
+
+    @Test
+    public void testRefreshByInterval() throws Exception {
+        MockClient client = new MockClient();
+        client.shards.add(newShard("0", ShardState.ACTIVE, MIN_KEY, MAX_KEY));
+        ShardRouter router = new ShardRouter(client, 10);
+        router.route("p", "t", newRecord("a", null));
+        Thread.sleep(20);
+        router.route("p", "t", newRecord("a", null));
+        Assert.assertEquals(client.listCount, 2);
+    }
+
+    @Test
+    public void testFailedLoadKeepsLastShards() throws Exception {
+        MockClient client = new MockClient();
+        client.shards.add(newShard("0", ShardState.ACTIVE, MIN_KEY, MAX_KEY));
+        ShardRouter router = new ShardRouter(client, 50);
+        Assert.assertEquals(router.route("p", "t", newRecord("a", null)), "0");
+
+        Thread.sleep(60);
+        client.failing = true;
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertEquals(router.route("p", "t", newRecord("a", null)), "0");
+        }
+        // not listed again until the backoff passed
+        Assert.assertEquals(client.listCount, 2);
+    }
+}
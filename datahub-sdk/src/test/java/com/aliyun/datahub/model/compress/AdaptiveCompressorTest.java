@@ -0,0 +1,82 @@
+package com.aliyun.datahub.model.compress;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+@Test
+public class AdaptiveCompressorTest {
+    private static final String TOPIC_A = "/projects/p/topics/a/shards";
+    private static final String TOPIC_B = "/projects/p/topics/b/shards/0";
+
+    private AdaptiveCompressor newCompressor() {
+        CompressionOptions options = new CompressionOptions();
+        options.setAdaptiveFormats(Arrays.asList(CompressionFormat.LZ4, CompressionFormat.ZSTD));
+        options.setSampleInterval(10);
+        return new AdaptiveCompressor(options);
+    }
+
+    @Test
+    public void testKeyOf() {
+        Assert.assertEquals(AdaptiveCompressor.keyOf(TOPIC_A), "/projects/p/topics/a");
+        Assert.assertEquals(AdaptiveCompressor.keyOf(TOPIC_B), "/projects/p/topics/b");
+        Assert.assertEquals(AdaptiveCompressor.keyOf("/projects/p/topics/c"), "/projects/p/topics/c");
+        Assert.assertEquals(AdaptiveCompressor.keyOf("/projects/p"), "");
+    }
+
+    @Test
+    public void testSkipSmallBody() {
+        Assert.assertNull(newCompressor().select(TOPIC_A, CompressionOptions.DEFAULT_MIN_COMPRESS_SIZE - 1));
+    }
+
+    @Test
+    public void testSelectPerTopic() {
+        AdaptiveCompressor compressor = newCompressor();
+        // topic a compresses well with zstd, topic b does not compress
+        for (int i = 0; i < 100; ++i) {
+            CompressionFormat format = compressor.select(TOPIC_A, 10000);
+            Assert.assertNotNull(format);
+            compressor.record(TOPIC_A, format, 10000, format == CompressionFormat.ZSTD ? 2000 : 4000, 10000);
+            format = compressor.select(TOPIC_B, 10000);
+            if (format != null) {
+                compressor.record(TOPIC_B, format, 10000, 10040, 10000);
+            }
+        }
+        Assert.assertEquals(compressor.getSelected(TOPIC_A), CompressionFormat.ZSTD);
+        Assert.assertNull(compressor.getSelected(TOPIC_B));
+
+        int sampled = 0;
+        for (int i = 0; i < 100; ++i) {
+            if (compressor.select(TOPIC_B, 10000) != null) {
+                ++sampled;
+            }
+        }
+        Assert.assertEquals(sampled, 10);
+    }
+
+    @Test
+    public void testSlowCodecLoses() {
+        AdaptiveCompressor compressor = newCompressor();
+        for (int i = 0; i < 100; ++i) {
+            CompressionFormat format = compressor.select(TOPIC_A, 10000);
+            // zstd saves 1000 bytes but takes 20us more, the network sends those bytes in 10us
+            compressor.record(TOPIC_A, format, 10000, format == CompressionFormat.ZSTD ? 4000 : 5000,
+                    format == CompressionFormat.ZSTD ? 30000 : 10000);
+        }
+        Assert.assertEquals(compressor.getSelected(TOPIC_A), CompressionFormat.LZ4);
+    }
+
+    @Test
+    public void testBusyTopicSurvivesManyTopics() {
+        AdaptiveCompressor compressor = newCompressor();
+        for (int i = 0; i < 20; ++i) {
+            CompressionFormat format = compressor.select(TOPIC_A, 10000);
+            compressor.record(TOPIC_A, format, 10000, format == CompressionFormat.ZSTD ? 2000 : 4000, 10000);
+        }
+        for (int i = 0; i < 10000; ++i) {
+            compressor.select("/projects/p/topics/t" + i, 10000);
+            Assert.assertEquals(compressor.getSelected(TOPIC_A), CompressionFormat.ZSTD);
+        }
+    }
+}
@@ -7,8 +7,11 @@ import net.jpountz.lz4.LZ4Exception;
 import org.junit.Assert;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 @Test
 public class CompressionTest {
@@ -58,4 +61,94 @@ public class CompressionTest {
 
         Assert.assertArrayEquals(restored, body);
     }
+
+    private byte[] newCompressibleBody(int size) {
+        byte[] body = new byte[size];
+        Random random = new Random(1);
+        for (int i = 0; i < size; ++i) {
+            body[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return body;
+    }
+
+    @Test
+    public void testZLIBSameAsStream() throws IOException {
+        for (int size : new int[]{0, 1, 100, 4096, 1 << 20}) {
+            byte[] body = newCompressibleBody(size);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            DeflaterOutputStream stream = new DeflaterOutputStream(expected, new Deflater(Deflater.BEST_SPEED));
+            stream.write(body);
+            stream.close();
+
+            // twice to check the reused deflater is reset
+            Assert.assertArrayEquals(Compression.zlibCompress(body), expected.toByteArray());
+            byte[] compressed = Compression.zlibCompress(body);
+            Assert.assertArrayEquals(compressed, expected.toByteArray());
+            Assert.assertArrayEquals(Compression.zlibDecompress(compressed), body);
+            Assert.assertArrayEquals(Compression.zlibDecompress(compressed, size), body);
+        }
+    }
+
+    @Test
+    public void testZLIBCorrupted() throws IOException {
+        byte[] body = newCompressibleBody(1000);
+        byte[] compressed = Compression.zlibCompress(body);
+        compressed[5] ^= 0x55;
+        try {
+            Compression.zlibDecompress(compressed);
+            Assert.fail("corrupted data is restored");
+        } catch (IOException e) {
+            // expected
+        }
+        // the inflater of this thread still works
+        Assert.assertArrayEquals(Compression.zlibDecompress(Compression.zlibCompress(body)), body);
+    }
+
+    @Test
+    public void testLZ4IntoBuffer() {
+        byte[] body = newCompressibleBody(10000);
+        byte[] compressed = Compression.lz4Compress(body);
+        byte[] buffer = new byte[body.length + 10];
+        int size = Compression.lz4Decompress(compressed, buffer, 10, body.length);
+        Assert.assertEquals(size, body.length);
+        byte[] restored = new byte[size];
+        System.arraycopy(buffer, 10, restored, 0, size);
+        Assert.assertArrayEquals(restored, body);
+    }
+
+    @Test
+    public void testZSTDAndSnappy() {
+        byte[] body = newCompressibleBody(10000);
+        for (CompressionFormat format : new CompressionFormat[]{CompressionFormat.ZSTD, CompressionFormat.SNAPPY}) {
+            byte[] compressed = Compression.compress(body, format);
+            Assert.assertTrue(compressed.length < body.length);
+            Assert.assertArrayEquals(Compression.decompress(compressed, format), body);
+            Assert.assertArrayEquals(Compression.decompress(compressed, format, body.length), body);
+            Assert.assertEquals(CompressionFormat.fromValue(format.toString()), format);
+        }
+    }
+
+    @Test
+    public void testZSTDLevelAndDictionary() {
+        byte[] body = newCompressibleBody(2000);
+        CompressionOptions options = new CompressionOptions();
+        options.setZstdLevel(19);
+        byte[] high = Compression.compress(body, CompressionFormat.ZSTD, options);
+        Assert.assertTrue(high.length <= Compression.compress(body, CompressionFormat.ZSTD).length);
+        Assert.assertArrayEquals(Compression.decompress(high, CompressionFormat.ZSTD, 0, options), body);
+
+        // a body sharing content with the dictionary compresses better
+        options.setZstdDictionary(newCompressibleBody(4000));
+        byte[] withDict = Compression.compress(body, CompressionFormat.ZSTD, options);
+        Assert.assertTrue(withDict.length + " vs " + high.length, withDict.length < high.length);
+        Assert.assertArrayEquals(Compression.decompress(withDict, CompressionFormat.ZSTD, body.length, options), body);
+    }
+
+    @Test
+    public void testAvailable() {
+        // optional codecs are on the test class path
+        for (CompressionFormat format : CompressionFormat.values()) {
+            Assert.assertTrue(format.toString(), Compression.isAvailable(format));
+        }
+    }
 }
@@ -0,0 +1,371 @@
+package com.aliyun.datahub.producer;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldType;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.exception.DatahubClientException;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.model.ErrorEntry;
+import com.aliyun.datahub.model.ListShardResult;
+import com.aliyun.datahub.model.PutRecordsResult;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.model.ShardEntry;
+import com.aliyun.datahub.model.ShardRouterTest;
+import com.aliyun.datahub.model.ShardState;
+import com.aliyun.datahub.retry.RecordRetryPolicy;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+@Test
+public class DatahubProducerTest {
+
+    /**
+     * Client recording every PutRecords call instead of sending it.
+     */
+    private static class MockClient extends DatahubClient {
+        final List<List<RecordEntry>> batches = Collections.synchronizedList(new ArrayList<List<RecordEntry>>());
+        volatile String failedValue;
+        volatile String failedCode = "InvalidParameter";
+        volatile int failedTimes = Integer.MAX_VALUE;
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<ShardEntry> shards = new ArrayList<ShardEntry>();
+        volatile int listCount = 0;
+
+        MockClient() {
+            this(false);
+        }
+
+        /**
+         * @param gated true to hold requests until the gate is opened
+         */
+        MockClient(boolean gated) {
+            super(new DatahubConfiguration(new AliyunAccount("id", "key"), "http://127.0.0.1:1"));
+            if (!gated) {
+                gate.countDown();
+            }
+        }
+
+        @Override
+        public PutRecordsResult putRecords(String projectName, String topicName, List<RecordEntry> entries) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(new ArrayList<RecordEntry>(entries));
+            PutRecordsResult result = new PutRecordsResult();
+            for (int i = 0; i < entries.size(); ++i) {
+                if (entries.get(i).getString(0).equals(failedValue) && failedTimes-- > 0) {
+                    result.addFailedIndex(i);
+                    result.addFailedRecord(entries.get(i));
+                    result.addFailedError(new ErrorEntry(failedCode, "bad record"));
+                }
+            }
+            result.setFailedRecordCount(result.getFailedRecords().size());
+            return result;
+        }
+
+        @Override
+        public ListShardResult listShard(String projectName, String topicName) {
+            ++listCount;
+            ListShardResult result = new ListShardResult();
+            for (ShardEntry shard : shards) {
+                result.addShard(shard);
+            }
+            return result;
+        }
+    }
+
+    private RecordEntry newRecord(String value, String shardId) {
+        RecordSchema schema = new RecordSchema();
+        schema.addField(new Field("f", FieldType.STRING));
+        RecordEntry entry = new RecordEntry(schema);
+        entry.setString(0, value);
+        entry.setShardId(shardId);
+        return entry;
+    }
+
+    @Test
+    public void testBatchByRecordCount() throws Exception {
+        MockClient client = new MockClient();
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setMaxBatchRecords(10);
+        conf.setLingerMs(60000);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        List<Future<RecordEntry>> futures = new ArrayList<Future<RecordEntry>>();
+        for (int i = 0; i < 25; ++i) {
+            futures.add(producer.send("project", "topic", newRecord("v" + i, "0")));
+        }
+        producer.flush();
+
+        Assert.assertEquals(client.batches.size(), 3);
+        Assert.assertEquals(client.batches.get(0).size(), 10);
+        Assert.assertEquals(client.batches.get(1).size(), 10);
+        Assert.assertEquals(client.batches.get(2).size(), 5);
+        for (int i = 0; i < 25; ++i) {
+            Assert.assertTrue(futures.get(i).isDone());
+            Assert.assertEquals(futures.get(i).get().getString(0), "v" + i);
+        }
+        producer.close();
+    }
+
+    @Test
+    public void testLinger() throws Exception {
+        MockClient client = new MockClient();
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setLingerMs(20);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        Future<RecordEntry> future = producer.send("project", "topic", newRecord("v", "0"));
+        Assert.assertEquals(future.get().getString(0), "v");
+        Assert.assertEquals(client.batches.size(), 1);
+        producer.close();
+    }
+
+    @Test
+    public void testSeparateShards() throws Exception {
+        MockClient client = new MockClient();
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setLingerMs(60000);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        for (int i = 0; i < 6; ++i) {
+            producer.send("project", "topic", newRecord("v" + i, String.valueOf(i % 2)));
+        }
+        producer.close();
+
+        Assert.assertEquals(client.batches.size(), 2);
+        for (List<RecordEntry> batch : client.batches) {
+            Assert.assertEquals(batch.size(), 3);
+            for (RecordEntry entry : batch) {
+                Assert.assertEquals(entry.getShardId(), batch.get(0).getShardId());
+            }
+        }
+    }
+
+    @Test
+    public void testFailedRecord() throws Exception {
+        MockClient client = new MockClient();
+        client.failedValue = "bad";
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setLingerMs(60000);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        Future<RecordEntry> good = producer.send("project", "topic", newRecord("good", "0"));
+        Future<RecordEntry> bad = producer.send("project", "topic", newRecord("bad", "0"));
+        producer.flush();
+        // not retryable
+        Assert.assertEquals(client.batches.size(), 1);
+
+        Assert.assertEquals(good.get().getString(0), "good");
+        try {
+            bad.get();
+            Assert.fail("record should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DatahubServiceException);
+            Assert.assertEquals(((DatahubServiceException) e.getCause()).getErrorCode(), "InvalidParameter");
+        }
+        producer.close();
+    }
+
+    @Test
+    public void testRouteByKey() throws Exception {
+        MockClient client = new MockClient();
+        client.shards.add(ShardRouterTest.newShard("0", ShardState.ACTIVE,
+                "00000000000000000000000000000000", "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        client.shards.add(ShardRouterTest.newShard("1", ShardState.ACTIVE,
+                "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        client.failedValue = "v5";
+        client.failedCode = "InvalidShardOperation";
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setLingerMs(60000);
+        conf.setRouteByKey(true);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        for (int i = 0; i < 6; ++i) {
+            RecordEntry record = newRecord("v" + i, null);
+            record.setHashKey(i % 2 == 0 ? "10000000000000000000000000000000" : "F0000000000000000000000000000000");
+            producer.send("project", "topic", record);
+        }
+        producer.flush();
+
+        Assert.assertEquals(client.batches.size(), 2);
+        for (List<RecordEntry> batch : client.batches) {
+            Assert.assertEquals(batch.size(), 3);
+            for (RecordEntry entry : batch) {
+                Assert.assertEquals(entry.getHashKey(), batch.get(0).getHashKey());
+                // routing is left to service, shard id is not set on records
+                Assert.assertNull(entry.getShardId());
+            }
+        }
+        Assert.assertEquals(client.listCount, 1);
+
+        // shards are reloaded after InvalidShardOperation
+        RecordEntry record = newRecord("v", null);
+        record.setPartitionKey("key");
+        producer.send("project", "topic", record);
+        producer.close();
+        Assert.assertEquals(client.listCount, 2);
+    }
+
+    @Test(timeOut = 10000)
+    public void testInvalidHashKeyKeepsBuffer() throws Exception {
+        MockClient client = new MockClient();
+        client.shards.add(ShardRouterTest.newShard("0", ShardState.ACTIVE,
+                "00000000000000000000000000000000", "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setRouteByKey(true);
+        conf.setMaxBufferedBytes(1);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        for (int i = 0; i < 3; ++i) {
+            RecordEntry record = newRecord("bad", null);
+            record.setHashKey("123");
+            try {
+                producer.send("project", "topic", record);
+                Assert.fail("should throw");
+            } catch (DatahubClientException e) {
+                // expected
+            }
+        }
+        producer.send("project", "topic", newRecord("v", "0")).get();
+        producer.close();
+        Assert.assertEquals(client.batches.size(), 1);
+    }
+
+    private static ProducerConfiguration newRetryConf(boolean keepKeyOrder) {
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setLingerMs(60000);
+        conf.setMaxBatchRecords(3);
+        conf.setKeepKeyOrder(keepKeyOrder);
+        RecordRetryPolicy policy = new RecordRetryPolicy();
+        policy.setThrottledBaseDelayMs(200);
+        conf.setRetryPolicy(policy);
+        return conf;
+    }
+
+    private static List<String> valuesOf(List<RecordEntry> batch) {
+        List<String> values = new ArrayList<String>();
+        for (RecordEntry entry : batch) {
+            values.add(entry.getString(0));
+        }
+        return values;
+    }
+
+    @Test
+    public void testRetryThrottledWithBufferedRecords() throws Exception {
+        MockClient client = new MockClient(true);
+        client.failedValue = "v1";
+        client.failedCode = "LimitExceeded";
+        client.failedTimes = 1;
+        DatahubProducer producer = new DatahubProducer(client, newRetryConf(false));
+
+        List<Future<RecordEntry>> futures = new ArrayList<Future<RecordEntry>>();
+        for (int i = 0; i < 5; ++i) {
+            futures.add(producer.send("project", "topic", newRecord("v" + i, "0")));
+        }
+        // first batch answered after the others are buffered
+        client.gate.countDown();
+        producer.flush();
+
+        for (int i = 0; i < 5; ++i) {
+            Assert.assertEquals(futures.get(i).get().getString(0), "v" + i);
+        }
+        // the failed record is batched behind records buffered during the backoff
+        Assert.assertEquals(client.batches.size(), 2);
+        Assert.assertEquals(valuesOf(client.batches.get(0)), Arrays.asList("v0", "v1", "v2"));
+        Assert.assertEquals(valuesOf(client.batches.get(1)), Arrays.asList("v3", "v4", "v1"));
+        producer.close();
+    }
+
+    @Test
+    public void testRetryKeepKeyOrder() throws Exception {
+        MockClient client = new MockClient(true);
+        client.failedValue = "v1";
+        client.failedCode = "LimitExceeded";
+        client.failedTimes = 1;
+        DatahubProducer producer = new DatahubProducer(client, newRetryConf(true));
+
+        for (int i = 0; i < 5; ++i) {
+            producer.send("project", "topic", newRecord("v" + i, "0"));
+        }
+        client.gate.countDown();
+        producer.flush();
+
+        Assert.assertEquals(client.batches.size(), 2);
+        Assert.assertEquals(valuesOf(client.batches.get(1)), Arrays.asList("v1", "v3", "v4"));
+        producer.close();
+    }
+
+    @Test
+    public void testRetryExhausted() throws Exception {
+        MockClient client = new MockClient();
+        client.failedValue = "v";
+        client.failedCode = "InternalServerError";
+        ProducerConfiguration conf = newRetryConf(false);
+        conf.setRetries(2);
+        conf.getRetryPolicy().setBaseDelayMs(1);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        Future<RecordEntry> future = producer.send("project", "topic", newRecord("v", "0"));
+        producer.flush();
+        try {
+            future.get();
+            Assert.fail("record should fail");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(((DatahubServiceException) e.getCause()).getErrorCode(), "InternalServerError");
+        }
+        Assert.assertEquals(client.batches.size(), 3);
+        producer.close();
+    }
+
+    @Test(timeOut = 10000)
+    public void testCloseFailsLeftoverRecords() throws Exception {
+        MockClient client = new MockClient(true);
+        ProducerConfiguration conf = new ProducerConfiguration();
+        conf.setMaxBatchRecords(1);
+        conf.setLingerMs(60000);
+        DatahubProducer producer = new DatahubProducer(client, conf);
+
+        Future<RecordEntry> sent = producer.send("project", "topic", newRecord("a", "0"));
+        Future<RecordEntry> buffered = producer.send("project", "topic", newRecord("b", "0"));
+        // interrupt the final flush while the first batch is in flight
+        Thread.currentThread().interrupt();
+        try {
+            producer.close();
+            Assert.fail("close should be interrupted");
+        } catch (DatahubClientException e) {
+            Assert.assertTrue(Thread.interrupted());
+        }
+
+        Assert.assertTrue(buffered.isDone());
+        try {
+            buffered.get();
+            Assert.fail("record should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DatahubClientException);
+        }
+        try {
+            producer.send("project", "topic", newRecord("c", "0"));
+            Assert.fail("producer is closed");
+        } catch (DatahubClientException e) {
+            // expected
+        }
+
+        client.gate.countDown();
+        Assert.assertEquals(sent.get().getString(0), "a");
+        Assert.assertEquals(client.batches.size(), 1);
+    }
+}
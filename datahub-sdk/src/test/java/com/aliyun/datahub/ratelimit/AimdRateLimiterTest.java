@@ -0,0 +1,75 @@
+package com.aliyun.datahub.ratelimit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class AimdRateLimiterTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void testReserve() {
+        AimdRateLimiter limiter = new AimdRateLimiter(10, 1, 100, 5, 0.5, 1000);
+        long now = System.nanoTime();
+        // a full bucket of one second
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertEquals(limiter.reserve(now), 0);
+        }
+        Assert.assertEquals(limiter.reserve(now), SECOND / 10);
+        Assert.assertEquals(limiter.reserve(now), 2 * SECOND / 10);
+        // refilled while waiting
+        Assert.assertEquals(limiter.reserve(now + SECOND), 0);
+    }
+
+    @Test
+    public void testDecreaseFromRateUsed() {
+        AimdRateLimiter limiter = new AimdRateLimiter(100, 1, 100, 5, 0.5, 1000);
+        long now = System.nanoTime();
+        for (int i = 0; i < 20; ++i) {
+            limiter.reserve(now + i * SECOND / 20);
+        }
+        // 20 per second sent while 100 allowed, cut from what was sent
+        limiter.onThrottle(now + SECOND);
+        Assert.assertEquals(limiter.getRate(), 10, 0.5);
+        // throttling of requests in flight cuts once
+        limiter.onThrottle(now + SECOND + SECOND / 2);
+        Assert.assertEquals(limiter.getRate(), 10, 0.5);
+        // no burst after throttling
+        Assert.assertTrue(limiter.reserve(now + SECOND) > 0);
+    }
+
+    @Test
+    public void testIncreaseAndBounds() {
+        AimdRateLimiter limiter = new AimdRateLimiter(10, 2, 12, 5, 0.5, 0);
+        // one second of successes at 10 per second adds 5
+        for (int i = 0; i < 10; ++i) {
+            limiter.onSuccess();
+        }
+        Assert.assertEquals(limiter.getRate(), 12, 0.0001);
+
+        long now = System.nanoTime();
+        for (int i = 0; i < 10; ++i) {
+            limiter.onThrottle(now + i);
+        }
+        Assert.assertEquals(limiter.getRate(), 2, 0.0001);
+    }
+
+    @Test
+    public void testShardRateLimiter() {
+        ShardRateLimiter limiter = new ShardRateLimiter();
+        limiter.setMaxRate(50);
+        Assert.assertEquals(limiter.getInitialRate(), 50, 0.0001);
+
+        limiter.onThrottle("PutRecords", "p", "t", "0");
+        Assert.assertEquals(limiter.getRate("PutRecords", "p", "t", "0"), 25, 0.0001);
+        Assert.assertEquals(limiter.getRate("PutRecords", "p", "t", "1"), 50, 0.0001);
+        Assert.assertEquals(limiter.getRate("GetRecords", "p", "t", "0"), 50, 0.0001);
+        limiter.onSuccess("PutRecords", "p", "t", "0");
+        Assert.assertTrue(limiter.getRate("PutRecords", "p", "t", "0") > 25);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidDecreaseFactor() {
+        new ShardRateLimiter().setDecreaseFactor(1);
+    }
+}
@@ -0,0 +1,106 @@
+package com.aliyun.datahub.rest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+@Test
+public class EndpointRouterTest {
+
+    private static class StubDiscovery implements EndpointRouter.Discovery {
+        final LinkedList<String> urls = new LinkedList<String>();
+
+        @Override
+        public String discover() throws Exception {
+            String url = urls.removeFirst();
+            if (url == null) {
+                throw new Exception("status failed");
+            }
+            return url;
+        }
+    }
+
+    @Test
+    public void testDiscoverAndExpire() {
+        EndpointRouter router = new EndpointRouter(new StubDiscovery(), 1000, 60000);
+        Assert.assertNull(router.select(0));
+
+        router.refresh("http://a", 0);
+        router.refresh("http://b", 10000);
+        router.refresh("http://a", 30000);
+        Assert.assertEquals(router.getEndpoints().size(), 2);
+
+        // b not discovered for the ttl
+        router.refresh(null, 70000);
+        Assert.assertEquals(router.getEndpoints().size(), 1);
+        Assert.assertEquals(router.select(70000).getUrl(), "http://a");
+        router.refresh(null, 90000);
+        Assert.assertNull(router.select(90000));
+    }
+
+    @Test
+    public void testFailedDiscoveryKeepsEndpoints() {
+        StubDiscovery discovery = new StubDiscovery();
+        discovery.urls.add("http://a");
+        discovery.urls.add(null);
+        EndpointRouter router = new EndpointRouter(discovery);
+        router.refresh();
+        router.refresh();
+        Assert.assertEquals(router.select().getUrl(), "http://a");
+    }
+
+    @Test
+    public void testPreferLowLatency() {
+        EndpointRouter router = new EndpointRouter(new StubDiscovery(), 1000, 60000);
+        router.refresh("http://fast", 0);
+        router.refresh("http://slow", 0);
+        for (EndpointRouter.Endpoint endpoint : router.getEndpoints()) {
+            router.onSuccess(endpoint, endpoint.getUrl().equals("http://fast") ? 1000000 : 50000000);
+        }
+
+        int fast = 0;
+        for (int i = 0; i < 1000; ++i) {
+            if (router.select(0).getUrl().equals("http://fast")) {
+                ++fast;
+            }
+        }
+        // slow only when picked twice
+        Assert.assertTrue(fast > 600, "fast: " + fast);
+    }
+
+    @Test
+    public void testEjectOnFailure() {
+        EndpointRouter router = new EndpointRouter(new StubDiscovery(), 1000, 600000);
+        router.refresh("http://a", 0);
+        router.refresh("http://b", 0);
+        EndpointRouter.Endpoint a = router.getEndpoints().get(0);
+        EndpointRouter.Endpoint b = router.getEndpoints().get(1);
+
+        router.onFailure(a, 0);
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertSame(router.select(500), b);
+        }
+
+        // ejected longer by every failure in a row
+        router.onFailure(b, 0);
+        router.onFailure(b, 1000);
+        Assert.assertNull(router.select(999));
+        Assert.assertSame(router.select(1000), a);
+        Assert.assertFalse(b.isHealthy(2999));
+        Assert.assertTrue(b.isHealthy(3000));
+
+        // success resets the failures
+        router.onSuccess(b, 1000000);
+        router.onFailure(b, 3000);
+        Assert.assertTrue(b.isHealthy(4000));
+
+        Set<String> urls = new HashSet<String>();
+        for (int i = 0; i < 100; ++i) {
+            urls.add(router.select(4000).getUrl());
+        }
+        Assert.assertEquals(urls.size(), 2);
+    }
+}
@@ -0,0 +1,478 @@
+package com.aliyun.datahub.rest;
+
+import com.aliyun.datahub.DatahubClient;
+import com.aliyun.datahub.DatahubConfiguration;
+import com.aliyun.datahub.auth.AliyunAccount;
+import com.aliyun.datahub.common.data.Field;
+import com.aliyun.datahub.common.data.FieldType;
+import com.aliyun.datahub.common.data.RecordSchema;
+import com.aliyun.datahub.common.transport.Connection;
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.transport.DefaultResponse;
+import com.aliyun.datahub.common.transport.HttpMethod;
+import com.aliyun.datahub.common.transport.Response;
+import com.aliyun.datahub.common.transport.Transport;
+import com.aliyun.datahub.common.util.ResourceKey;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.exception.LimitExceededException;
+import com.aliyun.datahub.metrics.DatahubMetrics;
+import com.aliyun.datahub.metrics.MetricsListener;
+import com.aliyun.datahub.metrics.OperationMetrics;
+import com.aliyun.datahub.model.AppendFieldRequest;
+import com.aliyun.datahub.model.GetTopicResult;
+import com.aliyun.datahub.model.PutRecordsResult;
+import com.aliyun.datahub.model.RecordEntry;
+import com.aliyun.datahub.model.compress.Compression;
+import com.aliyun.datahub.model.compress.CompressionFormat;
+import com.aliyun.datahub.ratelimit.ShardRateLimiter;
+import com.aliyun.datahub.retry.DefaultRetryPolicy;
+import com.aliyun.datahub.retry.RecordRetryPolicy;
+import com.aliyun.datahub.retry.RetryPolicy;
+import com.aliyun.datahub.util.DatahubTestUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+@Test
+public class RestClientTest {
+
+    private static class StubTransport implements Transport {
+        final LinkedList<DefaultResponse> responses = new LinkedList<DefaultResponse>();
+        int requestCount = 0;
+
+        void add(int status, String body) {
+            DefaultResponse response = null;
+            if (status > 0) {
+                response = new DefaultResponse();
+                response.setStatus(status);
+                response.setBody(body.getBytes());
+            }
+            responses.add(response);
+        }
+
+        @Override
+        public Response request(DefaultRequest req) throws IOException {
+            ++requestCount;
+            DefaultResponse response = responses.removeFirst();
+            if (response == null) {
+                throw new IOException("connection reset");
+            }
+            return response;
+        }
+
+        @Override
+        public Response request(DefaultRequest req, String endpoint) throws IOException {
+            return request(req);
+        }
+
+        @Override
+        public Connection connect(DefaultRequest req) throws IOException {
+            throw new IOException("not supported");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private HttpServer server;
+    private String endpoint;
+
+    private volatile byte[] lastBody;
+    private volatile String lastContentEncoding;
+    private volatile String lastTransferEncoding;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/projects/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    InputStream in = exchange.getRequestBody();
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                        body.write(buffer, 0, n);
+                    }
+                    lastBody = body.toByteArray();
+                    lastContentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                    lastTransferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+
+                    byte[] reply = "{\"FailedRecordCount\":0,\"FailedRecords\":[]}".getBytes("UTF-8");
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, reply.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(reply);
+                    out.close();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static List<RecordEntry> newRecords(int count) {
+        RecordSchema schema = DatahubTestUtils.createSchema("string a, bigint b");
+        List<RecordEntry> records = new ArrayList<RecordEntry>();
+        for (int i = 0; i < count; ++i) {
+            RecordEntry entry = new RecordEntry(schema);
+            entry.setString(0, "value" + i);
+            entry.setBigint(1, (long) i);
+            entry.setShardId("0");
+            records.add(entry);
+        }
+        return records;
+    }
+
+    private DatahubConfiguration newConf(boolean streaming, CompressionFormat format, DatahubMetrics metrics) {
+        DatahubConfiguration conf = new DatahubConfiguration(new AliyunAccount("id", "key"), endpoint);
+        conf.setStreamingRequestBody(streaming);
+        conf.setCompressionFormat(format);
+        conf.setMetricsListener(metrics);
+        return conf;
+    }
+
+    private byte[] put(DatahubConfiguration conf, List<RecordEntry> records) throws IOException {
+        DatahubClient client = new DatahubClient(conf);
+        try {
+            PutRecordsResult result = client.putRecords("p", "t", records);
+            Assert.assertEquals(result.getFailedRecordCount(), 0);
+        } finally {
+            client.close();
+        }
+        return "deflate".equals(lastContentEncoding) ? Compression.zlibDecompress(lastBody) : lastBody;
+    }
+
+    @Test
+    public void testStreamingRequestBody() throws IOException {
+        List<RecordEntry> records = newRecords(20000);
+        byte[] buffered = put(newConf(false, null, null), records);
+        Assert.assertNull(lastTransferEncoding);
+
+        byte[] streamed = put(newConf(true, null, null), records);
+        Assert.assertEquals(lastTransferEncoding, "chunked");
+        Assert.assertNull(lastContentEncoding);
+        Assert.assertEquals(streamed, buffered);
+    }
+
+    @Test
+    public void testStreamingZlibRequestBody() throws IOException {
+        List<RecordEntry> records = newRecords(20000);
+        byte[] buffered = put(newConf(false, null, null), records);
+
+        DatahubMetrics metrics = new DatahubMetrics();
+        byte[] streamed = put(newConf(true, CompressionFormat.ZLIB, metrics), records);
+        Assert.assertEquals(lastTransferEncoding, "chunked");
+        Assert.assertEquals(lastContentEncoding, "deflate");
+        Assert.assertEquals(streamed, buffered);
+
+        OperationMetrics m = metrics.getMetrics(new ResourceKey("POST /projects/*/topics/*/shards", "p", "t", null));
+        Assert.assertEquals(m.getRawBytesSent(), buffered.length);
+        Assert.assertEquals(m.getBytesSent(), lastBody.length);
+    }
+
+    @Test
+    public void testStreamingLz4RequestBodyBuffered() throws IOException {
+        List<RecordEntry> records = newRecords(1000);
+        byte[] buffered = put(newConf(false, null, null), records);
+
+        // lz4 needs the raw size header, the body is compressed as a whole
+        DatahubClient client = new DatahubClient(newConf(true, CompressionFormat.LZ4, null));
+        try {
+            client.putRecords("p", "t", records);
+        } finally {
+            client.close();
+        }
+        Assert.assertNull(lastTransferEncoding);
+        Assert.assertEquals(lastContentEncoding, "lz4");
+        Assert.assertEquals(Compression.lz4Decompress(lastBody, buffered.length), buffered);
+    }
+
+    private static RestClient newRetryClient(StubTransport transport) {
+        RestClient client = new RestClient(transport, null);
+        client.setAccount(new AliyunAccount("id", "key"));
+        DefaultRetryPolicy policy = new DefaultRetryPolicy();
+        policy.setBaseDelayMs(1);
+        policy.setThrottledBaseDelayMs(1);
+        client.setRetryPolicy(policy);
+        return client;
+    }
+
+    private static DefaultRequest newRequest(boolean idempotent) {
+        DefaultRequest request = new DefaultRequest();
+        request.setHttpMethod(HttpMethod.POST);
+        request.setResource("/projects/p/topics/t/shards");
+        request.setBody("{}");
+        if (idempotent) {
+            request.setIdempotent(true);
+        }
+        return request;
+    }
+
+    @Test
+    public void testRetryThrottled() {
+        StubTransport transport = new StubTransport();
+        transport.add(429, "{\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}");
+        transport.add(503, "<html>unavailable</html>");
+        transport.add(200, "{}");
+        Response response = newRetryClient(transport).request(newRequest(false));
+        Assert.assertEquals(response.getStatus(), 200);
+        Assert.assertEquals(transport.requestCount, 3);
+    }
+
+    @Test
+    public void testGiveUpReturnsLastResponse() {
+        StubTransport transport = new StubTransport();
+        for (int i = 0; i < 5; ++i) {
+            transport.add(429, "{\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}");
+        }
+        Response response = newRetryClient(transport).request(newRequest(false));
+        Assert.assertEquals(response.getStatus(), 429);
+        Assert.assertEquals(transport.requestCount, DefaultRetryPolicy.DEFAULT_MAX_RETRIES + 1);
+    }
+
+    @Test
+    public void testP2PRouterLifecycle() {
+        RestClient client = newRetryClient(new StubTransport());
+        client.enableP2P(true);
+        EndpointRouter router = client.getEndpointRouter();
+        Assert.assertNotNull(router);
+        client.enableP2P(true);
+        Assert.assertSame(client.getEndpointRouter(), router);
+        client.enableP2P(false);
+        Assert.assertNull(client.getEndpointRouter());
+
+        // no router is started once closed
+        client.enableP2P(true);
+        client.close();
+        Assert.assertNull(client.getEndpointRouter());
+        client.enableP2P(true);
+        Assert.assertNull(client.getEndpointRouter());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testRetryTimes() {
+        StubTransport transport = new StubTransport();
+        for (int i = 0; i < 10; ++i) {
+            transport.add(429, "{\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}");
+        }
+        RestClient client = newRetryClient(transport);
+        DefaultRetryPolicy configured = (DefaultRetryPolicy) client.getRetryPolicy();
+        client.setRetryTimes(5);
+        Assert.assertEquals(client.getRetryTimes(), 5);
+        // the policy shared with other clients is not changed
+        Assert.assertEquals(configured.getMaxRetries(), DefaultRetryPolicy.DEFAULT_MAX_RETRIES);
+        client.request(newRequest(false));
+        Assert.assertEquals(transport.requestCount, 6);
+
+        client.setRetryPolicy(new RetryPolicy() {
+            @Override
+            public long getRetryDelay(DefaultRequest request, DatahubServiceException e, int retries) {
+                return 0;
+            }
+
+            @Override
+            public void onSuccess(DefaultRequest request) {
+            }
+        });
+        client.setRetryTimes(1);
+        client.request(newRequest(false));
+        Assert.assertEquals(transport.requestCount, 8);
+    }
+
+    @Test
+    public void testNoRetryInvalidParameter() {
+        StubTransport transport = new StubTransport();
+        transport.add(400, "{\"ErrorCode\":\"InvalidParameter\",\"ErrorMessage\":\"invalid\"}");
+        transport.add(200, "{}");
+        Response response = newRetryClient(transport).request(newRequest(true));
+        Assert.assertEquals(response.getStatus(), 400);
+        Assert.assertEquals(transport.requestCount, 1);
+    }
+
+    @Test
+    public void testRetryConnectionErrorIfIdempotent() {
+        StubTransport transport = new StubTransport();
+        transport.add(0, null);
+        transport.add(500, "{\"ErrorCode\":\"InternalServerError\",\"ErrorMessage\":\"internal\"}");
+        transport.add(200, "{}");
+        Response response = newRetryClient(transport).request(newRequest(true));
+        Assert.assertEquals(response.getStatus(), 200);
+        Assert.assertEquals(transport.requestCount, 3);
+
+        transport.add(0, null);
+        transport.add(200, "{}");
+        try {
+            newRetryClient(transport).request(newRequest(false));
+            Assert.fail("should throw");
+        } catch (DatahubServiceException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(transport.requestCount, 4);
+    }
+
+    @Test
+    public void testRateLimit() {
+        StubTransport transport = new StubTransport();
+        transport.add(200, "{\"FailedRecordCount\":1,\"FailedRecords\":[{\"Index\":1,"
+                + "\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}]}");
+        transport.add(429, "{\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}");
+
+        DatahubConfiguration conf = newConf(false, null, new DatahubMetrics());
+        conf.setRetryPolicy(RetryPolicy.NO_RETRY);
+        ShardRateLimiter limiter = new ShardRateLimiter();
+        limiter.setMaxRate(100);
+        conf.setRateLimiter(limiter);
+        DatahubClient client = new DatahubClient(conf, transport);
+
+        List<RecordEntry> records = newRecords(2);
+        records.get(1).setShardId("1");
+        PutRecordsResult result = client.putRecords("p", "t", records);
+        Assert.assertEquals(result.getFailedRecordCount(), 1);
+        Assert.assertTrue(limiter.getRate(MetricsListener.PUT_RECORDS, "p", "t", "0") > 100 - 0.0001);
+        double rate = limiter.getRate(MetricsListener.PUT_RECORDS, "p", "t", "1");
+        Assert.assertEquals(rate, 50, 0.0001);
+
+        DatahubMetrics metrics = (DatahubMetrics) conf.getMetricsListener();
+        Assert.assertEquals(metrics.getMetrics(new ResourceKey(MetricsListener.PUT_RECORDS, "p", "t", "1"))
+                .getRateLimit(), rate, 0.0001);
+
+        try {
+            client.getRecords("p", "t", "0", "cursor", 10, null);
+            Assert.fail("should throw");
+        } catch (LimitExceededException e) {
+            // expected
+        }
+        Assert.assertEquals(limiter.getRate(MetricsListener.GET_RECORDS, "p", "t", "0"), 50, 0.0001);
+        Assert.assertEquals(metrics.getMetrics(new ResourceKey(MetricsListener.GET_RECORDS, "p", "t", "0"))
+                .getRateLimit(), 50, 0.0001);
+    }
+
+    @Test
+    public void testRateLimitThrottledRetry() {
+        StubTransport transport = new StubTransport();
+        transport.add(429, "{\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}");
+        transport.add(200, "{\"FailedRecordCount\":0,\"FailedRecords\":[]}");
+
+        DatahubConfiguration conf = newConf(false, null, null);
+        DefaultRetryPolicy retryPolicy = new DefaultRetryPolicy();
+        retryPolicy.setThrottledBaseDelayMs(1);
+        conf.setRetryPolicy(retryPolicy);
+        ShardRateLimiter limiter = new ShardRateLimiter();
+        limiter.setMaxRate(100);
+        limiter.setRateIncrease(0);
+        conf.setRateLimiter(limiter);
+        DatahubClient client = new DatahubClient(conf, transport);
+
+        // throttled attempt cuts the rate though the retry succeeds
+        PutRecordsResult result = client.putRecords("p", "t", newRecords(1));
+        Assert.assertEquals(result.getFailedRecordCount(), 0);
+        Assert.assertEquals(transport.requestCount, 2);
+        Assert.assertEquals(limiter.getRate(MetricsListener.PUT_RECORDS, "p", "t", "0"), 50, 0.0001);
+    }
+
+    @Test
+    public void testMetadataCache() {
+        String topic = "{\"ShardCount\":1,\"Lifecycle\":1,\"RecordType\":\"BLOB\","
+                + "\"CreateTime\":1,\"LastModifyTime\":1,\"Comment\":\"\"}";
+        StubTransport transport = new StubTransport();
+        transport.add(200, topic);
+        transport.add(200, "{\"NewShards\":[]}");
+        transport.add(200, topic);
+        transport.add(200, "{}");
+        transport.add(200, topic);
+
+        DatahubConfiguration conf = newConf(false, null, null);
+        conf.setMetadataCacheTtlMs(60000);
+        DatahubClient client = new DatahubClient(conf, transport);
+
+        GetTopicResult result = client.getTopic("p", "t");
+        Assert.assertSame(client.getTopic("p", "t"), result);
+        Assert.assertNull(client.getRecordSchema("p", "t"));
+        Assert.assertEquals(transport.requestCount, 1);
+
+        // changes of the topic drop it
+        client.splitShard("p", "t", "0", "00000000000000000000000000000001");
+        Assert.assertNotSame(client.getTopic("p", "t"), result);
+        Assert.assertEquals(transport.requestCount, 3);
+
+        client.appendField(new AppendFieldRequest("p", "t", new Field("f", FieldType.STRING)));
+        client.getTopic("p", "t");
+        client.getTopic("p", "t");
+        Assert.assertEquals(transport.requestCount, 5);
+    }
+
+    @Test
+    public void testPutRecordsRetryFailedRecords() {
+        StubTransport transport = new StubTransport();
+        transport.add(200, "{\"FailedRecordCount\":2,\"FailedRecords\":["
+                + "{\"Index\":1,\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"},"
+                + "{\"Index\":2,\"ErrorCode\":\"MalformedRecord\",\"ErrorMessage\":\"malformed\"}]}");
+        transport.add(200, "{\"FailedRecordCount\":0,\"FailedRecords\":[]}");
+
+        DatahubConfiguration conf = newConf(false, null, null);
+        RecordRetryPolicy policy = new RecordRetryPolicy();
+        policy.setThrottledBaseDelayMs(1);
+        conf.setRecordRetryPolicy(policy);
+        DatahubClient client = new DatahubClient(conf, transport);
+
+        List<RecordEntry> records = newRecords(3);
+        records.get(1).setShardId("1");
+        PutRecordsResult result = client.putRecords("p", "t", records, 3);
+        // only the throttled record is sent again
+        Assert.assertEquals(transport.requestCount, 2);
+        Assert.assertEquals(result.getFailedRecordCount(), 1);
+        Assert.assertEquals(result.getFailedRecordIndex(), Collections.singletonList(2));
+        Assert.assertEquals(result.getFailedRecordError().get(0).getErrorcode(), "MalformedRecord");
+        Assert.assertSame(result.getFailedRecords().get(0), records.get(2));
+    }
+
+    @Test
+    public void testPutRecordsRetriesNotMultiplied() {
+        StubTransport transport = new StubTransport();
+        transport.add(200, "{\"FailedRecordCount\":1,\"FailedRecords\":["
+                + "{\"Index\":0,\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}]}");
+        for (int i = 0; i < 10; ++i) {
+            transport.add(429, "{\"ErrorCode\":\"LimitExceeded\",\"ErrorMessage\":\"slow down\"}");
+        }
+
+        DatahubConfiguration conf = newConf(false, null, null);
+        DefaultRetryPolicy retryPolicy = new DefaultRetryPolicy();
+        retryPolicy.setThrottledBaseDelayMs(1);
+        conf.setRetryPolicy(retryPolicy);
+        RecordRetryPolicy policy = new RecordRetryPolicy();
+        policy.setThrottledBaseDelayMs(1);
+        conf.setRecordRetryPolicy(policy);
+        DatahubClient client = new DatahubClient(conf, transport);
+
+        List<RecordEntry> records = newRecords(2);
+        PutRecordsResult result = client.putRecords("p", "t", records, 2);
+        // re-sends throttled as a whole are not retried by the request policy
+        Assert.assertEquals(transport.requestCount, 3);
+        Assert.assertEquals(result.getFailedRecordIndex(), Collections.singletonList(0));
+        Assert.assertEquals(result.getFailedRecordError().get(0).getErrorcode(), "LimitExceeded");
+    }
+}
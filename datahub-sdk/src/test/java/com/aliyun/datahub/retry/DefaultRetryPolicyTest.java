@@ -0,0 +1,114 @@
+package com.aliyun.datahub.retry;
+
+import com.aliyun.datahub.common.transport.DefaultRequest;
+import com.aliyun.datahub.common.transport.HttpMethod;
+import com.aliyun.datahub.exception.DatahubServiceException;
+import com.aliyun.datahub.exception.InternalFailureException;
+import com.aliyun.datahub.exception.InvalidParameterException;
+import com.aliyun.datahub.exception.LimitExceededException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+@Test
+public class DefaultRetryPolicyTest {
+
+    private static DefaultRequest newRequest(HttpMethod method, boolean idempotent) {
+        DefaultRequest request = new DefaultRequest();
+        request.setHttpMethod(method);
+        if (idempotent) {
+            request.setIdempotent(true);
+        }
+        return request;
+    }
+
+    private static DatahubServiceException withStatus(DatahubServiceException e, int status) {
+        e.setStatusCode(status);
+        return e;
+    }
+
+    @Test
+    public void testClassification() {
+        DefaultRetryPolicy policy = new DefaultRetryPolicy();
+        DefaultRequest put = newRequest(HttpMethod.POST, false);
+        DefaultRequest read = newRequest(HttpMethod.POST, true);
+        DatahubServiceException throttled = withStatus(new LimitExceededException("slow down"), 429);
+        DatahubServiceException internal = withStatus(new InternalFailureException("internal"), 500);
+        DatahubServiceException invalid = withStatus(new InvalidParameterException("invalid"), 400);
+        DatahubServiceException connection = new DatahubServiceException("refused", new IOException("refused"));
+        DatahubServiceException unavailable = withStatus(new DatahubServiceException("<html>"), 503);
+        DatahubServiceException badGateway = withStatus(new DatahubServiceException("<html>"), 502);
+
+        Assert.assertTrue(policy.isRetryable(put, throttled));
+        Assert.assertTrue(policy.isRetryable(put, unavailable));
+        Assert.assertFalse(policy.isRetryable(put, internal));
+        Assert.assertFalse(policy.isRetryable(put, connection));
+        Assert.assertFalse(policy.isRetryable(put, badGateway));
+        Assert.assertFalse(policy.isRetryable(put, invalid));
+
+        Assert.assertTrue(policy.isRetryable(read, throttled));
+        Assert.assertTrue(policy.isRetryable(read, internal));
+        Assert.assertTrue(policy.isRetryable(read, connection));
+        Assert.assertTrue(policy.isRetryable(read, badGateway));
+        Assert.assertFalse(policy.isRetryable(read, invalid));
+
+        Assert.assertTrue(newRequest(HttpMethod.GET, false).isIdempotent());
+        Assert.assertFalse(put.isIdempotent());
+    }
+
+    @Test
+    public void testBackoff() {
+        DefaultRetryPolicy policy = new DefaultRetryPolicy();
+        policy.setMaxRetries(5);
+        policy.setBaseDelayMs(100);
+        policy.setThrottledBaseDelayMs(1000);
+        policy.setMaxDelayMs(1500);
+        DefaultRequest read = newRequest(HttpMethod.GET, false);
+        DatahubServiceException internal = withStatus(new InternalFailureException("internal"), 500);
+        DatahubServiceException throttled = withStatus(new LimitExceededException("slow down"), 429);
+
+        for (int i = 0; i < 100; ++i) {
+            for (int retries = 0; retries < 5; ++retries) {
+                long delay = policy.getRetryDelay(read, internal, retries);
+                Assert.assertTrue(delay >= 0 && delay < Math.min(1500, 100 << retries), "delay " + delay);
+            }
+            Assert.assertTrue(policy.getRetryDelay(read, throttled, 0) < 1000);
+            Assert.assertTrue(policy.getRetryDelay(read, throttled, 3) < 1500);
+            Assert.assertEquals(policy.getRetryDelay(read, internal, 5), -1);
+            // refill the budget taken above
+            for (int j = 0; j < 70; ++j) {
+                policy.onSuccess(read);
+            }
+        }
+    }
+
+    @Test
+    public void testBudget() {
+        DefaultRetryPolicy policy = new DefaultRetryPolicy();
+        policy.setBudget(new RetryBudget(3, 0.5));
+        DefaultRequest read = newRequest(HttpMethod.GET, false);
+        DatahubServiceException internal = withStatus(new InternalFailureException("internal"), 500);
+
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertTrue(policy.getRetryDelay(read, internal, 0) >= 0);
+        }
+        Assert.assertEquals(policy.getRetryDelay(read, internal, 0), -1);
+        Assert.assertEquals(policy.getBudget().getAvailable(), 0);
+
+        policy.onSuccess(read);
+        Assert.assertEquals(policy.getRetryDelay(read, internal, 0), -1);
+        policy.onSuccess(read);
+        Assert.assertTrue(policy.getRetryDelay(read, internal, 0) >= 0);
+
+        for (int i = 0; i < 100; ++i) {
+            policy.onSuccess(read);
+        }
+        Assert.assertEquals(policy.getBudget().getAvailable(), 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxRetries() {
+        new DefaultRetryPolicy().setMaxRetries(-1);
+    }
+}
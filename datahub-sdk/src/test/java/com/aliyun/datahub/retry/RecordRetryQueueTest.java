@@ -0,0 +1,147 @@
+package com.aliyun.datahub.retry;
+
+import com.aliyun.datahub.model.BlobRecordEntry;
+import com.aliyun.datahub.model.ErrorEntry;
+import com.aliyun.datahub.model.Record;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@Test
+public class RecordRetryQueueTest {
+    private static final ErrorEntry THROTTLED = new ErrorEntry("LimitExceeded", "slow down");
+    private static final ErrorEntry INTERNAL = new ErrorEntry("InternalServerError", "internal");
+    private static final ErrorEntry MALFORMED = new ErrorEntry("MalformedRecord", "malformed");
+
+    private static List<BlobRecordEntry> newRecords(String... shards) {
+        List<BlobRecordEntry> records = new ArrayList<BlobRecordEntry>();
+        for (String shard : shards) {
+            BlobRecordEntry record = new BlobRecordEntry();
+            record.setShardId(shard);
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Policy without jitter, throttled shards wait 500 ms per failure before.
+     */
+    private static RecordRetryPolicy newPolicy() {
+        return new RecordRetryPolicy() {
+            @Override
+            public long getRetryDelay(ErrorEntry error, int failures) {
+                return isThrottled(error) ? 500 * (failures + 1) : 0;
+            }
+        };
+    }
+
+    @Test
+    public void testClassification() {
+        RecordRetryPolicy policy = new RecordRetryPolicy();
+        Assert.assertTrue(policy.isRetryable(THROTTLED));
+        Assert.assertTrue(policy.isThrottled(THROTTLED));
+        Assert.assertTrue(policy.isRetryable(INTERNAL));
+        Assert.assertFalse(policy.isThrottled(INTERNAL));
+        Assert.assertFalse(policy.isRetryable(MALFORMED));
+        Assert.assertFalse(policy.isRetryable(new ErrorEntry("InvalidShardOperation", "closed")));
+        Assert.assertFalse(policy.isRetryable(null));
+    }
+
+    @Test
+    public void testBackoffPerShard() {
+        List<BlobRecordEntry> records = newRecords("0", "1", "1", "2");
+        RecordRetryQueue<BlobRecordEntry> queue = new RecordRetryQueue<BlobRecordEntry>(newPolicy(), 3, records);
+        queue.onResult(records, Arrays.asList(0, 1, 2, 3), Arrays.asList(THROTTLED, INTERNAL, INTERNAL, MALFORMED), 0);
+
+        Assert.assertFalse(queue.isEmpty());
+        Assert.assertEquals(queue.getFailedRecords(), Collections.singletonList(records.get(3)));
+        Assert.assertEquals(queue.getFailedIndex(), Collections.singletonList(3));
+
+        // shard 1 is due at once, throttled shard 0 waits
+        Assert.assertEquals(queue.getDelay(0), 0);
+        List<BlobRecordEntry> sent = queue.poll(0);
+        Assert.assertEquals(sent, Arrays.asList(records.get(1), records.get(2)));
+        queue.onResult(sent, Collections.<Integer>emptyList(), Collections.<ErrorEntry>emptyList(), 0);
+        Assert.assertEquals(queue.getDelay(0), 500);
+        Assert.assertTrue(queue.poll(499).isEmpty());
+
+        // backoff of shard 0 grows while throttled
+        sent = queue.poll(500);
+        Assert.assertEquals(sent, Collections.singletonList(records.get(0)));
+        queue.onResult(sent, Arrays.asList(0), Arrays.asList(THROTTLED), 500);
+        Assert.assertEquals(queue.getDelay(500), 1000);
+        sent = queue.poll(1500);
+        queue.onResult(sent, Collections.<Integer>emptyList(), Collections.<ErrorEntry>emptyList(), 1500);
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(queue.getFailedIndex(), Collections.singletonList(3));
+    }
+
+    @Test
+    public void testBackoffPerResolvedShard() {
+        List<BlobRecordEntry> records = newRecords(null, null, null, null);
+        records.get(0).setPartitionKey("a");
+        records.get(1).setPartitionKey("b");
+        records.get(2).setPartitionKey("c");
+        records.get(3).setHashKey("00000000000000000000000000000000");
+        // a and b are written to shard 0, c to an unknown shard
+        RecordRetryQueue.ShardResolver resolver = new RecordRetryQueue.ShardResolver() {
+            @Override
+            public String resolve(Record record) {
+                String key = record.getPartitionKey();
+                return "a".equals(key) || "b".equals(key) ? "0" : null;
+            }
+        };
+        RecordRetryQueue<BlobRecordEntry> queue = new RecordRetryQueue<BlobRecordEntry>(newPolicy(), 3, records, resolver);
+        queue.onResult(records, Arrays.asList(0, 1, 2, 3), Arrays.asList(THROTTLED, INTERNAL, INTERNAL, INTERNAL), 0);
+
+        // b waits with a for throttled shard 0, keys of unknown shards do not
+        List<BlobRecordEntry> sent = queue.poll(0);
+        Assert.assertEquals(sent, Arrays.asList(records.get(2), records.get(3)));
+        queue.onResult(sent, Collections.<Integer>emptyList(), Collections.<ErrorEntry>emptyList(), 0);
+        Assert.assertEquals(queue.getDelay(0), 500);
+        Assert.assertEquals(queue.poll(500), Arrays.asList(records.get(0), records.get(1)));
+    }
+
+    @Test
+    public void testRequestFailed() {
+        List<BlobRecordEntry> records = newRecords("0", "1");
+        RecordRetryQueue<BlobRecordEntry> queue = new RecordRetryQueue<BlobRecordEntry>(newPolicy(), 1, records);
+        queue.onRequestFailed(records, INTERNAL, 0);
+        List<BlobRecordEntry> sent = queue.poll(0);
+        Assert.assertEquals(sent, records);
+        queue.onRequestFailed(sent, THROTTLED, 0);
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(queue.getFailedIndex(), Arrays.asList(0, 1));
+        Assert.assertEquals(queue.getFailedErrors(), Arrays.asList(THROTTLED, THROTTLED));
+    }
+
+    @Test
+    public void testRetriesExhausted() {
+        List<BlobRecordEntry> records = newRecords("0", "0");
+        RecordRetryQueue<BlobRecordEntry> queue = new RecordRetryQueue<BlobRecordEntry>(newPolicy(), 2, records);
+        queue.onResult(records, Arrays.asList(1), Arrays.asList(INTERNAL), 0);
+        for (int i = 0; i < 2; ++i) {
+            List<BlobRecordEntry> sent = queue.poll(0);
+            Assert.assertEquals(sent, Collections.singletonList(records.get(1)));
+            queue.onResult(sent, Arrays.asList(0), Arrays.asList(INTERNAL), 0);
+        }
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(queue.getFailedIndex(), Collections.singletonList(1));
+        Assert.assertEquals(queue.getFailedErrors(), Collections.singletonList(INTERNAL));
+    }
+
+    @Test
+    public void testGiveUp() {
+        List<BlobRecordEntry> records = newRecords("0", "1");
+        RecordRetryQueue<BlobRecordEntry> queue = new RecordRetryQueue<BlobRecordEntry>(newPolicy(), 3, records);
+        queue.onResult(records, Arrays.asList(0, 1), Arrays.asList(THROTTLED, THROTTLED), 0);
+        queue.giveUp();
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(queue.getFailedIndex(), Arrays.asList(0, 1));
+        Assert.assertEquals(queue.getFailedErrors(), Arrays.asList(THROTTLED, THROTTLED));
+    }
+}